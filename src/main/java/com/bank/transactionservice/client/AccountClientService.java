@@ -1,97 +1,82 @@
 package com.bank.transactionservice.client;
 
-import com.bank.transactionservice.dto.BaseResponse;
+import com.bank.transactionservice.memo.RequestMemo;
 import com.bank.transactionservice.model.account.Account;
+import com.bank.transactionservice.service.TransactionCacheService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
-import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Slf4j
 @Service
 public class AccountClientService {
-    private final WebClient webClient;
-    private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private static final DownstreamCall<Account> GET_ACCOUNT =
+            DownstreamCall.of("/accounts/{accountId}", Account.class, "retrieving account").hedged();
+    private static final DownstreamCall<List<Account>> GET_ACCOUNTS =
+            DownstreamCall.ofList("/accounts/batch?ids={ids}", Account.class, "retrieving accounts").hedged();
+    private static final DownstreamCall<Account> UPDATE_ACCOUNT =
+            DownstreamCall.of("/accounts/{id}", Account.class, "updating account");
+    private final DownstreamCallTemplate downstream;
+    private final MicroBatcher<String, Account> accountBatcher;
+    private final TransactionCacheService transactionCacheService;
 
-    public AccountClientService(WebClient.Builder webClientBuilder,
+    public AccountClientService(DownstreamClientFactory downstreamClientFactory,
                                 @Value("${account-service.base-url}") String accountServiceUrl,
-                                CircuitBreakerRegistry circuitBreakerRegistry) {
-        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("accountService");
+                                CircuitBreakerRegistry circuitBreakerRegistry,
+                                TransactionCacheService transactionCacheService) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("accountService");
         log.info("Circuit breaker '{}' initialized with state: {}",
                 circuitBreaker.getName(), circuitBreaker.getState());
-        this.webClient = webClientBuilder.baseUrl(accountServiceUrl).build();
+        this.downstream = downstreamClientFactory.template("account-service", "Account service", accountServiceUrl,
+                circuitBreaker);
+        this.accountBatcher = downstreamClientFactory.batcher("account-service", "accounts", this::accountsById);
+        this.transactionCacheService = transactionCacheService;
     }
 
+    // Resolved once per operation; concurrent lookups are coalesced into one batch request when batching is
+    // enabled for account-service
     public Mono<Account> getAccountById(String accountId) {
-        return webClient.get()
-                .uri("/accounts/{accountId}", accountId)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                })
-                .onStatus(HttpStatus::is5xxServerError, response -> {
-                    log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                })
-                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Account>>() { })
-                .map(BaseResponse::getData)
-                .doOnNext(result -> log.info("Customer API response: {}", result))
-                .doOnError(error -> log.error("Error fetching account with ID {}: {}", accountId, error.getMessage()))
-                .transform(CircuitBreakerOperator.of(circuitBreaker))
-                .onErrorResume(throwable -> {
-                    log.error("FALLBACK TRIGGERED: Unable to fetch account with ID {}. Reason: {}",
-                            accountId, throwable.getMessage());
-                    log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
-                            "Account service is unavailable for retrieving account. " +
-                                    "Cannot proceed with the operation."));
-                });
+        return RequestMemo.memoize(Account.class, accountId, () -> loadAccount(accountId));
+    }
+    private Mono<Account> loadAccount(String accountId) {
+        if (accountBatcher == null) {
+            return downstream.get(GET_ACCOUNT, accountId);
+        }
+        return accountBatcher.load(accountId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Account not found: " + accountId)));
+    }
+    // For read-only checks: while the account-service circuit is open the cached account is served instead
+    public Mono<ReadResult<Account>> getAccountAllowingStale(String accountId) {
+        Mono<Account> cached = Mono.defer(() -> transactionCacheService.getAccount(accountId));
+        Function<Account, Mono<Void>> recache = account -> transactionCacheService.saveAccount(accountId, account);
+        return downstream.getAllowingStale(GET_ACCOUNT, cached, recache, accountId);
+    }
+    public Flux<Account> getAccountsByIds(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return downstream.get(GET_ACCOUNTS, String.join(",", accountIds))
+                .flatMapIterable(Function.identity());
+    }
+    private Mono<Map<String, Account>> accountsById(List<String> accountIds) {
+        return getAccountsByIds(accountIds).collectMap(Account::getId);
     }
 
     public Mono<Account> updateAccountBalance(String accountId, BigDecimal newBalance) {
         return getAccountById(accountId)
-                .flatMap(existingAccount -> {
-                    existingAccount.setBalance(newBalance.doubleValue());
-                    return webClient.put()
-                            .uri("/accounts/{id}", accountId)
-                            .bodyValue(existingAccount)
-                            .retrieve()
-                            .onStatus(HttpStatus::is4xxClientError, response -> {
-                                log.error("Client error: {}", response.statusCode());
-                                return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                            })
-                            .onStatus(HttpStatus::is5xxServerError, response -> {
-                                log.error("Server error: {}", response.statusCode());
-                                return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                            })
-                            .bodyToMono(new ParameterizedTypeReference<BaseResponse<Account>>() { })
-                            .flatMap(response -> {
-                                if (response.getData() != null) {
-                                    return Mono.just(response.getData());
-                                } else {
-                                    return Mono.empty();
-                                }
-                            })
-                            .doOnNext(result -> log.info("Account updated successfully: {}", result))
-                            .doOnError(e -> log.error("Error while updating account: {}", e.getMessage()))
-                            .doOnTerminate(() -> log.info("Request to update account completed"))
-                            .transform(CircuitBreakerOperator.of(circuitBreaker))
-                            .onErrorResume(throwable -> {
-                                log.error("FALLBACK TRIGGERED: Unable to update account with ID {}. Reason: {}",
-                                        accountId, throwable.getMessage());
-                                log.error("Exception type: {}", throwable.getClass().getName());
-                                return Mono.error(new RuntimeException(
-                                        "Account service is unavailable for updating account. " +
-                                                "Cannot proceed with the operation."));
-                            });
-                });
+                .map(existingAccount -> existingAccount.toBuilder().balance(newBalance.doubleValue()).build())
+                .flatMap(updatedAccount -> downstream.put(UPDATE_ACCOUNT, updatedAccount, accountId))
+                .as(update -> RequestMemo.store(Account.class, accountId, update))
+                .doOnNext(result -> log.info("Account {} updated successfully", accountId));
     }
 }
@@ -0,0 +1,108 @@
+package com.bank.transactionservice.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+// Caps requests in flight to one downstream with an AIMD limit: each timely reply while the limit is in use
+// grows it by 1/limit, so about one per round of requests, and each overload signal (a reply slower than the
+// latency threshold, a timeout or an I/O failure) shrinks it by the backoff ratio. Requests over the limit fail
+// at once instead of queueing on the event loop
+@Slf4j
+public class AdaptiveBulkhead {
+    private final String downstream;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final Counter rejected;
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveBulkhead(String downstream, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                            Duration latencyThreshold, MeterRegistry meterRegistry) {
+        this.downstream = downstream;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = initialLimit;
+        Gauge.builder("transaction.downstream.concurrency.limit", this, AdaptiveBulkhead::limit)
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        Gauge.builder("transaction.downstream.concurrency.in-flight", this, AdaptiveBulkhead::inFlight)
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("transaction.downstream.concurrency.rejected")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> apply(Mono<T> request) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                rejected.increment();
+                return Mono.error(new DownstreamSaturatedException(downstream, limit()));
+            }
+            long start = System.nanoTime();
+            return request
+                    .doOnSuccess(value -> release(System.nanoTime() - start > latencyThresholdNanos))
+                    .doOnError(error -> release(isOverload(error)))
+                    .doOnCancel(() -> releaseCancelled(System.nanoTime() - start));
+        });
+    }
+    synchronized int limit() {
+        return (int) limit;
+    }
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+    private synchronized void release(boolean overloaded) {
+        // Only a limit that is actually being used has earned a raise
+        boolean limited = inFlight * 2 >= (int) limit;
+        inFlight--;
+        if (overloaded) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            log.debug("Concurrency limit of {} lowered to {}", downstream, (int) limit);
+        } else if (limited) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+    // A hedge that lost or a caller that gave up early says nothing about the downstream, but a call cut off by a
+    // timeout after the latency threshold is as slow as a late reply
+    private synchronized void releaseCancelled(long elapsedNanos) {
+        if (elapsedNanos > latencyThresholdNanos) {
+            release(true);
+        } else {
+            inFlight--;
+        }
+    }
+    private static boolean isOverload(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class DownstreamSaturatedException extends RuntimeException {
+        public DownstreamSaturatedException(String downstream, int limit) {
+            super("Too many concurrent requests to " + downstream + " (limit " + limit + ")");
+        }
+    }
+}
@@ -1,225 +1,132 @@
 package com.bank.transactionservice.client;
 
-import com.bank.transactionservice.dto.BaseResponse;
+import com.bank.transactionservice.memo.RequestMemo;
 import com.bank.transactionservice.model.credit.Credit;
 import com.bank.transactionservice.model.creditcard.CreditCard;
+import com.bank.transactionservice.service.TransactionCacheService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
-import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class CreditClientService {
-    private final WebClient webClient;
-    private final String creditServiceUrl;
-    private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private static final DownstreamCall<Credit> GET_CREDIT =
+            DownstreamCall.of("/credits/{id}", Credit.class, "retrieving credit").hedged();
+    private static final DownstreamCall<List<Credit>> GET_CREDITS =
+            DownstreamCall.ofList("/credits/batch?ids={ids}", Credit.class, "retrieving credits").hedged();
+    private static final DownstreamCall<Credit> UPDATE_CREDIT =
+            DownstreamCall.of("/credits/{id}", Credit.class, "updating credit");
+    private static final DownstreamCall<CreditCard> GET_CREDIT_CARD =
+            DownstreamCall.of("/credit-cards/{id}", CreditCard.class, "retrieving credit card");
+    private static final DownstreamCall<List<CreditCard>> GET_CREDIT_CARDS =
+            DownstreamCall.ofList("/credit-cards/batch?ids={ids}", CreditCard.class, "retrieving credit cards");
+    private static final DownstreamCall<CreditCard> UPDATE_CREDIT_CARD =
+            DownstreamCall.of("/credit-cards/{id}", CreditCard.class, "updating credit card");
+    private final DownstreamCallTemplate downstream;
+    private final MicroBatcher<String, Credit> creditBatcher;
+    private final MicroBatcher<String, CreditCard> creditCardBatcher;
+    private final TransactionCacheService transactionCacheService;
 
-    public CreditClientService(WebClient.Builder webClientBuilder,
+    public CreditClientService(DownstreamClientFactory downstreamClientFactory,
                                @Value("${credit-service.base-url-credit}") String creditServiceUrl,
-                               CircuitBreakerRegistry circuitBreakerRegistry) {
-        this.creditServiceUrl = creditServiceUrl;
-        this.webClient = webClientBuilder.baseUrl(creditServiceUrl).build();
-        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("creditService");
+                               CircuitBreakerRegistry circuitBreakerRegistry,
+                               TransactionCacheService transactionCacheService) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("creditService");
         log.info("Circuit breaker '{}' initialized with state: {}",
                 circuitBreaker.getName(), circuitBreaker.getState());
+        this.downstream = downstreamClientFactory.template("credit-service", "Credit service", creditServiceUrl,
+                circuitBreaker);
+        this.creditBatcher = downstreamClientFactory.batcher("credit-service", "credits", this::creditsById);
+        this.creditCardBatcher = downstreamClientFactory.batcher("credit-service", "credit cards",
+                this::creditCardsById);
+        this.transactionCacheService = transactionCacheService;
     }
 
+    // Resolved once per operation; concurrent lookups are coalesced into one batch request when batching is
+    // enabled for credit-service
     public Mono<Credit> getCreditById(String creditId) {
-        String fullUrl = creditServiceUrl + "/credits/" + creditId;
-        log.info("Sending request to Credit Service API: {}", fullUrl);
-        return webClient.get()
-                .uri("/credits/{id}", creditId)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                })
-                .onStatus(HttpStatus::is5xxServerError, response -> {
-                    log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                })
-                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Credit>>() { })
-                .flatMap(response -> {
-                    if (response.getData() != null) {
-                        return Mono.just(response.getData());
-                    } else {
-                        return Mono.empty();
-                    }
-                })
-                .doOnNext(result -> log.info("Credit API response: {}", result))
-                .doOnError(e -> log.error("Error while fetching Credit: {}", e.getMessage()))
-                .doOnTerminate(() -> log.info("Request to Credit API completed"))
-                .transform(CircuitBreakerOperator.of(circuitBreaker))
-                .onErrorResume(throwable -> {
-                    log.error("FALLBACK TRIGGERED: Unable to fetch credit with ID {}. Reason: {}",
-                            creditId, throwable.getMessage());
-                    log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
-                            "Credit service is unavailable for retrieving credit. " +
-                                    "Cannot proceed with the operation."));
-                });
+        return RequestMemo.memoize(Credit.class, creditId, () -> loadCredit(creditId));
+    }
+    private Mono<Credit> loadCredit(String creditId) {
+        if (creditBatcher == null) {
+            return downstream.get(GET_CREDIT, creditId);
+        }
+        return creditBatcher.load(creditId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Credit not found: " + creditId)));
     }
 
     public Mono<CreditCard> getCreditCardById(String creditCardId) {
-        String fullUrl = creditServiceUrl + "/credit-cards/" + creditCardId;
-        log.info("Sending request to Credit Service API: {}", fullUrl);
-        return webClient.get()
-                .uri("/credit-cards/{id}", creditCardId)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                })
-                .onStatus(HttpStatus::is5xxServerError, response -> {
-                    log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                })
-                .bodyToMono(new ParameterizedTypeReference<BaseResponse<CreditCard>>() { })
-                .flatMap(response -> {
-                    if (response.getData() != null) {
-                        return Mono.just(response.getData());
-                    } else {
-                        return Mono.empty();
-                    }
-                })
-                .doOnNext(result -> log.info("CreditCard API response: {}", result))
-                .doOnError(e -> log.error("Error while fetching CreditCard: {}", e.getMessage()))
-                .doOnTerminate(() -> log.info("Request to CreditCard API completed"))
-                .transform(CircuitBreakerOperator.of(circuitBreaker))
-                .onErrorResume(throwable -> {
-                    log.error("FALLBACK TRIGGERED: Unable to fetch credit card with ID {}. Reason: {}",
-                            creditCardId, throwable.getMessage());
-                    log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
-                            "Credit service is unavailable for retrieving credit card. " +
-                                    "Cannot proceed with the operation."));
-                });
+        return RequestMemo.memoize(CreditCard.class, creditCardId, () -> loadCreditCard(creditCardId));
+    }
+    private Mono<CreditCard> loadCreditCard(String creditCardId) {
+        if (creditCardBatcher == null) {
+            return downstream.get(GET_CREDIT_CARD, creditCardId);
+        }
+        return creditCardBatcher.load(creditCardId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Credit card not found: " + creditCardId)));
+    }
+    // For read-only checks: while the credit-service circuit is open the cached credit or card is served instead
+    public Mono<ReadResult<Credit>> getCreditAllowingStale(String creditId) {
+        Mono<Credit> cached = Mono.defer(() -> transactionCacheService.getCredit(creditId));
+        Function<Credit, Mono<Void>> recache = credit -> transactionCacheService.saveCredit(creditId, credit);
+        return downstream.getAllowingStale(GET_CREDIT, cached, recache, creditId);
+    }
+    public Mono<ReadResult<CreditCard>> getCreditCardAllowingStale(String creditCardId) {
+        Mono<CreditCard> cached = Mono.defer(() -> transactionCacheService.getCreditCard(creditCardId));
+        Function<CreditCard, Mono<Void>> recache = creditCard ->
+                transactionCacheService.saveCreditCard(creditCardId, creditCard);
+        return downstream.getAllowingStale(GET_CREDIT_CARD, cached, recache, creditCardId);
+    }
+    public Flux<Credit> getCreditsByIds(Collection<String> creditIds) {
+        if (creditIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return downstream.get(GET_CREDITS, String.join(",", creditIds))
+                .flatMapIterable(Function.identity());
+    }
+    public Flux<CreditCard> getCreditCardsByIds(Collection<String> creditCardIds) {
+        if (creditCardIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return downstream.get(GET_CREDIT_CARDS, String.join(",", creditCardIds))
+                .flatMapIterable(Function.identity());
+    }
+    private Mono<Map<String, Credit>> creditsById(List<String> creditIds) {
+        return getCreditsByIds(creditIds).collectMap(Credit::getId);
+    }
+    private Mono<Map<String, CreditCard>> creditCardsById(List<String> creditCardIds) {
+        return getCreditCardsByIds(creditCardIds).collectMap(CreditCard::getId);
     }
 
     public Mono<Credit> updateCreditBalance(String creditId, BigDecimal newBalance) {
-        String fullUrl = creditServiceUrl + "/credits/" + creditId;
-        log.info("Sending request to update credit balance: {}", fullUrl);
         return getCreditById(creditId)
-                .flatMap(existingCredit -> {
-                    existingCredit.setRemainingBalance(newBalance);
-                    return webClient.put()
-                            .uri("/credits/{id}", creditId)
-                            .bodyValue(existingCredit)
-                            .retrieve()
-                            .onStatus(HttpStatus::is4xxClientError, response -> {
-                                log.error("Client error: {}", response.statusCode());
-                                return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                            })
-                            .onStatus(HttpStatus::is5xxServerError, response -> {
-                                log.error("Server error: {}", response.statusCode());
-                                return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                            })
-                            .bodyToMono(new ParameterizedTypeReference<BaseResponse<Credit>>() { })
-                            .flatMap(response -> {
-                                if (response.getData() != null) {
-                                    return Mono.just(response.getData());
-                                } else {
-                                    return Mono.empty();
-                                }
-                            })
-                            .doOnNext(result -> log.info("Credit updated successfully: {}", result))
-                            .doOnError(e -> log.error("Error while updating Credit: {}", e.getMessage()))
-                            .doOnTerminate(() -> log.info("Request to update Credit completed"))
-                            .transform(CircuitBreakerOperator.of(circuitBreaker))
-                            .onErrorResume(throwable -> {
-                                log.error("FALLBACK TRIGGERED: Unable to update credit with ID {}. Reason: {}",
-                                        creditId, throwable.getMessage());
-                                log.error("Exception type: {}", throwable.getClass().getName());
-                                return Mono.error(new RuntimeException(
-                                        "Credit service is unavailable for updating credit. " +
-                                                "Cannot proceed with the operation."));
-                            });
-                });
+                .map(existingCredit -> existingCredit.toBuilder().remainingBalance(newBalance).build())
+                .flatMap(updatedCredit -> downstream.put(UPDATE_CREDIT, updatedCredit, creditId))
+                .as(update -> RequestMemo.store(Credit.class, creditId, update))
+                .doOnNext(result -> log.info("Credit {} updated successfully", creditId));
     }
 
     public Mono<CreditCard> updateCreditCardBalance(String creditCardId, BigDecimal newBalance) {
-        String fullUrl = creditServiceUrl + "/credit-cards/" + creditCardId;
-        log.info("Sending request to update credit card balance: {}", fullUrl);
         return getCreditCardById(creditCardId)
-                .flatMap(existingCreditCard -> {
-                    existingCreditCard.setAvailableBalance(newBalance);
-                    return webClient.put()
-                            .uri("/credit-cards/{id}", creditCardId)
-                            .bodyValue(existingCreditCard)
-                            .retrieve()
-                            .onStatus(HttpStatus::is4xxClientError, response -> {
-                                log.error("Client error: {}", response.statusCode());
-                                return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                            })
-                            .onStatus(HttpStatus::is5xxServerError, response -> {
-                                log.error("Server error: {}", response.statusCode());
-                                return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                            })
-                            .bodyToMono(new ParameterizedTypeReference<BaseResponse<CreditCard>>() { })
-                            .flatMap(response -> {
-                                if (response.getData() != null) {
-                                    return Mono.just(response.getData());
-                                } else {
-                                    return Mono.empty();
-                                }
-                            })
-                            .doOnNext(result -> log.info("CreditCard updated successfully: {}", result))
-                            .doOnError(e -> log.error("Error while updating CreditCard: {}", e.getMessage()))
-                            .doOnTerminate(() -> log.info("Request to update CreditCard completed"))
-                            .transform(CircuitBreakerOperator.of(circuitBreaker))
-                            .onErrorResume(throwable -> {
-                                log.error("FALLBACK TRIGGERED: Unable to update credit card with ID {}. Reason: {}",
-                                        creditCardId, throwable.getMessage());
-                                log.error("Exception type: {}", throwable.getClass().getName());
-                                return Mono.error(new RuntimeException(
-                                        "Credit service is unavailable for updating credit card. " +
-                                                "Cannot proceed with the operation."));
-                            });
-                });
+                .map(existingCreditCard -> existingCreditCard.toBuilder().availableBalance(newBalance).build())
+                .flatMap(updatedCreditCard -> downstream.put(UPDATE_CREDIT_CARD, updatedCreditCard, creditCardId))
+                .as(update -> RequestMemo.store(CreditCard.class, creditCardId, update))
+                .doOnNext(result -> log.info("Credit card {} updated successfully", creditCardId));
     }
     public Mono<Credit> updateCredit(Credit credit) {
-        String fullUrl = creditServiceUrl + "/credits/" + credit.getId();
-        log.info("Sending request to update credit: {}", fullUrl);
-        return webClient.put()
-                .uri("/credits/{id}", credit.getId())
-                .bodyValue(credit)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                })
-                .onStatus(HttpStatus::is5xxServerError, response -> {
-                    log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                })
-                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Credit>>() { })
-                .flatMap(response -> {
-                    if (response.getData() != null) {
-                        return Mono.just(response.getData());
-                    } else {
-                        return Mono.empty();
-                    }
-                })
-                .doOnNext(result -> log.info("Credit updated successfully: {}", result))
-                .doOnError(e -> log.error("Error while updating Credit: {}", e.getMessage()))
-                .doOnTerminate(() -> log.info("Request to update Credit completed"))
-                .transform(CircuitBreakerOperator.of(circuitBreaker))
-                .onErrorResume(throwable -> {
-                    log.error("FALLBACK TRIGGERED: Unable to update credit with ID {}. Reason: {}",
-                            credit.getId(), throwable.getMessage());
-                    log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
-                            "Credit service is unavailable for updating credit. " +
-                                    "Cannot proceed with the operation."));
-                });
+        return RequestMemo.store(Credit.class, credit.getId(), downstream.put(UPDATE_CREDIT, credit, credit.getId()))
+                .doOnNext(result -> log.info("Credit {} updated successfully", credit.getId()));
     }
 
 }
@@ -0,0 +1,50 @@
+package com.bank.transactionservice.client;
+
+import com.bank.transactionservice.dto.BaseResponse;
+import lombok.Getter;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+
+import java.util.List;
+
+// One downstream endpoint: its URI template and the BaseResponse type it answers with, resolved once when the
+// client class loads instead of through an anonymous type reference on every request
+@Getter
+public final class DownstreamCall<T> {
+    private final String uriTemplate;
+    private final ParameterizedTypeReference<BaseResponse<T>> responseType;
+    private final String description;
+    private final boolean notFoundAsEmpty;
+    private final boolean hedged;
+
+    private DownstreamCall(String uriTemplate, ParameterizedTypeReference<BaseResponse<T>> responseType,
+                           String description, boolean notFoundAsEmpty, boolean hedged) {
+        this.uriTemplate = uriTemplate;
+        this.responseType = responseType;
+        this.description = description;
+        this.notFoundAsEmpty = notFoundAsEmpty;
+        this.hedged = hedged;
+    }
+
+    public static <T> DownstreamCall<T> of(String uriTemplate, Class<T> dataType, String description) {
+        return new DownstreamCall<>(uriTemplate, responseType(ResolvableType.forClass(dataType)), description, false,
+                false);
+    }
+    public static <T> DownstreamCall<List<T>> ofList(String uriTemplate, Class<T> elementType, String description) {
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+        return new DownstreamCall<>(uriTemplate, responseType(listType), description, false, false);
+    }
+    // A 404 completes empty instead of failing, for lookups where nothing found is a normal answer
+    public DownstreamCall<T> notFoundAsEmpty() {
+        return new DownstreamCall<>(uriTemplate, responseType, description, true, hedged);
+    }
+    // Marks an idempotent read that may be hedged when its downstream has hedging enabled
+    public DownstreamCall<T> hedged() {
+        return new DownstreamCall<>(uriTemplate, responseType, description, notFoundAsEmpty, true);
+    }
+
+    private static <T> ParameterizedTypeReference<BaseResponse<T>> responseType(ResolvableType dataType) {
+        return ParameterizedTypeReference.forType(
+                ResolvableType.forClassWithGenerics(BaseResponse.class, dataType).getType());
+    }
+}
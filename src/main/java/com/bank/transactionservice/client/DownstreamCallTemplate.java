@@ -0,0 +1,148 @@
+package com.bank.transactionservice.client;
+
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.dto.BaseResponse;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Request, decoding and error handling shared by every downstream client: status errors are mapped the same way,
+// BaseResponse.data is unwrapped in place and any failure other than a rejected request surfaces as the
+// service-unavailable fallback
+@Slf4j
+public class DownstreamCallTemplate {
+    private static final Function<ClientResponse, Mono<? extends Throwable>> CLIENT_ERROR = response -> {
+        log.error("Client error: {}", response.statusCode());
+        return Mono.error(new DownstreamRejectedException(response.statusCode()));
+    };
+    private static final Function<ClientResponse, Mono<? extends Throwable>> SERVER_ERROR = response -> {
+        log.error("Server error: {}", response.statusCode());
+        return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
+    };
+    private final String service;
+    private final WebClient webClient;
+    private final CircuitBreakerOperator<Object> circuitBreakerOperator;
+    private final Duration timeout;
+    private final HedgingPolicy hedgingPolicy;
+    private final AdaptiveBulkhead bulkhead;
+    private final StaleReadFallback staleReads;
+
+    public DownstreamCallTemplate(String service, WebClient webClient, CircuitBreaker circuitBreaker) {
+        this(service, webClient, circuitBreaker, null, null, null, null);
+    }
+    public DownstreamCallTemplate(String service, WebClient webClient, CircuitBreaker circuitBreaker,
+                                  Duration timeout, HedgingPolicy hedgingPolicy, AdaptiveBulkhead bulkhead,
+                                  StaleReadFallback staleReads) {
+        this.service = service;
+        this.webClient = webClient;
+        this.circuitBreakerOperator = CircuitBreakerOperator.of(circuitBreaker);
+        this.timeout = timeout;
+        this.hedgingPolicy = hedgingPolicy;
+        this.bulkhead = bulkhead;
+        this.staleReads = staleReads;
+    }
+
+    public <T> Mono<T> get(DownstreamCall<T> call, Object... uriVariables) {
+        Supplier<Mono<T>> request = () -> decode(call, webClient.get().uri(call.getUriTemplate(), uriVariables));
+        // The circuit breaker sees the hedged pair as one call, bounded by the call's own limit or the request's
+        // remaining budget, whichever ends first
+        Mono<T> data = hedgingPolicy != null && call.isHedged() ? hedgingPolicy.apply(request) : request.get();
+        return guard(call, Deadline.bound(data, timeout), uriVariables);
+    }
+    // For read-only callers: while the circuit is open the cached copy is served, marked stale, instead of failing,
+    // and once it closes the value is read again and handed to recache
+    public <T> Mono<ReadResult<T>> getAllowingStale(DownstreamCall<T> call, Mono<T> cached,
+                                                    Function<T, Mono<Void>> recache, Object... uriVariables) {
+        Mono<ReadResult<T>> result = get(call, uriVariables).map(ReadResult::fresh);
+        if (staleReads == null) {
+            return result;
+        }
+        return result.onErrorResume(DownstreamCallTemplate::isCircuitOpen, error -> staleReads.recall(
+                staleKey(call, uriVariables), cached, () -> get(call, uriVariables).flatMap(recache), error));
+    }
+    public <T> Mono<T> put(DownstreamCall<T> call, Object body, Object... uriVariables) {
+        WebClient.RequestHeadersSpec<?> request = webClient.put().uri(call.getUriTemplate(), uriVariables)
+                .bodyValue(body);
+        return guard(call, DownstreamWrites.write(Deadline.admit(decode(call, request), timeout)), uriVariables);
+    }
+
+    private <T> Mono<T> decode(DownstreamCall<T> call, WebClient.RequestHeadersSpec<?> request) {
+        WebClient.ResponseSpec response = request.retrieve();
+        if (call.isNotFoundAsEmpty()) {
+            response = response.onStatus(HttpStatus.NOT_FOUND::equals, ClientResponse::createException);
+        }
+        Mono<T> data = response
+                .onStatus(HttpStatus::is4xxClientError, CLIENT_ERROR)
+                .onStatus(HttpStatus::is5xxServerError, SERVER_ERROR)
+                .bodyToMono(call.getResponseType())
+                .handle(DownstreamCallTemplate::unwrap);
+        if (call.isNotFoundAsEmpty()) {
+            data = data.onErrorResume(WebClientResponseException.NotFound.class, notFound -> Mono.empty());
+        }
+        // Every attempt, hedges included, needs a permit
+        return bulkhead != null ? bulkhead.apply(data) : data;
+    }
+    private <T> Mono<T> guard(DownstreamCall<T> call, Mono<T> data, Object[] uriVariables) {
+        return data.transform(circuitBreaker())
+                .doOnNext(result -> log.debug("{} response for {}: {}", service, call.getUriTemplate(), result))
+                .onErrorResume(throwable -> {
+                    if (throwable instanceof Deadline.DeadlineExceededException) {
+                        return Mono.error(throwable);
+                    }
+                    if (throwable instanceof DownstreamRejectedException) {
+                        log.warn("{} rejected {} {}: {}", service, call.getDescription(),
+                                Arrays.toString(uriVariables), throwable.getMessage());
+                        return Mono.error(throwable);
+                    }
+                    log.error("FALLBACK TRIGGERED: {} failed {} {}. Reason: {} ({})", service,
+                            call.getDescription(), Arrays.toString(uriVariables), throwable.getMessage(),
+                            throwable.getClass().getName());
+                    return Mono.error(new RuntimeException(service + " is unavailable for " + call.getDescription()
+                            + ". Cannot proceed with the operation.", throwable));
+                });
+    }
+    // The operator keeps no per-subscription state, so one instance serves every call and response type
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> Function<Publisher<T>, Publisher<T>> circuitBreaker() {
+        return (Function) circuitBreakerOperator;
+    }
+    private static String staleKey(DownstreamCall<?> call, Object[] uriVariables) {
+        return call.getUriTemplate() + Arrays.toString(uriVariables);
+    }
+    private static boolean isCircuitOpen(Throwable error) {
+        return error.getCause() instanceof CallNotPermittedException;
+    }
+    private static <T> void unwrap(BaseResponse<T> response, SynchronousSink<T> sink) {
+        if (response.getData() != null) {
+            sink.next(response.getData());
+        }
+    }
+
+    // The downstream answered and refused the request: asking again gets the same answer, so it is neither retried
+    // nor counted against the downstream's health
+    public static class DownstreamRejectedException extends IllegalStateException {
+        private final HttpStatus status;
+
+        public DownstreamRejectedException(HttpStatus status) {
+            super("Client error: " + status);
+            this.status = status;
+        }
+
+        public HttpStatus getStatus() {
+            return status;
+        }
+    }
+}
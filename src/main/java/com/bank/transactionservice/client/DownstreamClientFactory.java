@@ -0,0 +1,190 @@
+package com.bank.transactionservice.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// One named connection pool per downstream host, tuned under transaction.downstream.pool.* and per downstream
+// under transaction.downstream.<name>.pool.*; clients of the same downstream share its pool
+@Component
+@Slf4j
+public class DownstreamClientFactory implements DisposableBean {
+    // Path segments carrying IDs or document numbers are collapsed so the uri tag stays bounded
+    private static final Pattern ID_SEGMENT = Pattern.compile("/[^/]*\\d[^/]*");
+    private final WebClient.Builder webClientBuilder;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+    private final Map<String, Optional<HedgingPolicy>> hedgingPolicies = new ConcurrentHashMap<>();
+    private final Map<String, Optional<AdaptiveBulkhead>> bulkheads = new ConcurrentHashMap<>();
+
+    public DownstreamClientFactory(WebClient.Builder webClientBuilder, Environment environment,
+                                   MeterRegistry meterRegistry, ObjectProvider<DiscoveryClient> discoveryClient) {
+        this.webClientBuilder = webClientBuilder;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.discoveryClient = discoveryClient;
+    }
+
+    public DownstreamCallTemplate template(String downstream, String service, String baseUrl,
+                                           CircuitBreaker circuitBreaker) {
+        // Clients of one downstream share its hedge budget and concurrency limit as they share its pool
+        HedgingPolicy hedging = hedgingPolicies
+                .computeIfAbsent(downstream, name -> Optional.ofNullable(hedgingPolicy(name)))
+                .orElse(null);
+        AdaptiveBulkhead bulkhead = bulkheads
+                .computeIfAbsent(downstream, name -> Optional.ofNullable(bulkhead(name)))
+                .orElse(null);
+        Duration timeout = Duration.ofMillis(setting(downstream, "timeout-ms", Long.class, 3000L));
+        return new DownstreamCallTemplate(service, create(downstream, baseUrl), circuitBreaker, timeout, hedging,
+                bulkhead, staleReads(downstream, circuitBreaker));
+    }
+
+    // Built from the Spring-managed builder so codecs, filters and client metrics stay in place
+    public WebClient create(String downstream, String baseUrl) {
+        WebClient.Builder builder = webClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient(downstream)));
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(downstream);
+        if (loadBalancer != null) {
+            builder.filter(loadBalancer);
+        }
+        return builder.build();
+    }
+    // Off by default since the downstream must serve the batch endpoint; tuned under
+    // transaction.downstream[.<name>].batching.*
+    public <V> MicroBatcher<String, V> batcher(String downstream, String entities,
+                                               Function<List<String>, Mono<Map<String, V>>> loader) {
+        if (!setting(downstream, "batching.enabled", Boolean.class, false)) {
+            return null;
+        }
+        long windowMs = setting(downstream, "batching.window-ms", Long.class, 5L);
+        int maxSize = setting(downstream, "batching.max-size", Integer.class, 50);
+        log.info("Batching {} lookups to '{}' within {}ms, up to {} per request", entities, downstream, windowMs,
+                maxSize);
+        return new MicroBatcher<>(entities, Duration.ofMillis(windowMs), maxSize, loader);
+    }
+    @Override
+    public void destroy() {
+        providers.values().forEach(provider -> provider.disposeLater().block(Duration.ofSeconds(5)));
+        providers.clear();
+        httpClients.clear();
+    }
+
+    HttpClient httpClient(String downstream) {
+        return httpClients.computeIfAbsent(downstream, name -> {
+            HttpClient client = HttpClient.create(providers.computeIfAbsent(name, this::connectionProvider))
+                    .option(ChannelOption.SO_KEEPALIVE, setting(name, "pool.keep-alive", Boolean.class, true))
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                            setting(name, "pool.connect-timeout-ms", Integer.class, 2000))
+                    .metrics(true, uri -> ID_SEGMENT.matcher(uri).replaceAll("/{id}"));
+            // h2c lets one connection multiplex requests; HTTP/1.1 stays available for hosts that refuse it
+            if (setting(name, "pool.http2", Boolean.class, false)) {
+                client = client.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+            }
+            return client;
+        });
+    }
+    ConnectionProvider connectionProvider(String downstream) {
+        int maxConnections = setting(downstream, "pool.max-connections", Integer.class, 50);
+        int pendingAcquireMax = setting(downstream, "pool.pending-acquire-max", Integer.class, 500);
+        long pendingAcquireTimeoutMs = setting(downstream, "pool.pending-acquire-timeout-ms", Long.class, 2000L);
+        long maxIdleTimeMs = setting(downstream, "pool.max-idle-time-ms", Long.class, 20000L);
+        long maxLifeTimeMs = setting(downstream, "pool.max-life-time-ms", Long.class, 300000L);
+        long evictionIntervalMs = setting(downstream, "pool.eviction-interval-ms", Long.class, 10000L);
+        log.info("Creating connection pool '{}' with maxConnections={}, pendingAcquireMax={}, maxIdleTime={}ms",
+                downstream, maxConnections, pendingAcquireMax, maxIdleTimeMs);
+        // Idle connections are evicted before the downstream's own keep-alive timeout closes them under us
+        return ConnectionProvider.builder(downstream)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictionIntervalMs))
+                .metrics(true)
+                .build();
+    }
+    // Opt-in under transaction.downstream.hedging.* or transaction.downstream.<name>.hedging.*
+    HedgingPolicy hedgingPolicy(String downstream) {
+        if (!setting(downstream, "hedging.enabled", Boolean.class, false)) {
+            return null;
+        }
+        double percentile = setting(downstream, "hedging.percentile", Double.class, 0.95);
+        long minDelayMs = setting(downstream, "hedging.min-delay-ms", Long.class, 10L);
+        long minSamples = setting(downstream, "hedging.min-samples", Long.class, 20L);
+        double budgetPercent = setting(downstream, "hedging.budget-percent", Double.class, 10.0);
+        log.info("Hedging reads to '{}' after their p{} latency (at least {}ms) within {}% extra requests",
+                downstream, Math.round(percentile * 100), minDelayMs, budgetPercent);
+        return new HedgingPolicy(downstream, percentile, Duration.ofMillis(minDelayMs), minSamples,
+                budgetPercent / 100, meterRegistry);
+    }
+    // On by default; limits are tuned under transaction.downstream[.<name>].bulkhead.*
+    AdaptiveBulkhead bulkhead(String downstream) {
+        if (!setting(downstream, "bulkhead.enabled", Boolean.class, true)) {
+            return null;
+        }
+        int initialLimit = setting(downstream, "bulkhead.initial-limit", Integer.class, 20);
+        int minLimit = setting(downstream, "bulkhead.min-limit", Integer.class, 2);
+        int maxLimit = setting(downstream, "bulkhead.max-limit", Integer.class, 200);
+        double backoffRatio = setting(downstream, "bulkhead.backoff-ratio", Double.class, 0.9);
+        long latencyThresholdMs = setting(downstream, "bulkhead.latency-threshold-ms", Long.class, 1000L);
+        log.info("Bulkhead for '{}' starts at {} concurrent requests within [{}, {}], backing off above {}ms",
+                downstream, initialLimit, minLimit, maxLimit, latencyThresholdMs);
+        return new AdaptiveBulkhead(downstream, initialLimit, minLimit, maxLimit, backoffRatio,
+                Duration.ofMillis(latencyThresholdMs), meterRegistry);
+    }
+    // Requests go through discovery once transaction.downstream.<name>.discovery.service-id names the service
+    // registered in Eureka; base-url stays the target while no instance is registered
+    LatencyAwareLoadBalancer loadBalancer(String downstream) {
+        String serviceId = setting(downstream, "discovery.service-id", String.class, null);
+        DiscoveryClient discovery = discoveryClient.getIfAvailable();
+        if (serviceId == null || discovery == null) {
+            return null;
+        }
+        long decayMs = setting(downstream, "discovery.latency-decay-ms", Long.class, 10000L);
+        long ejectionLatencyMs = setting(downstream, "discovery.ejection-latency-ms", Long.class, 2000L);
+        long ejectionMs = setting(downstream, "discovery.ejection-ms", Long.class, 30000L);
+        int ejectionMinSamples = setting(downstream, "discovery.ejection-min-samples", Integer.class, 5);
+        log.info("Balancing requests to '{}' over instances of {}, ejecting those slower than {}ms for {}ms",
+                downstream, serviceId, ejectionLatencyMs, ejectionMs);
+        return new LatencyAwareLoadBalancer(serviceId, () -> discovery.getInstances(serviceId),
+                Duration.ofMillis(decayMs), Duration.ofMillis(ejectionLatencyMs), Duration.ofMillis(ejectionMs),
+                ejectionMinSamples);
+    }
+    // One per client, since each has its own circuit breaker; on by default under
+    // transaction.downstream[.<name>].stale-reads.enabled
+    StaleReadFallback staleReads(String downstream, CircuitBreaker circuitBreaker) {
+        if (!setting(downstream, "stale-reads.enabled", Boolean.class, true)) {
+            return null;
+        }
+        return new StaleReadFallback(downstream, circuitBreaker, meterRegistry);
+    }
+    private <T> T setting(String downstream, String setting, Class<T> type, T defaultValue) {
+        T value = environment.getProperty("transaction.downstream." + downstream + "." + setting, type);
+        return value != null ? value
+                : environment.getProperty("transaction.downstream." + setting, type, defaultValue);
+    }
+}
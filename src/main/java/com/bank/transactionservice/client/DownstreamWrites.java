@@ -0,0 +1,36 @@
+package com.bank.transactionservice.client;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+// Watches an operation for its first downstream write, carried in the Reactor context like the deadline. The hook
+// runs once before that write goes out and a failing hook keeps it from going out, so a caller can record that the
+// operation is about to move money and later tell whether it did
+public final class DownstreamWrites {
+    private static final Object CONTEXT_KEY = DownstreamWrites.class;
+    private final Mono<Void> beforeFirstWrite;
+    private volatile boolean started;
+
+    private DownstreamWrites(Mono<Void> beforeFirstWrite) {
+        this.beforeFirstWrite = beforeFirstWrite
+                .then(Mono.fromRunnable(() -> started = true))
+                .then()
+                .cache();
+    }
+
+    public static DownstreamWrites beforeFirstWrite(Mono<Void> hook) {
+        return new DownstreamWrites(hook);
+    }
+    public static Context track(Context context, DownstreamWrites writes) {
+        return context.put(CONTEXT_KEY, writes);
+    }
+    public static <T> Mono<T> write(Mono<T> call) {
+        return Mono.deferContextual(context -> context.<DownstreamWrites>getOrEmpty(CONTEXT_KEY)
+                .map(writes -> writes.beforeFirstWrite.then(call))
+                .orElse(call));
+    }
+    // Once set, the write may have been applied even if it failed or timed out
+    public boolean isStarted() {
+        return started;
+    }
+}
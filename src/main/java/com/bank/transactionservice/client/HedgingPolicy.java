@@ -0,0 +1,124 @@
+package com.bank.transactionservice.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Sends a second copy of an idempotent read when the first has not answered within the downstream's recent
+// latency percentile, and takes whichever replies first. Each request earns a fraction of a hedge token, so
+// hedges stay within budgetRatio of the traffic even while the downstream is slow across the board. Nothing is
+// hedged until minSamples replies were timed, and the budget starts empty, so a cold client does not double its
+// first requests on a percentile it has not measured yet
+@Slf4j
+public class HedgingPolicy {
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double MAX_TOKENS = 10;
+    private final String downstream;
+    private final Duration minDelay;
+    private final long minSamples;
+    private final double budgetRatio;
+    private final Timer latency;
+    private final Counter sent;
+    private final Counter throttled;
+    private final Counter won;
+    private double tokens;
+    private volatile Duration delay;
+    private volatile long delayComputedAt;
+
+    public HedgingPolicy(String downstream, double percentile, Duration minDelay, long minSamples,
+                         double budgetRatio, MeterRegistry meterRegistry) {
+        this.downstream = downstream;
+        this.minDelay = minDelay;
+        this.minSamples = minSamples;
+        this.budgetRatio = budgetRatio;
+        this.latency = Timer.builder("transaction.downstream.read.latency")
+                .tag("downstream", downstream)
+                .publishPercentiles(percentile)
+                .register(meterRegistry);
+        this.sent = hedgeCounter(meterRegistry, "sent");
+        this.throttled = hedgeCounter(meterRegistry, "throttled");
+        this.won = hedgeCounter(meterRegistry, "won");
+    }
+
+    public <T> Mono<T> apply(Supplier<Mono<T>> request) {
+        return Mono.defer(() -> {
+            earnToken();
+            if (latency.count() < minSamples) {
+                return timed(request.get()).flatMap(Mono::justOrEmpty);
+            }
+            Sinks.Empty<Void> primaryDone = Sinks.empty();
+            Mono<Optional<T>> primary = timed(request.get())
+                    .doFinally(signal -> primaryDone.tryEmitEmpty());
+            // Armed only while the primary is still pending; a fast failure is not turned into a retry
+            Mono<Optional<T>> hedge = Mono.delay(delay())
+                    .takeUntilOther(primaryDone.asMono())
+                    .filter(tick -> acquireToken())
+                    .flatMap(tick -> {
+                        sent.increment();
+                        log.debug("Hedging read to {} after {}", downstream, delay());
+                        return timed(request.get()).doOnNext(value -> won.increment());
+                    });
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorMap(NoSuchElementException.class, HedgingPolicy::primaryError)
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+    Duration delay() {
+        long now = System.nanoTime();
+        Duration current = delay;
+        if (current == null || now - delayComputedAt > DELAY_REFRESH_NANOS) {
+            delayComputedAt = now;
+            current = minDelay;
+            for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                Duration observed = Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS));
+                current = observed.compareTo(minDelay) > 0 ? observed : minDelay;
+            }
+            delay = current;
+        }
+        return current;
+    }
+    synchronized boolean acquireToken() {
+        if (tokens < 1) {
+            throttled.increment();
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    // Empty replies are wrapped so they still count as an answer in the race
+    private <T> Mono<Optional<T>> timed(Mono<T> request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request.map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnNext(value -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+    // Raised when the primary fails before a hedge was sent; the primary's own error is the useful one
+    private static Throwable primaryError(NoSuchElementException error) {
+        List<Throwable> errors = error.getCause() != null ? Exceptions.unwrapMultiple(error.getCause()) : List.of();
+        return errors.isEmpty() ? error : errors.get(0);
+    }
+    private synchronized void earnToken() {
+        tokens = Math.min(MAX_TOKENS, tokens + budgetRatio);
+    }
+    private Counter hedgeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("transaction.downstream.hedges")
+                .tag("downstream", downstream)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,186 @@
+package com.bank.transactionservice.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Spreads requests over the instances of one service registered in discovery: two instances are drawn at random and
+// the one with less latency-weighted load wins (power of two choices over in-flight count and a peak-sensitive
+// decaying average of response latency). Instances that answer slower than the ejection threshold or refuse
+// connections sit out for a while, once enough of their responses have been seen to judge them. Without any
+// registered instance requests keep going to the configured base URL
+@Slf4j
+public class LatencyAwareLoadBalancer implements ExchangeFilterFunction {
+    private final String serviceId;
+    private final Supplier<List<ServiceInstance>> instances;
+    private final long decayNanos;
+    private final long ejectionLatencyNanos;
+    private final long ejectionNanos;
+    private final int ejectionMinSamples;
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    public LatencyAwareLoadBalancer(String serviceId, Supplier<List<ServiceInstance>> instances, Duration decay,
+                                    Duration ejectionLatency, Duration ejection, int ejectionMinSamples) {
+        this.serviceId = serviceId;
+        this.instances = instances;
+        this.decayNanos = decay.toNanos();
+        this.ejectionLatencyNanos = ejectionLatency.toNanos();
+        this.ejectionNanos = ejection.toNanos();
+        this.ejectionMinSamples = ejectionMinSamples;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            ServiceInstance instance = choose();
+            if (instance == null) {
+                return next.exchange(request);
+            }
+            InstanceStats instanceStats = stats(instance);
+            URI url = UriComponentsBuilder.fromUri(request.url())
+                    .scheme(instance.isSecure() ? "https" : "http")
+                    .host(instance.getHost())
+                    .port(instance.getPort())
+                    .build(true)
+                    .toUri();
+            long start = instanceStats.start();
+            return next.exchange(ClientRequest.from(request).url(url).build())
+                    .doOnSuccess(response -> record(instance, instanceStats, System.nanoTime() - start, false))
+                    .doOnError(error -> record(instance, instanceStats, System.nanoTime() - start,
+                            error instanceof IOException))
+                    .doOnCancel(instanceStats::cancel);
+        });
+    }
+
+    ServiceInstance choose() {
+        List<ServiceInstance> registered = instances.get();
+        if (registered == null || registered.isEmpty()) {
+            return null;
+        }
+        // Instances that left discovery are forgotten, so they neither grow the map nor count toward the ejection cap
+        Set<String> current = new HashSet<>(registered.size() * 2);
+        for (ServiceInstance instance : registered) {
+            current.add(key(instance));
+        }
+        stats.keySet().retainAll(current);
+        long now = System.nanoTime();
+        List<ServiceInstance> candidates = new ArrayList<>(registered.size());
+        for (ServiceInstance instance : registered) {
+            if (!stats(instance).isEjected(now)) {
+                candidates.add(instance);
+            }
+        }
+        // With every instance ejected the least bad one is still better than failing outright
+        if (candidates.isEmpty()) {
+            candidates = registered;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return stats(a).load() <= stats(b).load() ? a : b;
+    }
+    InstanceStats stats(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), key -> new InstanceStats());
+    }
+    int trackedInstances() {
+        return stats.size();
+    }
+
+    void record(ServiceInstance instance, InstanceStats instanceStats, long latencyNanos,
+                        boolean connectionFailed) {
+        long now = System.nanoTime();
+        double average = instanceStats.finish(now, latencyNanos, decayNanos);
+        // A single bad response, say the first one after a cold start, is not enough to sit an instance out
+        if ((connectionFailed || average > ejectionLatencyNanos) && instanceStats.samples() >= ejectionMinSamples
+                && canEject(now)) {
+            instanceStats.eject(now + ejectionNanos);
+            log.warn("Ejecting {} instance {}:{} for {}ms ({})", serviceId, instance.getHost(), instance.getPort(),
+                    ejectionNanos / 1_000_000,
+                    connectionFailed ? "connection failed" : "average latency " + (long) average / 1_000_000 + "ms");
+        }
+    }
+
+    // At most half of the known instances sit out at once, so one slow spell cannot empty the pool
+    private boolean canEject(long now) {
+        long ejected = stats.values().stream().filter(instanceStats -> instanceStats.isEjected(now)).count();
+        return (ejected + 1) * 2 <= stats.size();
+    }
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    static final class InstanceStats {
+        private int inFlight;
+        private double averageNanos;
+        private int samples;
+        private long updatedAt = System.nanoTime();
+        private boolean ejected;
+        private long ejectedUntil;
+
+        synchronized long start() {
+            inFlight++;
+            return System.nanoTime();
+        }
+        synchronized double finish(long now, long latencyNanos, long decayNanos) {
+            inFlight--;
+            samples++;
+            // Peak-sensitive: a slower reply is taken at once, faster ones pull the average down as older samples
+            // fade with time rather than with request count, so a quiet instance recovers too
+            if (latencyNanos > averageNanos) {
+                averageNanos = latencyNanos;
+            } else {
+                double weight = Math.exp(-(double) (now - updatedAt) / decayNanos);
+                averageNanos = averageNanos * weight + latencyNanos * (1 - weight);
+            }
+            updatedAt = now;
+            return averageNanos;
+        }
+        synchronized void cancel() {
+            inFlight--;
+        }
+        synchronized void eject(long until) {
+            ejected = true;
+            ejectedUntil = until;
+            // A returning instance starts from a clean slate instead of its latency at ejection
+            averageNanos = 0;
+            samples = 0;
+        }
+        synchronized boolean isEjected(long now) {
+            return ejected && ejectedUntil - now > 0;
+        }
+        synchronized double load() {
+            return (averageNanos + 1) * (inFlight + 1);
+        }
+        synchronized int samples() {
+            return samples;
+        }
+        synchronized int inFlight() {
+            return inFlight;
+        }
+    }
+}
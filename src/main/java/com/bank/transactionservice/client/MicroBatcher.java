@@ -0,0 +1,99 @@
+package com.bank.transactionservice.client;
+
+import com.bank.transactionservice.deadline.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Coalesces single-key lookups issued within a short window into one batch request; every caller of a batch
+// completes when it does, with its own entry or empty when the batch did not return that key. The batch request runs
+// in the context of the caller whose deadline ends first, so it carries a request memo and deadline and is bounded
+// by the tightest budget among those waiting on it
+@Slf4j
+public class MicroBatcher<K, V> {
+    private final String name;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Function<List<K>, Mono<Map<K, V>>> loader;
+    private Batch<K, V> open;
+
+    public MicroBatcher(String name, Duration window, int maxBatchSize, Function<List<K>, Mono<Map<K, V>>> loader) {
+        this.name = name;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.loader = loader;
+    }
+
+    public Mono<V> load(K key) {
+        return Mono.deferContextual(context -> enqueue(key, context)
+                .flatMap(values -> Mono.justOrEmpty(values.get(key))));
+    }
+
+    private Mono<Map<K, V>> enqueue(K key, ContextView context) {
+        Batch<K, V> batch;
+        boolean opened = false;
+        boolean full;
+        synchronized (this) {
+            if (open == null) {
+                open = new Batch<>();
+                opened = true;
+            }
+            batch = open;
+            batch.keys.add(key);
+            batch.join(context);
+            full = batch.keys.size() >= maxBatchSize;
+        }
+        if (full) {
+            flush(batch);
+        } else if (opened) {
+            Mono.delay(window).subscribe(unused -> flush(batch));
+        }
+        return batch.loaded.asMono();
+    }
+    private void flush(Batch<K, V> batch) {
+        synchronized (this) {
+            if (open == batch) {
+                open = null;
+            }
+            // A batch filled up early is flushed by its last caller; the timer then finds it closed
+            if (batch.closed) {
+                return;
+            }
+            batch.closed = true;
+        }
+        List<K> keys = new ArrayList<>(batch.keys);
+        log.debug("Loading {} {} in one batch", keys.size(), name);
+        Deadline.bound(Mono.defer(() -> loader.apply(keys)), null)
+                .defaultIfEmpty(Collections.emptyMap())
+                .contextWrite(batch.context)
+                .subscribe(batch.loaded::tryEmitValue, batch.loaded::tryEmitError);
+    }
+
+    private static final class Batch<K, V> {
+        private final Set<K> keys = new LinkedHashSet<>();
+        private final Sinks.One<Map<K, V>> loaded = Sinks.one();
+        private boolean closed;
+        private ContextView context;
+        private Deadline deadline;
+
+        // Called under the batcher's lock; a caller without a deadline never displaces one with a deadline
+        private void join(ContextView callerContext) {
+            Deadline callerDeadline = Deadline.current(callerContext).orElse(null);
+            if (context == null || (callerDeadline != null
+                    && (deadline == null || callerDeadline.expiresBefore(deadline)))) {
+                context = callerContext;
+                deadline = callerDeadline;
+            }
+        }
+    }
+}
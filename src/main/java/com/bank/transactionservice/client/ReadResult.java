@@ -0,0 +1,23 @@
+package com.bank.transactionservice.client;
+
+import lombok.Getter;
+
+// A read that may have been answered from the cached copy while its downstream was unavailable; callers that would
+// persist or act on the value can tell the two apart
+@Getter
+public final class ReadResult<T> {
+    private final T value;
+    private final boolean stale;
+
+    private ReadResult(T value, boolean stale) {
+        this.value = value;
+        this.stale = stale;
+    }
+
+    public static <T> ReadResult<T> fresh(T value) {
+        return new ReadResult<>(value, false);
+    }
+    public static <T> ReadResult<T> stale(T value) {
+        return new ReadResult<>(value, true);
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.transactionservice.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Answers read-only callers of one downstream from the cached copy of what they asked for while its circuit is
+// open. Every key served stale is fetched again, and so cached again, once the circuit closes
+@Slf4j
+public class StaleReadFallback {
+    private static final int REFRESH_CONCURRENCY = 4;
+    private final String downstream;
+    private final Map<String, Supplier<Mono<?>>> pendingRefresh = new LinkedHashMap<>();
+    private final Counter served;
+
+    public StaleReadFallback(String downstream, CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.downstream = downstream;
+        this.served = Counter.builder("transaction.downstream.stale-reads")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.CLOSED) {
+                refreshStale();
+            }
+        });
+    }
+
+    // Fails with the original error when nothing is cached for the key
+    public <T> Mono<ReadResult<T>> recall(String key, Mono<T> cached, Supplier<Mono<?>> refresh, Throwable error) {
+        return cached
+                .doOnNext(value -> {
+                    synchronized (pendingRefresh) {
+                        pendingRefresh.put(key, refresh);
+                    }
+                    served.increment();
+                    log.warn("Circuit to {} is open; serving the cached copy of {}", downstream, key);
+                })
+                .map(ReadResult::stale)
+                .switchIfEmpty(Mono.error(error));
+    }
+    void refreshStale() {
+        List<Supplier<Mono<?>>> refreshes;
+        synchronized (pendingRefresh) {
+            refreshes = new ArrayList<>(pendingRefresh.values());
+            pendingRefresh.clear();
+        }
+        if (refreshes.isEmpty()) {
+            return;
+        }
+        log.info("Circuit to {} closed; refreshing {} entries served stale", downstream, refreshes.size());
+        Flux.fromIterable(refreshes)
+                .flatMap(refresh -> refresh.get().onErrorResume(error -> Mono.empty()), REFRESH_CONCURRENCY)
+                .subscribe();
+    }
+}
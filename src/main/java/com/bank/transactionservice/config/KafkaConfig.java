@@ -0,0 +1,64 @@
+package com.bank.transactionservice.config;
+
+import com.bank.transactionservice.event.serde.DecodedPayloadMessageConverter;
+import com.bank.transactionservice.event.serde.SchemaAwareDeserializer;
+import com.bank.transactionservice.event.serde.SchemaRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.converter.BatchMessagingMessageConverter;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.util.Map;
+
+@Configuration
+public class KafkaConfig {
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> kafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        // Listeners acknowledge once their reactive pipeline completes, see ListenerFlowControl
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            KafkaProperties kafkaProperties,
+            SchemaRegistry schemaRegistry,
+            ObjectMapper objectMapper) {
+        // Entity snapshots may be schema encoded or JSON; the deserializer decodes the former, the converter the latter
+        @SuppressWarnings("unchecked")
+        Deserializer<Object> keyDeserializer = (Deserializer<Object>) (Deserializer<?>) new StringDeserializer();
+        Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties();
+        // The autoscaler restarts these containers; cooperative rebalancing keeps the other consumers fetching
+        consumerProperties.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG,
+                CooperativeStickyAssignor.class.getName());
+        ConsumerFactory<Object, Object> consumerFactory = new DefaultKafkaConsumerFactory<>(
+                consumerProperties,
+                keyDeserializer,
+                new ErrorHandlingDeserializer<>(new SchemaAwareDeserializer<Object>(schemaRegistry, null)));
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // Batch payloads are converted record by record, exactly as the single record listeners do
+        factory.setMessageConverter(new BatchMessagingMessageConverter(
+                new DecodedPayloadMessageConverter(objectMapper)));
+        return factory;
+    }
+}
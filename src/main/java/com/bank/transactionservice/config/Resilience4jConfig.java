@@ -1,5 +1,8 @@
 package com.bank.transactionservice.config;
 
+import com.bank.transactionservice.client.AdaptiveBulkhead;
+import com.bank.transactionservice.client.DownstreamCallTemplate;
+import com.bank.transactionservice.deadline.Deadline;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
@@ -33,6 +36,11 @@ public class Resilience4jConfig {
                         TimeoutException.class,
                         RuntimeException.class
                 )
+                // Shedding our own load, running out of a request's budget or a request the downstream
+                // refused says nothing about the downstream's health
+                .ignoreExceptions(AdaptiveBulkhead.DownstreamSaturatedException.class,
+                        Deadline.DeadlineExceededException.class,
+                        DownstreamCallTemplate.DownstreamRejectedException.class)
                 .build();
 
         CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(circuitBreakerConfig);
@@ -1,17 +1,28 @@
 package com.bank.transactionservice.controller;
 
+import com.bank.transactionservice.deadline.Deadline;
 import com.bank.transactionservice.dto.BaseResponse;
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.statement.AccountStatement;
+import com.bank.transactionservice.model.transaction.HistoryVersion;
 import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.service.AccountStatementService;
+import com.bank.transactionservice.service.DailyRollupService;
 import com.bank.transactionservice.service.TransactionService;
+import com.bank.transactionservice.service.TransactionVersionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 
 @RestController
@@ -19,8 +30,17 @@ import java.util.List;
 @Slf4j
 public class TransactionController {
     private final TransactionService transactionService;
-    public TransactionController(TransactionService transactionService) {
+    private final AccountStatementService accountStatementService;
+    private final DailyRollupService dailyRollupService;
+    private final TransactionVersionService transactionVersionService;
+    public TransactionController(TransactionService transactionService,
+                                 AccountStatementService accountStatementService,
+                                 DailyRollupService dailyRollupService,
+                                 TransactionVersionService transactionVersionService) {
         this.transactionService = transactionService;
+        this.accountStatementService = accountStatementService;
+        this.dailyRollupService = dailyRollupService;
+        this.transactionVersionService = transactionVersionService;
     }
     @PostMapping
     public Mono<ResponseEntity<BaseResponse<Transaction>>> createTransaction(@RequestBody Transaction transaction) {
@@ -35,6 +55,7 @@ public class TransactionController {
                                 .status(HttpStatus.BAD_REQUEST.value())
                                 .message(e.getMessage())
                                 .build())))
+                .onErrorResume(Deadline.DeadlineExceededException.class, e -> deadlineExceeded())
                 .onErrorResume(Exception.class, e -> {
                     log.error("Error creating transaction", e);
                     return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -47,8 +68,16 @@ public class TransactionController {
     }
     @GetMapping("/customer/{customerId}")
     public Mono<ResponseEntity<BaseResponse<List<Transaction>>>> getTransactionsByCustomerId(
-            @PathVariable String customerId) {
-        return transactionService.getTransactionsByCustomerId(customerId)
+            @PathVariable String customerId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String view,
+            ServerWebExchange exchange) {
+        return withHistoryVersion(transactionVersionService.getCustomerVersion(customerId), fields, view,
+                exchange, () -> getCustomerHistory(customerId, fields, view));
+    }
+    private Mono<ResponseEntity<BaseResponse<List<Transaction>>>> getCustomerHistory(
+            String customerId, String fields, String view) {
+        return transactionService.getTransactionsByCustomerId(customerId, fields, view)
                 .collectList()
                 .map(transactions -> {
                     if (transactions.isEmpty()) {
@@ -64,6 +93,12 @@ public class TransactionController {
                             .data(transactions)
                             .build());
                 })
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(
+                        ResponseEntity.badRequest().body(BaseResponse.<List<Transaction>>builder()
+                                .status(HttpStatus.BAD_REQUEST.value())
+                                .message(e.getMessage())
+                                .build())))
+                .onErrorResume(Deadline.DeadlineExceededException.class, e -> deadlineExceeded())
                 .onErrorResume(Exception.class, e -> {
                     log.error("Error retrieving customer transactions", e);
                     return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -77,8 +112,16 @@ public class TransactionController {
     }
     @GetMapping("/product/{productId}")
     public Mono<ResponseEntity<BaseResponse<List<Transaction>>>> getTransactionsByProductId(
-            @PathVariable String productId) {
-        return transactionService.getTransactionsByProductId(productId)
+            @PathVariable String productId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String view,
+            ServerWebExchange exchange) {
+        return withHistoryVersion(transactionVersionService.getProductVersion(productId), fields, view,
+                exchange, () -> getProductHistory(productId, fields, view));
+    }
+    private Mono<ResponseEntity<BaseResponse<List<Transaction>>>> getProductHistory(
+            String productId, String fields, String view) {
+        return transactionService.getTransactionsByProductId(productId, fields, view)
                 .collectList()
                 .map(transactions -> {
                     if (transactions.isEmpty()) {
@@ -94,6 +137,12 @@ public class TransactionController {
                             .data(transactions)
                             .build());
                 })
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(
+                        ResponseEntity.badRequest().body(BaseResponse.<List<Transaction>>builder()
+                                .status(HttpStatus.BAD_REQUEST.value())
+                                .message(e.getMessage())
+                                .build())))
+                .onErrorResume(Deadline.DeadlineExceededException.class, e -> deadlineExceeded())
                 .onErrorResume(Exception.class, e -> {
                     log.error("Error retrieving product transactions", e);
                     return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -105,6 +154,107 @@ public class TransactionController {
                 .doOnSuccess(response -> log.info("Retrieved transactions for product: {} with status: {}",
                         productId, response.getStatusCode()));
     }
+    private Mono<ResponseEntity<BaseResponse<List<Transaction>>>> withHistoryVersion(
+            Mono<HistoryVersion> historyVersion, String fields, String view, ServerWebExchange exchange,
+            Supplier<Mono<ResponseEntity<BaseResponse<List<Transaction>>>>> history) {
+        // The version is read before the history so a concurrent insert can only make the tag stale, never newer.
+        // Only the tag is validated: If-Modified-Since has whole seconds, so a write within the second of the last
+        // one would still answer 304
+        return historyVersion
+                .flatMap(version -> {
+                    String eTag = version.eTag(fields, view);
+                    if (exchange.checkNotModified(eTag)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(eTag)
+                                .lastModified(version.getModifiedAt())
+                                .<BaseResponse<List<Transaction>>>build());
+                    }
+                    return history.get()
+                            .map(response -> response.getStatusCode().is2xxSuccessful()
+                                    ? ResponseEntity.status(response.getStatusCode())
+                                            .eTag(eTag)
+                                            .lastModified(version.getModifiedAt())
+                                            .body(response.getBody())
+                                    : response);
+                })
+                .switchIfEmpty(Mono.defer(history));
+    }
+    @GetMapping("/product/{productId}/statement")
+    public Mono<ResponseEntity<BaseResponse<AccountStatement>>> getStatementByProductId(
+            @PathVariable String productId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        YearMonth statementMonth = month != null ? month : YearMonth.now();
+        return accountStatementService.getStatement(productId, statementMonth)
+                .map(statement -> ResponseEntity.ok(BaseResponse.<AccountStatement>builder()
+                        .status(HttpStatus.OK.value())
+                        .message("Statement retrieved successfully")
+                        .data(statement)
+                        .build()))
+                .defaultIfEmpty(ResponseEntity.ok(BaseResponse.<AccountStatement>builder()
+                        .status(HttpStatus.NOT_FOUND.value())
+                        .message("No statement found for product in " + statementMonth)
+                        .build()))
+                .onErrorResume(Deadline.DeadlineExceededException.class, e -> deadlineExceeded())
+                .onErrorResume(Exception.class, e -> {
+                    log.error("Error retrieving product statement", e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(BaseResponse.<AccountStatement>builder()
+                                    .status(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                                    .message("Error retrieving statement")
+                                    .build()));
+                })
+                .doOnSuccess(response -> log.info("Retrieved statement for product: {} month: {} with status: {}",
+                        productId, statementMonth, response.getStatusCode()));
+    }
+    @GetMapping("/rollups/customer/{customerId}")
+    public Mono<ResponseEntity<BaseResponse<List<DailyRollup>>>> getDailyRollupsByCustomerId(
+            @PathVariable String customerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return getDailyRollups(RollupScope.CUSTOMER, customerId, startDate, endDate);
+    }
+    @GetMapping("/rollups/product/{productId}")
+    public Mono<ResponseEntity<BaseResponse<List<DailyRollup>>>> getDailyRollupsByProductId(
+            @PathVariable String productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return getDailyRollups(RollupScope.PRODUCT, productId, startDate, endDate);
+    }
+    private Mono<ResponseEntity<BaseResponse<List<DailyRollup>>>> getDailyRollups(
+            RollupScope scope, String key, LocalDate startDate, LocalDate endDate) {
+        return dailyRollupService.getRollups(scope, key, startDate, endDate)
+                .collectList()
+                .map(rollups -> {
+                    if (rollups.isEmpty()) {
+                        return ResponseEntity.ok(BaseResponse.<List<DailyRollup>>builder()
+                                .status(HttpStatus.NO_CONTENT.value())
+                                .message("No rollups found for the range")
+                                .data(Collections.emptyList())
+                                .build());
+                    }
+                    return ResponseEntity.ok(BaseResponse.<List<DailyRollup>>builder()
+                            .status(HttpStatus.OK.value())
+                            .message("Rollups retrieved successfully")
+                            .data(rollups)
+                            .build());
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(
+                        ResponseEntity.badRequest().body(BaseResponse.<List<DailyRollup>>builder()
+                                .status(HttpStatus.BAD_REQUEST.value())
+                                .message(e.getMessage())
+                                .build())))
+                .onErrorResume(Deadline.DeadlineExceededException.class, e -> deadlineExceeded())
+                .onErrorResume(Exception.class, e -> {
+                    log.error("Error retrieving {} rollups", scope, e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(BaseResponse.<List<DailyRollup>>builder()
+                                    .status(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                                    .message("Error retrieving rollups")
+                                    .build()));
+                })
+                .doOnSuccess(response -> log.info("Retrieved {} rollups for: {} with status: {}",
+                        scope, key, response.getStatusCode()));
+    }
     @GetMapping("/{transactionId}")
     public Mono<ResponseEntity<BaseResponse<Transaction>>> getTransactionById(
             @PathVariable String transactionId) {
@@ -118,6 +268,7 @@ public class TransactionController {
                         .status(HttpStatus.NOT_FOUND.value())
                         .message("Transaction not found")
                         .build()))
+                .onErrorResume(Deadline.DeadlineExceededException.class, e -> deadlineExceeded())
                 .onErrorResume(Exception.class, e -> {
                     log.error("Error retrieving transaction", e);
                     return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -173,4 +324,12 @@ public class TransactionController {
                             .build());
                 });
     }
-}
\ No newline at end of file
+    // The request ran out of time; whatever it already wrote downstream is left as is
+    private static <T> Mono<ResponseEntity<BaseResponse<T>>> deadlineExceeded() {
+        return Mono.just(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(BaseResponse.<T>builder()
+                        .status(HttpStatus.GATEWAY_TIMEOUT.value())
+                        .message("Request deadline exceeded")
+                        .build()));
+    }
+}
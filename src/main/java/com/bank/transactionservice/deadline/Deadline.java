@@ -0,0 +1,100 @@
+package com.bank.transactionservice.deadline;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+// The point in time by which a request must be answered, carried in the Reactor context so every cache, client
+// and repository call below it is bounded by what is left of one budget instead of by timeouts that add up
+public final class Deadline {
+    private static final Object CONTEXT_KEY = Deadline.class;
+    private final long expiresAtNanos;
+    private volatile boolean writing;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+    public static Context attach(Context context, Deadline deadline) {
+        return context.put(CONTEXT_KEY, deadline);
+    }
+    public static Optional<Deadline> current(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+    public boolean expiresBefore(Deadline other) {
+        return expiresAtNanos - other.expiresAtNanos < 0;
+    }
+
+    // Bounds the call by the tighter of the request's remaining budget and its own limit; a null limit means the
+    // call is only bounded when a deadline is present. Calls made after the budget ran out fail without starting,
+    // unless the write phase was admitted: reads it still needs run under their own limit only
+    public static <T> Mono<T> bound(Mono<T> call, Duration limit) {
+        return Mono.deferContextual(context -> {
+            Deadline deadline = current(context).orElse(null);
+            if (deadline == null || deadline.writing) {
+                return limit != null ? call.timeout(limit) : call;
+            }
+            if (deadline.isExpired()) {
+                return Mono.error(new DeadlineExceededException());
+            }
+            Duration remaining = deadline.remaining();
+            if (limit != null && limit.compareTo(remaining) < 0) {
+                return call.timeout(limit);
+            }
+            return call.timeout(remaining, Mono.error(DeadlineExceededException::new));
+        });
+    }
+    // For writes that must not be abandoned halfway: the first write of a request is refused once the budget is
+    // spent, and admitting it admits the whole write phase, so the writes that follow it run under their own limits
+    // only and a balance moved is never left without its record
+    public static <T> Mono<T> admit(Mono<T> call, Duration limit) {
+        return Mono.deferContextual(context -> {
+            Deadline deadline = current(context).orElse(null);
+            if (deadline != null && !deadline.admitWritePhase()) {
+                return Mono.error(new DeadlineExceededException());
+            }
+            return limit != null ? call.timeout(limit) : call;
+        });
+    }
+    private synchronized boolean admitWritePhase() {
+        if (!writing && isExpired()) {
+            return false;
+        }
+        writing = true;
+        return true;
+    }
+    // For streams the budget covers the whole sequence, not each element
+    public static <T> Flux<T> boundMany(Flux<T> call) {
+        return Flux.deferContextual(context -> {
+            Deadline deadline = current(context).orElse(null);
+            if (deadline == null || deadline.writing) {
+                return call;
+            }
+            if (deadline.isExpired()) {
+                return Flux.error(new DeadlineExceededException());
+            }
+            return call.timeout(Mono.delay(deadline.remaining()), item -> Mono.delay(deadline.remaining()))
+                    .onErrorMap(TimeoutException.class, timeout -> new DeadlineExceededException());
+        });
+    }
+
+    public static class DeadlineExceededException extends RuntimeException {
+        public DeadlineExceededException() {
+            super("Request deadline exceeded");
+        }
+    }
+}
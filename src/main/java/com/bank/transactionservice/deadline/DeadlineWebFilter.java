@@ -0,0 +1,58 @@
+package com.bank.transactionservice.deadline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// Starts the deadline of every API request: the caller's remaining budget when it sends one, otherwise the
+// default for reads or writes, never more than the configured maximum
+@Component
+@Slf4j
+public class DeadlineWebFilter implements WebFilter {
+    static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+    private final Duration readBudget;
+    private final Duration writeBudget;
+    private final Duration maxBudget;
+
+    public DeadlineWebFilter(@Value("${transaction.deadline.read-ms:3000}") long readMs,
+                             @Value("${transaction.deadline.write-ms:8000}") long writeMs,
+                             @Value("${transaction.deadline.max-ms:30000}") long maxMs) {
+        this.readBudget = Duration.ofMillis(readMs);
+        this.writeBudget = Duration.ofMillis(writeMs);
+        this.maxBudget = Duration.ofMillis(maxMs);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().value().startsWith("/api/")) {
+            return chain.filter(exchange);
+        }
+        Duration budget = budget(exchange);
+        return chain.filter(exchange)
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(budget)));
+    }
+
+    Duration budget(ServerWebExchange exchange) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        Duration budget = method == HttpMethod.GET || method == HttpMethod.HEAD ? readBudget : writeBudget;
+        String requested = exchange.getRequest().getHeaders().getFirst(TIMEOUT_HEADER);
+        if (requested != null) {
+            try {
+                long requestedMs = Long.parseLong(requested.trim());
+                if (requestedMs > 0) {
+                    budget = Duration.ofMillis(requestedMs);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid {} header: {}", TIMEOUT_HEADER, requested);
+            }
+        }
+        return budget.compareTo(maxBudget) > 0 ? maxBudget : budget;
+    }
+}
@@ -3,37 +3,39 @@ package com.bank.transactionservice.event;
 import com.bank.transactionservice.model.account.Account;
 import com.bank.transactionservice.service.TransactionCacheService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class AccountEventConsumer {
+    private static final String LISTENER_ID = "accountCacheListener";
     private final TransactionCacheService transactionCacheService;
-    public AccountEventConsumer(TransactionCacheService transactionCacheService) {
+    private final CacheEventBatchProcessor cacheEventBatchProcessor;
+    private final ListenerFlowControl listenerFlowControl;
+    public AccountEventConsumer(TransactionCacheService transactionCacheService,
+                                CacheEventBatchProcessor cacheEventBatchProcessor,
+                                ListenerFlowControl listenerFlowControl) {
         this.transactionCacheService = transactionCacheService;
+        this.cacheEventBatchProcessor = cacheEventBatchProcessor;
+        this.listenerFlowControl = listenerFlowControl;
     }
-    @KafkaListener(topics = "account-created", groupId = "transaction-service-group")
-    public void consumeAccountCreated(Account account) {
-        try {
-            transactionCacheService.saveAccount(account.getId(), account)
-                    .doOnSuccess(unused -> log.info("Account successfully saved in cache"))
-                    .doOnError(error -> log.error("Error saving account in cache: {}", error.getMessage()))
-                    .subscribe();
-        } catch (Exception e) {
-            log.error("Error processing Account event: {}", e.getMessage());
-        }
-    }
-
-    @KafkaListener(topics = "account-updated", groupId = "transaction-service-group")
-    public void consumeAccountUpdated(Account account) {
-        try {
-            transactionCacheService.saveAccount(account.getId(), account)
-                    .doOnSuccess(unused -> log.info("Account successfully saved in cache"))
-                    .doOnError(error -> log.error("Error saving account in cache: {}", error.getMessage()))
-                    .subscribe();
-        } catch (Exception e) {
-            log.error("Error processing Account event: {}", e.getMessage());
-        }
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = {"account-created", "account-updated"},
+            groupId = CacheEventBatchProcessor.GROUP_ID, containerFactory = "batchKafkaListenerContainerFactory",
+            concurrency = "${transaction.kafka.listeners.accountCacheListener.min-concurrency:1}")
+    public void consumeAccountEvents(List<Account> accounts,
+                                     @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                     Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+        Supplier<Mono<?>> work = () -> cacheEventBatchProcessor.process("Account", accounts, topics,
+                Account::getId, Account::getModifiedAt, transactionCacheService::saveAccounts);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, accounts.size(), acknowledgment, work);
     }
 }
@@ -1,93 +1,261 @@
 package com.bank.transactionservice.event;
 
 import com.bank.transactionservice.client.AccountClientService;
-import com.bank.transactionservice.client.CustomerClientService;
 import com.bank.transactionservice.dto.bootcoinbank.BootCoinBankPurchaseCompleted;
 import com.bank.transactionservice.dto.bootcoinbank.BootCoinBankPurchaseRequested;
+import com.bank.transactionservice.memo.RequestMemo;
+import com.bank.transactionservice.model.account.Account;
+import com.bank.transactionservice.model.customer.Customer;
 import com.bank.transactionservice.model.transaction.ProductCategory;
 import com.bank.transactionservice.model.transaction.ProductSubType;
 import com.bank.transactionservice.model.transaction.Transaction;
 import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.service.CustomerCacheService;
 import com.bank.transactionservice.service.TransactionService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
 @Component
 @Slf4j
 public class BootCoinBankPurchase {
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private static final String TOPIC = "bootcoin.bank.purchase.requested";
+    private static final String COMPLETED_TOPIC = "bootcoin.bank.purchase.procesed";
+    private static final String ACCOUNT_KEY_PREFIX = "account:";
+    private final ProcessedEvents processedEvents;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
+    private final ReactiveKafkaPublisher reactiveKafkaPublisher;
     private final TransactionService transactionService;
     private final AccountClientService accountClientService;
-    private final CustomerClientService customerClientService;
-    @KafkaListener(topics = "bootcoin.bank.purchase.requested", groupId = "transaction-service-group")
-    public void processBootCoinPurchase(BootCoinBankPurchaseRequested event) {
+    private final CustomerCacheService customerCacheService;
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final Map<String, Window> windows = new HashMap<>();
+    public BootCoinBankPurchase(ProcessedEvents processedEvents,
+                                KeyOrderedDispatcher keyOrderedDispatcher,
+                                ReactiveKafkaPublisher reactiveKafkaPublisher,
+                                TransactionService transactionService,
+                                AccountClientService accountClientService,
+                                CustomerCacheService customerCacheService,
+                                @Value("${transaction.bootcoin.purchase.batch-window-ms:50}") long batchWindowMs,
+                                @Value("${transaction.bootcoin.purchase.max-batch-size:100}") int maxBatchSize) {
+        this.processedEvents = processedEvents;
+        this.keyOrderedDispatcher = keyOrderedDispatcher;
+        this.reactiveKafkaPublisher = reactiveKafkaPublisher;
+        this.transactionService = transactionService;
+        this.accountClientService = accountClientService;
+        this.customerCacheService = customerCacheService;
+        this.batchWindow = Duration.ofMillis(batchWindowMs);
+        this.maxBatchSize = maxBatchSize;
+    }
+    // Driven by ReactiveTransactionPipeline for the bootcoin.bank.purchase.requested topic. A redelivered purchase
+    // only republishes its recorded result and never joins a group again
+    public Mono<Void> processBootCoinPurchase(BootCoinBankPurchaseRequested event) {
         log.info("Received BootCoinBankPurchaseRequested event: {}", event);
-        customerClientService.getCustomerByDocumentNumber(event.getBuyerDocumentNumber())
-                .flatMap(customer ->
-                        accountClientService.getAccountById(event.getBuyerAccountNumber())
-                                .flatMap(account -> {
-                                    if (account.getCustomerId().equals(customer.getId())) {
-                                        Transaction transaction = new Transaction(
-                                                null,
-                                                event.getBuyerDocumentNumber(),
-                                                event.getBuyerAccountNumber(),
-                                                ProductCategory.ACCOUNT,
-                                                ProductSubType.BOOT_COIN,
-                                                TransactionType.WITHDRAWAL,
-                                                event.getTotalAmountInPEN(),
-                                                LocalDateTime.now(),
-                                                null,
-                                                null,
-                                                null,
-                                                null
-                                        );
-                                        return transactionService.createTransaction(transaction)
-                                                .map(createdTransaction -> {
-                                                    BootCoinBankPurchaseCompleted resultEvent =
-                                                        BootCoinBankPurchaseCompleted.builder()
-                                                            .transactionId(event.getTransactionId())
-                                                            .accepted(true)
-                                                            .build();
-                                                    kafkaTemplate.send("bootcoin.bank.purchase.procesed",
-                                                        resultEvent)
-                                                        .addCallback(
-                                                            result ->
-                                                                log.info("Event sent successfully to topic: {}",
-                                                                result.getRecordMetadata().topic()),
-                                                            ex -> log.error("Failed to send event: {}",
-                                                                ex.getMessage(), ex)
-                                                        );
-                                                    return createdTransaction;
-                                                });
-                                    } else {
-                                        log.error("Account {} does not belong to customer {}",
-                                            event.getBuyerAccountNumber(), customer.getId());
-                                        BootCoinBankPurchaseCompleted resultEvent =
-                                            BootCoinBankPurchaseCompleted.builder()
-                                                .transactionId(event.getTransactionId())
-                                                .accepted(false)
-                                                .build();
-                                        kafkaTemplate.send("bootcoin.bank.purchase.procesed", resultEvent);
-                                        return Mono.empty();
-                                    }
-                                })
-                )
-                .onErrorResume(error -> {
-                    log.error("Error processing BootCoin purchase: {}", error.getMessage());
-                    BootCoinBankPurchaseCompleted resultEvent = BootCoinBankPurchaseCompleted.builder()
-                            .transactionId(event.getTransactionId())
-                            .accepted(false)
-                            .build();
-                    kafkaTemplate.send("bootcoin.bank.purchase.procesed", resultEvent);
-                    return Mono.empty();
+        Mono<Void> apply = Mono.defer(() -> enqueue(event));
+        if (event.getTransactionId() == null) {
+            return apply;
+        }
+        return processedEvents.recorded(TOPIC, event.getTransactionId(), BootCoinBankPurchaseCompleted.class)
+                .map(completed -> {
+                    log.info("BootCoin purchase {} was already applied, republishing its result",
+                            event.getTransactionId());
+                    return reactiveKafkaPublisher.send(COMPLETED_TOPIC, event.getTransactionId(), completed);
                 })
-                .subscribe();
+                .defaultIfEmpty(apply)
+                .flatMap(work -> work);
+    }
+    // Called once retries are exhausted; retryable errors are left to the retry topics until then
+    public Mono<Void> publishFailure(BootCoinBankPurchaseRequested event, Throwable error) {
+        log.error("BootCoin purchase {} failed after retries: {}", event.getTransactionId(), error.getMessage());
+        return reactiveKafkaPublisher.send(COMPLETED_TOPIC, event.getTransactionId(), completedEvent(event, false));
+    }
+
+    // Purchases against one account arriving within the window share one lookup, one balance update and one
+    // producer batch; every caller completes with the outcome of its own purchase
+    private Mono<Void> enqueue(BootCoinBankPurchaseRequested event) {
+        String accountId = event.getBuyerAccountNumber();
+        Purchase purchase = new Purchase(event);
+        if (batchWindow.isZero()) {
+            run(accountId, List.of(purchase));
+            return purchase.processed.asMono();
+        }
+        Window window;
+        boolean opened = false;
+        boolean full;
+        synchronized (windows) {
+            window = windows.get(accountId);
+            if (window == null) {
+                window = new Window();
+                windows.put(accountId, window);
+                opened = true;
+            }
+            window.pending.add(purchase);
+            full = window.pending.size() >= maxBatchSize;
+        }
+        Window scheduled = window;
+        if (full) {
+            flush(accountId, scheduled);
+        } else if (opened) {
+            Mono.delay(batchWindow).subscribe(unused -> flush(accountId, scheduled));
+        }
+        return purchase.processed.asMono();
+    }
+    private void flush(String accountId, Window window) {
+        synchronized (windows) {
+            windows.remove(accountId, window);
+            // A window filled up early is flushed by its last caller; the timer then finds it closed
+            if (window.closed) {
+                return;
+            }
+            window.closed = true;
+        }
+        run(accountId, window.pending);
+    }
+    // Groups of one account run one after another, so a group never reads the balance another is still updating.
+    // Each runs apart from the events that filled it, so it opens its own memo
+    private void run(String accountId, List<Purchase> purchases) {
+        Supplier<Mono<Void>> group = () -> processGroup(accountId, purchases);
+        keyOrderedDispatcher.dispatch(List.of(ACCOUNT_KEY_PREFIX + accountId), group)
+                .contextWrite(RequestMemo::open)
+                .subscribe(unused -> { }, error -> purchases.forEach(purchase ->
+                        purchase.processed.tryEmitError(error)));
+    }
+    // Each purchase is claimed on its own first: one already recorded, pending or claimed by another delivery is
+    // failed alone and left out. The rest are one idempotent transaction whose results are all recorded before any
+    // is published, so a retry never debits the account again
+    private Mono<Void> processGroup(String accountId, List<Purchase> purchases) {
+        return Flux.fromIterable(purchases)
+                .concatMap(purchase -> processedEvents.claim(TOPIC, purchase.event.getTransactionId())
+                        .filter(claimed -> {
+                            if (!claimed) {
+                                purchase.processed.tryEmitError(new ProcessedEvents.OutcomeUnknownException(TOPIC,
+                                        purchase.event.getTransactionId()));
+                            }
+                            return claimed;
+                        })
+                        .map(claimed -> purchase))
+                .collectList()
+                .filter(claimed -> !claimed.isEmpty())
+                .flatMap(claimed -> applyClaimed(accountId, claimed)
+                        .doOnSuccess(unused -> claimed.forEach(purchase -> purchase.processed.tryEmitEmpty())));
+    }
+    private Mono<Void> applyClaimed(String accountId, List<Purchase> purchases) {
+        List<BootCoinBankPurchaseRequested> events = purchases.stream()
+                .map(purchase -> purchase.event)
+                .collect(Collectors.toList());
+        List<String> eventIds = events.stream()
+                .map(BootCoinBankPurchaseRequested::getTransactionId)
+                .collect(Collectors.toList());
+        Supplier<Mono<List<BootCoinBankPurchaseCompleted>>> transaction = () -> applyGroup(accountId, events);
+        Function<Throwable, List<BootCoinBankPurchaseCompleted>> onTerminal = error -> {
+            log.error("Error processing BootCoin purchases for account {}: {}", accountId, error.getMessage());
+            return completedEvents(events, Set.of());
+        };
+        return processedEvents.applyClaimed(TOPIC, eventIds, transaction, onTerminal)
+                .flatMap(results -> reactiveKafkaPublisher.sendAll(COMPLETED_TOPIC, results,
+                        BootCoinBankPurchaseCompleted::getTransactionId));
+    }
+    private Mono<List<BootCoinBankPurchaseCompleted>> applyGroup(String accountId,
+                                                                 List<BootCoinBankPurchaseRequested> events) {
+        Set<String> documents = events.stream()
+                .map(BootCoinBankPurchaseRequested::getBuyerDocumentNumber)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return Flux.fromIterable(documents)
+                .concatMap(document -> customerCacheService.getCustomerByDocumentNumber(document)
+                        .map(customer -> Map.entry(document, customer)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(customers -> accountClientService.getAccountById(accountId)
+                        .flatMap(account -> withdraw(account, customers, events)))
+                .switchIfEmpty(Mono.fromSupplier(() -> completedEvents(events, Set.of())));
+    }
+    // Withdrawals are kept by the purchase's position in the group, since transaction IDs may repeat or be missing
+    private Mono<List<BootCoinBankPurchaseCompleted>> withdraw(Account account, Map<String, Customer> customers,
+                                                               List<BootCoinBankPurchaseRequested> events) {
+        Map<Integer, Transaction> withdrawals = new LinkedHashMap<>();
+        for (int index = 0; index < events.size(); index++) {
+            BootCoinBankPurchaseRequested event = events.get(index);
+            Customer customer = customers.get(event.getBuyerDocumentNumber());
+            if (customer == null || !account.getCustomerId().equals(customer.getId())) {
+                log.error("Account {} does not belong to customer with document {}",
+                        event.getBuyerAccountNumber(), event.getBuyerDocumentNumber());
+                continue;
+            }
+            withdrawals.put(index, new Transaction(
+                    null,
+                    customer.getId(),
+                    event.getBuyerAccountNumber(),
+                    ProductCategory.ACCOUNT,
+                    ProductSubType.BOOT_COIN,
+                    TransactionType.WITHDRAWAL,
+                    event.getTotalAmountInPEN(),
+                    LocalDateTime.now(),
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null
+            ));
+        }
+        if (withdrawals.isEmpty()) {
+            return Mono.just(completedEvents(events, Set.of()));
+        }
+        return transactionService.createAccountWithdrawals(account, new ArrayList<>(withdrawals.values()))
+                .map(applied -> {
+                    Set<Transaction> appliedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+                    appliedSet.addAll(applied);
+                    Set<Integer> accepted = withdrawals.entrySet().stream()
+                            .filter(entry -> appliedSet.contains(entry.getValue()))
+                            .map(Map.Entry::getKey)
+                            .collect(Collectors.toSet());
+                    return completedEvents(events, accepted);
+                });
+    }
+    private List<BootCoinBankPurchaseCompleted> completedEvents(List<BootCoinBankPurchaseRequested> events,
+                                                                Set<Integer> accepted) {
+        List<BootCoinBankPurchaseCompleted> results = new ArrayList<>();
+        for (int index = 0; index < events.size(); index++) {
+            results.add(completedEvent(events.get(index), accepted.contains(index)));
+        }
+        return results;
+    }
+    private BootCoinBankPurchaseCompleted completedEvent(BootCoinBankPurchaseRequested event, boolean accepted) {
+        return BootCoinBankPurchaseCompleted.builder()
+                .transactionId(event.getTransactionId())
+                .accepted(accepted)
+                .build();
+    }
+
+    private static final class Purchase {
+        private final BootCoinBankPurchaseRequested event;
+        private final Sinks.Empty<Void> processed = Sinks.empty();
+
+        private Purchase(BootCoinBankPurchaseRequested event) {
+            this.event = event;
+        }
+    }
+    private static final class Window {
+        private final List<Purchase> pending = new ArrayList<>();
+        private boolean closed;
     }
 }
@@ -1,32 +1,51 @@
 package com.bank.transactionservice.event;
 
-import com.bank.transactionservice.client.CustomerClientService;
 import com.bank.transactionservice.dto.bootcoinpurchase.TransactionEvent;
 import com.bank.transactionservice.dto.bootcoinpurchase.TransactionResponse;
 import com.bank.transactionservice.model.customer.Customer;
 import com.bank.transactionservice.model.transaction.ProductCategory;
 import com.bank.transactionservice.model.transaction.Transaction;
 import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.service.CustomerCacheService;
 import com.bank.transactionservice.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class BootCoinTransactionTransferConsumer {
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private static final String TOPIC = "bootcoin.transaction.transfer.requested";
+    private final ProcessedEvents processedEvents;
+    private final ReactiveKafkaPublisher reactiveKafkaPublisher;
     private final TransactionService transactionService;
-    private final CustomerClientService customerClientService;
-    @KafkaListener(topics = "bootcoin.transaction.transfer.requested", groupId = "transaction-service-group")
-    public void processTransferEvent(TransactionEvent event) {
+    private final CustomerCacheService customerCacheService;
+    // Driven by ReactiveTransactionPipeline for the bootcoin.transaction.transfer.requested topic. A redelivered
+    // purchase only republishes its recorded response
+    public Mono<Void> processTransferEvent(TransactionEvent event) {
         log.info("Received BootCoin transfer request: {}", event);
-        customerClientService.getCustomerByDocumentNumber(event.getBuyerDocumentNumber())
+        Supplier<Mono<TransactionResponse>> transaction = () -> transfer(event);
+        Function<Throwable, TransactionResponse> onTerminal = error -> {
+            log.error("Transfer transaction failed for purchaseId {}: {}",
+                event.getPurchaseId(), error.getMessage());
+            return failedResponse(event, error);
+        };
+        return processedEvents.process(TOPIC, event.getPurchaseId(), TransactionResponse.class,
+                transaction, onTerminal)
+            .flatMap(response -> publish(event, response));
+    }
+    // Called once retries are exhausted; retryable errors are left to the retry topics until then
+    public Mono<Void> publishFailure(TransactionEvent event, Throwable error) {
+        return publish(event, failedResponse(event, error));
+    }
+    private Mono<TransactionResponse> transfer(TransactionEvent event) {
+        return customerCacheService.getCustomerByDocumentNumber(event.getBuyerDocumentNumber())
             .map(Customer::getId)
             .flatMap(customerId -> {
                 Transaction transaction = Transaction.builder()
@@ -40,27 +59,23 @@ public class BootCoinTransactionTransferConsumer {
                     .build();
                 return transactionService.createTransaction(transaction);
             })
-            .subscribe(
-                savedTransaction -> {
-                    log.info("Transfer transaction completed for purchaseId: {}", event.getPurchaseId());
-                    TransactionResponse response = TransactionResponse.builder()
-                        .transactionId(event.getPurchaseId())
-                        .success(true)
-                        .message("Transaction successful")
-                        .build();
-                    kafkaTemplate.send("bootcoin.transaction.processed",
-                        response);
-                },
-                error -> {
-                    log.error("Transfer transaction failed for purchaseId {}: {}",
-                        event.getPurchaseId(), error.getMessage());
-                    TransactionResponse response = TransactionResponse.builder()
-                        .transactionId(event.getPurchaseId())
-                        .success(false)
-                        .message(error.getMessage())
-                        .build();
-                    kafkaTemplate.send("bootcoin.transaction.processed", response);
-                }
-            );
+            .map(savedTransaction -> {
+                log.info("Transfer transaction completed for purchaseId: {}", event.getPurchaseId());
+                return TransactionResponse.builder()
+                    .transactionId(event.getPurchaseId())
+                    .success(true)
+                    .message("Transaction successful")
+                    .build();
+            });
+    }
+    private TransactionResponse failedResponse(TransactionEvent event, Throwable error) {
+        return TransactionResponse.builder()
+            .transactionId(event.getPurchaseId())
+            .success(false)
+            .message(error.getMessage())
+            .build();
+    }
+    private Mono<Void> publish(TransactionEvent event, TransactionResponse response) {
+        return reactiveKafkaPublisher.send("bootcoin.transaction.processed", event.getPurchaseId(), response);
     }
 }
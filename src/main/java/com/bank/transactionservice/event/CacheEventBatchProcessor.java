@@ -0,0 +1,176 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@Component
+@Slf4j
+public class CacheEventBatchProcessor implements DisposableBean {
+    // Kept apart from the money-topic group so rescaling cache listeners never rebalances the transaction pipeline
+    static final String GROUP_ID = "transaction-service-cache-group";
+    private final MeterRegistry meterRegistry;
+    private final Duration coalesceWindow;
+    private final Map<String, Window<?>> windows = new HashMap<>();
+    public CacheEventBatchProcessor(MeterRegistry meterRegistry,
+                                    @Value("${transaction.cache.coalesce-window-ms:200}") long coalesceWindowMs) {
+        this.meterRegistry = meterRegistry;
+        this.coalesceWindow = Duration.ofMillis(coalesceWindowMs);
+    }
+    // Nothing is counted, merged or written until the result is subscribed
+    public <T> Mono<Void> process(String entity, List<T> payloads, List<String> topics,
+                                  Function<T, String> idExtractor, Function<T, LocalDateTime> modifiedAtExtractor,
+                                  Function<Map<String, T>, Mono<Void>> writer) {
+        return Mono.defer(() -> collapse(entity, payloads, topics, idExtractor, modifiedAtExtractor, writer));
+    }
+    // Open windows are written at once instead of waiting out their timers, so no batch is acknowledged unwritten
+    @Override
+    public void destroy() {
+        List<Window<?>> open;
+        synchronized (windows) {
+            open = new ArrayList<>(windows.values());
+            windows.clear();
+        }
+        for (Window<?> window : open) {
+            window.timer.dispose();
+            window.flushNow()
+                    .onErrorResume(error -> Mono.empty())
+                    .block(Duration.ofSeconds(5));
+        }
+    }
+
+    private <T> Mono<Void> collapse(String entity, List<T> payloads, List<String> topics,
+                                    Function<T, String> idExtractor, Function<T, LocalDateTime> modifiedAtExtractor,
+                                    Function<Map<String, T>, Mono<Void>> writer) {
+        Map<String, T> latestById = new LinkedHashMap<>();
+        for (int i = 0; i < payloads.size(); i++) {
+            T payload = payloads.get(i);
+            String topic = i < topics.size() ? topics.get(i) : "unknown";
+            Counter.builder("transaction.cache.events.received")
+                    .tag("topic", topic)
+                    .register(meterRegistry)
+                    .increment();
+            String id = payload != null ? idExtractor.apply(payload) : null;
+            if (id == null) {
+                log.warn("Skipping {} event without payload or ID from topic {}", entity, topic);
+                continue;
+            }
+            // Records arrive in offset order per partition, so the last one seen per ID is the latest
+            merge(entity, latestById, id, payload, modifiedAtExtractor);
+        }
+        if (coalesceWindow.isZero() || latestById.isEmpty()) {
+            return write(entity, latestById, payloads.size(), writer);
+        }
+        return coalesce(entity, latestById, payloads.size(), modifiedAtExtractor, writer);
+    }
+
+    // Batches arriving within the window share one write; every caller completes when that write does
+    @SuppressWarnings("unchecked")
+    private <T> Mono<Void> coalesce(String entity, Map<String, T> latestById, int events,
+                                    Function<T, LocalDateTime> modifiedAtExtractor,
+                                    Function<Map<String, T>, Mono<Void>> writer) {
+        Window<T> window;
+        boolean opened = false;
+        synchronized (windows) {
+            window = (Window<T>) windows.get(entity);
+            if (window == null) {
+                window = new Window<>(entity, writer);
+                windows.put(entity, window);
+                opened = true;
+            }
+            for (Map.Entry<String, T> entry : latestById.entrySet()) {
+                merge(entity, window.pending, entry.getKey(), entry.getValue(), modifiedAtExtractor);
+            }
+            window.events += events;
+        }
+        if (opened) {
+            Window<T> scheduled = window;
+            scheduled.timer = Mono.delay(coalesceWindow).subscribe(tick -> flush(scheduled));
+        }
+        return window.flushed.asMono();
+    }
+    private void flush(Window<?> window) {
+        boolean removed;
+        synchronized (windows) {
+            removed = windows.remove(window.entity, window);
+        }
+        // A window already taken by destroy is written there
+        if (removed) {
+            window.flushNow().subscribe(unused -> { }, error -> { });
+        }
+    }
+    private <T> void merge(String entity, Map<String, T> latestById, String id, T payload,
+                           Function<T, LocalDateTime> modifiedAtExtractor) {
+        T current = latestById.get(id);
+        LocalDateTime incoming = modifiedAtExtractor.apply(payload);
+        LocalDateTime existing = current != null ? modifiedAtExtractor.apply(current) : null;
+        if (incoming != null && existing != null && incoming.isBefore(existing)) {
+            Counter.builder("transaction.cache.events.stale")
+                    .tag("entity", entity)
+                    .register(meterRegistry)
+                    .increment();
+            return;
+        }
+        latestById.put(id, payload);
+    }
+    private <T> Mono<Void> write(String entity, Map<String, T> latestById, int events,
+                                 Function<Map<String, T>, Mono<Void>> writer) {
+        DistributionSummary.builder("transaction.cache.batch.size")
+                .tag("entity", entity)
+                .register(meterRegistry)
+                .record(latestById.size());
+        Counter.builder("transaction.cache.events.collapsed")
+                .tag("entity", entity)
+                .register(meterRegistry)
+                .increment(events - latestById.size());
+        if (latestById.isEmpty()) {
+            return Mono.empty();
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return writer.apply(latestById)
+                .doOnSuccess(unused -> log.info("{} {} entries saved in cache from {} events",
+                        latestById.size(), entity, events))
+                .doOnError(error -> log.error("Error saving {} batch in cache: {}", entity, error.getMessage()))
+                .doOnTerminate(() -> sample.stop(Timer.builder("transaction.cache.batch.write")
+                        .tag("entity", entity)
+                        .register(meterRegistry)));
+    }
+
+    private final class Window<T> {
+        private final String entity;
+        private final Function<Map<String, T>, Mono<Void>> writer;
+        private final Map<String, T> pending = new LinkedHashMap<>();
+        private final Sinks.Empty<Void> flushed = Sinks.empty();
+        private int events;
+        private volatile Disposable timer = Disposables.disposed();
+
+        private Window(String entity, Function<Map<String, T>, Mono<Void>> writer) {
+            this.entity = entity;
+            this.writer = writer;
+        }
+
+        private Mono<Void> flushNow() {
+            return write(entity, pending, events, writer)
+                    .doOnError(flushed::tryEmitError)
+                    .doOnSuccess(unused -> flushed.tryEmitEmpty());
+        }
+    }
+}
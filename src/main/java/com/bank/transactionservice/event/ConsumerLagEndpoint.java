@@ -0,0 +1,28 @@
+package com.bank.transactionservice.event;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Exposed as /actuator/kafkalag once listed in management.endpoints.web.exposure.include
+@Component
+@Endpoint(id = "kafkalag")
+public class ConsumerLagEndpoint {
+    private final ConsumerLagMonitor consumerLagMonitor;
+
+    public ConsumerLagEndpoint(ConsumerLagMonitor consumerLagMonitor) {
+        this.consumerLagMonitor = consumerLagMonitor;
+    }
+
+    @ReadOperation
+    public Map<String, Map<Integer, Long>> lag() {
+        return consumerLagMonitor.lagByTopic();
+    }
+    @ReadOperation
+    public Map<Integer, Long> topicLag(@Selector String topic) {
+        return consumerLagMonitor.lagByTopic().getOrDefault(topic, Map.of());
+    }
+}
@@ -0,0 +1,129 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class ConsumerLagMonitor implements DisposableBean {
+    private static final List<String> GROUP_IDS =
+            List.of(ReactiveTransactionPipeline.GROUP_ID, CacheEventBatchProcessor.GROUP_ID);
+    private final KafkaProperties kafkaProperties;
+    private final MeterRegistry meterRegistry;
+    // Gauges hold on to these, so a partition keeps reporting its last known lag between refreshes
+    private final Map<TopicPartition, AtomicLong> lag = new ConcurrentHashMap<>();
+    private volatile Admin admin;
+
+    public ConsumerLagMonitor(KafkaProperties kafkaProperties, MeterRegistry meterRegistry) {
+        this.kafkaProperties = kafkaProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Lag is the distance between each partition's end offset and the offset committed by the group consuming it:
+    // the transaction pipeline's group for money topics, the cache listeners' group for entity topics
+    public Mono<Map<TopicPartition, Long>> refresh() {
+        return Mono.defer(() -> {
+            Admin client = admin();
+            return Flux.fromIterable(GROUP_IDS)
+                    .concatMap(groupId -> toMono(client.listConsumerGroupOffsets(groupId)
+                            .partitionsToOffsetAndMetadata()))
+                    .collect(HashMap<TopicPartition, OffsetAndMetadata>::new, Map::putAll)
+                    .flatMap(committed -> {
+                        Map<TopicPartition, OffsetSpec> latest = committed.keySet().stream()
+                                .collect(Collectors.toMap(partition -> partition, partition -> OffsetSpec.latest()));
+                        return toMono(client.listOffsets(latest).all())
+                                .map(endOffsets -> update(committed, endOffsets));
+                    });
+        }).doOnError(error -> log.warn("Could not refresh consumer lag: {}", error.getMessage()));
+    }
+    public Map<TopicPartition, Long> lag() {
+        return lag.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+    }
+    public long lag(Collection<String> topics) {
+        return lag.entrySet().stream()
+                .filter(entry -> topics.contains(entry.getKey().topic()))
+                .mapToLong(entry -> entry.getValue().get())
+                .sum();
+    }
+    public int partitions(Collection<String> topics) {
+        return (int) lag.keySet().stream()
+                .filter(partition -> topics.contains(partition.topic()))
+                .count();
+    }
+    public Map<String, Map<Integer, Long>> lagByTopic() {
+        Map<String, Map<Integer, Long>> byTopic = new TreeMap<>();
+        lag.forEach((partition, value) -> byTopic.computeIfAbsent(partition.topic(), topic -> new TreeMap<>())
+                .put(partition.partition(), value.get()));
+        return byTopic;
+    }
+    @Override
+    public void destroy() {
+        if (admin != null) {
+            admin.close();
+        }
+    }
+
+    Admin createAdmin() {
+        return Admin.create(kafkaProperties.buildAdminProperties());
+    }
+    private Admin admin() {
+        if (admin == null) {
+            synchronized (this) {
+                if (admin == null) {
+                    admin = createAdmin();
+                }
+            }
+        }
+        return admin;
+    }
+    private Map<TopicPartition, Long> update(Map<TopicPartition, OffsetAndMetadata> committed,
+                                             Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets) {
+        committed.forEach((partition, offset) -> {
+            ListOffsetsResult.ListOffsetsResultInfo end = endOffsets.get(partition);
+            if (offset == null || end == null) {
+                return;
+            }
+            lag.computeIfAbsent(partition, this::register).set(Math.max(0L, end.offset() - offset.offset()));
+        });
+        return lag();
+    }
+    private AtomicLong register(TopicPartition partition) {
+        AtomicLong value = new AtomicLong();
+        Gauge.builder("transaction.kafka.consumer.lag", value, AtomicLong::get)
+                .tag("topic", partition.topic())
+                .tag("partition", String.valueOf(partition.partition()))
+                .register(meterRegistry);
+        return value;
+    }
+    private static <T> Mono<T> toMono(KafkaFuture<T> future) {
+        return Mono.create(sink -> future.whenComplete((value, error) -> {
+            if (error != null) {
+                sink.error(error);
+            } else {
+                sink.success(value);
+            }
+        }));
+    }
+}
@@ -1,44 +1,40 @@
 package com.bank.transactionservice.event;
 import com.bank.transactionservice.model.creditcard.CreditCard;
 import com.bank.transactionservice.service.TransactionCacheService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class CreditCardEventConsumer {
+    private static final String LISTENER_ID = "creditCardCacheListener";
     private final TransactionCacheService transactionCacheService;
-    public CreditCardEventConsumer(TransactionCacheService transactionCacheService) {
+    private final CacheEventBatchProcessor cacheEventBatchProcessor;
+    private final ListenerFlowControl listenerFlowControl;
+    public CreditCardEventConsumer(TransactionCacheService transactionCacheService,
+                                   CacheEventBatchProcessor cacheEventBatchProcessor,
+                                   ListenerFlowControl listenerFlowControl) {
         this.transactionCacheService = transactionCacheService;
+        this.cacheEventBatchProcessor = cacheEventBatchProcessor;
+        this.listenerFlowControl = listenerFlowControl;
     }
-    @KafkaListener(topics = "creditcard-created", groupId = "transaction-service-group")
-    public void consumeCreditCardCreated(CreditCard creditCard) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
-            objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-            transactionCacheService.saveCreditCard(creditCard.getId(), creditCard)
-                    .doOnSuccess(unused -> log.info("CreditCard successfully saved in cache"))
-                    .doOnError(error -> log.error("Error saving CreditCard in cache: {}", error.getMessage()))
-                    .subscribe();
-        } catch (Exception e) {
-            log.error("Error deserializing CreditCard event: {}", e.getMessage());
-        }
-    }
-    @KafkaListener(topics = "creditcard-updated", groupId = "transaction-service-group")
-    public void consumeCreditCardUpdated(CreditCard creditCard) {
-        try {
-            transactionCacheService.saveCreditCard(creditCard.getId(), creditCard)
-                    .doOnSuccess(unused -> log.info("CreditCard successfully saved in cache"))
-                    .doOnError(error -> log.error("Error saving CreditCard in cache: {}", error.getMessage()))
-                    .subscribe();
-        } catch (Exception e) {
-            log.error("Error processing CreditCard event: {}", e.getMessage());
-        }
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = {"creditcard-created", "creditcard-updated"},
+            groupId = CacheEventBatchProcessor.GROUP_ID, containerFactory = "batchKafkaListenerContainerFactory",
+            concurrency = "${transaction.kafka.listeners.creditCardCacheListener.min-concurrency:1}")
+    public void consumeCreditCardEvents(List<CreditCard> creditCards,
+                                        @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                        Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+        Supplier<Mono<?>> work = () -> cacheEventBatchProcessor.process("CreditCard", creditCards, topics,
+                CreditCard::getId, CreditCard::getModifiedAt, transactionCacheService::saveCreditCards);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, creditCards.size(), acknowledgment, work);
     }
-
 }
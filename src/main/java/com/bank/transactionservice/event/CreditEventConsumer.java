@@ -2,37 +2,39 @@ package com.bank.transactionservice.event;
 import com.bank.transactionservice.model.credit.Credit;
 import com.bank.transactionservice.service.TransactionCacheService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
 public class CreditEventConsumer {
+    private static final String LISTENER_ID = "creditCacheListener";
     private final TransactionCacheService transactionCacheService;
-    public CreditEventConsumer(TransactionCacheService transactionCacheService) {
+    private final CacheEventBatchProcessor cacheEventBatchProcessor;
+    private final ListenerFlowControl listenerFlowControl;
+    public CreditEventConsumer(TransactionCacheService transactionCacheService,
+                               CacheEventBatchProcessor cacheEventBatchProcessor,
+                               ListenerFlowControl listenerFlowControl) {
         this.transactionCacheService = transactionCacheService;
+        this.cacheEventBatchProcessor = cacheEventBatchProcessor;
+        this.listenerFlowControl = listenerFlowControl;
     }
-    @KafkaListener(topics = "credit-created", groupId = "transaction-service-group")
-    public void consumeCreditCreated(Credit credit) {
-        try {
-            transactionCacheService.saveCredit(credit.getId(), credit)
-                    .doOnSuccess(unused -> log.info("Credit successfully saved in cache"))
-                    .doOnError(error -> log.error("Error saving Credit in cache: {}", error.getMessage()))
-                    .subscribe();
-        } catch (Exception e) {
-            log.error("Error processing Credit event: {}", e.getMessage());
-        }
-    }
-
-    @KafkaListener(topics = "credit-updated", groupId = "transaction-service-group")
-    public void consumeCreditUpdated(Credit credit) {
-        try {
-            transactionCacheService.saveCredit(credit.getId(), credit)
-                    .doOnSuccess(unused -> log.info("Credit successfully saved in cache"))
-                    .doOnError(error -> log.error("Error saving Credit in cache:  {}", error.getMessage()))
-                    .subscribe();
-        } catch (Exception e) {
-            log.error("Error deserializing Credit event: {}", e.getMessage());
-        }
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = {"credit-created", "credit-updated"},
+            groupId = CacheEventBatchProcessor.GROUP_ID, containerFactory = "batchKafkaListenerContainerFactory",
+            concurrency = "${transaction.kafka.listeners.creditCacheListener.min-concurrency:1}")
+    public void consumeCreditEvents(List<Credit> credits,
+                                    @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                    Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+        Supplier<Mono<?>> work = () -> cacheEventBatchProcessor.process("Credit", credits, topics,
+                Credit::getId, Credit::getModifiedAt, transactionCacheService::saveCredits);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, credits.size(), acknowledgment, work);
     }
 }
@@ -0,0 +1,57 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Component
+public class KeyOrderedDispatcher {
+    private final Map<String, Mono<Void>> tails = new HashMap<>();
+
+    public KeyOrderedDispatcher(MeterRegistry meterRegistry) {
+        Gauge.builder("transaction.kafka.ordering.active-keys", this, KeyOrderedDispatcher::activeKeys)
+                .register(meterRegistry);
+    }
+
+    // Work is registered when the returned Mono is subscribed, so callers must subscribe in offset order; a Mono
+    // assembled but never subscribed holds no key
+    public Mono<Void> dispatch(Collection<String> keys, Supplier<Mono<Void>> work) {
+        Collection<String> distinctKeys = new LinkedHashSet<>(keys);
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> tail = done.asMono();
+            List<Mono<Void>> predecessors = new ArrayList<>();
+            synchronized (tails) {
+                distinctKeys.forEach(key -> {
+                    Mono<Void> previous = tails.put(key, tail);
+                    if (previous != null) {
+                        predecessors.add(previous);
+                    }
+                });
+            }
+            return Mono.when(predecessors)
+                    .then(Mono.defer(work))
+                    .doFinally(signal -> {
+                        synchronized (tails) {
+                            distinctKeys.forEach(key -> tails.remove(key, tail));
+                        }
+                        done.tryEmitEmpty();
+                    });
+        });
+    }
+    public int activeKeys() {
+        synchronized (tails) {
+            return tails.size();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@Slf4j
+public class ListenerConcurrencyAutoscaler implements SmartLifecycle {
+    private final KafkaListenerEndpointRegistry listenerEndpointRegistry;
+    private final ConsumerLagMonitor consumerLagMonitor;
+    private final ListenerFlowControl listenerFlowControl;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final Duration interval;
+    private final long targetDrainMs;
+    private final long priorityLagThreshold;
+    private final List<String> priorityTopics;
+    private final Set<String> rescaling = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> gauges = new ConcurrentHashMap<>();
+    private Disposable schedule;
+
+    public ListenerConcurrencyAutoscaler(KafkaListenerEndpointRegistry listenerEndpointRegistry,
+                                         ConsumerLagMonitor consumerLagMonitor,
+                                         ListenerFlowControl listenerFlowControl,
+                                         MeterRegistry meterRegistry,
+                                         Environment environment,
+                                         @Value("${transaction.kafka.autoscale.interval-ms:30000}") long intervalMs,
+                                         @Value("${transaction.kafka.autoscale.target-drain-ms:10000}")
+                                         long targetDrainMs,
+                                         @Value("${transaction.kafka.autoscale.priority-lag-threshold:100}")
+                                         long priorityLagThreshold,
+                                         @Value("${transaction.kafka.autoscale.priority-topics:"
+                                                 + "yanki.transaction.requested,"
+                                                 + "bootcoin.transaction.transfer.requested,"
+                                                 + "bootcoin.bank.purchase.requested}")
+                                         String[] priorityTopics) {
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+        this.consumerLagMonitor = consumerLagMonitor;
+        this.listenerFlowControl = listenerFlowControl;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.interval = Duration.ofMillis(intervalMs);
+        this.targetDrainMs = targetDrainMs;
+        this.priorityLagThreshold = priorityLagThreshold;
+        this.priorityTopics = Arrays.asList(priorityTopics);
+    }
+
+    @Override
+    public synchronized void start() {
+        schedule = Flux.interval(interval)
+                .concatMap(tick -> rescale().onErrorResume(error -> Mono.empty()))
+                .subscribe();
+        log.info("Listener autoscaler started, evaluating every {} ms", interval.toMillis());
+    }
+    @Override
+    public synchronized void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+            schedule = null;
+        }
+    }
+    @Override
+    public synchronized boolean isRunning() {
+        return schedule != null;
+    }
+    // Starts after the listener containers so it never races their initial startup
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 50;
+    }
+
+    Mono<Void> rescale() {
+        return consumerLagMonitor.refresh().doOnNext(lag -> {
+            // Money-moving topics take precedence: while they are behind, cache listeners shrink to their minimum
+            long priorityLag = consumerLagMonitor.lag(priorityTopics);
+            boolean yieldToPriority = priorityLag > priorityLagThreshold;
+            if (yieldToPriority) {
+                log.info("Priority topics are {} records behind, holding cache listeners at minimum concurrency",
+                        priorityLag);
+            }
+            for (MessageListenerContainer container : listenerEndpointRegistry.getListenerContainers()) {
+                if (container instanceof ConcurrentMessageListenerContainer) {
+                    rescale((ConcurrentMessageListenerContainer<?, ?>) container, yieldToPriority);
+                }
+            }
+        }).then();
+    }
+    private void rescale(ConcurrentMessageListenerContainer<?, ?> container, boolean yieldToPriority) {
+        String listenerId = container.getListenerId();
+        String[] topics = container.getContainerProperties().getTopics();
+        if (listenerId == null || topics == null || rescaling.contains(listenerId)) {
+            return;
+        }
+        List<String> listenerTopics = Arrays.asList(topics);
+        int current = container.getConcurrency();
+        gauge(listenerId, current);
+        int target = yieldToPriority ? minConcurrency(listenerId) : target(listenerId, listenerTopics, current);
+        if (target == current || !container.isRunning()) {
+            return;
+        }
+        // Concurrency only takes effect on start; the restart rebalances only the cache listeners' own group
+        log.info("Rescaling listener {} from {} to {} consumers", listenerId, current, target);
+        Counter.builder("transaction.kafka.listener.rescaled")
+                .tag("listener", listenerId)
+                .tag("direction", target > current ? "up" : "down")
+                .register(meterRegistry)
+                .increment();
+        rescaling.add(listenerId);
+        container.stop(() -> {
+            try {
+                restart(container, target);
+                gauge(listenerId, target);
+            } finally {
+                rescaling.remove(listenerId);
+            }
+        });
+    }
+    void restart(ConcurrentMessageListenerContainer<?, ?> container, int concurrency) {
+        container.setConcurrency(concurrency);
+        container.start();
+    }
+    // Estimated time to drain the backlog with the current consumers decides the next step
+    private int target(String listenerId, List<String> topics, int current) {
+        long lag = consumerLagMonitor.lag(topics);
+        double recordMs = listenerFlowControl.recordProcessingMs(listenerId);
+        int min = minConcurrency(listenerId);
+        // More consumers than partitions would sit idle
+        int max = Math.max(min, Math.min(maxConcurrency(listenerId), consumerLagMonitor.partitions(topics)));
+        double drainMs = lag * recordMs / current;
+        int target = current;
+        if (drainMs > targetDrainMs) {
+            target = current + 1;
+        } else if (drainMs < targetDrainMs / 4.0) {
+            target = current - 1;
+        }
+        return Math.max(min, Math.min(max, target));
+    }
+    private int minConcurrency(String listenerId) {
+        return environment.getProperty("transaction.kafka.listeners." + listenerId + ".min-concurrency",
+                Integer.class, 1);
+    }
+    private int maxConcurrency(String listenerId) {
+        return environment.getProperty("transaction.kafka.listeners." + listenerId + ".max-concurrency",
+                Integer.class, 4);
+    }
+    private void gauge(String listenerId, int concurrency) {
+        if (gauges.put(listenerId, concurrency) == null) {
+            Gauge.builder("transaction.kafka.listener.concurrency", gauges, values -> values.get(listenerId))
+                    .tag("listener", listenerId)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class ListenerFlowControl {
+    private final KafkaListenerEndpointRegistry listenerEndpointRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final int defaultMaxInFlight;
+    private final long redeliveryBackoffMs;
+    private final Map<String, ListenerState> listeners = new ConcurrentHashMap<>();
+
+    public ListenerFlowControl(KafkaListenerEndpointRegistry listenerEndpointRegistry,
+                               MeterRegistry meterRegistry,
+                               Environment environment,
+                               @Value("${transaction.kafka.max-in-flight:64}") int defaultMaxInFlight,
+                               @Value("${transaction.kafka.redelivery-backoff-ms:100}") long redeliveryBackoffMs) {
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.defaultMaxInFlight = defaultMaxInFlight;
+        this.redeliveryBackoffMs = redeliveryBackoffMs;
+    }
+
+    // Must be called on the consumer thread: a record over the in-flight limit is handed back to the container
+    public void submit(String listenerId, TopicPartition partition, long offset,
+                       Acknowledgment acknowledgment, Supplier<Mono<?>> work) {
+        ListenerState state = state(listenerId);
+        if (!admit(state)) {
+            acknowledgment.nack(redeliveryBackoffMs);
+            return;
+        }
+        state.acknowledgements.track(partition, offset, acknowledgment::acknowledge);
+        dispatch(state, partition, offset, 1, work);
+    }
+    // Acknowledging a batch commits every partition it read, so batches are acknowledged in delivery order of the
+    // consumer that polled them; other consumers of the same listener are not held back by it
+    public void submitBatch(String listenerId, Object consumer, int records, Acknowledgment acknowledgment,
+                            Supplier<Mono<?>> work) {
+        ListenerState state = state(listenerId);
+        if (!admit(state)) {
+            acknowledgment.nack(0, redeliveryBackoffMs);
+            return;
+        }
+        long sequence = state.batchSequence.getAndIncrement();
+        state.acknowledgements.track(consumer, sequence, acknowledgment::acknowledge);
+        dispatch(state, consumer, sequence, records, work);
+    }
+    public int inFlight(String listenerId) {
+        ListenerState state = listeners.get(listenerId);
+        return state != null ? state.inFlight.get() : 0;
+    }
+    // Smoothed processing time of a single record, 0 until the listener has completed any work
+    public double recordProcessingMs(String listenerId) {
+        ListenerState state = listeners.get(listenerId);
+        return state != null ? state.recordProcessingMs : 0.0;
+    }
+
+    private void dispatch(ListenerState state, Object source, long position, int records, Supplier<Mono<?>> work) {
+        state.inFlight.incrementAndGet();
+        long started = System.nanoTime();
+        Mono.defer(work)
+                .doOnError(error -> log.error("Unhandled error in listener {} at {}@{}: {}",
+                        state.listenerId, source, position, error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> {
+                    recordProcessing(state, System.nanoTime() - started, records);
+                    state.inFlight.decrementAndGet();
+                    state.permits.release();
+                    state.acknowledgements.complete(source, position);
+                    resumeIfDrained(state);
+                })
+                .subscribe();
+    }
+    private void recordProcessing(ListenerState state, long elapsedNanos, int records) {
+        state.processing.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (records <= 0) {
+            return;
+        }
+        double perRecordMs = elapsedNanos / 1_000_000.0 / records;
+        synchronized (state) {
+            state.recordProcessingMs = state.recordProcessingMs == 0.0
+                    ? perRecordMs
+                    : state.recordProcessingMs * 0.8 + perRecordMs * 0.2;
+        }
+    }
+    // Over the limit the container stops fetching and the records are sought back, so they are polled again once
+    // enough in-flight work has drained instead of being admitted anyway
+    private boolean admit(ListenerState state) {
+        if (state.permits.tryAcquire()) {
+            return true;
+        }
+        pause(state);
+        log.debug("Listener {} at its in-flight limit of {}; records will be redelivered",
+                state.listenerId, state.maxInFlight);
+        // Work may have drained before the pause took effect, in which case nothing else would resume the container
+        resumeIfDrained(state);
+        return false;
+    }
+    private void pause(ListenerState state) {
+        MessageListenerContainer container = listenerEndpointRegistry.getListenerContainer(state.listenerId);
+        if (container != null && state.paused.compareAndSet(false, true)) {
+            container.pause();
+            log.info("Listener {} paused with {} records in flight", state.listenerId, state.inFlight.get());
+        }
+    }
+    private void resumeIfDrained(ListenerState state) {
+        if (state.inFlight.get() > state.maxInFlight / 2 || !state.paused.compareAndSet(true, false)) {
+            return;
+        }
+        MessageListenerContainer container = listenerEndpointRegistry.getListenerContainer(state.listenerId);
+        if (container != null) {
+            container.resume();
+            log.info("Listener {} resumed with {} records in flight", state.listenerId, state.inFlight.get());
+        }
+    }
+    private ListenerState state(String listenerId) {
+        return listeners.computeIfAbsent(listenerId, id -> {
+            int maxInFlight = environment.getProperty("transaction.kafka.listeners." + id + ".max-in-flight",
+                    Integer.class, defaultMaxInFlight);
+            Timer processing = Timer.builder("transaction.kafka.listener.processing")
+                    .tag("listener", id)
+                    .register(meterRegistry);
+            ListenerState state = new ListenerState(id, maxInFlight, processing);
+            Gauge.builder("transaction.kafka.listener.in-flight", state.inFlight, AtomicInteger::get)
+                    .tag("listener", id)
+                    .register(meterRegistry);
+            return state;
+        });
+    }
+
+    private static final class ListenerState {
+        private final String listenerId;
+        private final int maxInFlight;
+        private final Semaphore permits;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean paused = new AtomicBoolean();
+        private final AtomicLong batchSequence = new AtomicLong();
+        private final OrderedAcknowledgements acknowledgements = new OrderedAcknowledgements();
+        private final Timer processing;
+        private volatile double recordProcessingMs;
+
+        private ListenerState(String listenerId, int maxInFlight, Timer processing) {
+            this.listenerId = listenerId;
+            this.maxInFlight = maxInFlight;
+            this.permits = new Semaphore(maxInFlight);
+            this.processing = processing;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bank.transactionservice.event;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OrderedAcknowledgements {
+    private final Map<Object, TreeMap<Long, Pending>> pending = new ConcurrentHashMap<>();
+
+    public void track(Object source, long position, Runnable acknowledgment) {
+        while (true) {
+            TreeMap<Long, Pending> positions = pending.computeIfAbsent(source, key -> new TreeMap<>());
+            synchronized (positions) {
+                // A source drained concurrently was removed; track against the fresh one instead
+                if (pending.get(source) == positions) {
+                    positions.put(position, new Pending(acknowledgment));
+                    return;
+                }
+            }
+        }
+    }
+    public void complete(Object source, long position) {
+        TreeMap<Long, Pending> positions = pending.get(source);
+        if (positions == null) {
+            return;
+        }
+        Runnable highestCompleted = null;
+        synchronized (positions) {
+            Pending completed = positions.get(position);
+            if (completed != null) {
+                completed.done = true;
+            }
+            // Only commit up to the first record still in progress so a restart never skips unfinished work
+            while (!positions.isEmpty() && positions.firstEntry().getValue().done) {
+                highestCompleted = positions.pollFirstEntry().getValue().acknowledgment;
+            }
+            // Sources such as consumers come and go, so a drained one is not kept around
+            if (positions.isEmpty()) {
+                pending.remove(source, positions);
+            }
+        }
+        if (highestCompleted != null) {
+            highestCompleted.run();
+        }
+    }
+    public void forget(Object source) {
+        pending.remove(source);
+    }
+
+    private static final class Pending {
+        private final Runnable acknowledgment;
+        private boolean done;
+
+        private Pending(Runnable acknowledgment) {
+            this.acknowledgment = acknowledgment;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.client.DownstreamWrites;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Idempotency records for events that move money, kept in Redis by topic and event ID. An event is marked pending
+// right before its first downstream write and its result is recorded once applied, so a redelivered event only
+// republishes that result, and one that stopped in between is never applied twice
+@Component
+@Slf4j
+public class ProcessedEvents {
+    private static final String KEY_PREFIX = "ProcessedEvent:";
+    private static final String PENDING = "PENDING";
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+
+    public ProcessedEvents(ReactiveRedisTemplate<String, String> redisTemplate,
+                           @Value("${transaction.kafka.processed-events.retention-ms:604800000}") long retentionMs) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.retention = Duration.ofMillis(retentionMs);
+    }
+
+    // For one event: the recorded result if it was already applied, otherwise the result of applying it now. The
+    // caller publishes the result, so a failed publish is retried without running the transaction again
+    public <R> Mono<R> process(String topic, String eventId, Class<R> resultType,
+                               Supplier<Mono<R>> transaction, Function<Throwable, R> onTerminal) {
+        if (eventId == null) {
+            log.warn("Event on {} has no ID, applying it without an idempotency record", topic);
+            return Mono.defer(transaction)
+                    .onErrorResume(RetryTopics::isTerminal, error -> Mono.just(onTerminal.apply(error)));
+        }
+        // Marked only once the event is about to write, so a failed lookup leaves nothing behind to clean up
+        Supplier<Mono<List<R>>> single = () -> transaction.get().map(List::of);
+        Function<Throwable, List<R>> singleTerminal = error -> List.of(onTerminal.apply(error));
+        Supplier<Mono<R>> apply = () -> run(topic, List.of(eventId),
+                DownstreamWrites.beforeFirstWrite(markPending(topic, eventId)), single, singleTerminal, Mono.empty())
+                .map(results -> results.get(0));
+        return recorded(topic, eventId, resultType)
+                .doOnNext(result -> log.info("Event {} from {} was already applied, republishing its result",
+                        eventId, topic))
+                .switchIfEmpty(Mono.defer(apply));
+    }
+    // Empty for an event never applied; an event that started writing without recording a result fails with
+    // OutcomeUnknownException, since its money may or may not have moved
+    public <R> Mono<R> recorded(String topic, String eventId, Class<R> resultType) {
+        return redisTemplate.opsForValue().get(key(topic, eventId))
+                .flatMap(value -> PENDING.equals(value)
+                        ? Mono.error(new OutcomeUnknownException(topic, eventId))
+                        : Mono.fromCallable(() -> objectMapper.readValue(value, resultType)));
+    }
+    // Claims one event for a group before the group is formed, so an event recorded, pending or claimed by another
+    // delivery is left out of it on its own instead of failing the purchases it would have been grouped with
+    public Mono<Boolean> claim(String topic, String eventId) {
+        if (eventId == null) {
+            return Mono.just(true);
+        }
+        return redisTemplate.opsForValue().setIfAbsent(key(topic, eventId), PENDING, retention)
+                .defaultIfEmpty(false);
+    }
+    // Applies claimed events as one transaction, with results in the order of eventIds. Business rule violations
+    // raised before the first write become results; other failures before it release the claims so the events can
+    // be retried, and any failure after it leaves them pending with an unknown outcome
+    public <R> Mono<List<R>> applyClaimed(String topic, List<String> eventIds, Supplier<Mono<List<R>>> transaction,
+                                          Function<Throwable, List<R>> onTerminal) {
+        return run(topic, eventIds, DownstreamWrites.beforeFirstWrite(Mono.empty()), transaction, onTerminal,
+                release(topic, eventIds));
+    }
+
+    private <R> Mono<List<R>> run(String topic, List<String> eventIds, DownstreamWrites writes,
+                                  Supplier<Mono<List<R>>> transaction, Function<Throwable, List<R>> onTerminal,
+                                  Mono<Void> release) {
+        return Mono.defer(transaction)
+                .contextWrite(context -> DownstreamWrites.track(context, writes))
+                .onErrorResume(error -> {
+                    if (writes.isStarted()) {
+                        log.error("Events {} from {} failed after writing: {}", eventIds, topic, error.getMessage());
+                        return Mono.error(new OutcomeUnknownException(topic, String.valueOf(eventIds)));
+                    }
+                    if (RetryTopics.isTerminal(error)) {
+                        return Mono.just(onTerminal.apply(error));
+                    }
+                    return release.then(Mono.error(error));
+                })
+                .flatMap(results -> record(topic, eventIds, results).thenReturn(results));
+    }
+    private Mono<Void> markPending(String topic, String eventId) {
+        return Mono.defer(() -> claim(topic, eventId))
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(() -> new OutcomeUnknownException(topic, eventId)))
+                .then();
+    }
+    // Nothing was written for these events; a claim that cannot be released leaves its event pending, which only
+    // dead-letters a redelivery
+    private Mono<Void> release(String topic, Collection<String> eventIds) {
+        List<String> keys = eventIds.stream()
+                .filter(Objects::nonNull)
+                .map(eventId -> key(topic, eventId))
+                .collect(Collectors.toList());
+        return Mono.defer(() -> redisTemplate.delete(Flux.fromIterable(keys)))
+                .then()
+                .onErrorResume(error -> {
+                    log.error("Error releasing {} from {}: {}", eventIds, topic, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    // A result that cannot be recorded is still published; an event that got as far as writing stays pending, so a
+    // redelivery is dead-lettered rather than applied again
+    private <R> Mono<Void> record(String topic, List<String> eventIds, List<R> results) {
+        return Flux.range(0, Math.min(eventIds.size(), results.size()))
+                .filter(index -> eventIds.get(index) != null)
+                .concatMap(index -> Mono.fromCallable(() -> objectMapper.writeValueAsString(results.get(index)))
+                        .flatMap(value -> redisTemplate.opsForValue().set(key(topic, eventIds.get(index)), value,
+                                retention)))
+                .then()
+                .onErrorResume(error -> {
+                    log.error("Error recording results of {} from {}: {}", eventIds, topic, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    private static String key(String topic, String eventId) {
+        return KEY_PREFIX + topic + ":" + eventId;
+    }
+
+    // Never retried: the event is dead-lettered for reconciliation instead of being applied again or reported failed
+    public static class OutcomeUnknownException extends RuntimeException {
+        public OutcomeUnknownException(String topic, String eventIds) {
+            super("Outcome of " + eventIds + " from " + topic + " is unknown");
+        }
+    }
+}
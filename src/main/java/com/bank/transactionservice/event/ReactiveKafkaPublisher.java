@@ -0,0 +1,155 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.event.serde.SchemaAwareSerializer;
+import com.bank.transactionservice.event.serde.SchemaRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@Component
+@Slf4j
+public class ReactiveKafkaPublisher implements DisposableBean {
+    static final String DEFAULT_PRODUCER = "default";
+    // Settings that can be tuned under transaction.kafka.producer.* and per topic under
+    // transaction.kafka.topics.<topic>.producer.*
+    private static final Map<String, String> PRODUCER_SETTINGS = Map.of(
+            "acks", ProducerConfig.ACKS_CONFIG,
+            "enable-idempotence", ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG,
+            "compression-type", ProducerConfig.COMPRESSION_TYPE_CONFIG,
+            "linger-ms", ProducerConfig.LINGER_MS_CONFIG,
+            "batch-size", ProducerConfig.BATCH_SIZE_CONFIG);
+    private final KafkaProperties kafkaProperties;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final SchemaRegistry schemaRegistry;
+    private final Map<String, KafkaSender<String, Object>> senders = new ConcurrentHashMap<>();
+
+    public ReactiveKafkaPublisher(KafkaProperties kafkaProperties, Environment environment,
+                                  MeterRegistry meterRegistry, SchemaRegistry schemaRegistry) {
+        this.kafkaProperties = kafkaProperties;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    public Mono<Void> send(String topic, String key, Object value) {
+        return send(topic, key, value, Map.of());
+    }
+    // Every record carries its entity key so all events of one account or transaction land on the same partition
+    public Mono<Void> send(String topic, String key, Object value, Map<String, String> headers) {
+        ProducerRecord<String, Object> producerRecord = new ProducerRecord<>(topic, key, value);
+        headers.forEach((name, header) ->
+                producerRecord.headers().add(name, header.getBytes(StandardCharsets.UTF_8)));
+        return publish(topic, Flux.just(SenderRecord.create(producerRecord, key)), key);
+    }
+    // One send call hands the whole group to the producer, which packs it into as few requests as linger allows
+    public <T> Mono<Void> sendAll(String topic, List<T> values, Function<T, String> keyOf) {
+        if (values.isEmpty()) {
+            return Mono.empty();
+        }
+        Flux<SenderRecord<String, Object, String>> records = Flux.fromIterable(values)
+                .map(value -> SenderRecord.create(
+                        new ProducerRecord<>(topic, keyOf.apply(value), (Object) value), keyOf.apply(value)));
+        return publish(topic, records, values.size() + " events");
+    }
+    @Override
+    public void destroy() {
+        senders.values().forEach(KafkaSender::close);
+        senders.clear();
+    }
+
+    private Mono<Void> publish(String topic, Flux<SenderRecord<String, Object, String>> records, String description) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return sender(topic).send(records)
+                    .doOnNext(result -> log.info("Event {} sent successfully to topic: {}",
+                            result.correlationMetadata(), topic))
+                    .doOnError(error -> log.error("Failed to send event {} to topic {}: {}",
+                            description, topic, error.getMessage()))
+                    .doOnComplete(() -> sample.stop(latency(topic, "success")))
+                    .doOnError(error -> sample.stop(latency(topic, "failure")))
+                    .then();
+        });
+    }
+    // Topics without their own settings share one sender so their records batch together
+    private KafkaSender<String, Object> sender(String topic) {
+        String producer = hasTopicSettings(topic) ? topic : DEFAULT_PRODUCER;
+        return senders.computeIfAbsent(producer, name -> {
+            Map<String, Object> properties = producerProperties(topic.equals(name) ? topic : null);
+            log.info("Creating Kafka producer '{}' with acks={}, idempotence={}, compression={}, linger={}ms",
+                    name, properties.get(ProducerConfig.ACKS_CONFIG),
+                    properties.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG),
+                    properties.get(ProducerConfig.COMPRESSION_TYPE_CONFIG),
+                    properties.get(ProducerConfig.LINGER_MS_CONFIG));
+            SenderOptions<String, Object> options = SenderOptions.<String, Object>create(properties)
+                    .withKeySerializer(new StringSerializer())
+                    .withValueSerializer(new SchemaAwareSerializer(schemaRegistry, environment));
+            return createSender(name, options);
+        });
+    }
+    Map<String, Object> producerProperties(String topic) {
+        Map<String, Object> properties = new HashMap<>(kafkaProperties.buildProducerProperties());
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, "5");
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, "65536");
+        applySettings(properties, "transaction.kafka.producer.");
+        if (topic != null) {
+            applySettings(properties, "transaction.kafka.topics." + topic + ".producer.");
+        }
+        String clientId = topic != null ? "transaction-service-producer-" + topic : "transaction-service-producer";
+        properties.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+        return properties;
+    }
+    KafkaSender<String, Object> createSender(String name, SenderOptions<String, Object> options) {
+        KafkaSender<String, Object> sender = KafkaSender.create(options);
+        // Exposes the client's own batch-size, compression-rate and request-latency metrics
+        sender.doOnProducer(producer -> {
+            new KafkaClientMetrics(producer).bindTo(meterRegistry);
+            return producer;
+        }).subscribe(unused -> { }, error -> log.warn("Could not bind metrics of producer '{}': {}",
+                name, error.getMessage()));
+        return sender;
+    }
+    private boolean hasTopicSettings(String topic) {
+        return PRODUCER_SETTINGS.keySet().stream()
+                .anyMatch(setting -> environment.containsProperty(
+                        "transaction.kafka.topics." + topic + ".producer." + setting));
+    }
+    private void applySettings(Map<String, Object> properties, String prefix) {
+        PRODUCER_SETTINGS.forEach((setting, config) -> {
+            String value = environment.getProperty(prefix + setting);
+            if (value != null) {
+                properties.put(config, value);
+            }
+        });
+    }
+    private Timer latency(String topic, String outcome) {
+        return Timer.builder("transaction.kafka.publish.latency")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,168 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.dto.YankiTransactionEvent;
+import com.bank.transactionservice.dto.bootcoinbank.BootCoinBankPurchaseRequested;
+import com.bank.transactionservice.dto.bootcoinpurchase.TransactionEvent;
+import com.bank.transactionservice.event.serde.SchemaAwareDeserializer;
+import com.bank.transactionservice.event.serde.SchemaRegistry;
+import com.bank.transactionservice.memo.RequestMemo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class ReactiveTransactionPipeline implements SmartLifecycle {
+    static final String GROUP_ID = "transaction-service-group";
+    private final KafkaProperties kafkaProperties;
+    private final YankiTransactionEventConsumer yankiTransactionEventConsumer;
+    private final BootCoinTransactionTransferConsumer bootCoinTransactionTransferConsumer;
+    private final BootCoinBankPurchase bootCoinBankPurchase;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
+    private final RetryTopics retryTopics;
+    private final SchemaRegistry schemaRegistry;
+    private final int concurrency;
+    private final Duration commitInterval;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+    private volatile boolean running;
+
+    public ReactiveTransactionPipeline(KafkaProperties kafkaProperties,
+                                       YankiTransactionEventConsumer yankiTransactionEventConsumer,
+                                       BootCoinTransactionTransferConsumer bootCoinTransactionTransferConsumer,
+                                       BootCoinBankPurchase bootCoinBankPurchase,
+                                       KeyOrderedDispatcher keyOrderedDispatcher,
+                                       RetryTopics retryTopics,
+                                       SchemaRegistry schemaRegistry,
+                                       @Value("${transaction.kafka.reactive.concurrency:32}") int concurrency,
+                                       @Value("${transaction.kafka.reactive.commit-interval-ms:1000}")
+                                       long commitIntervalMs) {
+        this.kafkaProperties = kafkaProperties;
+        this.yankiTransactionEventConsumer = yankiTransactionEventConsumer;
+        this.bootCoinTransactionTransferConsumer = bootCoinTransactionTransferConsumer;
+        this.bootCoinBankPurchase = bootCoinBankPurchase;
+        this.keyOrderedDispatcher = keyOrderedDispatcher;
+        this.retryTopics = retryTopics;
+        this.schemaRegistry = schemaRegistry;
+        this.concurrency = concurrency;
+        this.commitInterval = Duration.ofMillis(commitIntervalMs);
+    }
+
+    @Override
+    public synchronized void start() {
+        register("yanki.transaction.requested", YankiTransactionEvent.class,
+                this::dispatchYankiTransaction, yankiTransactionEventConsumer::publishFailure);
+        register("bootcoin.transaction.transfer.requested", TransactionEvent.class,
+                bootCoinTransactionTransferConsumer::processTransferEvent,
+                bootCoinTransactionTransferConsumer::publishFailure);
+        register("bootcoin.bank.purchase.requested", BootCoinBankPurchaseRequested.class,
+                bootCoinBankPurchase::processBootCoinPurchase, bootCoinBankPurchase::publishFailure);
+        running = true;
+        log.info("Reactive transaction pipeline started with concurrency {} and {} retry tiers",
+                concurrency, retryTopics.tiers());
+    }
+    @Override
+    public synchronized void stop() {
+        subscriptions.forEach(Disposable::dispose);
+        subscriptions.clear();
+        running = false;
+        log.info("Reactive transaction pipeline stopped");
+    }
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // The main topic is tier 0; each retry tier is consumed by its own pipeline so delays never block the main topic
+    private <T> void register(String topic, Class<T> type, Function<T, Mono<Void>> handler,
+                              BiFunction<T, Throwable, Mono<Void>> onExhausted) {
+        for (int tier = 0; tier <= retryTopics.tiers(); tier++) {
+            subscriptions.add(pipeline(topic, tier, type, handler, onExhausted));
+        }
+    }
+    <T> Disposable pipeline(String topic, int tier, Class<T> type, Function<T, Mono<Void>> handler,
+                            BiFunction<T, Throwable, Mono<Void>> onExhausted) {
+        String source = tier == 0 ? topic : retryTopics.retryTopic(topic, tier);
+        OrderedAcknowledgements acknowledgements = new OrderedAcknowledgements();
+        SchemaAwareDeserializer<T> valueDeserializer = new SchemaAwareDeserializer<>(schemaRegistry, type);
+        ReceiverOptions<String, T> options = ReceiverOptions.<String, T>create(consumerProperties(source))
+                .withKeyDeserializer(new StringDeserializer())
+                .withValueDeserializer(new ErrorHandlingDeserializer<>(valueDeserializer))
+                .commitInterval(commitInterval)
+                .addRevokeListener(partitions -> partitions.forEach(partition ->
+                        acknowledgements.forget(partition.topicPartition())))
+                .subscription(List.of(source));
+        return receive(options)
+                .flatMap(record -> handle(topic, tier, record, handler, onExhausted, acknowledgements), concurrency)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.error("Receiver for {} failed, resubscribing: {}",
+                                source, signal.failure().getMessage())))
+                .subscribe();
+    }
+    // A failed attempt releases its card and wallet keys and waits out its delay on a retry topic, so one slow or
+    // failing event never holds back the events behind it
+    Mono<Void> dispatchYankiTransaction(YankiTransactionEvent event) {
+        Supplier<Mono<Void>> work = () -> yankiTransactionEventConsumer.processYankiTransaction(event);
+        return keyOrderedDispatcher.dispatch(yankiTransactionEventConsumer.orderingKeys(event), work);
+    }
+    <T> Flux<ReceiverRecord<String, T>> receive(ReceiverOptions<String, T> options) {
+        return KafkaReceiver.create(options).receive();
+    }
+    private <T> Mono<Void> handle(String topic, int tier, ReceiverRecord<String, T> record,
+                                  Function<T, Mono<Void>> handler, BiFunction<T, Throwable, Mono<Void>> onExhausted,
+                                  OrderedAcknowledgements acknowledgements) {
+        ReceiverOffset offset = record.receiverOffset();
+        // Tracked in delivery order, before any concurrent work starts, so commits stay contiguous per partition
+        acknowledgements.track(offset.topicPartition(), offset.offset(), offset::acknowledge);
+        T value = record.value();
+        Mono<Void> work = value != null
+                ? attempt(tier, record.timestamp(), () -> handler.apply(value))
+                        .onErrorResume(error -> retry(topic, tier, record.key(), value, error, onExhausted))
+                : Mono.fromRunnable(() -> log.warn("Skipping undecodable record {}@{} from {}",
+                        offset.topicPartition(), offset.offset(), topic));
+        return work
+                .doOnError(error -> log.error("Unhandled error processing {}@{}: {}",
+                        offset.topicPartition(), offset.offset(), error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> acknowledgements.complete(offset.topicPartition(), offset.offset()));
+    }
+    private <T> Mono<Void> retry(String topic, int tier, String key, T value, Throwable error,
+                                 BiFunction<T, Throwable, Mono<Void>> onExhausted) {
+        Supplier<Mono<Void>> exhausted = () -> onExhausted.apply(value, error);
+        return retryTopics.forward(topic, tier, key, value, error, exhausted);
+    }
+    // Every attempt reads its entities afresh, then shares them across the steps of that attempt
+    private Mono<Void> attempt(int tier, long recordTimestamp, Supplier<Mono<Void>> work) {
+        Duration delay = retryTopics.remainingDelay(tier, recordTimestamp);
+        Mono<Void> memoized = Mono.defer(work).contextWrite(RequestMemo::open);
+        return delay.isZero() ? memoized : Mono.delay(delay).then(memoized);
+    }
+    private Map<String, Object> consumerProperties(String topic) {
+        Map<String, Object> properties = kafkaProperties.buildConsumerProperties();
+        properties.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP_ID);
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG, "transaction-service-" + topic);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return properties;
+    }
+}
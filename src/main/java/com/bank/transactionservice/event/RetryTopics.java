@@ -0,0 +1,105 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.client.DownstreamCallTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class RetryTopics {
+    static final String ERROR_HEADER = "transaction-retry-error";
+    static final String ORIGINAL_TOPIC_HEADER = "transaction-retry-original-topic";
+    private final ReactiveKafkaPublisher reactiveKafkaPublisher;
+    private final MeterRegistry meterRegistry;
+    private final long[] delaysMs;
+
+    public RetryTopics(ReactiveKafkaPublisher reactiveKafkaPublisher,
+                       MeterRegistry meterRegistry,
+                       @Value("${transaction.kafka.retry.delays-ms:5000,30000,300000}") long[] delaysMs) {
+        this.reactiveKafkaPublisher = reactiveKafkaPublisher;
+        this.meterRegistry = meterRegistry;
+        this.delaysMs = delaysMs.clone();
+    }
+
+    // Business rule violations will fail again on every attempt, and an event whose money may already have moved
+    // must not be applied again; anything else is treated as a downstream outage
+    public static boolean isRetryable(Throwable error) {
+        return !isTerminal(error) && !(error instanceof ProcessedEvents.OutcomeUnknownException);
+    }
+    // A request a downstream refused with a 4xx is refused again on every attempt, so it ends the event like a
+    // business rule violation instead of holding it through every retry tier
+    public static boolean isTerminal(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DownstreamCallTemplate.DownstreamRejectedException
+                    || cause instanceof WebClientResponseException
+                    && ((WebClientResponseException) cause).getStatusCode().is4xxClientError()) {
+                return true;
+            }
+        }
+        return error instanceof IllegalArgumentException || error instanceof IllegalStateException;
+    }
+    public int tiers() {
+        return delaysMs.length;
+    }
+    public String retryTopic(String topic, int tier) {
+        return topic + "-retry-" + delaysMs[tier - 1];
+    }
+    public String deadLetterTopic(String topic) {
+        return topic + "-dlt";
+    }
+    public List<String> retryTopics(String topic) {
+        List<String> topics = new ArrayList<>();
+        for (int tier = 1; tier <= delaysMs.length; tier++) {
+            topics.add(retryTopic(topic, tier));
+        }
+        return topics;
+    }
+    // Records of a tier share the same delay, so waiting on the head record never holds back an earlier due one
+    public Duration remainingDelay(int tier, long recordTimestamp) {
+        if (tier == 0 || recordTimestamp < 0) {
+            return Duration.ZERO;
+        }
+        long dueAt = recordTimestamp + delaysMs[tier - 1];
+        return Duration.ofMillis(Math.max(0L, dueAt - System.currentTimeMillis()));
+    }
+    public Mono<Void> forward(String topic, int tier, String key, Object value, Throwable error,
+                              Supplier<Mono<Void>> onExhausted) {
+        Map<String, String> headers = Map.of(ERROR_HEADER, String.valueOf(error.getMessage()),
+                ORIGINAL_TOPIC_HEADER, topic);
+        if (error instanceof ProcessedEvents.OutcomeUnknownException) {
+            log.error("Record {} from {} may have been partly applied, dead-lettering: {}",
+                    key, topic, error.getMessage());
+            return deadLetter(topic, key, value, headers);
+        }
+        if (!isRetryable(error)) {
+            return Mono.error(error);
+        }
+        if (tier < delaysMs.length) {
+            String nextTopic = retryTopic(topic, tier + 1);
+            log.warn("Retrying record {} from {} through {}: {}", key, topic, nextTopic, error.getMessage());
+            return reactiveKafkaPublisher.send(nextTopic, key, value, headers)
+                    .doOnSuccess(unused -> meterRegistry.counter("transaction.kafka.retry.forwarded",
+                            "topic", topic, "tier", String.valueOf(tier + 1)).increment())
+                    .onErrorResume(sendError -> Mono.defer(onExhausted));
+        }
+        log.error("Record {} from {} exhausted {} retries, dead-lettering: {}",
+                key, topic, delaysMs.length, error.getMessage());
+        return deadLetter(topic, key, value, headers).then(Mono.defer(onExhausted));
+    }
+    private Mono<Void> deadLetter(String topic, String key, Object value, Map<String, String> headers) {
+        return reactiveKafkaPublisher.send(deadLetterTopic(topic), key, value, headers)
+                .doOnSuccess(unused -> meterRegistry.counter("transaction.kafka.dead-lettered",
+                        "topic", topic).increment())
+                .onErrorResume(sendError -> Mono.empty());
+    }
+}
@@ -13,168 +13,186 @@ import com.bank.transactionservice.model.transaction.TransactionType;
 import com.bank.transactionservice.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class YankiTransactionEventConsumer {
+    private static final String TOPIC = "yanki.transaction.requested";
+    private final ProcessedEvents processedEvents;
     private final TransactionService transactionService;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ReactiveKafkaPublisher reactiveKafkaPublisher;
     private final DebitCardClientService debitCardClientService;
     private final AccountClientService accountClientService;
 
-    @KafkaListener(topics = "yanki.transaction.requested", groupId = "transaction-service-group")
-    public void processYankiTransaction(YankiTransactionEvent event) {
+    // Driven by ReactiveTransactionPipeline for the yanki.transaction.requested topic. A redelivered event only
+    // republishes its recorded result
+    public Mono<Void> processYankiTransaction(YankiTransactionEvent event) {
         log.info("Received Yanki transaction with debit cards: {}", event);
+        Supplier<Mono<YankiTransactionProcessedEvent>> transaction = () -> applyTransaction(event);
+        Function<Throwable, YankiTransactionProcessedEvent> onTerminal = error -> failedEvent(event, error);
+        return processedEvents.process(TOPIC, event.getTransactionId(), YankiTransactionProcessedEvent.class,
+                        transaction, onTerminal)
+                .flatMap(this::publishProcessedEvent);
+    }
+    // Called once retries are exhausted; retryable errors are retried in place until then
+    public Mono<Void> publishFailure(YankiTransactionEvent event, Throwable error) {
+        return publishProcessedEvent(processedEvent(event, "FAILED", error.getMessage()));
+    }
+    // Events sharing a card or wallet must be applied in offset order; unrelated ones may run in parallel
+    public List<String> orderingKeys(YankiTransactionEvent event) {
+        List<String> keys = new ArrayList<>();
+        addKey(keys, "card:", event.getSenderCard());
+        addKey(keys, "card:", event.getReceiverCard());
+        addKey(keys, "phone:", event.getSenderPhoneNumber());
+        addKey(keys, "phone:", event.getReceiverPhoneNumber());
+        return keys;
+    }
+
+    private Mono<YankiTransactionProcessedEvent> applyTransaction(YankiTransactionEvent event) {
         boolean senderHasCard = event.getSenderCard() != null;
         boolean receiverHasCard = event.getReceiverCard() != null;
-        try {
-            if (!senderHasCard && !receiverHasCard) {
-                log.info("Both users are Yanki only. Transaction processed internally.");
-                publishProcessedEvent(event, "SUCCESS", null);
-                return;
-            }
-            if (senderHasCard && !receiverHasCard) {
-                // Only the sender has a card → Debit bank account
-                debitCardClientService.getDebitCardByCardNumber(event.getSenderCard())
+        if (!senderHasCard && !receiverHasCard) {
+            log.info("Both users are Yanki only. Transaction processed internally.");
+            return Mono.just(processedEvent(event, "SUCCESS", null));
+        }
+        if (senderHasCard && !receiverHasCard) {
+            // Only the sender has a card → Debit bank account
+            return debitCardClientService.getDebitCardByCardNumber(event.getSenderCard())
+                .flatMap(debitCard ->
+                    accountClientService.getAccountById(debitCard.getPrimaryAccountId())
+                        .flatMap(account -> {
+                            Transaction transaction = new Transaction(
+                                null,
+                                debitCard.getCustomerId(),
+                                debitCard.getPrimaryAccountId(),
+                                ProductCategory.ACCOUNT,
+                                ProductSubType.YANKI,
+                                TransactionType.WITHDRAWAL,
+                                event.getAmount(),
+                                LocalDateTime.now(),
+                                null,
+                                null,
+                                null,
+                                null,
+                                null,
+                                null,
+                                null
+                            );
+                            return transactionService.createTransaction(transaction);
+                        })
+                )
+                .map(result -> {
+                    log.info("Successful debit from sender's account: {}", result.getId());
+                    return processedEvent(event, "SUCCESS", null);
+                });
+        }
+        if (!senderHasCard && receiverHasCard) {
+            //Only the receiver has a card → Yanki debits internally and credits receiver's bank account
+            log.info("Internal debit in Yanki. " +
+                "Crediting receiver's account...");
+            return debitCardClientService.getDebitCardByCardNumber(
+                event.getReceiverCard())
                     .flatMap(debitCard ->
-                        accountClientService.getAccountById(debitCard.getPrimaryAccountId())
-                            .flatMap(account -> {
-                                Transaction transaction = new Transaction(
-                                    null,
-                                    debitCard.getCustomerId(),
-                                    debitCard.getPrimaryAccountId(),
-                                    ProductCategory.ACCOUNT,
-                                    ProductSubType.YANKI,
-                                    TransactionType.WITHDRAWAL,
-                                    event.getAmount(),
-                                    LocalDateTime.now(),
-                                    null,
-                                    null,
-                                    null,
-                                    null
-                                );
-                                return transactionService.createTransaction(transaction);
-                            })
-                    )
-                    .subscribe(
-                        result -> {
-                            log.info("Successful debit from sender's account: {}", result.getId());
-                            publishProcessedEvent(event, "SUCCESS", null);
-                        },
-                        error -> {
-                            log.error("Error debiting sender's account: {}", error.getMessage());
-                                publishProcessedEvent(event,
-                                    "FAILED",
-                                    "Could not debit sender's" +
-                                        " account: " + error.getMessage());
-                        }
-                    );
-                return;
-            }
-            if (!senderHasCard && receiverHasCard) {
-                //Only the receiver has a card → Yanki debits internally and credits receiver's bank account
-                log.info("Internal debit in Yanki. " +
-                    "Crediting receiver's account...");
-                debitCardClientService.getDebitCardByCardNumber(
-                    event.getReceiverCard())
-                        .flatMap(debitCard ->
-                                accountClientService.getAccountById(debitCard.getPrimaryAccountId())
-                                        .flatMap(account -> {
-                                            Transaction transaction = new Transaction(
-                                                    null,
-                                                    debitCard.getCustomerId(),
-                                                    debitCard.getPrimaryAccountId(),
-                                                    ProductCategory.ACCOUNT,
-                                                    ProductSubType.YANKI,
-                                                    TransactionType.DEPOSIT,
-                                                    event.getAmount(),
-                                                    LocalDateTime.now(),
-                                                    null,
-                                                    null,
-                                                    null,
-                                                    null
-                                            );
-                                            return transactionService.createTransaction(transaction);
-                                        })
-                        )
-                        .subscribe(
-                            result -> {
-                                log.info("Successful credit to receiver's account: {}", result.getId());
-                                publishProcessedEvent(event, "SUCCESS", null);
-                            },
-                            error -> {
-                                log.error("Error crediting receiver's" +
-                                    " account: {}", error.getMessage());
-                                publishProcessedEvent(event, "FAILED",
-                                    "Could not credit receiver's account: " + error.getMessage());
-                            });
-                return;
-            }
-            if (senderHasCard && receiverHasCard) {
-                // Both have cards → Debit and credit in bank accounts
-                Mono<DebitCard> senderCardMono = debitCardClientService
-                    .getDebitCardByCardNumber(event.getSenderCard());
-                Mono<DebitCard> receiverCardMono = debitCardClientService
-                    .getDebitCardByCardNumber(event.getReceiverCard());
-                Mono.zip(senderCardMono, receiverCardMono)
-                        .flatMap(tuple -> {
-                            DebitCard senderCard = tuple.getT1();
-                            DebitCard receiverCard = tuple.getT2();
-                            Mono<Account> senderAccountMono = accountClientService
-                                .getAccountById(senderCard.getPrimaryAccountId());
-                            Mono<Account> receiverAccountMono = accountClientService
-                                .getAccountById(receiverCard.getPrimaryAccountId());
-                            return Mono.zip(senderAccountMono, receiverAccountMono)
-                                    .flatMap(accounts -> {
-                                        Account senderAccount = accounts.getT1();
-                                        Account receiverAccount = accounts.getT2();
-
-                                        Transaction transfer = new Transaction(
+                            accountClientService.getAccountById(debitCard.getPrimaryAccountId())
+                                    .flatMap(account -> {
+                                        Transaction transaction = new Transaction(
                                                 null,
-                                                senderAccount.getCustomerId(),
-                                                senderAccount.getId(),
+                                                debitCard.getCustomerId(),
+                                                debitCard.getPrimaryAccountId(),
                                                 ProductCategory.ACCOUNT,
                                                 ProductSubType.YANKI,
-                                                TransactionType.TRANSFER,
+                                                TransactionType.DEPOSIT,
                                                 event.getAmount(),
                                                 LocalDateTime.now(),
-                                                receiverAccount.getId(),
+                                                null,
+                                                null,
+                                                null,
+                                                null,
                                                 null,
                                                 null,
                                                 null
                                         );
-                                        return transactionService.createTransaction(transfer);
-                                    });
-                        })
-                        .subscribe(
-                            result -> {
-                                log.info("Successful transfer in bank accounts.");
-                                publishProcessedEvent(event, "SUCCESS", null);
-                            },
-                            error -> {
-                                log.error("Error in transfer of bank accounts: {}", error.getMessage());
-                                publishProcessedEvent(event,
-                                    "FAILED",
-                                    "Error in transfer of bank " +
-                                        "accounts: " + error.getMessage());
+                                        return transactionService.createTransaction(transaction);
+                                    })
+                    )
+                    .map(result -> {
+                        log.info("Successful credit to receiver's account: {}", result.getId());
+                        return processedEvent(event, "SUCCESS", null);
+                    });
+        }
+        // Both have cards → Debit and credit in bank accounts
+        Mono<DebitCard> senderCardMono = debitCardClientService
+            .getDebitCardByCardNumber(event.getSenderCard());
+        Mono<DebitCard> receiverCardMono = debitCardClientService
+            .getDebitCardByCardNumber(event.getReceiverCard());
+        return Mono.zip(senderCardMono, receiverCardMono)
+                .flatMap(tuple -> {
+                    DebitCard senderCard = tuple.getT1();
+                    DebitCard receiverCard = tuple.getT2();
+                    Mono<Account> senderAccountMono = accountClientService
+                        .getAccountById(senderCard.getPrimaryAccountId());
+                    Mono<Account> receiverAccountMono = accountClientService
+                        .getAccountById(receiverCard.getPrimaryAccountId());
+                    return Mono.zip(senderAccountMono, receiverAccountMono)
+                            .flatMap(accounts -> {
+                                Account senderAccount = accounts.getT1();
+                                Account receiverAccount = accounts.getT2();
+
+                                Transaction transfer = new Transaction(
+                                        null,
+                                        senderAccount.getCustomerId(),
+                                        senderAccount.getId(),
+                                        ProductCategory.ACCOUNT,
+                                        ProductSubType.YANKI,
+                                        TransactionType.TRANSFER,
+                                        event.getAmount(),
+                                        LocalDateTime.now(),
+                                        receiverAccount.getId(),
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        null
+                                );
+                                return transactionService.createTransaction(transfer);
                             });
-                return;
-            }
-        } catch (Exception e) {
-            log.error("Error processing transaction: {}", e.getMessage());
-            publishProcessedEvent(event, "FAILED", e.getMessage());
+                })
+                .map(result -> {
+                    log.info("Successful transfer in bank accounts.");
+                    return processedEvent(event, "SUCCESS", null);
+                });
+    }
+    // Business rule violations end the event with a FAILED result naming the step that rejected it
+    private YankiTransactionProcessedEvent failedEvent(YankiTransactionEvent event, Throwable error) {
+        if (event.getReceiverCard() == null) {
+            log.error("Error debiting sender's account: {}", error.getMessage());
+            return processedEvent(event, "FAILED", "Could not debit sender's account: " + error.getMessage());
+        }
+        if (event.getSenderCard() == null) {
+            log.error("Error crediting receiver's account: {}", error.getMessage());
+            return processedEvent(event, "FAILED", "Could not credit receiver's account: " + error.getMessage());
         }
+        log.error("Error in transfer of bank accounts: {}", error.getMessage());
+        return processedEvent(event, "FAILED", "Error in transfer of bank accounts: " + error.getMessage());
     }
-    private void publishProcessedEvent(YankiTransactionEvent event, String status, String reason) {
-        YankiTransactionProcessedEvent processedEvent = new YankiTransactionProcessedEvent(
+    private void addKey(List<String> keys, String prefix, String value) {
+        if (value != null) {
+            keys.add(prefix + value);
+        }
+    }
+    private YankiTransactionProcessedEvent processedEvent(YankiTransactionEvent event, String status, String reason) {
+        return new YankiTransactionProcessedEvent(
                 event.getTransactionId(),
                 event.getSenderPhoneNumber(),
                 event.getReceiverPhoneNumber(),
@@ -183,7 +201,10 @@ public class YankiTransactionEventConsumer {
                 reason,
                 Instant.now()
         );
-        kafkaTemplate.send("yanki.transaction.processed", processedEvent);
-        log.info("Sent transaction event processed: {}", processedEvent);
+    }
+    private Mono<Void> publishProcessedEvent(YankiTransactionProcessedEvent processedEvent) {
+        return reactiveKafkaPublisher.send("yanki.transaction.processed",
+                        processedEvent.getTransactionId(), processedEvent)
+                .doOnSuccess(unused -> log.info("Sent transaction event processed: {}", processedEvent));
     }
 }
@@ -0,0 +1,371 @@
+package com.bank.transactionservice.event.serde;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Encodes one class against one schema. Field order comes from the schema, so the payload carries no field names
+final class BinaryCodec {
+    static final byte MAGIC = 0x0;
+    static final int HEADER_LENGTH = 5;
+    private final EventSchema schema;
+    private final Constructor<?> constructor;
+    private final List<Binding> bindings = new ArrayList<>();
+
+    BinaryCodec(EventSchema schema, Class<?> type) {
+        this.schema = schema;
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(type.getName() + " needs a no-argument constructor to be decoded", e);
+        }
+        for (EventSchema.Field schemaField : schema.getFields()) {
+            FieldType fieldType = FieldType.of(schemaField.getType());
+            Field field = findField(type, schemaField.getName());
+            // Fields the reader class no longer has are still read, then dropped
+            if (field != null && !fieldType.accepts(field.getType())) {
+                throw new IllegalStateException("Schema " + schema.getName() + " v" + schema.getVersion()
+                        + " declares " + schemaField.getName() + " as " + schemaField.getType()
+                        + " but " + type.getSimpleName() + " has " + field.getType().getSimpleName());
+            }
+            if (field != null) {
+                field.setAccessible(true);
+            }
+            bindings.add(new Binding(fieldType, field));
+        }
+    }
+
+    byte[] encode(Object value) {
+        Output output = new Output();
+        output.writeByte(MAGIC);
+        output.writeInt(schema.getId());
+        try {
+            for (Binding binding : bindings) {
+                Object fieldValue = binding.field != null ? binding.field.get(value) : null;
+                if (fieldValue == null) {
+                    output.writeByte(0);
+                } else {
+                    output.writeByte(1);
+                    binding.type.write(output, fieldValue);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not encode " + schema.getName(), e);
+        }
+        return output.toByteArray();
+    }
+    Object decode(byte[] data) {
+        Input input = new Input(data, HEADER_LENGTH);
+        try {
+            Object value = constructor.newInstance();
+            for (Binding binding : bindings) {
+                if (input.readByte() == 0) {
+                    continue;
+                }
+                Object fieldValue = binding.type.read(input, binding.field != null ? binding.field.getType() : null);
+                if (binding.field != null) {
+                    binding.field.set(value, fieldValue);
+                }
+            }
+            return value;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not decode " + schema.getName(), e);
+        }
+    }
+    static int schemaId(byte[] data) {
+        if (data.length < HEADER_LENGTH || data[0] != MAGIC) {
+            throw new IllegalArgumentException("Payload is not schema encoded");
+        }
+        return new Input(data, 1).readInt();
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            Field field = Arrays.stream(current.getDeclaredFields())
+                    .filter(candidate -> candidate.getName().equals(name))
+                    .filter(candidate -> !Modifier.isStatic(candidate.getModifiers()))
+                    .findFirst()
+                    .orElse(null);
+            if (field != null) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static final class Binding {
+        private final FieldType type;
+        private final Field field;
+
+        private Binding(FieldType type, Field field) {
+            this.type = type;
+            this.field = field;
+        }
+    }
+
+    enum FieldType {
+        STRING("string", String.class) {
+            @Override
+            void write(Output output, Object value) {
+                output.writeString((String) value);
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                return input.readString();
+            }
+        },
+        INT("int", int.class, Integer.class) {
+            @Override
+            void write(Output output, Object value) {
+                output.writeVarLong(((Number) value).intValue());
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                return (int) input.readVarLong();
+            }
+        },
+        LONG("long", long.class, Long.class) {
+            @Override
+            void write(Output output, Object value) {
+                output.writeVarLong(((Number) value).longValue());
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                return input.readVarLong();
+            }
+        },
+        DOUBLE("double", double.class, Double.class) {
+            @Override
+            void write(Output output, Object value) {
+                output.writeLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                return Double.longBitsToDouble(input.readLong());
+            }
+        },
+        BOOLEAN("boolean", boolean.class, Boolean.class) {
+            @Override
+            void write(Output output, Object value) {
+                output.writeByte((Boolean) value ? 1 : 0);
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                return input.readByte() != 0;
+            }
+        },
+        DECIMAL("decimal", BigDecimal.class) {
+            @Override
+            void write(Output output, Object value) {
+                BigDecimal decimal = (BigDecimal) value;
+                output.writeVarLong(decimal.scale());
+                output.writeBytes(decimal.unscaledValue().toByteArray());
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                int scale = (int) input.readVarLong();
+                return new BigDecimal(new BigInteger(input.readBytes()), scale);
+            }
+        },
+        TIMESTAMP("timestamp", LocalDateTime.class) {
+            @Override
+            void write(Output output, Object value) {
+                LocalDateTime timestamp = (LocalDateTime) value;
+                output.writeVarLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+                output.writeVarLong(timestamp.getNano());
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                long seconds = input.readVarLong();
+                return LocalDateTime.ofEpochSecond(seconds, (int) input.readVarLong(), ZoneOffset.UTC);
+            }
+        },
+        INSTANT("instant", Instant.class) {
+            @Override
+            void write(Output output, Object value) {
+                Instant instant = (Instant) value;
+                output.writeVarLong(instant.getEpochSecond());
+                output.writeVarLong(instant.getNano());
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                long seconds = input.readVarLong();
+                return Instant.ofEpochSecond(seconds, input.readVarLong());
+            }
+        },
+        // Enums travel by name so reordering constants never changes the meaning of old payloads
+        ENUM("enum", Enum.class) {
+            @Override
+            void write(Output output, Object value) {
+                output.writeString(((Enum<?>) value).name());
+            }
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Object read(Input input, Class<?> target) {
+                String name = input.readString();
+                return target != null ? Enum.valueOf((Class<? extends Enum>) target, name) : name;
+            }
+        },
+        STRING_ARRAY("array<string>", List.class) {
+            @Override
+            void write(Output output, Object value) {
+                List<?> values = (List<?>) value;
+                output.writeVarLong(values.size());
+                values.forEach(element -> output.writeString(String.valueOf(element)));
+            }
+            @Override
+            Object read(Input input, Class<?> target) {
+                int size = (int) input.readVarLong();
+                List<String> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(input.readString());
+                }
+                return values;
+            }
+        };
+
+        private final String name;
+        private final List<Class<?>> javaTypes;
+
+        FieldType(String name, Class<?>... javaTypes) {
+            this.name = name;
+            this.javaTypes = List.of(javaTypes);
+        }
+
+        abstract void write(Output output, Object value);
+        abstract Object read(Input input, Class<?> target);
+
+        boolean accepts(Class<?> javaType) {
+            return javaTypes.stream().anyMatch(candidate -> candidate.isAssignableFrom(javaType));
+        }
+        static FieldType of(String name) {
+            return Arrays.stream(values())
+                    .filter(type -> type.name.equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Unknown schema field type " + name));
+        }
+    }
+
+    static final class Output {
+        private byte[] buffer = new byte[128];
+        private int position;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+        // Zig-zag varint, as in Avro, so small magnitudes of either sign take one or two bytes
+        void writeVarLong(long value) {
+            long zigZag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[position++] = (byte) zigZag;
+        }
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+        private void ensure(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+    }
+
+    static final class Input {
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        byte readByte() {
+            require(1);
+            return data[position++];
+        }
+        int readInt() {
+            require(4);
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+        long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+        long readVarLong() {
+            long zigZag = 0;
+            int shift = 0;
+            byte current;
+            do {
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Malformed varint in schema encoded payload");
+                }
+                current = readByte();
+                zigZag |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+        byte[] readBytes() {
+            int length = (int) readVarLong();
+            require(length);
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+        String readString() {
+            int length = (int) readVarLong();
+            require(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+        private void require(int length) {
+            if (length < 0 || position + length > data.length) {
+                throw new IllegalArgumentException("Schema encoded payload is truncated");
+            }
+        }
+    }
+}
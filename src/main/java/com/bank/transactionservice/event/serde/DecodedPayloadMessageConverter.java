@@ -0,0 +1,25 @@
+package com.bank.transactionservice.event.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.utils.Bytes;
+import org.springframework.kafka.support.converter.JsonMessageConverter;
+
+import java.lang.reflect.Type;
+
+// Schema encoded records arrive already decoded; only JSON ones still need binding to the listener's type
+public class DecodedPayloadMessageConverter extends JsonMessageConverter {
+    public DecodedPayloadMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected Object extractAndConvertValue(ConsumerRecord<?, ?> record, Type type) {
+        Object value = record.value();
+        if (value != null && !(value instanceof byte[]) && !(value instanceof String)
+                && !(value instanceof Bytes)) {
+            return value;
+        }
+        return super.extractAndConvertValue(record, type);
+    }
+}
@@ -0,0 +1,29 @@
+package com.bank.transactionservice.event.serde;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventSchema {
+    private int id;
+    private String name;
+    private int version;
+    private String type;
+    private List<Field> fields;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Field {
+        private String name;
+        private String type;
+    }
+}
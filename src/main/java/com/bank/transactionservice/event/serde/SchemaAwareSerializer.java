@@ -0,0 +1,51 @@
+package com.bank.transactionservice.event.serde;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Topics opt in with transaction.kafka.topics.<topic>.format=binary; the rest keep JSON until their consumers migrate
+public class SchemaAwareSerializer implements Serializer<Object> {
+    public static final String BINARY = "binary";
+    private final SchemaRegistry schemaRegistry;
+    private final Environment environment;
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private final Map<String, Boolean> binaryTopics = new ConcurrentHashMap<>();
+
+    public SchemaAwareSerializer(SchemaRegistry schemaRegistry, Environment environment) {
+        this.schemaRegistry = schemaRegistry;
+        this.environment = environment;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+    }
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+        if (isBinary(topic) && schemaRegistry.supports(data.getClass())) {
+            return schemaRegistry.encode(data);
+        }
+        return headers != null ? jsonSerializer.serialize(topic, headers, data) : jsonSerializer.serialize(topic, data);
+    }
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+
+    private boolean isBinary(String topic) {
+        return binaryTopics.computeIfAbsent(topic, name -> BINARY.equalsIgnoreCase(
+                environment.getProperty("transaction.kafka.topics." + name + ".format", "json")));
+    }
+}
@@ -0,0 +1,88 @@
+package com.bank.transactionservice.event.serde;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+// Stand-in for a schema registry service: schemas are JSON files, versions of one type share its class name
+@Component
+@Slf4j
+public class SchemaRegistry {
+    private final Map<Integer, EventSchema> schemasById = new ConcurrentHashMap<>();
+    private final Map<String, EventSchema> latestByType = new ConcurrentHashMap<>();
+    private final Map<String, BinaryCodec> codecs = new ConcurrentHashMap<>();
+
+    public SchemaRegistry(@Value("${transaction.kafka.schema-registry.location:classpath*:schemas/}")
+                          String location) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(location + "*.json");
+        for (Resource resource : resources) {
+            try (InputStream input = resource.getInputStream()) {
+                register(objectMapper.readValue(input, EventSchema.class));
+            }
+        }
+        log.info("Loaded {} event schemas from {}", schemasById.size(), location);
+    }
+
+    public void register(EventSchema schema) {
+        // Validates the schema against the class now instead of on the first record
+        Class<?> type = type(schema);
+        BinaryCodec codec = new BinaryCodec(schema, type);
+        EventSchema existing = schemasById.putIfAbsent(schema.getId(), schema);
+        if (existing != null) {
+            throw new IllegalStateException("Schema ID " + schema.getId() + " is used by both "
+                    + existing.getName() + " v" + existing.getVersion() + " and "
+                    + schema.getName() + " v" + schema.getVersion());
+        }
+        codecs.put(schema.getId() + ":" + type.getName(), codec);
+        BinaryOperator<EventSchema> newest = (current, candidate) ->
+                candidate.getVersion() > current.getVersion() ? candidate : current;
+        latestByType.merge(schema.getType(), schema, newest);
+    }
+    public boolean supports(Class<?> type) {
+        return latestByType.containsKey(type.getName());
+    }
+    public byte[] encode(Object value) {
+        EventSchema schema = latestByType.get(value.getClass().getName());
+        if (schema == null) {
+            throw new IllegalArgumentException("No schema registered for " + value.getClass().getName());
+        }
+        return codec(schema, value.getClass()).encode(value);
+    }
+    // The writer's schema is read from the payload and resolved against the reader's class, as Avro does
+    public <T> T decode(byte[] data, Class<T> readerType) {
+        int schemaId = BinaryCodec.schemaId(data);
+        EventSchema schema = schemasById.get(schemaId);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown schema ID " + schemaId);
+        }
+        Class<?> type = readerType != null ? readerType : type(schema);
+        @SuppressWarnings("unchecked")
+        T value = (T) codec(schema, type).decode(data);
+        return value;
+    }
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= BinaryCodec.HEADER_LENGTH && data[0] == BinaryCodec.MAGIC;
+    }
+
+    private BinaryCodec codec(EventSchema schema, Class<?> type) {
+        return codecs.computeIfAbsent(schema.getId() + ":" + type.getName(), key -> new BinaryCodec(schema, type));
+    }
+    private static Class<?> type(EventSchema schema) {
+        try {
+            return Class.forName(schema.getType());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Schema " + schema.getName() + " refers to unknown type "
+                    + schema.getType(), e);
+        }
+    }
+}
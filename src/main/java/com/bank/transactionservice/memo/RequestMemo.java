@@ -0,0 +1,60 @@
+package com.bank.transactionservice.memo;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Entities read from downstream services during one operation, carried in the Reactor context so an account, card,
+// credit or customer asked for by several steps of the same event or request is resolved once. Failed reads are
+// not kept, and without an open memo every lookup goes straight to its loader. Every step gets the same instance,
+// so a step preparing a write changes a copy and the memo only ever holds what was read or written
+public final class RequestMemo {
+    private static final Object CONTEXT_KEY = RequestMemo.class;
+    private static final Duration FOREVER = Duration.ofMillis(Long.MAX_VALUE);
+    private final Map<String, Mono<?>> entries = new ConcurrentHashMap<>();
+
+    private RequestMemo() {
+    }
+
+    public static Context open(Context context) {
+        return context.put(CONTEXT_KEY, new RequestMemo());
+    }
+    public static Optional<RequestMemo> current(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    // Concurrent callers asking for the same entity share one load
+    @SuppressWarnings("unchecked")
+    public static <T> Mono<T> memoize(Class<T> type, String id, Supplier<Mono<T>> loader) {
+        return Mono.deferContextual(context -> current(context)
+                .map(memo -> (Mono<T>) memo.entries.computeIfAbsent(key(type, id), key -> loader.get()
+                        .cache(value -> FOREVER, error -> Duration.ZERO, () -> Duration.ZERO)))
+                .orElseGet(loader));
+    }
+    // Only what this operation already read or wrote; never triggers a load
+    @SuppressWarnings("unchecked")
+    public static <T> Mono<T> peek(Class<T> type, String id) {
+        return Mono.deferContextual(context -> current(context)
+                .map(memo -> (Mono<T>) memo.entries.getOrDefault(key(type, id), Mono.empty()))
+                .orElseGet(Mono::empty));
+    }
+    // For writes: the entity the downstream returns replaces the one read before it, and a failed write drops the
+    // entry since the downstream may have applied it anyway
+    public static <T> Mono<T> store(Class<T> type, String id, Mono<T> write) {
+        return Mono.deferContextual(context -> current(context)
+                .map(memo -> write
+                        .doOnNext(value -> memo.entries.put(key(type, id), Mono.just(value)))
+                        .doOnError(error -> memo.entries.remove(key(type, id))))
+                .orElse(write));
+    }
+
+    private static String key(Class<?> type, String id) {
+        return type.getSimpleName() + ":" + id;
+    }
+}
@@ -0,0 +1,19 @@
+package com.bank.transactionservice.memo;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+// Opens a fresh memo for every API request, so nothing read for one request is seen by another
+@Component
+public class RequestMemoWebFilter implements WebFilter {
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().value().startsWith("/api/")) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).contextWrite(RequestMemo::open);
+    }
+}
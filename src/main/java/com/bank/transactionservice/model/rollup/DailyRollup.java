@@ -0,0 +1,59 @@
+package com.bank.transactionservice.model.rollup;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "daily_rollups")
+@CompoundIndex(name = "scope_key_date", def = "{'scope': 1, 'key': 1, 'date': 1}")
+public class DailyRollup {
+    @Id
+    private String id; //scope:key:yyyy-MM-dd
+    private RollupScope scope;
+    private String key; //customerId or productId
+    private String date; //yyyy-MM-dd
+    private long count;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal totalAmount;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal totalCommissions;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal minAmount;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal maxAmount;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal balanceSum; //sum of balances after each transaction, PRODUCT scope only
+    private long balanceCount;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal closingBalance;
+    private Map<String, Long> countByType;
+    private Map<String, BigDecimal> amountByType;
+    private Map<String, BigDecimal> amountByCategory;
+
+    public static String idOf(RollupScope scope, String key, String date) {
+        return scope + ":" + key + ":" + date;
+    }
+
+    // Mean of the balances left by the day's transactions: not weighted by how long each balance was held, and
+    // absent for days without transactions rather than carried over from the day before
+    public BigDecimal getMeanBalanceAfterTransactions() {
+        if (balanceSum == null || balanceCount == 0) {
+            return null;
+        }
+        return balanceSum.divide(BigDecimal.valueOf(balanceCount), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,5 @@
+package com.bank.transactionservice.model.rollup;
+
+public enum RollupScope {
+    CUSTOMER, PRODUCT
+}
@@ -0,0 +1,45 @@
+package com.bank.transactionservice.model.statement;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "account_statements")
+public class AccountStatement {
+    @Id
+    private String id; //productId:yyyy-MM
+    private String productId;
+    private String customerId;
+    private String month;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal openingBalance;
+    private LocalDateTime openingBalanceAt; //date of the entry the opening balance was taken from
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal closingBalance;
+    private LocalDateTime closingBalanceAt; //date of the entry the closing balance was taken from
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal totalCredits;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal totalDebits;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal totalCommissions;
+    private int entryCount;
+    private List<StatementEntry> entries;
+
+    public static String idOf(String productId, String month) {
+        return productId + ":" + month;
+    }
+}
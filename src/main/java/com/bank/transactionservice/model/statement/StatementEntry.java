@@ -0,0 +1,30 @@
+package com.bank.transactionservice.model.statement;
+
+import com.bank.transactionservice.model.transaction.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementEntry {
+    private String transactionId;
+    private LocalDateTime transactionDate;
+    private TransactionType transactionType;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal amount; //positive for money in, negative for money out
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal commissions;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal balanceAfter;
+    private String counterpartyAccountId;
+    private String merchantName;
+}
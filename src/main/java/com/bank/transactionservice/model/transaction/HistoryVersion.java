@@ -0,0 +1,22 @@
+package com.bank.transactionservice.model.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Objects;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryVersion {
+    private long version;
+    private Instant modifiedAt;
+
+    public String eTag(String fields, String view) {
+        // Weak tag: the body may be gzip encoded and its shape depends on the requested projection
+        return "W/\"" + Long.toHexString(version) + "-" + Long.toHexString(modifiedAt.toEpochMilli())
+                + "-" + Integer.toHexString(Objects.hash(fields, view)) + "\"";
+    }
+}
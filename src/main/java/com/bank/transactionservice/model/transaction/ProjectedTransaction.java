@@ -0,0 +1,11 @@
+package com.bank.transactionservice.model.transaction;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.NoArgsConstructor;
+
+// A transaction read with only some of its fields; the fields left out are omitted from the JSON instead of being
+// rendered as null, while full transactions keep their shape
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedTransaction extends Transaction {
+}
@@ -26,4 +26,7 @@ public class Transaction {
     private BigDecimal commissions;
     private String sourceAccountId; //account only for debit card
     private String merchantName;
+    private BigDecimal balanceBefore; //product balance the transaction was applied to
+    private BigDecimal balanceAfter; //product balance once the transaction is applied
+    private BigDecimal destinationBalanceAfter; //Only for transfer
 }
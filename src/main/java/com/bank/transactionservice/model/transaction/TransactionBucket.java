@@ -0,0 +1,33 @@
+package com.bank.transactionservice.model.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "transaction_buckets")
+@CompoundIndex(name = "product_month", def = "{'productId': 1, 'month': 1}")
+public class TransactionBucket {
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    @Id
+    private String id;
+    private String productId;
+    private String month; //yyyy-MM of the entries' transactionDate
+    private int count;
+    private List<TransactionBucketEntry> entries;
+
+    public static String monthOf(TemporalAccessor date) {
+        return MONTH_FORMAT.format(date);
+    }
+}
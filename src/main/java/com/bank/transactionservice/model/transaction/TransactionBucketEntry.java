@@ -0,0 +1,84 @@
+package com.bank.transactionservice.model.transaction;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBucketEntry {
+    @Field("i")
+    private String id;
+    @Field("c")
+    private String customerId;
+    @Field("pc")
+    private ProductCategory productCategory;
+    @Field("ps")
+    private ProductSubType productSubType;
+    @Field("t")
+    private TransactionType transactionType;
+    @Field("a")
+    private BigDecimal amount;
+    @Field("d")
+    private LocalDateTime transactionDate;
+    @Field("da")
+    private String destinationAccountId;
+    @Field("cm")
+    private BigDecimal commissions;
+    @Field("sa")
+    private String sourceAccountId;
+    @Field("m")
+    private String merchantName;
+    @Field("bb")
+    private BigDecimal balanceBefore;
+    @Field("b")
+    private BigDecimal balanceAfter;
+    @Field("db")
+    private BigDecimal destinationBalanceAfter;
+
+    public static TransactionBucketEntry from(Transaction transaction) {
+        return TransactionBucketEntry.builder()
+                .id(transaction.getId())
+                .customerId(transaction.getCustomerId())
+                .productCategory(transaction.getProductCategory())
+                .productSubType(transaction.getProductSubType())
+                .transactionType(transaction.getTransactionType())
+                .amount(transaction.getAmount())
+                .transactionDate(transaction.getTransactionDate())
+                .destinationAccountId(transaction.getDestinationAccountId())
+                .commissions(transaction.getCommissions())
+                .sourceAccountId(transaction.getSourceAccountId())
+                .merchantName(transaction.getMerchantName())
+                .balanceBefore(transaction.getBalanceBefore())
+                .balanceAfter(transaction.getBalanceAfter())
+                .destinationBalanceAfter(transaction.getDestinationBalanceAfter())
+                .build();
+    }
+
+    public Transaction toTransaction(String productId) {
+        return Transaction.builder()
+                .id(id)
+                .customerId(customerId)
+                .productId(productId)
+                .productCategory(productCategory)
+                .productSubType(productSubType)
+                .transactionType(transactionType)
+                .amount(amount)
+                .transactionDate(transactionDate)
+                .destinationAccountId(destinationAccountId)
+                .commissions(commissions)
+                .sourceAccountId(sourceAccountId)
+                .merchantName(merchantName)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .destinationBalanceAfter(destinationBalanceAfter)
+                .build();
+    }
+}
@@ -0,0 +1,8 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.statement.AccountStatement;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface AccountStatementRepository extends ReactiveMongoRepository<AccountStatement, String>,
+        AccountStatementRepositoryCustom {
+}
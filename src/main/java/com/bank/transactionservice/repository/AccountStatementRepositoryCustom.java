@@ -0,0 +1,11 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.statement.StatementEntry;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+public interface AccountStatementRepositoryCustom {
+    Mono<Void> appendEntry(String productId, String customerId, String month,
+                           BigDecimal openingBalance, StatementEntry entry);
+}
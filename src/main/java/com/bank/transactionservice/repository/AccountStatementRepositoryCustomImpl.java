@@ -0,0 +1,75 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.statement.AccountStatement;
+import com.bank.transactionservice.model.statement.StatementEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.Decimal128;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+@Slf4j
+public class AccountStatementRepositoryCustomImpl implements AccountStatementRepositoryCustom {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    // Idempotent per transaction, and independent of arrival order: the opening balance comes from the earliest
+    // entry and the closing balance from the latest, so entries written concurrently or retried late cannot leave
+    // the month ending on an older balance
+    @Override
+    public Mono<Void> appendEntry(String productId, String customerId, String month,
+                                  BigDecimal openingBalance, StatementEntry entry) {
+        String id = AccountStatement.idOf(productId, month);
+        LocalDateTime at = entry.getTransactionDate();
+        // A statement written before balances were dated keeps its opening balance and takes the closing balance
+        // of the next entry
+        Criteria later = new Criteria().orOperator(Criteria.where("closingBalanceAt").exists(false),
+                Criteria.where("closingBalanceAt").lte(at));
+        Criteria earlier = new Criteria().orOperator(Criteria.where("openingBalance").exists(false),
+                Criteria.where("openingBalanceAt").gt(at));
+        return append(id, productId, customerId, month, entry)
+                .then(Mono.when(
+                        moveBalance(id, "closingBalance", later, entry.getBalanceAfter(), at),
+                        moveBalance(id, "openingBalance", earlier, openingBalance, at)));
+    }
+
+    private Mono<Void> append(String id, String productId, String customerId, String month, StatementEntry entry) {
+        BigDecimal commissions = entry.getCommissions() != null ? entry.getCommissions() : BigDecimal.ZERO;
+        String totalField = entry.getAmount().signum() >= 0 ? "totalCredits" : "totalDebits";
+        Criteria statement = Criteria.where("_id").is(id);
+        if (entry.getTransactionId() != null) {
+            statement = statement.and("entries.transactionId").ne(entry.getTransactionId());
+        }
+        Update update = new Update()
+                .setOnInsert("productId", productId)
+                .setOnInsert("customerId", customerId)
+                .setOnInsert("month", month)
+                .inc(totalField, new Decimal128(entry.getAmount().abs()))
+                .inc("totalCommissions", new Decimal128(commissions))
+                .inc("entryCount", 1)
+                .push("entries", entry);
+        // A statement that already holds the entry no longer matches, so the upsert collides with it on _id
+        Query query = Query.query(statement);
+        return Mono.defer(() -> reactiveMongoTemplate.upsert(query, update, AccountStatement.class))
+                .then()
+                .onErrorResume(DuplicateKeyException.class, duplicate -> {
+                    log.info("Transaction {} is already in statement {}", entry.getTransactionId(), id);
+                    return Mono.empty();
+                });
+    }
+    private Mono<Void> moveBalance(String id, String field, Criteria replaced, BigDecimal balance,
+                                   LocalDateTime at) {
+        Query query = Query.query(Criteria.where("_id").is(id).andOperator(replaced));
+        Update update = new Update()
+                .set(field, new Decimal128(balance))
+                .set(field + "At", at);
+        return Mono.defer(() -> reactiveMongoTemplate.updateFirst(query, update, AccountStatement.class)).then();
+    }
+}
@@ -0,0 +1,14 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface DailyRollupRepository extends ReactiveMongoRepository<DailyRollup, String>,
+        DailyRollupRepositoryCustom {
+    @Query(value = "{ 'scope': ?0, 'key': ?1, 'date': { $gte: ?2, $lte: ?3 } }", sort = "{ 'date': 1 }")
+    Flux<DailyRollup> findByScopeAndKeyAndDateRange(RollupScope scope, String key,
+                                                    String startDate, String endDate);
+}
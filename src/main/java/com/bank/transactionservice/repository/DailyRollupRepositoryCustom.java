@@ -0,0 +1,9 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.transaction.Transaction;
+import reactor.core.publisher.Mono;
+
+public interface DailyRollupRepositoryCustom {
+    Mono<Void> increment(RollupScope scope, String key, String date, Transaction transaction);
+}
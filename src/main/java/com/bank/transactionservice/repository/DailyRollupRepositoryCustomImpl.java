@@ -0,0 +1,51 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.transaction.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+@RequiredArgsConstructor
+public class DailyRollupRepositoryCustomImpl implements DailyRollupRepositoryCustom {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Void> increment(RollupScope scope, String key, String date, Transaction transaction) {
+        Decimal128 amount = new Decimal128(transaction.getAmount());
+        BigDecimal commissions = transaction.getCommissions() != null
+                ? transaction.getCommissions()
+                : BigDecimal.ZERO;
+        Query query = Query.query(Criteria.where("_id").is(DailyRollup.idOf(scope, key, date)));
+        Update update = new Update()
+                .setOnInsert("scope", scope)
+                .setOnInsert("key", key)
+                .setOnInsert("date", date)
+                .inc("count", 1L)
+                .inc("totalAmount", amount)
+                .inc("totalCommissions", new Decimal128(commissions))
+                .min("minAmount", amount)
+                .max("maxAmount", amount);
+        if (transaction.getTransactionType() != null) {
+            update.inc("countByType." + transaction.getTransactionType(), 1L)
+                    .inc("amountByType." + transaction.getTransactionType(), amount);
+        }
+        if (transaction.getProductCategory() != null) {
+            update.inc("amountByCategory." + transaction.getProductCategory(), amount);
+        }
+        if (scope == RollupScope.PRODUCT && transaction.getBalanceAfter() != null) {
+            Decimal128 balance = new Decimal128(transaction.getBalanceAfter());
+            update.inc("balanceSum", balance)
+                    .inc("balanceCount", 1L)
+                    .set("closingBalance", balance);
+        }
+        return reactiveMongoTemplate.upsert(query, update, DailyRollup.class).then();
+    }
+}
@@ -0,0 +1,72 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+// Copies transactions saved before bucket writes were enabled into their monthly buckets, oldest first so each
+// bucket keeps its entries in date order. Appends are idempotent, so the backfill can be run again after it stops
+// and transactions saved while it runs are not duplicated
+@Component
+@Slf4j
+public class TransactionBucketBackfill implements ApplicationRunner, DisposableBean {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final TransactionBucketWriter transactionBucketWriter;
+    private final boolean backfillEnabled;
+    private final boolean bucketWritesEnabled;
+    private volatile Disposable running;
+
+    public TransactionBucketBackfill(ReactiveMongoTemplate reactiveMongoTemplate,
+                                     TransactionBucketWriter transactionBucketWriter,
+                                     @Value("${transaction.storage.bucket-backfill-enabled:false}")
+                                     boolean backfillEnabled,
+                                     @Value("${transaction.storage.bucket-writes-enabled:false}")
+                                     boolean bucketWritesEnabled) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.transactionBucketWriter = transactionBucketWriter;
+        this.backfillEnabled = backfillEnabled;
+        this.bucketWritesEnabled = bucketWritesEnabled;
+    }
+
+    // Runs in the background so startup does not wait on a full collection scan
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!backfillEnabled) {
+            return;
+        }
+        if (!bucketWritesEnabled) {
+            log.warn("Transaction bucket backfill skipped: bucket writes are disabled, so new transactions would "
+                    + "be missing from the buckets it fills");
+            return;
+        }
+        running = backfill()
+                .doOnNext(count -> log.info("Transaction bucket backfill finished: {} transactions written", count))
+                .doOnError(error -> log.error("Transaction bucket backfill failed: {}", error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .subscribe();
+    }
+    public Mono<Long> backfill() {
+        Query query = Query.query(Criteria.where("productId").ne(null))
+                .with(Sort.by("transactionDate", "_id"));
+        return reactiveMongoTemplate.find(query, Transaction.class)
+                .concatMap(transaction -> transactionBucketWriter.append(transaction).thenReturn(transaction))
+                .count();
+    }
+    @Override
+    public void destroy() {
+        Disposable backfill = running;
+        if (backfill != null) {
+            backfill.dispose();
+        }
+    }
+}
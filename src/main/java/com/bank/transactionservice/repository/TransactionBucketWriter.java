@@ -0,0 +1,83 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionBucket;
+import com.bank.transactionservice.model.transaction.TransactionBucketEntry;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAfterSaveCallback;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Component
+@Slf4j
+public class TransactionBucketWriter implements ReactiveAfterSaveCallback<Transaction> {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final boolean bucketWritesEnabled;
+    private final int maxBucketEntries;
+
+    public TransactionBucketWriter(@Lazy ReactiveMongoTemplate reactiveMongoTemplate,
+                                   @Value("${transaction.storage.bucket-writes-enabled:false}")
+                                   boolean bucketWritesEnabled,
+                                   @Value("${transaction.storage.bucket-max-entries:500}") int maxBucketEntries) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.bucketWritesEnabled = bucketWritesEnabled;
+        this.maxBucketEntries = maxBucketEntries;
+        log.info("Transaction bucket writes enabled: {} (max entries per bucket: {})",
+                bucketWritesEnabled, maxBucketEntries);
+    }
+
+    @Override
+    public Publisher<Transaction> onAfterSave(Transaction entity, Document document, String collection) {
+        if (!bucketWritesEnabled || entity.getProductId() == null) {
+            return Mono.just(entity);
+        }
+        return append(entity).thenReturn(entity);
+    }
+
+    // Idempotent per transaction: a transaction saved again replaces its own entry instead of being appended twice.
+    // Failures are returned to the save, so a bucket never silently falls behind the flat collection
+    public Mono<Void> append(Transaction transaction) {
+        LocalDateTime transactionDate = transaction.getTransactionDate() != null
+                ? transaction.getTransactionDate()
+                : LocalDateTime.now();
+        String month = TransactionBucket.monthOf(transactionDate);
+        TransactionBucketEntry entry = TransactionBucketEntry.from(transaction);
+        // Full buckets no longer match the count filter, so the upsert opens a new bucket for the month
+        Query open = Query.query(Criteria.where("productId").is(transaction.getProductId())
+                .and("month").is(month)
+                .and("count").lt(maxBucketEntries));
+        Update push = new Update()
+                .push("entries", entry)
+                .inc("count", 1);
+        Mono<UpdateResult> appended = Mono.defer(() ->
+                reactiveMongoTemplate.upsert(open, push, TransactionBucket.class));
+        Mono<UpdateResult> written = transaction.getId() == null
+                ? appended
+                : replace(transaction, entry).filter(result -> result.getMatchedCount() > 0)
+                        .switchIfEmpty(appended);
+        return written
+                .doOnSuccess(result -> log.info("Transaction {} written to bucket {} of product {}",
+                        transaction.getId(), month, transaction.getProductId()))
+                .doOnError(error -> log.error("Error appending transaction {} to bucket: {}",
+                        transaction.getId(), error.getMessage()))
+                .then();
+    }
+
+    private Mono<UpdateResult> replace(Transaction transaction, TransactionBucketEntry entry) {
+        Query existing = Query.query(Criteria.where("productId").is(transaction.getProductId())
+                .and("entries.i").is(transaction.getId()));
+        return reactiveMongoTemplate.updateFirst(existing, new Update().set("entries.$", entry),
+                TransactionBucket.class);
+    }
+}
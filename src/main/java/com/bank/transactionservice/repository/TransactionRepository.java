@@ -1,14 +1,16 @@
 package com.bank.transactionservice.repository;
 
 import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionType;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.time.LocalDate;
+import java.util.Collection;
 
-public interface TransactionRepository extends ReactiveMongoRepository<Transaction, String> {
+public interface TransactionRepository extends ReactiveMongoRepository<Transaction, String>,
+        TransactionRepositoryCustom {
     Flux<Transaction> findByCustomerId(String customerId);
-    Flux<Transaction> findByProductId(String productId);
-    Flux<Transaction> findByCustomerIdAndProductId(String customerId, String productId);
-    Flux<Transaction> findByTransactionDateBetween(LocalDate startDate, LocalDate endDate);
+    // Counted on the flat collection, which is written with every transaction, so fees never depend on buckets
+    Mono<Long> countByProductIdAndTransactionTypeIn(String productId, Collection<TransactionType> transactionTypes);
 }
@@ -0,0 +1,15 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.Transaction;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface TransactionRepositoryCustom {
+    Flux<Transaction> findByProductId(String productId);
+    Flux<Transaction> findByCustomerIdAndProductId(String customerId, String productId);
+    Flux<Transaction> findByTransactionDateBetween(LocalDate startDate, LocalDate endDate);
+    Flux<Transaction> findByCustomerIdIncludingFields(String customerId, Collection<String> fields);
+    Flux<Transaction> findByProductIdIncludingFields(String productId, Collection<String> fields);
+}
@@ -0,0 +1,86 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.ProjectedTransaction;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+@Slf4j
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final boolean bucketReadsEnabled;
+
+    public TransactionRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate,
+                                           @Value("${transaction.storage.bucket-reads-enabled:false}")
+                                           boolean bucketReadsEnabled) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.bucketReadsEnabled = bucketReadsEnabled;
+        log.info("Transaction bucket reads enabled: {}", bucketReadsEnabled);
+    }
+
+    @Override
+    public Flux<Transaction> findByProductId(String productId) {
+        if (!bucketReadsEnabled) {
+            return reactiveMongoTemplate.find(Query.query(Criteria.where("productId").is(productId)),
+                    Transaction.class);
+        }
+        return findBuckets(Criteria.where("productId").is(productId))
+                .flatMapIterable(this::toTransactions);
+    }
+
+    @Override
+    public Flux<Transaction> findByCustomerIdAndProductId(String customerId, String productId) {
+        if (!bucketReadsEnabled) {
+            return reactiveMongoTemplate.find(Query.query(Criteria.where("customerId").is(customerId)
+                    .and("productId").is(productId)), Transaction.class);
+        }
+        return findByProductId(productId)
+                .filter(transaction -> customerId.equals(transaction.getCustomerId()));
+    }
+
+    // Always served from the flat collection: buckets are indexed by product first, so a date range across every
+    // product would have to scan all of them
+    @Override
+    public Flux<Transaction> findByTransactionDateBetween(LocalDate startDate, LocalDate endDate) {
+        return reactiveMongoTemplate.find(Query.query(Criteria.where("transactionDate")
+                .gt(startDate).lt(endDate)), Transaction.class);
+    }
+
+    @Override
+    public Flux<Transaction> findByCustomerIdIncludingFields(String customerId, Collection<String> fields) {
+        return findIncludingFields(Criteria.where("customerId").is(customerId), fields);
+    }
+
+    @Override
+    public Flux<Transaction> findByProductIdIncludingFields(String productId, Collection<String> fields) {
+        return findIncludingFields(Criteria.where("productId").is(productId), fields);
+    }
+
+    private Flux<Transaction> findIncludingFields(Criteria criteria, Collection<String> fields) {
+        Query query = Query.query(criteria);
+        fields.forEach(field -> query.fields().include(field));
+        return reactiveMongoTemplate.find(query, ProjectedTransaction.class,
+                        reactiveMongoTemplate.getCollectionName(Transaction.class))
+                .cast(Transaction.class);
+    }
+
+    private Flux<TransactionBucket> findBuckets(Criteria criteria) {
+        Query query = Query.query(criteria).with(Sort.by("month", "_id"));
+        return reactiveMongoTemplate.find(query, TransactionBucket.class);
+    }
+
+    private Iterable<Transaction> toTransactions(TransactionBucket bucket) {
+        return () -> bucket.getEntries().stream()
+                .map(entry -> entry.toTransaction(bucket.getProductId()))
+                .iterator();
+    }
+}
@@ -0,0 +1,93 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.model.statement.AccountStatement;
+import com.bank.transactionservice.model.statement.StatementEntry;
+import com.bank.transactionservice.model.transaction.ProductCategory;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.repository.AccountStatementRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AccountStatementService {
+    private final AccountStatementRepository accountStatementRepository;
+
+    public Mono<Void> recordTransaction(Transaction transaction) {
+        if (transaction.getBalanceAfter() == null || transaction.getAmount() == null) {
+            return Mono.empty();
+        }
+        LocalDateTime transactionDate = TransactionPosting.dateOf(transaction);
+        String month = YearMonth.from(transactionDate).toString();
+        String productId = TransactionPosting.productIdOf(transaction);
+        StatementEntry entry = StatementEntry.builder()
+                .transactionId(transaction.getId())
+                .transactionDate(transactionDate)
+                .transactionType(transaction.getTransactionType())
+                .amount(signedAmount(transaction))
+                .commissions(transaction.getCommissions())
+                .balanceAfter(transaction.getBalanceAfter())
+                .counterpartyAccountId(transaction.getDestinationAccountId())
+                .merchantName(transaction.getMerchantName())
+                .build();
+        Mono<Void> destinationEntry = Mono.empty();
+        if (transaction.getTransactionType() == TransactionType.TRANSFER
+                && transaction.getDestinationAccountId() != null
+                && transaction.getDestinationBalanceAfter() != null) {
+            StatementEntry incoming = StatementEntry.builder()
+                    .transactionId(transaction.getId())
+                    .transactionDate(transactionDate)
+                    .transactionType(TransactionType.TRANSFER)
+                    .amount(transaction.getAmount())
+                    .balanceAfter(transaction.getDestinationBalanceAfter())
+                    .counterpartyAccountId(productId)
+                    .build();
+            destinationEntry = accountStatementRepository.appendEntry(transaction.getDestinationAccountId(), null,
+                    month, transaction.getDestinationBalanceAfter().subtract(transaction.getAmount()), incoming);
+        }
+        return accountStatementRepository.appendEntry(productId, transaction.getCustomerId(), month,
+                        openingBalance(transaction, entry), entry)
+                .then(destinationEntry)
+                .doOnSuccess(unused -> log.info("Statement {} updated with transaction {}",
+                        AccountStatement.idOf(productId, month), transaction.getId()))
+                .onErrorResume(error -> {
+                    log.error("Error updating statement for transaction {}: {}",
+                            transaction.getId(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    public Mono<AccountStatement> getStatement(String productId, YearMonth month) {
+        return Deadline.bound(accountStatementRepository.findById(AccountStatement.idOf(productId, month.toString())),
+                        null)
+                .doOnError(error -> log.error("Error retrieving statement {} for product {}: {}",
+                        month, productId, error.getMessage()));
+    }
+    // Transactions saved before balanceBefore was recorded fall back to undoing the entry, which misses any
+    // commission charged on top of the amount
+    private static BigDecimal openingBalance(Transaction transaction, StatementEntry entry) {
+        return transaction.getBalanceBefore() != null
+                ? transaction.getBalanceBefore()
+                : entry.getBalanceAfter().subtract(entry.getAmount());
+    }
+    private BigDecimal signedAmount(Transaction transaction) {
+        switch (transaction.getTransactionType()) {
+            case DEPOSIT:
+                return transaction.getAmount();
+            case CREDIT_PAYMENT:
+                return transaction.getProductCategory() == ProductCategory.CREDIT_CARD
+                        ? transaction.getAmount()
+                        : transaction.getAmount().negate();
+            default:
+                return transaction.getAmount().negate();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.client.CustomerClientService;
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.memo.RequestMemo;
+import com.bank.transactionservice.model.customer.Customer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Customers change rarely, so lookups are served from a small in-process cache backed by Redis before falling back
+// to customer-service. Entries are kept by document number and by customer ID; the local copy expires much sooner
+// than the Redis one because an eviction only clears the local cache of the instance that made it
+@Service
+@Slf4j
+public class CustomerCacheService {
+    private static final Duration CACHE_TIMEOUT = Duration.ofSeconds(2);
+    private static final String DOCUMENT_KEY_PREFIX = "Customer:document:";
+    private static final String ID_KEY_PREFIX = "Customer:id:";
+    private final CustomerClientService customerClientService;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration localTtl;
+    private final Duration redisTtl;
+    private final Map<String, LocalEntry> local;
+
+    public CustomerCacheService(CustomerClientService customerClientService,
+                                ReactiveRedisTemplate<String, String> redisTemplate,
+                                @Value("${transaction.customer-cache.local-ttl-ms:30000}") long localTtlMs,
+                                @Value("${transaction.customer-cache.redis-ttl-ms:600000}") long redisTtlMs,
+                                @Value("${transaction.customer-cache.local-max-entries:10000}") int localMaxEntries) {
+        this.customerClientService = customerClientService;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.localTtl = Duration.ofMillis(localTtlMs);
+        this.redisTtl = Duration.ofMillis(redisTtlMs);
+        // Access-ordered, so the least recently used customer is dropped once the cache is full
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                return size() > localMaxEntries;
+            }
+        };
+    }
+
+    // Customers are only read here, so the whole lookup is resolved once per operation
+    public Mono<Customer> getCustomerByDocumentNumber(String documentNumber) {
+        Supplier<Mono<Customer>> lookup = () -> lookupByDocumentNumber(documentNumber);
+        return RequestMemo.memoize(Customer.class, "document:" + documentNumber, lookup);
+    }
+    private Mono<Customer> lookupByDocumentNumber(String documentNumber) {
+        String key = DOCUMENT_KEY_PREFIX + documentNumber;
+        return cached(key)
+                .switchIfEmpty(Mono.defer(() -> customerClientService.getCustomerByDocumentNumber(documentNumber)
+                        .flatMap(customer -> save(customer).thenReturn(customer))));
+    }
+    // Only customers already looked up by document are known here; customer-service has no lookup by ID
+    public Mono<Customer> getCustomerById(String customerId) {
+        return cached(ID_KEY_PREFIX + customerId);
+    }
+    // Invalidation hooks for when a customer is known to have changed
+    public Mono<Void> evict(Customer customer) {
+        return evictKeys(DOCUMENT_KEY_PREFIX + customer.getDocumentNumber(), ID_KEY_PREFIX + customer.getId());
+    }
+    public Mono<Void> evictByDocumentNumber(String documentNumber) {
+        String key = DOCUMENT_KEY_PREFIX + documentNumber;
+        // The ID entry is found through the cached customer, wherever it is still held
+        return cached(key)
+                .map(customer -> new String[] {key, ID_KEY_PREFIX + customer.getId()})
+                .defaultIfEmpty(new String[] {key})
+                .flatMap(this::evictKeys);
+    }
+
+    // Local first, then Redis; a Redis entry is copied into the local cache for the next caller
+    private Mono<Customer> cached(String key) {
+        return Mono.defer(() -> {
+            Customer customer = localGet(key);
+            if (customer != null) {
+                return Mono.just(customer);
+            }
+            return Deadline.bound(redisTemplate.opsForValue().get(key), CACHE_TIMEOUT)
+                    .flatMap(json -> Mono.fromCallable(() -> objectMapper.readValue(json, Customer.class)))
+                    .doOnNext(this::localPut)
+                    .onErrorResume(error -> {
+                        log.warn("Customer cache lookup failed for key {}: {}", key, error.getMessage());
+                        return Mono.empty();
+                    });
+        });
+    }
+    // Caching is best effort: a Redis failure leaves the lookup to customer-service next time
+    private Mono<Void> save(Customer customer) {
+        localPut(customer);
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(customer))
+                .flatMapMany(json -> Flux.concat(
+                        redisTemplate.opsForValue().set(DOCUMENT_KEY_PREFIX + customer.getDocumentNumber(), json,
+                                redisTtl),
+                        redisTemplate.opsForValue().set(ID_KEY_PREFIX + customer.getId(), json, redisTtl)))
+                .then()
+                .onErrorResume(error -> {
+                    log.warn("Error caching customer {}: {}", customer.getId(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    private Mono<Void> evictKeys(String... keys) {
+        return Mono.defer(() -> {
+            synchronized (local) {
+                for (String key : keys) {
+                    local.remove(key);
+                }
+            }
+            return redisTemplate.delete(Flux.fromArray(keys))
+                    .doOnNext(deleted -> log.info("Evicted {} cached customer entries", deleted))
+                    .then();
+        });
+    }
+    private Customer localGet(String key) {
+        synchronized (local) {
+            LocalEntry entry = local.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtNanos - System.nanoTime() <= 0) {
+                local.remove(key);
+                return null;
+            }
+            return entry.customer;
+        }
+    }
+    private void localPut(Customer customer) {
+        LocalEntry entry = new LocalEntry(customer, System.nanoTime() + localTtl.toNanos());
+        synchronized (local) {
+            local.put(DOCUMENT_KEY_PREFIX + customer.getDocumentNumber(), entry);
+            local.put(ID_KEY_PREFIX + customer.getId(), entry);
+        }
+    }
+
+    private static final class LocalEntry {
+        private final Customer customer;
+        private final long expiresAtNanos;
+
+        private LocalEntry(Customer customer, long expiresAtNanos) {
+            this.customer = customer;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
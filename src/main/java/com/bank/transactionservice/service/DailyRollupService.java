@@ -0,0 +1,55 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.repository.DailyRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DailyRollupService {
+    private final DailyRollupRepository dailyRollupRepository;
+
+    public Mono<Void> recordTransaction(Transaction transaction) {
+        if (transaction.getAmount() == null) {
+            return Mono.empty();
+        }
+        String date = TransactionPosting.dateOf(transaction).toLocalDate().toString();
+        String productId = TransactionPosting.productIdOf(transaction);
+        Mono<Void> customerRollup = transaction.getCustomerId() == null
+                ? Mono.empty()
+                : dailyRollupRepository.increment(RollupScope.CUSTOMER, transaction.getCustomerId(),
+                        date, transaction);
+        Mono<Void> productRollup = productId == null
+                ? Mono.empty()
+                : dailyRollupRepository.increment(RollupScope.PRODUCT, productId, date, transaction);
+        return Mono.when(customerRollup, productRollup)
+                .doOnSuccess(unused -> log.info("Daily rollups for {} updated with transaction {}",
+                        date, transaction.getId()))
+                .onErrorResume(error -> {
+                    log.error("Error updating daily rollups for transaction {}: {}",
+                            transaction.getId(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    public Flux<DailyRollup> getRollups(RollupScope scope, String key, LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            return Flux.error(new IllegalArgumentException("startDate must not be after endDate"));
+        }
+        return Deadline.boundMany(dailyRollupRepository.findByScopeAndKeyAndDateRange(scope, key,
+                        startDate.toString(), endDate.toString()))
+                .doOnComplete(() -> log.info("Retrieved {} rollups for {} from {} to {}",
+                        scope, key, startDate, endDate))
+                .doOnError(error -> log.error("Error retrieving {} rollups for {}: {}",
+                        scope, key, error.getMessage()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.bank.transactionservice.service;
 
+import com.bank.transactionservice.deadline.Deadline;
 import com.bank.transactionservice.model.account.Account;
 import com.bank.transactionservice.model.credit.Credit;
 import com.bank.transactionservice.model.creditcard.CreditCard;
@@ -7,22 +8,42 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuples;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 @Service
 @Slf4j
 public class TransactionCacheService {
     private final ReactiveRedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
+    private static final Duration CACHE_TIMEOUT = Duration.ofSeconds(5);
     private static final String ACCOUNT_KEY_PREFIX = "Account:";
     private static final String CREDIT_KEY_PREFIX = "Credit:";
     private static final String CREDIT_CARD_KEY_PREFIX = "CreditCard:";
-    public TransactionCacheService(ReactiveRedisTemplate<String, String> redisTemplate) {
+    private static final String VERSION_KEY_PREFIX = "CacheVersion:";
+    private static final RedisScript<Long> GUARDED_MSET_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/cache-guarded-mset.lua"), Long.class);
+    private final long versionRetentionMs;
+    // A version outlives any event still in flight for its entity; once it expires the next write is taken as is
+    public TransactionCacheService(ReactiveRedisTemplate<String, String> redisTemplate,
+                                   @Value("${transaction.cache.version-retention-ms:604800000}")
+                                   long versionRetentionMs) {
         this.redisTemplate = redisTemplate;
+        this.versionRetentionMs = versionRetentionMs;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
         this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -31,15 +52,7 @@ public class TransactionCacheService {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("Account ID cannot be null"));
         }
-        String key = ACCOUNT_KEY_PREFIX + id;
-        return Mono.fromCallable(() -> objectMapper.writeValueAsString(account))
-                .doOnNext(json -> log.info("Serialized Account JSON: {}", json))
-                .doOnError(error -> log.error("Error serializing account: {}", error.getMessage()))
-                .flatMap(accountJson -> redisTemplate.opsForValue().set(key, accountJson)
-                        .doOnNext(result -> log.info("Redis SET result {}", result))
-                        .doOnSuccess(result -> log.info("Successfully cached Account with ID {}", id))
-                        .doOnError(error -> log.error("Error storing Account in Redis: {}", error.getMessage()))
-                        .then());
+        return saveAll(ACCOUNT_KEY_PREFIX, Collections.singletonMap(id, account), Account::getModifiedAt);
     }
     public Mono<Account> getAccount(String id) {
         if (id == null) {
@@ -68,7 +81,7 @@ public class TransactionCacheService {
                         return Mono.empty();
                     }
                 })
-                .timeout(Duration.ofSeconds(5))
+                .transform(lookup -> Deadline.bound(lookup, CACHE_TIMEOUT))
                 .doOnError(TimeoutException.class, e ->
                         log.error("Redis operation timed out for key: {}", key))
                 .doOnError(e -> {
@@ -85,15 +98,7 @@ public class TransactionCacheService {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("Credit ID cannot be null"));
         }
-        return Mono.fromCallable(() -> objectMapper.writeValueAsString(credit))
-                .flatMap(creditJson -> {
-                    String key = CREDIT_KEY_PREFIX + id;
-                    log.info("Saving Credit to cache with key: {}", key);
-                    return redisTemplate.opsForValue().set(key, creditJson);
-                })
-                .doOnSuccess(result -> log.info("Successfully cached Credit with ID: {}", id))
-                .doOnError(error -> log.error("Error Credit: {}", error.getMessage()))
-                .then();
+        return saveAll(CREDIT_KEY_PREFIX, Collections.singletonMap(id, credit), Credit::getModifiedAt);
     }
     public Mono<Credit> getCredit(String id) {
         if (id == null) {
@@ -122,7 +127,7 @@ public class TransactionCacheService {
                         return Mono.empty();
                     }
                 })
-                .timeout(Duration.ofSeconds(5))
+                .transform(lookup -> Deadline.bound(lookup, CACHE_TIMEOUT))
                 .doOnError(TimeoutException.class, e ->
                         log.error("Redis operation timed out for key: {}", key))
                 .doOnError(e -> {
@@ -139,15 +144,7 @@ public class TransactionCacheService {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("CreditCard ID cannot be null"));
         }
-        return Mono.fromCallable(() -> objectMapper.writeValueAsString(creditCard))
-                .flatMap(creditCardJson -> {
-                    String key = CREDIT_CARD_KEY_PREFIX + id;
-                    log.info("Saving Credit to cache with key: {}", key);
-                    return redisTemplate.opsForValue().set(key, creditCardJson);
-                })
-                .doOnSuccess(result -> log.info("Successfully cached CreditCard with ID: {}", id))
-                .doOnError(error -> log.error("Error CreditCard: {}", error.getMessage()))
-                .then();
+        return saveAll(CREDIT_CARD_KEY_PREFIX, Collections.singletonMap(id, creditCard), CreditCard::getModifiedAt);
     }
     public Mono<CreditCard> getCreditCard(String id) {
         if (id == null) {
@@ -176,7 +173,7 @@ public class TransactionCacheService {
                         return Mono.empty();
                     }
                 })
-                .timeout(Duration.ofSeconds(5))
+                .transform(lookup -> Deadline.bound(lookup, CACHE_TIMEOUT))
                 .doOnError(TimeoutException.class, e ->
                         log.error("Redis operation timed out for key: {}", key))
                 .doOnError(e -> {
@@ -189,4 +186,41 @@ public class TransactionCacheService {
                     return Mono.empty();
                 });
     }
+    public Mono<Void> saveAccounts(Map<String, Account> accounts) {
+        return saveAll(ACCOUNT_KEY_PREFIX, accounts, Account::getModifiedAt);
+    }
+    public Mono<Void> saveCredits(Map<String, Credit> credits) {
+        return saveAll(CREDIT_KEY_PREFIX, credits, Credit::getModifiedAt);
+    }
+    public Mono<Void> saveCreditCards(Map<String, CreditCard> creditCards) {
+        return saveAll(CREDIT_CARD_KEY_PREFIX, creditCards, CreditCard::getModifiedAt);
+    }
+    // Every write goes through here: entries older than the modifiedAt last cached for them are skipped inside
+    // Redis, so late events and reads racing an update never regress the cache
+    private <T> Mono<Void> saveAll(String keyPrefix, Map<String, T> entities,
+                                   Function<T, LocalDateTime> modifiedAtExtractor) {
+        if (entities.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+            List<String> keys = new ArrayList<>();
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(versionRetentionMs));
+            for (Map.Entry<String, T> entry : entities.entrySet()) {
+                LocalDateTime modifiedAt = modifiedAtExtractor.apply(entry.getValue());
+                long version = modifiedAt != null ? modifiedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : -1L;
+                keys.add(keyPrefix + entry.getKey());
+                keys.add(VERSION_KEY_PREFIX + keyPrefix + entry.getKey());
+                args.add(String.valueOf(version));
+                args.add(objectMapper.writeValueAsString(entry.getValue()));
+            }
+            return Tuples.of(keys, args);
+        })
+                .flatMap(script -> redisTemplate.execute(GUARDED_MSET_SCRIPT, script.getT1(), script.getT2()).next())
+                .doOnNext(written -> log.info("Successfully cached {} of {} entries with prefix {}",
+                        written, entities.size(), keyPrefix))
+                .doOnError(error -> log.error("Error caching entries with prefix {}: {}",
+                        keyPrefix, error.getMessage()))
+                .then();
+    }
 }
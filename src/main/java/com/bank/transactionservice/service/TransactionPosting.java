@@ -0,0 +1,22 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.model.transaction.ProductCategory;
+import com.bank.transactionservice.model.transaction.Transaction;
+
+import java.time.LocalDateTime;
+
+// Where a transaction is posted in the per-product views built from it: a debit card transaction moves the balance
+// of the account it was charged to, and one saved without a date is posted now
+final class TransactionPosting {
+    private TransactionPosting() {
+    }
+
+    static LocalDateTime dateOf(Transaction transaction) {
+        return transaction.getTransactionDate() != null ? transaction.getTransactionDate() : LocalDateTime.now();
+    }
+    static String productIdOf(Transaction transaction) {
+        return transaction.getProductCategory() == ProductCategory.DEBIT_CARD
+                ? transaction.getSourceAccountId()
+                : transaction.getProductId();
+    }
+}
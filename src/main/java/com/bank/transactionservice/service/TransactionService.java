@@ -3,10 +3,14 @@ package com.bank.transactionservice.service;
 import com.bank.transactionservice.client.AccountClientService;
 import com.bank.transactionservice.client.CreditClientService;
 import com.bank.transactionservice.client.DebitCardClientService;
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.memo.RequestMemo;
 import com.bank.transactionservice.dto.BalanceUpdatedEvent;
+import com.bank.transactionservice.event.ReactiveKafkaPublisher;
 import com.bank.transactionservice.model.account.Account;
 import com.bank.transactionservice.model.credit.Credit;
 import com.bank.transactionservice.model.credit.CreditStatus;
+import com.bank.transactionservice.model.creditcard.CreditCard;
 import com.bank.transactionservice.model.creditcard.PaymentStatus;
 import com.bank.transactionservice.model.debitcard.DebitCard;
 import com.bank.transactionservice.model.transaction.ProductSubType;
@@ -15,38 +19,94 @@ import com.bank.transactionservice.model.transaction.TransactionType;
 import com.bank.transactionservice.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class TransactionService {
+    private static final String BALANCE_UPDATED_TOPIC = "bank.account.balance.updated";
+    private static final String SUMMARY_VIEW = "summary";
+    private static final String FULL_VIEW = "full";
+    private static final List<TransactionType> FEE_BEARING_TYPES = List.of(
+            TransactionType.WITHDRAWAL, TransactionType.DEPOSIT);
+    private static final List<String> SUMMARY_FIELDS = List.of(
+            "transactionDate", "transactionType", "amount", "merchantName");
+    private static final Set<String> PROJECTABLE_FIELDS = Arrays.stream(Transaction.class.getDeclaredFields())
+            .filter(field -> !field.isSynthetic() && !Modifier.isStatic(field.getModifiers()))
+            .map(Field::getName)
+            .collect(Collectors.toSet());
     private final TransactionRepository transactionRepository;
     private final TransactionCacheService transactionCacheService;
     private final AccountClientService accountClientService;
     private final CreditClientService creditClientService;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ReactiveKafkaPublisher reactiveKafkaPublisher;
     private  final DebitCardClientService debitCardClientService;
+    private final AccountStatementService accountStatementService;
+    private final DailyRollupService dailyRollupService;
+    private final TransactionVersionService transactionVersionService;
 
     public Mono<Transaction> createTransaction(Transaction transaction) {
         return validateAndProcessTransaction(transaction)
-                .flatMap(result -> {
-                    result.setTransactionDate(LocalDateTime.now());
-                    return transactionRepository.save(result);
-                })
+                .flatMap(this::persist)
                 .doOnSuccess(saved -> log.info("Transaction created successfully: {}", saved.getId()))
                 .doOnError(error -> log.error("Error creating transaction: {}", error.getMessage()));
     }
+    // Withdrawals of one account applied in order against a single balance read and written back with one update.
+    // Returns the withdrawals that were applied; those the running balance cannot cover are left out. A failure after
+    // the update leaves the group partly recorded, so callers must not run the same group again
+    public Mono<List<Transaction>> createAccountWithdrawals(Account account, List<Transaction> withdrawals) {
+        BigDecimal balance = BigDecimal.valueOf(account.getBalance());
+        List<Transaction> applied = new ArrayList<>();
+        for (Transaction withdrawal : withdrawals) {
+            BigDecimal amount = withdrawal.getAmount();
+            if (amount == null || amount.signum() < 0 || amount.compareTo(balance) > 0) {
+                log.warn("Rejecting withdrawal of {} from account {} with balance {}",
+                        amount, account.getId(), balance);
+                continue;
+            }
+            withdrawal.setBalanceBefore(balance);
+            balance = balance.subtract(amount);
+            withdrawal.setBalanceAfter(balance);
+            applied.add(withdrawal);
+        }
+        if (applied.isEmpty()) {
+            return Mono.just(applied);
+        }
+        BigDecimal finalBalance = balance;
+        return accountClientService.updateAccountBalance(account.getId(), finalBalance)
+                .then(publishBalanceToDebitCards(account.getId(), finalBalance))
+                .thenMany(Flux.fromIterable(applied).concatMap(this::persist))
+                .then(Mono.fromSupplier(() -> applied))
+                .doOnSuccess(saved -> log.info("{} withdrawals applied to account {} with one balance update",
+                        saved.size(), account.getId()));
+    }
+    private Mono<Transaction> persist(Transaction transaction) {
+        transaction.setTransactionDate(LocalDateTime.now());
+        return Deadline.admit(transactionRepository.save(transaction), null)
+                .flatMap(saved -> Mono.when(
+                                accountStatementService.recordTransaction(saved),
+                                dailyRollupService.recordTransaction(saved),
+                                transactionVersionService.recordTransaction(saved))
+                        .thenReturn(saved));
+    }
     private Mono<Transaction> validateAndProcessTransaction(Transaction transaction) {
         switch (transaction.getProductCategory()) {
             case ACCOUNT:
@@ -92,6 +152,8 @@ public class TransactionService {
 
         return processWithAvailableAccount(transaction, accountsToTry, 0, amountToProcess);
     }
+    // Only a lookup that fails or an account that cannot cover the amount moves on to the next account; once one
+    // is debited, a later failure is the operation's own and must not debit another
     private Mono<Transaction> processWithAvailableAccount(Transaction transaction,
                                                           List<String> accountIds,
                                                           int currentIndex,
@@ -100,50 +162,48 @@ public class TransactionService {
             return Mono.error(new IllegalArgumentException("Insufficient balance in all associated accounts"));
         }
         String currentAccountId = accountIds.get(currentIndex);
+        boolean primary = currentIndex == 0;
+        Mono<Transaction> nextAccount = Mono.defer(() ->
+                processWithAvailableAccount(transaction, accountIds, currentIndex + 1, amount));
         return accountClientService.getAccountById(currentAccountId)
-                .flatMap(currentAccount -> {
-                    BigDecimal accountBalance = BigDecimal.valueOf(currentAccount.getBalance());
-                    if (accountBalance.compareTo(amount) >= 0) {
-                        BigDecimal newBalance = accountBalance.subtract(amount);
-                        return accountClientService.updateAccountBalance(currentAccountId, newBalance)
-                                .then(Mono.defer(() -> {
-                                    transaction.setSourceAccountId(currentAccountId);
-                                    if (currentIndex == 0) {
-                                        return debitCardClientService.getDebitCardByPrimaryAccountId(currentAccountId)
-                                                .flatMapMany(Flux::fromIterable)
-                                                .flatMap(debitCard -> {
-                                                    BalanceUpdatedEvent event = new BalanceUpdatedEvent(
-                                                            currentAccountId,
-                                                            newBalance,
-                                                            debitCard.getCardNumber()
-                                                    );
-                                                    kafkaTemplate.send("bank.account.balance.updated", event);
-                                                    return Mono.just(transaction);
-                                                })
-                                                .collectList()
-                                                .thenReturn(transaction)
-                                                .defaultIfEmpty(transaction);
-                                    }
-                                    return Mono.just(transaction);
-                                }));
-                    } else {
-                        return processWithAvailableAccount(transaction, accountIds, currentIndex + 1, amount);
-                    }
-                })
+                .map(currentAccount -> Optional.of(BigDecimal.valueOf(currentAccount.getBalance())))
                 .onErrorResume(e -> {
                     log.error("Error processing with account {}: {}", currentAccountId, e.getMessage());
-                    return processWithAvailableAccount(transaction, accountIds, currentIndex + 1, amount);
-                });
+                    return Mono.just(Optional.empty());
+                })
+                .flatMap(accountBalance -> accountBalance
+                        .filter(balance -> balance.compareTo(amount) >= 0)
+                        .map(balance -> debit(transaction, currentAccountId, balance, balance.subtract(amount),
+                                primary))
+                        .orElse(nextAccount));
     }
+    private Mono<Transaction> debit(Transaction transaction, String accountId, BigDecimal balance,
+                                    BigDecimal newBalance, boolean primary) {
+        return accountClientService.updateAccountBalance(accountId, newBalance)
+                .then(Mono.defer(() -> {
+                    transaction.setSourceAccountId(accountId);
+                    transaction.setBalanceBefore(balance);
+                    transaction.setBalanceAfter(newBalance);
+                    if (!primary) {
+                        return Mono.just(transaction);
+                    }
+                    // The balance is already debited, so a lost event must not fail the transaction
+                    return publishBalanceToDebitCards(accountId, newBalance)
+                            .onErrorResume(error -> Mono.empty())
+                            .thenReturn(transaction);
+                }));
+    }
+    // An account this operation already read from account-service is reused as is; one found only in the Redis
+    // cache is not memoized, so the balance update still starts from what account-service returns
     public Mono<Transaction> processAccountTransaction(Transaction transaction) {
-        return transactionCacheService.getAccount(transaction.getProductId())
+        return RequestMemo.peek(Account.class, transaction.getProductId())
+                .switchIfEmpty(transactionCacheService.getAccount(transaction.getProductId()))
                 .switchIfEmpty(accountClientService.getAccountById(transaction.getProductId())
                         .flatMap(account -> transactionCacheService.saveAccount(transaction.getProductId(), account)
                                 .thenReturn(account)))
-                .flatMap(account -> transactionRepository.findByProductId(transaction.getProductId())
-                        .filter(e -> e.getTransactionType().equals(TransactionType.WITHDRAWAL) ||
-                                e.getTransactionType().equals(TransactionType.DEPOSIT))
-                        .count()
+                .flatMap(account -> Deadline
+                        .bound(transactionRepository.countByProductIdAndTransactionTypeIn(transaction.getProductId(),
+                                FEE_BEARING_TYPES), null)
                         .flatMap(transactionCount -> {
                             BigDecimal newBalance = calculateNewBalance(account.getBalance(), transaction);
                             if ((transaction.getProductSubType() != ProductSubType.YANKI
@@ -169,6 +229,7 @@ public class TransactionService {
                                                 BigDecimal destinationNewBalance = BigDecimal
                                                         .valueOf(destinationAccount.getBalance())
                                                         .add(transaction.getAmount());
+                                                transaction.setDestinationBalanceAfter(destinationNewBalance);
                                                 return accountClientService.updateAccountBalance(
                                                         transaction.getDestinationAccountId(),
                                                         destinationNewBalance
@@ -177,58 +238,42 @@ public class TransactionService {
                                 }
                             }
                             BigDecimal finalNewBalance = newBalance;
+                            transaction.setBalanceBefore(BigDecimal.valueOf(account.getBalance()));
+                            transaction.setBalanceAfter(finalNewBalance);
                             return updateAccountBalanceMono
-                                    .then(debitCardClientService
-                                        .getDebitCardByPrimaryAccountId(
-                                        transaction.getProductId()))
-                                    .flatMapMany(Flux::fromIterable)
-                                    .flatMap(debitCard -> {
-                                        BalanceUpdatedEvent event = new BalanceUpdatedEvent(
-                                                transaction.getProductId(),
-                                                finalNewBalance,
-                                                debitCard.getCardNumber()
-                                        );
-                                        return Mono.fromFuture(kafkaTemplate.send(
-                                            "bank.account.balance.updated",
-                                            event).completable())
-                                                .thenReturn(transaction);
-                                    })
-                                    .collectList()
+                                    .then(publishBalanceToDebitCards(transaction.getProductId(), finalNewBalance))
                                     .then(destinationBalanceMono
-                                            .flatMap(destinationNewBalance ->
-                                                    debitCardClientService.getDebitCardByPrimaryAccountId(
-                                                        transaction.getDestinationAccountId())
-                                                            .flatMapMany(Flux::fromIterable)
-                                                            .flatMap(destinationDebitCard -> {
-                                                                BalanceUpdatedEvent destinationEvent =
-                                                                    new BalanceUpdatedEvent(
-                                                                        transaction.getDestinationAccountId(),
-                                                                        destinationNewBalance,
-                                                                        destinationDebitCard.getCardNumber()
-                                                                    );
-                                                                return Mono.fromFuture(kafkaTemplate.send(
-                                                                    "bank.account.balance.updated",
-                                                                    destinationEvent).completable())
-                                                                        .thenReturn(transaction);
-                                                            })
-                                                            .collectList()
-                                                            .thenReturn(transaction)
-                                            )
+                                            .flatMap(destinationNewBalance -> publishBalanceToDebitCards(
+                                                    transaction.getDestinationAccountId(), destinationNewBalance)
+                                                    .thenReturn(transaction))
                                             .defaultIfEmpty(transaction)
                                     )
                                     .defaultIfEmpty(transaction);
                         })
                 );
     }
+    private Mono<Void> publishBalanceToDebitCards(String accountId, BigDecimal balance) {
+        return debitCardClientService.getDebitCardByPrimaryAccountId(accountId)
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(debitCard -> publishBalanceUpdated(accountId,
+                        new BalanceUpdatedEvent(accountId, balance, debitCard.getCardNumber())))
+                .then();
+    }
+    // Keyed by account so every balance change of one account is consumed in order from one partition
+    private Mono<Void> publishBalanceUpdated(String accountId, BalanceUpdatedEvent event) {
+        return reactiveKafkaPublisher.send(BALANCE_UPDATED_TOPIC, accountId, event);
+    }
     private Mono<Transaction> processCreditTransaction(Transaction transaction) {
-        return transactionCacheService.getCredit(transaction.getProductId())
+        return RequestMemo.peek(Credit.class, transaction.getProductId())
+                .switchIfEmpty(transactionCacheService.getCredit(transaction.getProductId()))
                 .switchIfEmpty(creditClientService.getCreditById(transaction.getProductId())
                         .flatMap(credit -> transactionCacheService.saveCredit(transaction.getProductId(), credit)
                                 .thenReturn(credit)))
                 .flatMap(credit -> {
                     if (transaction.getTransactionType() == TransactionType.CREDIT_PAYMENT) {
                         BigDecimal newBalance = calculateNewCreditBalance(credit.getRemainingBalance(), transaction);
-                        Credit updatedCredit = credit;
+                        // The credit may be the one memoized for this operation, shared with every other step
+                        Credit updatedCredit = credit.toBuilder().build();
 
                         if (newBalance.compareTo(BigDecimal.ZERO) <= 0) {
                             updatedCredit.setCreditStatus(CreditStatus.FINISHED);
@@ -244,7 +289,9 @@ public class TransactionService {
                                 updatedCredit.setPaymentStatus(PaymentStatus.PENDING);
                             }
                         }
+                        transaction.setBalanceBefore(credit.getRemainingBalance());
                         updatedCredit.setRemainingBalance(newBalance);
+                        transaction.setBalanceAfter(newBalance);
                         updatedCredit.setModifiedAt(LocalDateTime.now());
                         return creditClientService
                                 .updateCredit(updatedCredit)
@@ -254,7 +301,8 @@ public class TransactionService {
                 });
     }
     private Mono<Transaction> processCreditCardTransaction(Transaction transaction) {
-        return transactionCacheService.getCreditCard(transaction.getProductId())
+        return RequestMemo.peek(CreditCard.class, transaction.getProductId())
+                .switchIfEmpty(transactionCacheService.getCreditCard(transaction.getProductId()))
                 .switchIfEmpty(creditClientService.getCreditCardById(transaction.getProductId())
                         .flatMap(creditCard ->
                                 transactionCacheService
@@ -263,6 +311,8 @@ public class TransactionService {
                 .flatMap(creditCard -> {
                     BigDecimal newBalance = calculateNewCreditCardBalance(creditCard.getAvailableBalance(),
                             transaction);
+                    transaction.setBalanceBefore(creditCard.getAvailableBalance());
+                    transaction.setBalanceAfter(newBalance);
                     return creditClientService.updateCreditCardBalance(transaction.getProductId(), newBalance)
                             .thenReturn(transaction);
                 });
@@ -319,24 +369,72 @@ public class TransactionService {
         }
     }
     public Flux<Transaction> getTransactionsByCustomerId(String customerId) {
-        return transactionRepository.findByCustomerId(customerId)
+        return Deadline.boundMany(transactionRepository.findByCustomerId(customerId))
                 .doOnComplete(() -> log.info("Retrieved transactions for customer: {}", customerId))
                 .doOnError(error -> log.error("Error retrieving transactions for customer {}: {}",
                         customerId, error.getMessage()));
     }
     public Flux<Transaction> getTransactionsByProductId(String productId) {
-        return transactionRepository.findByProductId(productId)
+        return Deadline.boundMany(transactionRepository.findByProductId(productId))
                 .doOnComplete(() -> log.info("Retrieved transactions for product: {}", productId))
                 .doOnError(error -> log.error("Error retrieving transactions for product {}: {}",
                         productId, error.getMessage()));
     }
+    public Flux<Transaction> getTransactionsByCustomerId(String customerId, String fields, String view) {
+        return Flux.defer(() -> {
+            List<String> projection = resolveProjection(fields, view);
+            if (projection.isEmpty()) {
+                return getTransactionsByCustomerId(customerId);
+            }
+            return Deadline.boundMany(transactionRepository.findByCustomerIdIncludingFields(customerId, projection))
+                    .doOnComplete(() -> log.info("Retrieved projected transactions {} for customer: {}",
+                            projection, customerId))
+                    .doOnError(error -> log.error("Error retrieving projected transactions for customer {}: {}",
+                            customerId, error.getMessage()));
+        });
+    }
+    public Flux<Transaction> getTransactionsByProductId(String productId, String fields, String view) {
+        return Flux.defer(() -> {
+            List<String> projection = resolveProjection(fields, view);
+            if (projection.isEmpty()) {
+                return getTransactionsByProductId(productId);
+            }
+            return Deadline.boundMany(transactionRepository.findByProductIdIncludingFields(productId, projection))
+                    .doOnComplete(() -> log.info("Retrieved projected transactions {} for product: {}",
+                            projection, productId))
+                    .doOnError(error -> log.error("Error retrieving projected transactions for product {}: {}",
+                            productId, error.getMessage()));
+        });
+    }
+    private List<String> resolveProjection(String fields, String view) {
+        if (fields != null && !fields.isBlank()) {
+            Set<String> requested = Arrays.stream(fields.split(","))
+                    .map(String::trim)
+                    .filter(field -> !field.isEmpty())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            requested.stream()
+                    .filter(field -> !PROJECTABLE_FIELDS.contains(field))
+                    .findFirst()
+                    .ifPresent(field -> {
+                        throw new IllegalArgumentException("Unknown transaction field: " + field);
+                    });
+            return new ArrayList<>(requested);
+        }
+        if (view == null || view.isBlank() || FULL_VIEW.equalsIgnoreCase(view)) {
+            return Collections.emptyList();
+        }
+        if (SUMMARY_VIEW.equalsIgnoreCase(view)) {
+            return SUMMARY_FIELDS;
+        }
+        throw new IllegalArgumentException("Unknown transaction view: " + view);
+    }
     public Mono<Transaction> getTransactionById(String transactionId) {
-        return transactionRepository.findById(transactionId)
+        return Deadline.bound(transactionRepository.findById(transactionId), null)
                 .switchIfEmpty(Mono.error(new RuntimeException("This transaction doesn exist")));
     }
     public Flux<Transaction> getTransactionsByCustomerIdAndProductId(String customerId, String productId) {
         return validateOwnership(customerId, productId)
-                .thenMany(transactionRepository.findByCustomerIdAndProductId(customerId, productId))
+                .thenMany(Deadline.boundMany(transactionRepository.findByCustomerIdAndProductId(customerId, productId)))
                 .doOnComplete(() -> log.info("Retrieved " +
                         "transactions for product: {}", productId))
                 .doOnError(e -> log.error("Error retrieving " +
@@ -359,10 +457,13 @@ public class TransactionService {
                     return Mono.error(new IllegalArgumentException("Account does not belong to customer"));
                 })
                 .switchIfEmpty(
-                        accountClientService.getAccountById(accountId)
-                                .flatMap(account -> {
+                        accountClientService.getAccountAllowingStale(accountId)
+                                .flatMap(read -> {
+                                    Account account = read.getValue();
                                     if (account.getCustomerId().equals(customerId)) {
-                                        return transactionCacheService.saveAccount(accountId, account)
+                                        // A stale copy answers the check but is not written over the cache
+                                        return read.isStale() ? Mono.just(true)
+                                                : transactionCacheService.saveAccount(accountId, account)
                                                 .thenReturn(true);
                                     }
                                     return Mono.error(new IllegalArgumentException("Account does not " +
@@ -383,10 +484,12 @@ public class TransactionService {
                     return Mono.error(new IllegalArgumentException("Credit does not belong to customer"));
                 })
                 .switchIfEmpty(
-                        creditClientService.getCreditById(creditId)
-                                .flatMap(credit -> {
+                        creditClientService.getCreditAllowingStale(creditId)
+                                .flatMap(read -> {
+                                    Credit credit = read.getValue();
                                     if (credit.getCustomerId().equals(customerId)) {
-                                        return transactionCacheService.saveCredit(creditId, credit)
+                                        return read.isStale() ? Mono.just(true)
+                                                : transactionCacheService.saveCredit(creditId, credit)
                                                 .thenReturn(true);
                                     }
                                     return Mono.error(new IllegalArgumentException("Credit does not " +
@@ -406,11 +509,12 @@ public class TransactionService {
                     return Mono.error(new IllegalArgumentException("CreditCard does not belong to customer"));
                 })
                 .switchIfEmpty(
-                        creditClientService.getCreditCardById(creditCardId)
-                                .flatMap(creditCard -> {
+                        creditClientService.getCreditCardAllowingStale(creditCardId)
+                                .flatMap(read -> {
+                                    CreditCard creditCard = read.getValue();
                                     if (creditCard.getCustomerId().equals(customerId)) {
-                                        return transactionCacheService
-                                                .saveCreditCard(creditCardId, creditCard)
+                                        return read.isStale() ? Mono.just(true)
+                                                : transactionCacheService.saveCreditCard(creditCardId, creditCard)
                                                 .thenReturn(true);
                                     }
                                     return Mono.error(new IllegalArgumentException("CreditCard does not " +
@@ -422,6 +526,6 @@ public class TransactionService {
                 );
     }
     public Flux<Transaction> getTrasactionsByDate(LocalDate startDate, LocalDate endDate) {
-        return transactionRepository.findByTransactionDateBetween(startDate, endDate);
+        return Deadline.boundMany(transactionRepository.findByTransactionDateBetween(startDate, endDate));
     }
 }
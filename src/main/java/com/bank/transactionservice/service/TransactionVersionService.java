@@ -0,0 +1,93 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.model.transaction.HistoryVersion;
+import com.bank.transactionservice.model.transaction.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class TransactionVersionService {
+    private static final String PRODUCT_KEY_PREFIX = "TransactionVersion:product:";
+    private static final String CUSTOMER_KEY_PREFIX = "TransactionVersion:customer:";
+    private static final String VERSION_FIELD = "version";
+    private static final String MODIFIED_AT_FIELD = "modifiedAt";
+    private static final Duration LOOKUP_TIMEOUT = Duration.ofSeconds(1);
+    private final ReactiveHashOperations<String, String, String> hashOperations;
+    // Versions that could neither be bumped nor dropped; no tag is handed out for them until one is dropped
+    private final Set<String> unversioned = ConcurrentHashMap.newKeySet();
+
+    public TransactionVersionService(ReactiveRedisTemplate<String, String> redisTemplate) {
+        this.hashOperations = redisTemplate.opsForHash();
+    }
+
+    public Mono<Void> recordTransaction(Transaction transaction) {
+        Mono<Void> productVersion = transaction.getProductId() != null
+                ? bump(PRODUCT_KEY_PREFIX + transaction.getProductId())
+                : Mono.empty();
+        Mono<Void> customerVersion = transaction.getCustomerId() != null
+                ? bump(CUSTOMER_KEY_PREFIX + transaction.getCustomerId())
+                : Mono.empty();
+        return Mono.when(productVersion, customerVersion);
+    }
+    public Mono<HistoryVersion> getProductVersion(String productId) {
+        return getVersion(PRODUCT_KEY_PREFIX + productId);
+    }
+    public Mono<HistoryVersion> getCustomerVersion(String customerId) {
+        return getVersion(CUSTOMER_KEY_PREFIX + customerId);
+    }
+    // A version that could not be bumped is dropped, so the next read starts a new one with a fresh modifiedAt and
+    // no tag handed out before this write still matches. One that cannot be dropped either is served without a tag
+    // until a later bump or read manages to drop it, instead of answering 304 for a history that has changed
+    private Mono<Void> bump(String key) {
+        return hashOperations.increment(key, VERSION_FIELD, 1L)
+                .flatMap(version -> hashOperations.put(key, MODIFIED_AT_FIELD,
+                        String.valueOf(System.currentTimeMillis())))
+                .doOnNext(put -> unversioned.remove(key))
+                .then()
+                .onErrorResume(error -> {
+                    log.error("Error bumping history version {}, dropping it: {}", key, error.getMessage());
+                    return drop(key).onErrorResume(dropError -> {
+                        log.error("Error dropping history version {}, serving it untagged: {}",
+                                key, dropError.getMessage());
+                        unversioned.add(key);
+                        return Mono.empty();
+                    });
+                });
+    }
+    private Mono<HistoryVersion> getVersion(String key) {
+        // Histories written before versions were tracked start at version 0 on their first read
+        Mono<HistoryVersion> version = read(key)
+                .switchIfEmpty(Mono.defer(() -> hashOperations.putIfAbsent(key, VERSION_FIELD, "0")
+                        .then(hashOperations.putIfAbsent(key, MODIFIED_AT_FIELD,
+                                String.valueOf(System.currentTimeMillis())))
+                        .then(read(key))));
+        return Mono.defer(() -> unversioned.contains(key) ? drop(key).then(version) : version)
+                .transform(lookup -> Deadline.bound(lookup, LOOKUP_TIMEOUT))
+                .onErrorResume(error -> {
+                    log.error("Error retrieving history version {}: {}", key, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+    private Mono<Void> drop(String key) {
+        return hashOperations.delete(key)
+                .doOnNext(deleted -> unversioned.remove(key))
+                .then();
+    }
+    private Mono<HistoryVersion> read(String key) {
+        return hashOperations.multiGet(key, List.of(VERSION_FIELD, MODIFIED_AT_FIELD))
+                .filter(values -> values.size() == 2 && values.get(0) != null && values.get(1) != null)
+                .map(values -> new HistoryVersion(Long.parseLong(values.get(0)),
+                        Instant.ofEpochMilli(Long.parseLong(values.get(1)))));
+    }
+}
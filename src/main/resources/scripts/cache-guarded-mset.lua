@@ -0,0 +1,17 @@
+-- KEYS holds (entity key, version key) pairs; the version key keeps the modifiedAt last written to the entity key.
+-- ARGV[1] is how long a version is kept in millis, followed by (modifiedAt epoch millis or -1, json) pairs in the
+-- same order as the KEYS pairs.
+local retention = ARGV[1]
+local written = 0
+for i = 1, #KEYS, 2 do
+    local incoming = tonumber(ARGV[i + 1])
+    local current = tonumber(redis.call('GET', KEYS[i + 1]))
+    if incoming < 0 or current == nil or incoming >= current then
+        redis.call('SET', KEYS[i], ARGV[i + 2])
+        if incoming >= 0 then
+            redis.call('SET', KEYS[i + 1], incoming, 'PX', retention)
+        end
+        written = written + 1
+    end
+end
+return written
@@ -0,0 +1,122 @@
+package com.bank.transactionservice.client;
+
+import com.bank.transactionservice.memo.RequestMemo;
+import com.bank.transactionservice.service.TransactionCacheService;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class AccountClientServiceTest {
+    private final List<ClientRequest> requests = new ArrayList<>();
+    private MockEnvironment environment;
+    private DownstreamClientFactory factory;
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment();
+        // Stands in for account-service: single lookups and the batch endpoint answer from the same accounts
+        WebClient.Builder stub = WebClient.builder().exchangeFunction(request -> {
+            requests.add(request);
+            String query = request.url().getQuery();
+            String ids = query != null ? query.substring("ids=".length()) : request.url().getPath()
+                    .substring("/accounts/".length());
+            String accounts = Stream.of(ids.split(","))
+                    .filter(id -> !id.startsWith("missing"))
+                    .map(id -> "{\"id\":\"" + id + "\",\"balance\":10.0}")
+                    .collect(Collectors.joining(","));
+            String data = query != null ? "[" + accounts + "]" : accounts;
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"status\":200,\"data\":" + (data.isEmpty() ? "null" : data) + "}")
+                    .build());
+        });
+        factory = new DownstreamClientFactory(stub, environment, new SimpleMeterRegistry(),
+                new StaticListableBeanFactory().getBeanProvider(DiscoveryClient.class));
+    }
+    @AfterEach
+    void tearDown() {
+        factory.destroy();
+    }
+    private AccountClientService client() {
+        return new AccountClientService(factory, "http://account-service", CircuitBreakerRegistry.ofDefaults(),
+                mock(TransactionCacheService.class));
+    }
+    @Test
+    void getAccountsByIds_UsesBatchEndpoint() {
+        StepVerifier.create(client().getAccountsByIds(List.of("A", "B")))
+                .expectNextMatches(account -> "A".equals(account.getId()))
+                .expectNextMatches(account -> "B".equals(account.getId()))
+                .verifyComplete();
+        assertEquals(1, requests.size());
+        assertEquals("/accounts/batch", requests.get(0).url().getPath());
+        StepVerifier.create(client().getAccountsByIds(List.of())).verifyComplete();
+        assertEquals(1, requests.size());
+    }
+    @Test
+    void getAccountById_CallsSingleEndpointWithoutBatching() {
+        AccountClientService client = client();
+        StepVerifier.create(Mono.zip(client.getAccountById("A"), client.getAccountById("B")))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, requests.size());
+    }
+    @Test
+    void getAccountById_CoalescesConcurrentLookupsWhenBatchingEnabled() {
+        environment.setProperty("transaction.downstream.account-service.batching.enabled", "true");
+        environment.setProperty("transaction.downstream.account-service.batching.window-ms", "200");
+        AccountClientService client = client();
+        StepVerifier.create(Mono.zip(client.getAccountById("A"), client.getAccountById("B")))
+                .expectNextMatches(accounts -> "A".equals(accounts.getT1().getId())
+                        && "B".equals(accounts.getT2().getId()))
+                .verifyComplete();
+        assertEquals(1, requests.size());
+        StepVerifier.create(client.getAccountById("missing-1"))
+                .expectErrorMessage("Account not found: missing-1")
+                .verify();
+    }
+    @Test
+    void updateAccountBalance_ReusesAccountAlreadyReadInSameOperation() {
+        AccountClientService client = client();
+        StepVerifier.create(client.getAccountById("A")
+                        .flatMap(account -> client.updateAccountBalance("A", BigDecimal.ONE))
+                        .then(client.getAccountById("A"))
+                        .contextWrite(RequestMemo::open))
+                .expectNextMatches(account -> "A".equals(account.getId()))
+                .verifyComplete();
+        assertEquals(List.of(HttpMethod.GET, HttpMethod.PUT), requests.stream()
+                .map(ClientRequest::method)
+                .collect(Collectors.toList()));
+    }
+    @Test
+    void updateAccountBalance_LeavesAccountReadEarlierUntouched() {
+        AccountClientService client = client();
+        StepVerifier.create(client.getAccountById("A")
+                        .flatMap(account -> client.updateAccountBalance("A", BigDecimal.ONE)
+                                .thenReturn(account))
+                        .contextWrite(RequestMemo::open))
+                .expectNextMatches(account -> account.getBalance() == 10.0)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,79 @@
+package com.bank.transactionservice.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveBulkheadTest {
+    private MeterRegistry meterRegistry;
+    private AdaptiveBulkhead bulkhead;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new AdaptiveBulkhead("account-service", 2, 1, 4, 0.5, Duration.ofMillis(200), meterRegistry);
+    }
+    @Test
+    void apply_RejectsFastWhenLimitIsInUse() {
+        Sinks.One<String> pending = Sinks.one();
+        Disposable first = bulkhead.apply(pending.asMono()).subscribe();
+        Disposable second = bulkhead.apply(pending.asMono()).subscribe();
+        StepVerifier.create(bulkhead.apply(Mono.just("third")))
+                .expectError(AdaptiveBulkhead.DownstreamSaturatedException.class)
+                .verify();
+        assertEquals(2, bulkhead.inFlight());
+        assertEquals(1.0, meterRegistry.get("transaction.downstream.concurrency.rejected").counter().count());
+        assertEquals(2.0, meterRegistry.get("transaction.downstream.concurrency.in-flight").gauge().value());
+        first.dispose();
+        second.dispose();
+        assertEquals(0, bulkhead.inFlight());
+        assertEquals(2, bulkhead.limit());
+    }
+    @Test
+    void apply_GrowsLimitOnlyWhileItIsInUse() {
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(bulkhead.apply(Mono.just("ok"))).expectNext("ok").verifyComplete();
+        }
+        // One request at a time never needs more than a limit of 2 or 3
+        assertEquals(3, bulkhead.limit());
+        assertEquals(3.0, meterRegistry.get("transaction.downstream.concurrency.limit").gauge().value());
+    }
+    @Test
+    void apply_BacksOffOnSlowRepliesAndIoFailures() {
+        StepVerifier.create(bulkhead.apply(Mono.delay(Duration.ofMillis(250)).thenReturn("slow")))
+                .expectNext("slow")
+                .verifyComplete();
+        assertEquals(1, bulkhead.limit());
+        bulkhead = new AdaptiveBulkhead("credit-service", 4, 1, 8, 0.5, Duration.ofSeconds(1), meterRegistry);
+        StepVerifier.create(bulkhead.apply(Mono.error(new RuntimeException("Client error: 400"))))
+                .expectError()
+                .verify();
+        assertEquals(4, bulkhead.limit());
+        StepVerifier.create(bulkhead.apply(Mono.error(new RuntimeException(new ConnectException("refused")))))
+                .expectError()
+                .verify();
+        assertEquals(2, bulkhead.limit());
+        assertEquals(0, bulkhead.inFlight());
+    }
+    @Test
+    void apply_BacksOffWhenCutOffAfterLatencyThreshold() {
+        StepVerifier.create(bulkhead.apply(Mono.never()).timeout(Duration.ofMillis(50)))
+                .expectError()
+                .verify();
+        assertEquals(2, bulkhead.limit());
+        StepVerifier.create(bulkhead.apply(Mono.never()).timeout(Duration.ofMillis(250)))
+                .expectError()
+                .verify();
+        assertEquals(1, bulkhead.limit());
+        assertEquals(0, bulkhead.inFlight());
+    }
+}
@@ -0,0 +1,185 @@
+package com.bank.transactionservice.client;
+
+import com.bank.transactionservice.config.Resilience4jConfig;
+import com.bank.transactionservice.model.account.Account;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownstreamCallTemplateTest {
+    private static final DownstreamCall<Account> GET_ACCOUNT =
+            DownstreamCall.of("/accounts/{accountId}", Account.class, "retrieving account");
+    private static final DownstreamCall<List<Account>> GET_ACCOUNTS =
+            DownstreamCall.ofList("/accounts/customer/{customerId}", Account.class, "retrieving accounts");
+    private final List<ClientRequest> requests = new ArrayList<>();
+    private DownstreamCallTemplate template(HttpStatus status, String body) {
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://account-service")
+                .exchangeFunction(request -> {
+                    requests.add(request);
+                    return Mono.just(ClientResponse.create(status)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(body)
+                            .build());
+                })
+                .build();
+        return new DownstreamCallTemplate("Account service", webClient, CircuitBreaker.ofDefaults("test"));
+    }
+    @Test
+    void get_UnwrapsResponseData() {
+        StepVerifier.create(template(HttpStatus.OK, "{\"status\":200,\"data\":{\"id\":\"ACC-1\",\"balance\":10.5}}")
+                        .get(GET_ACCOUNT, "ACC-1"))
+                .expectNextMatches(account -> "ACC-1".equals(account.getId()) && account.getBalance() == 10.5)
+                .verifyComplete();
+        assertEquals(HttpMethod.GET, requests.get(0).method());
+        assertEquals("/accounts/ACC-1", requests.get(0).url().getPath());
+    }
+    @Test
+    void get_DecodesListData() {
+        StepVerifier.create(template(HttpStatus.OK, "{\"status\":200,\"data\":[{\"id\":\"A\"},{\"id\":\"B\"}]}")
+                        .get(GET_ACCOUNTS, "customer-1"))
+                .expectNextMatches(accounts -> accounts.size() == 2 && "B".equals(accounts.get(1).getId()))
+                .verifyComplete();
+    }
+    @Test
+    void get_CompletesEmptyWithoutData() {
+        StepVerifier.create(template(HttpStatus.OK, "{\"status\":404,\"message\":\"missing\"}")
+                        .get(GET_ACCOUNT, "ACC-1"))
+                .verifyComplete();
+    }
+    @Test
+    void get_MapsErrorStatusToFallback() {
+        StepVerifier.create(template(HttpStatus.SERVICE_UNAVAILABLE, "{}").get(GET_ACCOUNT, "ACC-1"))
+                .expectErrorMessage("Account service is unavailable for retrieving account. "
+                        + "Cannot proceed with the operation.")
+                .verify();
+    }
+    @Test
+    void get_ClientErrorIsRejectedWithoutTrippingCircuit() {
+        CircuitBreaker circuitBreaker = new Resilience4jConfig().circuitBreakerRegistry()
+                .circuitBreaker("accountService");
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://account-service")
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build()))
+                .build();
+        DownstreamCallTemplate template = new DownstreamCallTemplate("Account service", webClient, circuitBreaker);
+        for (int i = 0; i < 20; i++) {
+            StepVerifier.create(template.get(GET_ACCOUNT, "ACC-1"))
+                    .expectErrorMatches(error -> error instanceof DownstreamCallTemplate.DownstreamRejectedException
+                            && ((DownstreamCallTemplate.DownstreamRejectedException) error).getStatus()
+                            == HttpStatus.NOT_FOUND)
+                    .verify();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+    @Test
+    void get_SaturatedBulkheadDoesNotTripCircuit() {
+        CircuitBreaker circuitBreaker = new Resilience4jConfig().circuitBreakerRegistry()
+                .circuitBreaker("accountService");
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("account-service", 1, 1, 1, 0.5, Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+        Disposable held = bulkhead.apply(Mono.never()).subscribe();
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://account-service")
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK).build()))
+                .build();
+        DownstreamCallTemplate template = new DownstreamCallTemplate("Account service", webClient, circuitBreaker,
+                null, null, bulkhead, null);
+        for (int i = 0; i < 20; i++) {
+            StepVerifier.create(template.get(GET_ACCOUNT, "ACC-1"))
+                    .expectErrorMatches(error -> error.getCause()
+                            instanceof AdaptiveBulkhead.DownstreamSaturatedException)
+                    .verify();
+        }
+        held.dispose();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+    @Test
+    void get_NotFoundCompletesEmptyWhenAllowed() {
+        StepVerifier.create(template(HttpStatus.NOT_FOUND, "{}").get(GET_ACCOUNTS.notFoundAsEmpty(), "customer-1"))
+                .verifyComplete();
+        StepVerifier.create(template(HttpStatus.NOT_FOUND, "{}").get(GET_ACCOUNTS, "customer-1"))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+    @Test
+    void put_SendsBodyToTemplatedUri() {
+        Account account = new Account();
+        account.setId("ACC-1");
+        StepVerifier.create(template(HttpStatus.OK, "{\"status\":200,\"data\":{\"id\":\"ACC-1\"}}")
+                        .put(GET_ACCOUNT, account, "ACC-1"))
+                .expectNextMatches(updated -> "ACC-1".equals(updated.getId()))
+                .verifyComplete();
+        assertEquals(HttpMethod.PUT, requests.get(0).method());
+    }
+    @Test
+    void getAllowingStale_ServesCachedCopyWhileCircuitOpenAndRecachesOnClose() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("stale");
+        StaleReadFallback staleReads = new StaleReadFallback("account-service", circuitBreaker,
+                new SimpleMeterRegistry());
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://account-service")
+                .exchangeFunction(request -> {
+                    requests.add(request);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"status\":200,\"data\":{\"id\":\"ACC-1\"}}")
+                            .build());
+                })
+                .build();
+        DownstreamCallTemplate template = new DownstreamCallTemplate("Account service", webClient, circuitBreaker,
+                null, null, null, staleReads);
+        Account cached = new Account();
+        cached.setId("ACC-1");
+        List<Account> recached = new ArrayList<>();
+        Function<Account, Mono<Void>> recache = account -> Mono.fromRunnable(() -> recached.add(account));
+        StepVerifier.create(template.getAllowingStale(GET_ACCOUNT, Mono.just(cached), recache, "ACC-1"))
+                .expectNextMatches(read -> !read.isStale() && read.getValue() != cached)
+                .verifyComplete();
+        circuitBreaker.transitionToOpenState();
+        StepVerifier.create(template.getAllowingStale(GET_ACCOUNT, Mono.just(cached), recache, "ACC-1"))
+                .expectNextMatches(read -> read.isStale() && read.getValue() == cached)
+                .verifyComplete();
+        // Nothing is cached for ACC-2, and writes never fall back
+        StepVerifier.create(template.getAllowingStale(GET_ACCOUNT, Mono.empty(), recache, "ACC-2"))
+                .expectErrorMatches(error -> error.getCause() instanceof CallNotPermittedException)
+                .verify();
+        StepVerifier.create(template.get(GET_ACCOUNT, "ACC-1"))
+                .expectError(RuntimeException.class)
+                .verify();
+        assertEquals(1, requests.size());
+        assertTrue(recached.isEmpty());
+        circuitBreaker.transitionToClosedState();
+        assertEquals(2, requests.size());
+        assertEquals(1, recached.size());
+        assertEquals("ACC-1", recached.get(0).getId());
+    }
+    @Test
+    void getAllowingStale_WithoutStore_ReturnsFreshReads() {
+        StepVerifier.create(template(HttpStatus.OK, "{\"status\":200,\"data\":{\"id\":\"ACC-1\"}}")
+                        .getAllowingStale(GET_ACCOUNT, Mono.empty(), account -> Mono.empty(), "ACC-1"))
+                .expectNextMatches(read -> !read.isStale() && "ACC-1".equals(read.getValue().getId()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,99 @@
+package com.bank.transactionservice.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DownstreamClientFactoryTest {
+    private MockEnvironment environment;
+    private StaticListableBeanFactory beans;
+    private DownstreamClientFactory factory;
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment();
+        beans = new StaticListableBeanFactory();
+        factory = new DownstreamClientFactory(WebClient.builder(), environment, new SimpleMeterRegistry(),
+                beans.getBeanProvider(DiscoveryClient.class));
+    }
+    @AfterEach
+    void tearDown() {
+        factory.destroy();
+    }
+    @Test
+    void connectionProvider_PrefersDownstreamSettingsOverShared() {
+        environment.setProperty("transaction.downstream.pool.max-connections", "30");
+        environment.setProperty("transaction.downstream.customer-service.pool.max-connections", "10");
+        ConnectionProvider customer = factory.connectionProvider("customer-service");
+        ConnectionProvider credit = factory.connectionProvider("credit-service");
+        ConnectionProvider account = new DownstreamClientFactory(WebClient.builder(), new MockEnvironment(),
+                new SimpleMeterRegistry(), beans.getBeanProvider(DiscoveryClient.class))
+                .connectionProvider("account-service");
+        assertEquals(10, customer.maxConnections());
+        assertEquals(30, credit.maxConnections());
+        assertEquals(50, account.maxConnections());
+        customer.dispose();
+        credit.dispose();
+        account.dispose();
+    }
+    @Test
+    void create_SharesPoolBetweenClientsOfOneDownstream() {
+        assertNotNull(factory.create("account-service", "http://localhost:8081"));
+        assertNotNull(factory.create("account-service", "http://localhost:8081"));
+        assertSame(factory.httpClient("account-service"), factory.httpClient("account-service"));
+        assertNotSame(factory.httpClient("account-service"), factory.httpClient("credit-service"));
+    }
+    @Test
+    void httpClient_EnablesHttp2WhenConfigured() {
+        environment.setProperty("transaction.downstream.credit-service.pool.http2", "true");
+        assertEquals(2, factory.httpClient("credit-service").configuration().protocols().length);
+        assertEquals(1, factory.httpClient("customer-service").configuration().protocols().length);
+    }
+    @Test
+    void template_SharesHedgingPolicyPerDownstreamWhenEnabled() {
+        environment.setProperty("transaction.downstream.account-service.hedging.enabled", "true");
+        assertNotNull(factory.template("account-service", "Account service", "http://localhost:8081",
+                CircuitBreaker.ofDefaults("accountService")));
+        assertNotNull(factory.hedgingPolicy("account-service"));
+        assertNull(factory.hedgingPolicy("credit-service"));
+    }
+    @Test
+    void bulkhead_UsesDownstreamLimitsUnlessDisabled() {
+        environment.setProperty("transaction.downstream.credit-service.bulkhead.initial-limit", "5");
+        environment.setProperty("transaction.downstream.customer-service.bulkhead.enabled", "false");
+        assertEquals(5, factory.bulkhead("credit-service").limit());
+        assertEquals(20, factory.bulkhead("account-service").limit());
+        assertNull(factory.bulkhead("customer-service"));
+    }
+    @Test
+    void loadBalancer_UsesDiscoveryWhenServiceIdConfigured() {
+        assertNull(factory.loadBalancer("account-service"));
+        environment.setProperty("transaction.downstream.account-service.discovery.service-id", "ACCOUNT-SERVICE");
+        assertNull(factory.loadBalancer("account-service"));
+        DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+        when(discoveryClient.getInstances("ACCOUNT-SERVICE")).thenReturn(List.of(
+                new DefaultServiceInstance("account-1", "ACCOUNT-SERVICE", "10.0.0.1", 8081, false)));
+        beans.addBean("discoveryClient", discoveryClient);
+        LatencyAwareLoadBalancer loadBalancer = factory.loadBalancer("account-service");
+        assertNotNull(loadBalancer);
+        assertEquals("10.0.0.1", loadBalancer.choose().getHost());
+        assertNotNull(factory.create("account-service", "http://localhost:8081"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.bank.transactionservice.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingPolicyTest {
+    private MeterRegistry meterRegistry;
+    private HedgingPolicy policy;
+    private AtomicInteger requests;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        policy = new HedgingPolicy("account-service", 0.95, Duration.ofMillis(20), 5, 0.1, meterRegistry);
+        requests = new AtomicInteger();
+        // Enough fast replies to time the percentile and earn one hedge token
+        for (int i = 0; i < 11; i++) {
+            policy.apply(() -> Mono.just("warm-up")).block();
+        }
+    }
+    @Test
+    void apply_TakesHedgeWhenPrimaryIsSlow() {
+        Mono<String> slowThenFast = Mono.defer(() -> requests.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                : Mono.just("hedge"));
+        StepVerifier.create(policy.apply(() -> slowThenFast))
+                .expectNext("hedge")
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+        assertEquals(2, requests.get());
+        assertEquals(1.0, hedges("sent"));
+        assertEquals(1.0, hedges("won"));
+    }
+    @Test
+    void apply_SkipsHedgeWhenPrimaryAnswersInTime() {
+        StepVerifier.create(policy.apply(() -> Mono.fromSupplier(() -> "primary-" + requests.incrementAndGet())))
+                .expectNext("primary-1")
+                .verifyComplete();
+        StepVerifier.create(Mono.delay(Duration.ofMillis(50))).expectNextCount(1).verifyComplete();
+        assertEquals(1, requests.get());
+        assertEquals(0.0, hedges("sent"));
+    }
+    @Test
+    void apply_KeepsEmptyAnswerAndPrimaryError() {
+        StepVerifier.create(policy.apply(Mono::empty)).verifyComplete();
+        StepVerifier.create(policy.apply(() -> Mono.error(new RuntimeException("Server error: 503"))))
+                .expectErrorMessage("Server error: 503")
+                .verify();
+        assertEquals(0.0, hedges("sent"));
+    }
+    @Test
+    void apply_DoesNotHedgeBeforeEnoughSamples() {
+        HedgingPolicy cold = new HedgingPolicy("credit-service", 0.95, Duration.ofMillis(20), 5, 0.1,
+                meterRegistry);
+        Mono<String> slow = Mono.delay(Duration.ofMillis(200))
+                .map(tick -> "primary-" + requests.incrementAndGet());
+        StepVerifier.create(cold.apply(() -> slow))
+                .expectNext("primary-1")
+                .verifyComplete();
+        assertEquals(1, requests.get());
+        // Not even attempted, rather than attempted and throttled
+        assertEquals(0.0, meterRegistry.get("transaction.downstream.hedges").tag("downstream", "credit-service")
+                .tag("result", "throttled").counter().count());
+        assertFalse(cold.acquireToken());
+    }
+    @Test
+    void acquireToken_ThrottlesOnceBudgetIsSpent() {
+        assertTrue(policy.acquireToken());
+        assertFalse(policy.acquireToken());
+        assertEquals(1.0, hedges("throttled"));
+    }
+    @Test
+    void delay_StartsAtMinimum() {
+        assertEquals(Duration.ofMillis(20), policy.delay());
+    }
+    private double hedges(String result) {
+        return meterRegistry.get("transaction.downstream.hedges").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,143 @@
+package com.bank.transactionservice.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyAwareLoadBalancerTest {
+    private static final ServiceInstance FAST = instance("10.0.0.1");
+    private static final ServiceInstance SLOW = instance("10.0.0.2");
+    private final List<URI> sent = new ArrayList<>();
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET,
+            URI.create("http://localhost:8081/accounts/ACC-1?fields=id")).build();
+
+    private static ServiceInstance instance(String host) {
+        return new DefaultServiceInstance(host, "ACCOUNT-SERVICE", host, 8081, false);
+    }
+    private ExchangeFunction respondingAfter(Duration slowLatency) {
+        return clientRequest -> {
+            sent.add(clientRequest.url());
+            Mono<ClientResponse> response = Mono.just(ClientResponse.create(HttpStatus.OK).build());
+            return SLOW.getHost().equals(clientRequest.url().getHost()) ? response.delayElement(slowLatency)
+                    : response;
+        };
+    }
+    private LatencyAwareLoadBalancer loadBalancer(List<ServiceInstance> instances, Duration ejectionLatency) {
+        return loadBalancer(instances, ejectionLatency, 1);
+    }
+    private LatencyAwareLoadBalancer loadBalancer(List<ServiceInstance> instances, Duration ejectionLatency,
+                                                  int ejectionMinSamples) {
+        return new LatencyAwareLoadBalancer("ACCOUNT-SERVICE", () -> instances, Duration.ofSeconds(10),
+                ejectionLatency, Duration.ofMinutes(1), ejectionMinSamples);
+    }
+    @Test
+    void filter_RewritesRequestToChosenInstance() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST), Duration.ofSeconds(5));
+        StepVerifier.create(loadBalancer.filter(request, respondingAfter(Duration.ZERO)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(URI.create("http://10.0.0.1:8081/accounts/ACC-1?fields=id"), sent.get(0));
+        assertEquals(0, loadBalancer.stats(FAST).inFlight());
+    }
+    @Test
+    void filter_KeepsBaseUrlWithoutRegisteredInstances() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(Collections.emptyList(), Duration.ofSeconds(5));
+        StepVerifier.create(loadBalancer.filter(request, respondingAfter(Duration.ZERO)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(request.url(), sent.get(0));
+    }
+    @Test
+    void choose_PrefersInstanceWithLowerLatency() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST, SLOW), Duration.ofSeconds(5));
+        ExchangeFunction exchange = respondingAfter(Duration.ofMillis(50));
+        // Warm both instances up so each has a latency sample
+        while (sent.stream().noneMatch(uri -> SLOW.getHost().equals(uri.getHost()))
+                || sent.stream().noneMatch(uri -> FAST.getHost().equals(uri.getHost()))) {
+            loadBalancer.filter(request, exchange).block();
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals(FAST.getHost(), loadBalancer.choose().getHost());
+        }
+    }
+    @Test
+    void choose_PrefersInstanceWithFewerRequestsInFlight() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST, SLOW), Duration.ofSeconds(5));
+        loadBalancer.stats(SLOW).start();
+        loadBalancer.stats(SLOW).start();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(FAST.getHost(), loadBalancer.choose().getHost());
+        }
+    }
+    @Test
+    void filter_EjectsInstanceThatRefusesConnections() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST, SLOW), Duration.ofSeconds(5));
+        ExchangeFunction refusing = clientRequest -> SLOW.getHost().equals(clientRequest.url().getHost())
+                ? Mono.error(new ConnectException("Connection refused"))
+                : Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        while (!loadBalancer.stats(SLOW).isEjected(System.nanoTime())) {
+            loadBalancer.filter(request, refusing).onErrorResume(error -> Mono.empty()).block();
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals(FAST.getHost(), loadBalancer.choose().getHost());
+        }
+    }
+    @Test
+    void filter_EjectsSlowInstanceButNeverTheWholePool() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST, SLOW), Duration.ofMillis(20));
+        ExchangeFunction exchange = respondingAfter(Duration.ofMillis(50));
+        while (sent.stream().noneMatch(uri -> SLOW.getHost().equals(uri.getHost()))) {
+            loadBalancer.filter(request, exchange).block();
+        }
+        assertTrue(loadBalancer.stats(SLOW).isEjected(System.nanoTime()));
+        assertFalse(loadBalancer.stats(FAST).isEjected(System.nanoTime()));
+    }
+    @Test
+    void choose_FallsBackToAllInstancesWhenAllEjected() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST), Duration.ofSeconds(5));
+        loadBalancer.stats(FAST).eject(System.nanoTime() + Duration.ofMinutes(1).toNanos());
+        assertEquals(FAST.getHost(), loadBalancer.choose().getHost());
+    }
+    @Test
+    void record_EjectsOnlyOnceEnoughResponsesWereSeen() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(List.of(FAST, SLOW), Duration.ofMillis(20), 3);
+        loadBalancer.choose();
+        LatencyAwareLoadBalancer.InstanceStats slowStats = loadBalancer.stats(SLOW);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(slowStats.isEjected(System.nanoTime()));
+            slowStats.start();
+            loadBalancer.record(SLOW, slowStats, Duration.ofMillis(50).toNanos(), false);
+        }
+        assertTrue(slowStats.isEjected(System.nanoTime()));
+    }
+    @Test
+    void choose_ForgetsInstancesNoLongerRegistered() {
+        ServiceInstance other = instance("10.0.0.3");
+        List<ServiceInstance> registered = new ArrayList<>(List.of(FAST, SLOW, other));
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(registered, Duration.ofMillis(20));
+        loadBalancer.choose();
+        assertEquals(3, loadBalancer.trackedInstances());
+        registered.remove(SLOW);
+        registered.remove(other);
+        loadBalancer.choose();
+        assertEquals(1, loadBalancer.trackedInstances());
+    }
+}
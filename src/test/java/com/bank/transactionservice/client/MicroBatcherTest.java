@@ -0,0 +1,100 @@
+package com.bank.transactionservice.client;
+
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.memo.RequestMemo;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MicroBatcherTest {
+    private final List<List<String>> batches = new ArrayList<>();
+    private final Function<List<String>, Mono<Map<String, String>>> upperCase = keys -> {
+        batches.add(keys);
+        return Mono.just(keys.stream()
+                .filter(key -> !key.startsWith("missing"))
+                .collect(Collectors.toMap(Function.identity(), String::toUpperCase)));
+    };
+    @Test
+    void load_CoalescesConcurrentKeysIntoOneBatch() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMillis(200), 50, upperCase);
+        StepVerifier.create(Mono.zip(batcher.load("a"), batcher.load("b"), batcher.load("a")))
+                .expectNextMatches(values -> "A".equals(values.getT1()) && "B".equals(values.getT2())
+                        && "A".equals(values.getT3()))
+                .verifyComplete();
+        assertEquals(List.of(List.of("a", "b")), batches);
+    }
+    @Test
+    void load_FlushesFullBatchWithoutWaiting() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMinutes(1), 2, upperCase);
+        StepVerifier.create(Mono.zip(batcher.load("a"), batcher.load("b")))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, batches.size());
+    }
+    @Test
+    void load_CompletesEmptyForKeyMissingFromBatch() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMillis(5), 50, upperCase);
+        StepVerifier.create(batcher.load("missing-1"))
+                .verifyComplete();
+    }
+    @Test
+    void load_FailsEveryCallerWhenBatchFails() {
+        Function<List<String>, Mono<Map<String, String>>> failing = keys -> Mono.error(
+                new RuntimeException("batch failed"));
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMillis(5), 50, failing);
+        StepVerifier.create(Mono.zip(batcher.load("a"), batcher.load("b")))
+                .expectErrorMessage("batch failed")
+                .verify(Duration.ofSeconds(2));
+    }
+    @Test
+    void load_OpensNewBatchAfterFlush() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMillis(5), 50, upperCase);
+        StepVerifier.create(batcher.load("a")).expectNext("A").verifyComplete();
+        StepVerifier.create(batcher.load("b")).expectNext("B").verifyComplete();
+        assertEquals(List.of(List.of("a"), List.of("b")), batches);
+    }
+    @Test
+    void load_RunsBatchInContextOfCallerWithEarliestDeadline() {
+        Deadline later = Deadline.after(Duration.ofMinutes(1));
+        Deadline earlier = Deadline.after(Duration.ofSeconds(30));
+        List<Deadline> seen = new ArrayList<>();
+        List<Boolean> memoized = new ArrayList<>();
+        Function<List<String>, Mono<Map<String, String>>> observing = keys -> Mono.deferContextual(context -> {
+            seen.add(Deadline.current(context).orElse(null));
+            memoized.add(RequestMemo.current(context).isPresent());
+            return upperCase.apply(keys);
+        });
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMillis(50), 50, observing);
+        StepVerifier.create(Mono.zip(
+                        batcher.load("a"),
+                        batcher.load("b").contextWrite(context -> Deadline.attach(context, later)),
+                        batcher.load("c").contextWrite(context -> Deadline.attach(RequestMemo.open(context), earlier))))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, seen.size());
+        assertSame(earlier, seen.get(0));
+        assertEquals(List.of(true), memoized);
+    }
+    @Test
+    void load_BoundsBatchByEarliestDeadline() {
+        Function<List<String>, Mono<Map<String, String>>> slow = keys -> Mono.never();
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("letters", Duration.ofMillis(5), 50, slow);
+        StepVerifier.create(Mono.zip(
+                        batcher.load("a").contextWrite(context -> Deadline.attach(context,
+                                Deadline.after(Duration.ofMinutes(1)))),
+                        batcher.load("b").contextWrite(context -> Deadline.attach(context,
+                                Deadline.after(Duration.ofMillis(100))))))
+                .expectError(Deadline.DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+}
@@ -1,33 +1,56 @@
 package com.bank.transactionservice.controller;
 
+import com.bank.transactionservice.deadline.Deadline;
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.statement.AccountStatement;
+import com.bank.transactionservice.model.transaction.HistoryVersion;
 import com.bank.transactionservice.model.transaction.ProductCategory;
 import com.bank.transactionservice.model.transaction.ProductSubType;
 import com.bank.transactionservice.model.transaction.Transaction;
 import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.service.AccountStatementService;
+import com.bank.transactionservice.service.DailyRollupService;
 import com.bank.transactionservice.service.TransactionService;
+import com.bank.transactionservice.service.TransactionVersionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.YearMonth;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.*;
 @ExtendWith(MockitoExtension.class)
 class TransactionControllerTest {
     @Mock
     private TransactionService transactionService;
+    @Mock
+    private AccountStatementService accountStatementService;
+    @Mock
+    private DailyRollupService dailyRollupService;
+    @Mock
+    private TransactionVersionService transactionVersionService;
     @InjectMocks
     private TransactionController transactionController;
     private Transaction mockTransaction;
@@ -44,6 +67,68 @@ class TransactionControllerTest {
         mockTransaction.setAmount(new BigDecimal("100.00"));
         mockTransaction.setTransactionDate(LocalDateTime.now());
         mockTransactionList = Arrays.asList(mockTransaction);
+        lenient().when(transactionVersionService.getCustomerVersion(anyString())).thenReturn(Mono.empty());
+        lenient().when(transactionVersionService.getProductVersion(anyString())).thenReturn(Mono.empty());
+    }
+    private MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions"));
+    }
+    @Test
+    void getTransactionsByProductId_NotModified() {
+        HistoryVersion version = new HistoryVersion(3L, Instant.ofEpochMilli(1710500000000L));
+        when(transactionVersionService.getProductVersion("product1")).thenReturn(Mono.just(version));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")
+                .header(HttpHeaders.IF_NONE_MATCH, version.eTag(null, "summary")));
+        StepVerifier.create(transactionController.getTransactionsByProductId("product1", null, "summary", exchange))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+                    assertEquals(version.eTag(null, "summary"), response.getHeaders().getETag());
+                    assertNull(response.getBody());
+                })
+                .verifyComplete();
+        verify(transactionService, never()).getTransactionsByProductId(anyString(), any(), any());
+    }
+    @Test
+    void getTransactionsByCustomerId_ReturnsValidators() {
+        HistoryVersion version = new HistoryVersion(3L, Instant.ofEpochMilli(1710500000000L));
+        when(transactionVersionService.getCustomerVersion("customer1")).thenReturn(Mono.just(version));
+        when(transactionService.getTransactionsByCustomerId("customer1", null, null))
+                .thenReturn(Flux.fromIterable(mockTransactionList));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"stale\""));
+        StepVerifier.create(transactionController.getTransactionsByCustomerId("customer1", null, null, exchange))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.getStatusCode());
+                    assertEquals(version.eTag(null, null), response.getHeaders().getETag());
+                    assertEquals(1710500000000L, response.getHeaders().getLastModified());
+                    assertEquals(mockTransactionList, response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getTransactionsByProductId_IgnoresIfModifiedSince() {
+        HistoryVersion version = new HistoryVersion(3L, Instant.ofEpochMilli(1710500000900L));
+        when(transactionVersionService.getProductVersion("product1")).thenReturn(Mono.just(version));
+        when(transactionService.getTransactionsByProductId("product1", null, null))
+                .thenReturn(Flux.fromIterable(mockTransactionList));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")
+                .ifModifiedSince(1710500000000L));
+        StepVerifier.create(transactionController.getTransactionsByProductId("product1", null, null, exchange))
+                .assertNext(response -> assertEquals(HttpStatus.OK, response.getStatusCode()))
+                .verifyComplete();
+    }
+    @Test
+    void getTransactionsByCustomerId_ErrorSkipsValidators() {
+        HistoryVersion version = new HistoryVersion(3L, Instant.ofEpochMilli(1710500000000L));
+        when(transactionVersionService.getCustomerVersion("customer1")).thenReturn(Mono.just(version));
+        when(transactionService.getTransactionsByCustomerId("customer1", null, null))
+                .thenReturn(Flux.error(new RuntimeException("Database error")));
+        StepVerifier.create(transactionController.getTransactionsByCustomerId("customer1", null, null, exchange()))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+                    assertNull(response.getHeaders().getETag());
+                })
+                .verifyComplete();
     }
     @Test
     void createTransaction_Success() {
@@ -83,11 +168,23 @@ class TransactionControllerTest {
                 .verifyComplete();
     }
     @Test
+    void createTransaction_DeadlineExceeded() {
+        when(transactionService.createTransaction(any(Transaction.class)))
+                .thenReturn(Mono.error(new Deadline.DeadlineExceededException()));
+        StepVerifier.create(transactionController.createTransaction(mockTransaction))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+                    assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), response.getBody().getStatus());
+                    assertNull(response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
     void getTransactionsByCustomerId_Success() {
         String customerId = "customer1";
-        when(transactionService.getTransactionsByCustomerId(customerId))
+        when(transactionService.getTransactionsByCustomerId(customerId, null, null))
                 .thenReturn(Flux.fromIterable(mockTransactionList));
-        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId))
+        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId, null, null, exchange()))
                 .assertNext(response -> {
                     assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
                     assertEquals("Transactions retrieved successfully", response.getBody().getMessage());
@@ -98,9 +195,9 @@ class TransactionControllerTest {
     @Test
     void getTransactionsByCustomerId_NoContent() {
         String customerId = "customer1";
-        when(transactionService.getTransactionsByCustomerId(customerId))
+        when(transactionService.getTransactionsByCustomerId(customerId, null, null))
                 .thenReturn(Flux.empty());
-        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId))
+        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId, null, null, exchange()))
                 .assertNext(response -> {
                     assertEquals(HttpStatus.NO_CONTENT.value(), response.getBody().getStatus());
                     assertEquals("No transactions found for customer", response.getBody().getMessage());
@@ -111,9 +208,9 @@ class TransactionControllerTest {
     @Test
     void getTransactionsByProductId_Success() {
         String productId = "product1";
-        when(transactionService.getTransactionsByProductId(productId))
+        when(transactionService.getTransactionsByProductId(productId, null, null))
                 .thenReturn(Flux.fromIterable(mockTransactionList));
-        StepVerifier.create(transactionController.getTransactionsByProductId(productId))
+        StepVerifier.create(transactionController.getTransactionsByProductId(productId, null, null, exchange()))
                 .assertNext(response -> {
                     assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
                     assertEquals("Transactions retrieved successfully", response.getBody().getMessage());
@@ -192,9 +289,9 @@ class TransactionControllerTest {
     @Test
     void getTransactionsByCustomerId_InternalError() {
         String customerId = "customer1";
-        when(transactionService.getTransactionsByCustomerId(customerId))
+        when(transactionService.getTransactionsByCustomerId(customerId, null, null))
                 .thenReturn(Flux.error(new RuntimeException("Database error")));
-        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId))
+        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId, null, null, exchange()))
                 .assertNext(response -> {
                     assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), response.getBody().getStatus());
                     assertEquals("Error retrieving transactions", response.getBody().getMessage());
@@ -205,9 +302,9 @@ class TransactionControllerTest {
     @Test
     void getTransactionsByProductId_NoContent() {
         String productId = "product1";
-        when(transactionService.getTransactionsByProductId(productId))
+        when(transactionService.getTransactionsByProductId(productId, null, null))
                 .thenReturn(Flux.empty());
-        StepVerifier.create(transactionController.getTransactionsByProductId(productId))
+        StepVerifier.create(transactionController.getTransactionsByProductId(productId, null, null, exchange()))
                 .assertNext(response -> {
                     assertEquals(HttpStatus.NO_CONTENT.value(), response.getBody().getStatus());
                     assertEquals("No transactions found for product", response.getBody().getMessage());
@@ -218,9 +315,9 @@ class TransactionControllerTest {
     @Test
     void getTransactionsByProductId_InternalError() {
         String productId = "product1";
-        when(transactionService.getTransactionsByProductId(productId))
+        when(transactionService.getTransactionsByProductId(productId, null, null))
                 .thenReturn(Flux.error(new RuntimeException("Database error")));
-        StepVerifier.create(transactionController.getTransactionsByProductId(productId))
+        StepVerifier.create(transactionController.getTransactionsByProductId(productId, null, null, exchange()))
                 .assertNext(response -> {
                     assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), response.getBody().getStatus());
                     assertEquals("Error retrieving transactions", response.getBody().getMessage());
@@ -229,6 +326,129 @@ class TransactionControllerTest {
                 .verifyComplete();
     }
     @Test
+    void getTransactionsByProductId_SummaryView() {
+        String productId = "product1";
+        when(transactionService.getTransactionsByProductId(productId, null, "summary"))
+                .thenReturn(Flux.fromIterable(mockTransactionList));
+        StepVerifier.create(transactionController.getTransactionsByProductId(productId, null, "summary", exchange()))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+                    assertEquals(mockTransactionList, response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getTransactionsByCustomerId_UnknownField() {
+        String customerId = "customer1";
+        when(transactionService.getTransactionsByCustomerId(customerId, "balance", null))
+                .thenReturn(Flux.error(new IllegalArgumentException("Unknown transaction field: balance")));
+        StepVerifier.create(transactionController.getTransactionsByCustomerId(customerId, "balance", null, exchange()))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
+                    assertEquals("Unknown transaction field: balance", response.getBody().getMessage());
+                    assertNull(response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getStatementByProductId_Success() {
+        AccountStatement statement = AccountStatement.builder()
+                .id("product1:2024-03")
+                .productId("product1")
+                .month("2024-03")
+                .openingBalance(new BigDecimal("100.00"))
+                .closingBalance(new BigDecimal("200.00"))
+                .build();
+        when(accountStatementService.getStatement("product1", YearMonth.of(2024, 3)))
+                .thenReturn(Mono.just(statement));
+        StepVerifier.create(transactionController.getStatementByProductId("product1", YearMonth.of(2024, 3)))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+                    assertEquals(statement, response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getStatementByProductId_DefaultsToCurrentMonth() {
+        when(accountStatementService.getStatement("product1", YearMonth.now())).thenReturn(Mono.empty());
+        StepVerifier.create(transactionController.getStatementByProductId("product1", null))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.NOT_FOUND.value(), response.getBody().getStatus());
+                    assertNull(response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getStatementByProductId_InternalError() {
+        when(accountStatementService.getStatement("product1", YearMonth.of(2024, 3)))
+                .thenReturn(Mono.error(new RuntimeException("Database error")));
+        StepVerifier.create(transactionController.getStatementByProductId("product1", YearMonth.of(2024, 3)))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), response.getBody().getStatus());
+                    assertEquals("Error retrieving statement", response.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getDailyRollupsByCustomerId_Success() {
+        LocalDate startDate = LocalDate.of(2024, 3, 1);
+        LocalDate endDate = LocalDate.of(2024, 3, 31);
+        DailyRollup rollup = DailyRollup.builder()
+                .id("CUSTOMER:customer1:2024-03-15")
+                .scope(RollupScope.CUSTOMER)
+                .key("customer1")
+                .date("2024-03-15")
+                .count(2)
+                .build();
+        when(dailyRollupService.getRollups(RollupScope.CUSTOMER, "customer1", startDate, endDate))
+                .thenReturn(Flux.just(rollup));
+        StepVerifier.create(transactionController.getDailyRollupsByCustomerId("customer1", startDate, endDate))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK.value(), response.getBody().getStatus());
+                    assertEquals(Collections.singletonList(rollup), response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getDailyRollupsByProductId_NoContent() {
+        LocalDate startDate = LocalDate.of(2024, 3, 1);
+        LocalDate endDate = LocalDate.of(2024, 3, 31);
+        when(dailyRollupService.getRollups(RollupScope.PRODUCT, "product1", startDate, endDate))
+                .thenReturn(Flux.empty());
+        StepVerifier.create(transactionController.getDailyRollupsByProductId("product1", startDate, endDate))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.NO_CONTENT.value(), response.getBody().getStatus());
+                    assertEquals(Collections.emptyList(), response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getDailyRollupsByProductId_InvalidRange() {
+        LocalDate startDate = LocalDate.of(2024, 3, 31);
+        LocalDate endDate = LocalDate.of(2024, 3, 1);
+        when(dailyRollupService.getRollups(RollupScope.PRODUCT, "product1", startDate, endDate))
+                .thenReturn(Flux.error(new IllegalArgumentException("startDate must not be after endDate")));
+        StepVerifier.create(transactionController.getDailyRollupsByProductId("product1", startDate, endDate))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getBody().getStatus());
+                    assertEquals("startDate must not be after endDate", response.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void getDailyRollupsByCustomerId_InternalError() {
+        LocalDate startDate = LocalDate.of(2024, 3, 1);
+        LocalDate endDate = LocalDate.of(2024, 3, 31);
+        when(dailyRollupService.getRollups(RollupScope.CUSTOMER, "customer1", startDate, endDate))
+                .thenReturn(Flux.error(new RuntimeException("Database error")));
+        StepVerifier.create(transactionController.getDailyRollupsByCustomerId("customer1", startDate, endDate))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), response.getBody().getStatus());
+                    assertEquals("Error retrieving rollups", response.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+    @Test
     void getTransactionById_InternalError() {
         String transactionId = "1";
         when(transactionService.getTransactionById(transactionId))
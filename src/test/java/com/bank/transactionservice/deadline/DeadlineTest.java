@@ -0,0 +1,114 @@
+package com.bank.transactionservice.deadline;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineTest {
+    @Test
+    void bound_WithoutDeadline_AppliesOwnLimitOnly() {
+        StepVerifier.create(Deadline.bound(Mono.just("value"), null))
+                .expectNext("value")
+                .verifyComplete();
+        StepVerifier.create(Deadline.bound(Mono.never(), Duration.ofMillis(20)))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+    @Test
+    void bound_ExpiredDeadline_FailsWithoutSubscribing() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        Mono<String> call = Mono.just("value").doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+        Mono<String> bounded = Deadline.bound(call, Duration.ofSeconds(1))
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(Duration.ZERO)));
+        StepVerifier.create(bounded)
+                .expectError(Deadline.DeadlineExceededException.class)
+                .verify();
+        assertEquals(0, subscriptions.get());
+    }
+    @Test
+    void bound_RemainingBudgetShorterThanLimit_FailsWithDeadlineExceeded() {
+        Mono<Object> bounded = Deadline.bound(Mono.never(), Duration.ofSeconds(10))
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(Duration.ofMillis(30))));
+        StepVerifier.create(bounded)
+                .expectError(Deadline.DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+    @Test
+    void bound_LimitShorterThanBudget_FailsWithTimeout() {
+        Mono<Object> bounded = Deadline.bound(Mono.never(), Duration.ofMillis(20))
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(Duration.ofSeconds(10))));
+        StepVerifier.create(bounded)
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+    @Test
+    void admit_StartedWrite_OutlivesBudget() {
+        Mono<String> write = Mono.delay(Duration.ofMillis(60)).thenReturn("saved");
+        Mono<String> admitted = Deadline.admit(write, null)
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(Duration.ofMillis(10))));
+        StepVerifier.create(admitted)
+                .expectNext("saved")
+                .verifyComplete();
+    }
+    @Test
+    void admit_ExpiredDeadline_RefusesWrite() {
+        Mono<String> admitted = Deadline.admit(Mono.just("saved"), null)
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(Duration.ZERO)));
+        StepVerifier.create(admitted)
+                .expectError(Deadline.DeadlineExceededException.class)
+                .verify();
+    }
+    @Test
+    void admit_AdmittedWritePhase_OutlivesBudget() {
+        Deadline deadline = Deadline.after(Duration.ofMillis(10));
+        Mono<String> balanceUpdate = Deadline.admit(Mono.delay(Duration.ofMillis(30)).thenReturn("updated"), null);
+        Mono<String> save = Deadline.admit(Mono.just("saved"), null);
+        StepVerifier.create(balanceUpdate.then(save)
+                        .contextWrite(context -> Deadline.attach(context, deadline)))
+                .expectNext("saved")
+                .verifyComplete();
+        assertTrue(deadline.isExpired());
+    }
+    @Test
+    void bound_AfterWritePhaseAdmitted_IgnoresSpentBudget() {
+        Deadline deadline = Deadline.after(Duration.ofMillis(10));
+        Mono<String> balanceUpdate = Deadline.admit(Mono.delay(Duration.ofMillis(30)).thenReturn("updated"), null);
+        Mono<String> cardLookup = Deadline.bound(Mono.just("card"), Duration.ofSeconds(1));
+        Flux<String> records = Deadline.boundMany(Flux.just("statement", "rollup"));
+        StepVerifier.create(balanceUpdate.then(cardLookup).thenMany(records)
+                        .contextWrite(context -> Deadline.attach(context, deadline)))
+                .expectNext("statement", "rollup")
+                .verifyComplete();
+        assertTrue(deadline.isExpired());
+    }
+    @Test
+    void boundMany_BudgetCoversWholeStream() {
+        Flux<Long> slowStream = Flux.interval(Duration.ofMillis(20)).take(10);
+        Flux<Long> bounded = Deadline.boundMany(slowStream)
+                .contextWrite(context -> Deadline.attach(context, Deadline.after(Duration.ofMillis(70))));
+        StepVerifier.create(bounded)
+                .thenConsumeWhile(tick -> true)
+                .expectError(Deadline.DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+    @Test
+    void boundMany_WithoutDeadline_PassesThrough() {
+        StepVerifier.create(Deadline.boundMany(Flux.just(1, 2, 3)))
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+    }
+    @Test
+    void remaining_NeverNegative() {
+        Deadline deadline = Deadline.after(Duration.ofMillis(-5));
+        assertTrue(deadline.isExpired());
+        assertEquals(Duration.ZERO, deadline.remaining());
+    }
+}
@@ -0,0 +1,56 @@
+package com.bank.transactionservice.deadline;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineWebFilterTest {
+    private final DeadlineWebFilter filter = new DeadlineWebFilter(3000, 8000, 30000);
+
+    @Test
+    void budget_DefaultsByMethod() {
+        MockServerWebExchange read = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions"));
+        MockServerWebExchange write = MockServerWebExchange.from(MockServerHttpRequest.post("/api/transactions"));
+        assertEquals(Duration.ofMillis(3000), filter.budget(read));
+        assertEquals(Duration.ofMillis(8000), filter.budget(write));
+    }
+    @Test
+    void budget_HonoursCallerHeaderUpToMaximum() {
+        MockServerWebExchange shorter = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")
+                .header(DeadlineWebFilter.TIMEOUT_HEADER, "250"));
+        MockServerWebExchange longer = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")
+                .header(DeadlineWebFilter.TIMEOUT_HEADER, "600000"));
+        MockServerWebExchange invalid = MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")
+                .header(DeadlineWebFilter.TIMEOUT_HEADER, "soon"));
+        assertEquals(Duration.ofMillis(250), filter.budget(shorter));
+        assertEquals(Duration.ofMillis(30000), filter.budget(longer));
+        assertEquals(Duration.ofMillis(3000), filter.budget(invalid));
+    }
+    @Test
+    void filter_AttachesDeadlineToApiRequests() {
+        AtomicReference<Optional<Deadline>> seen = new AtomicReference<>();
+        WebFilterChain chain = exchange -> Mono.deferContextual(context -> {
+            seen.set(Deadline.current(context));
+            return Mono.empty();
+        });
+        StepVerifier.create(filter.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.get("/api/transactions")), chain))
+                .verifyComplete();
+        assertTrue(seen.get().isPresent());
+        StepVerifier.create(filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health")),
+                chain))
+                .verifyComplete();
+        assertFalse(seen.get().isPresent());
+    }
+}
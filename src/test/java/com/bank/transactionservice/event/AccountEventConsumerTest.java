@@ -3,76 +3,102 @@ package com.bank.transactionservice.event;
 import com.bank.transactionservice.model.account.Account;
 import com.bank.transactionservice.model.account.AccountType;
 import com.bank.transactionservice.service.TransactionCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.mock.env.MockEnvironment;
 import reactor.core.publisher.Mono;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class AccountEventConsumerTest {
     @Mock
     private TransactionCacheService cacheService;
+    private SimpleMeterRegistry meterRegistry;
+    private Acknowledgment acknowledgment;
+    private final Consumer<?, ?> consumer = mock(Consumer.class);
     private AccountEventConsumer accountEventConsumer;
     @BeforeEach
     void setUp() {
-        accountEventConsumer = new AccountEventConsumer(cacheService);
+        meterRegistry = new SimpleMeterRegistry();
+        acknowledgment = mock(Acknowledgment.class);
+        ListenerFlowControl listenerFlowControl = new ListenerFlowControl(mock(KafkaListenerEndpointRegistry.class),
+                meterRegistry, new MockEnvironment(), 4, 100L);
+        CacheEventBatchProcessor cacheEventBatchProcessor = new CacheEventBatchProcessor(meterRegistry, 0L);
+        accountEventConsumer = new AccountEventConsumer(cacheService, cacheEventBatchProcessor, listenerFlowControl);
     }
     @Test
-    void consumeAccountCreated_Success() {
+    @SuppressWarnings("unchecked")
+    void consumeAccountEvents_CollapsesToLatestPerId() {
         // Arrange
-        Account account = createAccount("123");
-        when(cacheService.saveAccount(account.getId(), account))
-                .thenReturn(Mono.empty());
+        Account created = createAccount("123");
+        Account updated = createAccount("123");
+        Account other = createAccount("456");
+        when(cacheService.saveAccounts(anyMap())).thenReturn(Mono.empty());
         // Act
-        accountEventConsumer.consumeAccountCreated(account);
+        accountEventConsumer.consumeAccountEvents(Arrays.asList(created, other, updated),
+                Arrays.asList("account-created", "account-created", "account-updated"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveAccount(account.getId(), account);
+        verify(acknowledgment).acknowledge();
+        ArgumentCaptor<Map<String, Account>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).saveAccounts(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertSame(updated, captor.getValue().get("123"));
+        assertSame(other, captor.getValue().get("456"));
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.received")
+                .tag("topic", "account-created").counter().count());
+        assertEquals(1.0, meterRegistry.get("transaction.cache.events.collapsed").counter().count());
+        assertEquals(1L, meterRegistry.get("transaction.cache.batch.write").timer().count());
     }
     @Test
-    void consumeAccountCreated_ErrorSavingAccount() {
+    void consumeAccountEvents_ErrorSavingAccount() {
         // Arrange
         Account account = createAccount("123");
-        RuntimeException expectedError = new RuntimeException("Error saving account");
-        when(cacheService.saveAccount(account.getId(), account))
-                .thenReturn(Mono.error(expectedError));
-        // Act
-        accountEventConsumer.consumeAccountCreated(account);
-        // Assert
-        verify(cacheService).saveAccount(account.getId(), account);
-    }
-    @Test
-    void consumeAccountCreated_NullAccount() {
+        when(cacheService.saveAccounts(anyMap()))
+                .thenReturn(Mono.error(new RuntimeException("Error saving batch")));
         // Act
-        accountEventConsumer.consumeAccountCreated(null);
+        accountEventConsumer.consumeAccountEvents(Collections.singletonList(account),
+                Collections.singletonList("account-updated"), acknowledgment, consumer);
         // Assert
-        verify(cacheService, never()).saveAccount(any(), any());
+        verify(acknowledgment).acknowledge();
+        verify(cacheService).saveAccounts(Map.of("123", account));
     }
     @Test
-    void consumeAccountUpdated_Success() {
-        // Arrange
-        Account account = createAccount("123");
-        when(cacheService.saveAccount(account.getId(), account))
-                .thenReturn(Mono.empty());
+    void consumeAccountEvents_NullAccount() {
         // Act
-        accountEventConsumer.consumeAccountUpdated(account);
+        accountEventConsumer.consumeAccountEvents(Collections.singletonList(null),
+                Collections.singletonList("account-created"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveAccount(account.getId(), account);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService, never()).saveAccounts(any());
     }
     @Test
-    void consumeAccountUpdated_UnexpectedError() {
+    void consumeAccountEvents_UnexpectedError() {
         // Arrange
         Account account = createAccount("123");
-        RuntimeException unexpectedError = new RuntimeException("Unexpected error");
-        when(cacheService.saveAccount(any(), any()))
-                .thenThrow(unexpectedError);
+        when(cacheService.saveAccounts(anyMap()))
+                .thenThrow(new RuntimeException("Unexpected error"));
         // Act
-        accountEventConsumer.consumeAccountUpdated(account);
+        accountEventConsumer.consumeAccountEvents(List.of(account), List.of("account-updated"), acknowledgment,
+                consumer);
         // Assert
-        verify(cacheService).saveAccount(account.getId(), account);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService).saveAccounts(Map.of("123", account));
     }
     private Account createAccount(String id) {
         Account account = new Account();
@@ -84,4 +110,3 @@ class AccountEventConsumerTest {
         return account;
     }
 }
-
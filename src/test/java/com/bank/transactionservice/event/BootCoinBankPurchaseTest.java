@@ -1,6 +1,6 @@
 package com.bank.transactionservice.event;
 import com.bank.transactionservice.client.AccountClientService;
-import com.bank.transactionservice.client.CustomerClientService;
+import com.bank.transactionservice.client.DownstreamWrites;
 import com.bank.transactionservice.dto.bootcoinbank.BootCoinBankPurchaseCompleted;
 import com.bank.transactionservice.dto.bootcoinbank.BootCoinBankPurchaseRequested;
 import com.bank.transactionservice.model.account.Account;
@@ -9,53 +9,73 @@ import com.bank.transactionservice.model.transaction.ProductCategory;
 import com.bank.transactionservice.model.transaction.ProductSubType;
 import com.bank.transactionservice.model.transaction.Transaction;
 import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.service.CustomerCacheService;
 import com.bank.transactionservice.service.TransactionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
-import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 @ExtendWith(MockitoExtension.class)
 public class BootCoinBankPurchaseTest {
+    private static final String PROCESSED_KEY = "ProcessedEvent:bootcoin.bank.purchase.requested:transaction-123";
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private ReactiveKafkaPublisher reactiveKafkaPublisher;
     @Mock
     private TransactionService transactionService;
     @Mock
     private AccountClientService accountClientService;
     @Mock
-    private CustomerClientService customerClientService;
+    private CustomerCacheService customerCacheService;
     @Mock
-    private ListenableFuture<SendResult<String, Object>> listenableFuture;
-    @InjectMocks
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private ProcessedEvents processedEvents;
+    private KeyOrderedDispatcher dispatcher;
     private BootCoinBankPurchase bootCoinBankPurchase;
     @Captor
     private ArgumentCaptor<BootCoinBankPurchaseCompleted> eventCaptor;
     @Captor
-    private ArgumentCaptor<Transaction> transactionCaptor;
+    private ArgumentCaptor<List<BootCoinBankPurchaseCompleted>> resultsCaptor;
+    @Captor
+    private ArgumentCaptor<List<Transaction>> transactionsCaptor;
     private BootCoinBankPurchaseRequested requestEvent;
     private Customer customer;
     private Account account;
     private Transaction transaction;
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
         requestEvent = BootCoinBankPurchaseRequested.builder()
                 .transactionId("transaction-123")
@@ -72,7 +92,7 @@ public class BootCoinBankPurchaseTest {
         account.setCustomerId("customer-001");
         transaction = new Transaction(
                 "tx-123",
-                "12345678",
+                "customer-001",
                 "ACC-001",
                 ProductCategory.ACCOUNT,
                 ProductSubType.BOOT_COIN,
@@ -82,33 +102,60 @@ public class BootCoinBankPurchaseTest {
                 null,
                 null,
                 null,
+                null,
+                null,
+                null,
                 null
         );
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(listenableFuture);
+        lenient().doReturn(valueOperations).when(redisTemplate).opsForValue();
+        lenient().when(valueOperations.get(anyString())).thenReturn(Mono.empty());
+        lenient().when(valueOperations.setIfAbsent(anyString(), eq("PENDING"), any(Duration.class)))
+                .thenReturn(Mono.just(true));
+        lenient().when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        lenient().when(redisTemplate.delete(any(Publisher.class))).thenReturn(Mono.just(1L));
+        processedEvents = new ProcessedEvents(redisTemplate, 60000L);
+        dispatcher = new KeyOrderedDispatcher(new SimpleMeterRegistry());
+        bootCoinBankPurchase = new BootCoinBankPurchase(processedEvents, dispatcher, reactiveKafkaPublisher,
+                transactionService, accountClientService, customerCacheService, 0, 100);
+        lenient().when(reactiveKafkaPublisher.sendAll(anyString(), anyList(), any())).thenReturn(Mono.empty());
+    }
+    private List<BootCoinBankPurchaseCompleted> publishedResults() {
+        verify(reactiveKafkaPublisher).sendAll(eq("bootcoin.bank.purchase.procesed"), resultsCaptor.capture(),
+                any());
+        return resultsCaptor.getValue();
+    }
+    private BootCoinBankPurchaseCompleted publishedResult(String transactionId) {
+        return publishedResult(publishedResults(), transactionId);
+    }
+    private static BootCoinBankPurchaseCompleted publishedResult(List<BootCoinBankPurchaseCompleted> results,
+                                                                 String transactionId) {
+        return results.stream()
+                .filter(result -> transactionId.equals(result.getTransactionId()))
+                .findFirst()
+                .orElseThrow();
     }
     @Test
     void processBootCoinPurchase_Success() {
-        when(customerClientService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
+        when(customerCacheService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
                 .thenReturn(Mono.just(customer));
         when(accountClientService.getAccountById(requestEvent.getBuyerAccountNumber()))
                 .thenReturn(Mono.just(account));
-        when(transactionService.createTransaction(any(Transaction.class)))
-                .thenReturn(Mono.just(transaction));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
 
-        bootCoinBankPurchase.processBootCoinPurchase(requestEvent);
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
 
-        verify(customerClientService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
+        verify(customerCacheService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
         verify(accountClientService).getAccountById(requestEvent.getBuyerAccountNumber());
-        verify(transactionService).createTransaction(transactionCaptor.capture());
-        verify(kafkaTemplate).send(eq("bootcoin.bank.purchase.procesed"), eventCaptor.capture());
-        Transaction capturedTransaction = transactionCaptor.getValue();
-        assertEquals(requestEvent.getBuyerDocumentNumber(), capturedTransaction.getCustomerId());
+        verify(transactionService).createAccountWithdrawals(eq(account), transactionsCaptor.capture());
+        Transaction capturedTransaction = transactionsCaptor.getValue().get(0);
+        assertEquals(customer.getId(), capturedTransaction.getCustomerId());
         assertEquals(requestEvent.getBuyerAccountNumber(), capturedTransaction.getProductId());
         assertEquals(ProductCategory.ACCOUNT, capturedTransaction.getProductCategory());
         assertEquals(ProductSubType.BOOT_COIN, capturedTransaction.getProductSubType());
         assertEquals(TransactionType.WITHDRAWAL, capturedTransaction.getTransactionType());
         assertEquals(requestEvent.getTotalAmountInPEN(), capturedTransaction.getAmount());
-        BootCoinBankPurchaseCompleted resultEvent = eventCaptor.getValue();
+        BootCoinBankPurchaseCompleted resultEvent = publishedResult("transaction-123");
         assertEquals(requestEvent.getTransactionId(), resultEvent.getTransactionId());
         assertTrue(resultEvent.isAccepted());
     }
@@ -117,62 +164,264 @@ public class BootCoinBankPurchaseTest {
         Account differentAccount = new Account();
         differentAccount.setId("ACC-001");
         differentAccount.setCustomerId("different-customer-id");
-        when(customerClientService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
+        when(customerCacheService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
                 .thenReturn(Mono.just(customer));
         when(accountClientService.getAccountById(requestEvent.getBuyerAccountNumber()))
                 .thenReturn(Mono.just(differentAccount));
-        bootCoinBankPurchase.processBootCoinPurchase(requestEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
         verify(accountClientService).getAccountById(requestEvent.getBuyerAccountNumber());
-        verify(transactionService, times(0)).createTransaction(any());
-        verify(kafkaTemplate).send(eq("bootcoin.bank.purchase.procesed"), eventCaptor.capture());
-        BootCoinBankPurchaseCompleted resultEvent = eventCaptor.getValue();
+        verify(transactionService, times(0)).createAccountWithdrawals(any(), anyList());
+        BootCoinBankPurchaseCompleted resultEvent = publishedResult("transaction-123");
         assertEquals(requestEvent.getTransactionId(), resultEvent.getTransactionId());
         assertFalse(resultEvent.isAccepted());
     }
     @Test
     void processBootCoinPurchase_CustomerNotFound() {
-        when(customerClientService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
-                .thenReturn(Mono.error(new RuntimeException("Customer not found")));
-        bootCoinBankPurchase.processBootCoinPurchase(requestEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
+        when(customerCacheService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
+                .thenReturn(Mono.error(new IllegalArgumentException("Customer not found")));
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
         verify(accountClientService, times(0)).getAccountById(anyString());
-        verify(transactionService, times(0)).createTransaction(any());
-        verify(kafkaTemplate).send(eq("bootcoin.bank.purchase.procesed"), eventCaptor.capture());
-        BootCoinBankPurchaseCompleted resultEvent = eventCaptor.getValue();
+        verify(transactionService, times(0)).createAccountWithdrawals(any(), anyList());
+        BootCoinBankPurchaseCompleted resultEvent = publishedResult("transaction-123");
         assertEquals(requestEvent.getTransactionId(), resultEvent.getTransactionId());
         assertFalse(resultEvent.isAccepted());
     }
     @Test
     void processBootCoinPurchase_AccountNotFound() {
-        when(customerClientService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
+        when(customerCacheService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
                 .thenReturn(Mono.just(customer));
         when(accountClientService.getAccountById(requestEvent.getBuyerAccountNumber()))
-                .thenReturn(Mono.error(new RuntimeException("Account not found")));
-        bootCoinBankPurchase.processBootCoinPurchase(requestEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
+                .thenReturn(Mono.error(new IllegalArgumentException("Account not found")));
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
         verify(accountClientService).getAccountById(requestEvent.getBuyerAccountNumber());
-        verify(transactionService, times(0)).createTransaction(any());
-        verify(kafkaTemplate).send(eq("bootcoin.bank.purchase.procesed"), eventCaptor.capture());
-        BootCoinBankPurchaseCompleted resultEvent = eventCaptor.getValue();
+        verify(transactionService, times(0)).createAccountWithdrawals(any(), anyList());
+        BootCoinBankPurchaseCompleted resultEvent = publishedResult("transaction-123");
         assertEquals(requestEvent.getTransactionId(), resultEvent.getTransactionId());
         assertFalse(resultEvent.isAccepted());
     }
     @Test
     void processBootCoinPurchase_TransactionCreationFails() {
-        when(customerClientService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
+        when(customerCacheService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
                 .thenReturn(Mono.just(customer));
         when(accountClientService.getAccountById(requestEvent.getBuyerAccountNumber()))
                 .thenReturn(Mono.just(account));
-        when(transactionService.createTransaction(any(Transaction.class)))
-                .thenReturn(Mono.error(new RuntimeException("Failed to create transaction")));
-        bootCoinBankPurchase.processBootCoinPurchase(requestEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenReturn(Mono.error(new IllegalArgumentException("Failed to create transaction")));
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber());
         verify(accountClientService).getAccountById(requestEvent.getBuyerAccountNumber());
-        verify(transactionService).createTransaction(any());
-        verify(kafkaTemplate).send(eq("bootcoin.bank.purchase.procesed"), eventCaptor.capture());
-        BootCoinBankPurchaseCompleted resultEvent = eventCaptor.getValue();
+        verify(transactionService).createAccountWithdrawals(eq(account), anyList());
+        BootCoinBankPurchaseCompleted resultEvent = publishedResult("transaction-123");
         assertEquals(requestEvent.getTransactionId(), resultEvent.getTransactionId());
         assertFalse(resultEvent.isAccepted());
     }
-}
\ No newline at end of file
+    @Test
+    void processBootCoinPurchase_RetryableFailurePublishesOnlyWhenExhausted() {
+        when(customerCacheService.getCustomerByDocumentNumber(requestEvent.getBuyerDocumentNumber()))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")));
+        StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(requestEvent))
+                .expectErrorMessage("Customer service is unavailable")
+                .verify();
+        verify(reactiveKafkaPublisher, never()).sendAll(anyString(), anyList(), any());
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        bootCoinBankPurchase.publishFailure(requestEvent, new RuntimeException("Customer service is unavailable"))
+                .block();
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.bank.purchase.procesed"), eq("transaction-123"),
+                eventCaptor.capture());
+        assertFalse(eventCaptor.getValue().isAccepted());
+    }
+    @Test
+    void processBootCoinPurchase_InsufficientBalanceRejectsOnlyUncoveredPurchase() {
+        BootCoinBankPurchaseRequested second = BootCoinBankPurchaseRequested.builder()
+                .transactionId("transaction-456")
+                .buyerDocumentNumber("12345678")
+                .buyerAccountNumber("ACC-001")
+                .totalAmountInPEN(new BigDecimal("900"))
+                .build();
+        bootCoinBankPurchase = new BootCoinBankPurchase(processedEvents, dispatcher, reactiveKafkaPublisher,
+                transactionService, accountClientService, customerCacheService, 1000, 2);
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenAnswer(invocation -> Mono.just(List.of(invocation.<List<Transaction>>getArgument(1).get(0))));
+
+        StepVerifier.create(Mono.when(bootCoinBankPurchase.processBootCoinPurchase(requestEvent),
+                        bootCoinBankPurchase.processBootCoinPurchase(second)))
+                .verifyComplete();
+
+        verify(transactionService).createAccountWithdrawals(eq(account), transactionsCaptor.capture());
+        assertEquals(2, transactionsCaptor.getValue().size());
+        assertTrue(publishedResult("transaction-123").isAccepted());
+        assertFalse(publishedResult(resultsCaptor.getValue(), "transaction-456").isAccepted());
+    }
+    @Test
+    void processBootCoinPurchase_GroupsPurchasesOfOneAccountWithinWindow() {
+        BootCoinBankPurchaseRequested second = BootCoinBankPurchaseRequested.builder()
+                .transactionId("transaction-456")
+                .buyerDocumentNumber("12345678")
+                .buyerAccountNumber("ACC-001")
+                .totalAmountInPEN(new BigDecimal("100"))
+                .build();
+        bootCoinBankPurchase = new BootCoinBankPurchase(processedEvents, dispatcher, reactiveKafkaPublisher,
+                transactionService, accountClientService, customerCacheService, 20, 100);
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+
+        StepVerifier.create(Mono.when(bootCoinBankPurchase.processBootCoinPurchase(requestEvent),
+                        bootCoinBankPurchase.processBootCoinPurchase(second)))
+                .verifyComplete();
+
+        verify(customerCacheService).getCustomerByDocumentNumber("12345678");
+        verify(accountClientService).getAccountById("ACC-001");
+        verify(transactionService).createAccountWithdrawals(eq(account), transactionsCaptor.capture());
+        assertEquals(List.of(new BigDecimal("250"), new BigDecimal("100")), transactionsCaptor.getValue().stream()
+                .map(Transaction::getAmount)
+                .collect(Collectors.toList()));
+        assertTrue(publishedResult("transaction-123").isAccepted());
+        assertTrue(publishedResult(resultsCaptor.getValue(), "transaction-456").isAccepted());
+    }
+    @Test
+    void processBootCoinPurchase_RetryableFailureReachesEveryCallerOfGroup() {
+        BootCoinBankPurchaseRequested second = BootCoinBankPurchaseRequested.builder()
+                .transactionId("transaction-456")
+                .buyerDocumentNumber("12345678")
+                .buyerAccountNumber("ACC-001")
+                .totalAmountInPEN(new BigDecimal("100"))
+                .build();
+        bootCoinBankPurchase = new BootCoinBankPurchase(processedEvents, dispatcher, reactiveKafkaPublisher,
+                transactionService, accountClientService, customerCacheService, 1000, 2);
+        when(customerCacheService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")));
+
+        StepVerifier first = StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(requestEvent))
+                .expectErrorMessage("Customer service is unavailable")
+                .verifyLater();
+        StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(second))
+                .expectErrorMessage("Customer service is unavailable")
+                .verify();
+        first.verify();
+        verify(reactiveKafkaPublisher, never()).sendAll(anyString(), anyList(), any());
+    }
+    @Test
+    void processBootCoinPurchase_RecordsGroupResultsBeforePublishing() {
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenAnswer(invocation -> DownstreamWrites.write(Mono.just(invocation.getArgument(1))));
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
+        InOrder order = inOrder(valueOperations, reactiveKafkaPublisher);
+        order.verify(valueOperations).setIfAbsent(eq(PROCESSED_KEY), eq("PENDING"), any(Duration.class));
+        order.verify(valueOperations).set(eq(PROCESSED_KEY), contains("\"accepted\":true"), any(Duration.class));
+        order.verify(reactiveKafkaPublisher).sendAll(eq("bootcoin.bank.purchase.procesed"), anyList(), any());
+    }
+    @Test
+    void processBootCoinPurchase_RedeliveredPurchaseOnlyRepublishes() {
+        when(valueOperations.get(PROCESSED_KEY))
+                .thenReturn(Mono.just("{\"transactionId\":\"transaction-123\",\"accepted\":true}"));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        bootCoinBankPurchase.processBootCoinPurchase(requestEvent).block();
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.bank.purchase.procesed"), eq("transaction-123"),
+                eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().isAccepted());
+        verifyNoInteractions(customerCacheService, accountClientService, transactionService);
+    }
+    @Test
+    void processBootCoinPurchase_GroupFailingAfterDebitIsNotDebitedAgain() {
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenReturn(DownstreamWrites.write(Mono.error(new RuntimeException("Mongo is unavailable"))));
+        StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(requestEvent))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verify();
+        verify(reactiveKafkaPublisher, never()).sendAll(anyString(), anyList(), any());
+        when(valueOperations.get(PROCESSED_KEY)).thenReturn(Mono.just("PENDING"));
+        StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(requestEvent))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verify();
+        verify(transactionService).createAccountWithdrawals(eq(account), anyList());
+    }
+    @Test
+    void processBootCoinPurchase_ClaimedPurchaseIsLeftOutOfItsGroup() {
+        BootCoinBankPurchaseRequested second = purchase("transaction-456", "100");
+        bootCoinBankPurchase = new BootCoinBankPurchase(processedEvents, dispatcher, reactiveKafkaPublisher,
+                transactionService, accountClientService, customerCacheService, 1000, 2);
+        when(valueOperations.setIfAbsent(eq(PROCESSED_KEY), eq("PENDING"), any(Duration.class)))
+                .thenReturn(Mono.just(false));
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+
+        StepVerifier first = StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(requestEvent))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verifyLater();
+        StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(second)).verifyComplete();
+        first.verify();
+
+        verify(transactionService).createAccountWithdrawals(eq(account), transactionsCaptor.capture());
+        assertEquals(List.of(new BigDecimal("100")), transactionsCaptor.getValue().stream()
+                .map(Transaction::getAmount)
+                .collect(Collectors.toList()));
+        assertEquals(1, publishedResults().size());
+        assertTrue(publishedResult(resultsCaptor.getValue(), "transaction-456").isAccepted());
+        verify(valueOperations, never()).set(eq(PROCESSED_KEY), anyString(), any(Duration.class));
+    }
+    @Test
+    void processBootCoinPurchase_PurchasesWithoutIdAreNotCollapsed() {
+        BootCoinBankPurchaseRequested first = purchase(null, "250");
+        BootCoinBankPurchaseRequested second = purchase(null, "100");
+        bootCoinBankPurchase = new BootCoinBankPurchase(processedEvents, dispatcher, reactiveKafkaPublisher,
+                transactionService, accountClientService, customerCacheService, 1000, 2);
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+
+        StepVerifier.create(Mono.when(bootCoinBankPurchase.processBootCoinPurchase(first),
+                        bootCoinBankPurchase.processBootCoinPurchase(second)))
+                .verifyComplete();
+
+        verify(transactionService).createAccountWithdrawals(eq(account), transactionsCaptor.capture());
+        assertEquals(2, transactionsCaptor.getValue().size());
+        assertEquals(2, publishedResults().size());
+        assertTrue(resultsCaptor.getValue().stream().allMatch(BootCoinBankPurchaseCompleted::isAccepted));
+    }
+    @Test
+    void processBootCoinPurchase_GroupsOfOneAccountRunOneAfterAnother() {
+        BootCoinBankPurchaseRequested second = purchase("transaction-456", "100");
+        Sinks.One<List<Transaction>> firstDebit = Sinks.one();
+        when(customerCacheService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountClientService.getAccountById("ACC-001")).thenReturn(Mono.just(account));
+        when(transactionService.createAccountWithdrawals(eq(account), anyList()))
+                .thenReturn(firstDebit.asMono())
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+
+        StepVerifier first = StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(requestEvent))
+                .expectComplete()
+                .verifyLater();
+        StepVerifier later = StepVerifier.create(bootCoinBankPurchase.processBootCoinPurchase(second))
+                .expectComplete()
+                .verifyLater();
+        verify(accountClientService, times(1)).getAccountById("ACC-001");
+
+        firstDebit.tryEmitValue(List.of());
+        first.verify();
+        later.verify();
+        verify(accountClientService, times(2)).getAccountById("ACC-001");
+    }
+
+    private static BootCoinBankPurchaseRequested purchase(String transactionId, String amount) {
+        return BootCoinBankPurchaseRequested.builder()
+                .transactionId(transactionId)
+                .buyerDocumentNumber("12345678")
+                .buyerAccountNumber("ACC-001")
+                .totalAmountInPEN(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -1,28 +1,33 @@
 package com.bank.transactionservice.event;
 
-import com.bank.transactionservice.client.CustomerClientService;
 import com.bank.transactionservice.dto.bootcoinpurchase.TransactionEvent;
 import com.bank.transactionservice.dto.bootcoinpurchase.TransactionResponse;
 import com.bank.transactionservice.model.customer.Customer;
 import com.bank.transactionservice.model.transaction.ProductCategory;
 import com.bank.transactionservice.model.transaction.Transaction;
 import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.service.CustomerCacheService;
 import com.bank.transactionservice.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -30,13 +35,17 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 @ExtendWith(MockitoExtension.class)
 public class BootCoinTransactionTransferConsumerTest {
+    private static final String PROCESSED_KEY = "ProcessedEvent:bootcoin.transaction.transfer.requested:purchase-123";
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private ReactiveKafkaPublisher reactiveKafkaPublisher;
     @Mock
     private TransactionService transactionService;
     @Mock
-    private CustomerClientService customerClientService;
-    @InjectMocks
+    private CustomerCacheService customerCacheService;
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
     private BootCoinTransactionTransferConsumer consumer;
     @Captor
     private ArgumentCaptor<TransactionResponse> responseCaptor;
@@ -47,6 +56,12 @@ public class BootCoinTransactionTransferConsumerTest {
     private Transaction transaction;
     @BeforeEach
     void setUp() {
+        consumer = new BootCoinTransactionTransferConsumer(new ProcessedEvents(redisTemplate, 60000L),
+                reactiveKafkaPublisher, transactionService, customerCacheService);
+        doReturn(valueOperations).when(redisTemplate).opsForValue();
+        when(valueOperations.get(PROCESSED_KEY)).thenReturn(Mono.empty());
+        lenient().when(valueOperations.set(eq(PROCESSED_KEY), anyString(), any(Duration.class)))
+                .thenReturn(Mono.just(true));
         transactionEvent = TransactionEvent.builder()
                 .purchaseId("purchase-123")
                 .buyerDocumentNumber("12345678")
@@ -70,17 +85,19 @@ public class BootCoinTransactionTransferConsumerTest {
                 .destinationAccountId("SELLER-ACC-001")
                 .transactionDate(LocalDateTime.now())
                 .build();
+        lenient().when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
     }
     @Test
     void processTransferEvent_Success() {
-        when(customerClientService.getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber()))
+        when(customerCacheService.getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber()))
                 .thenReturn(Mono.just(customer));
         when(transactionService.createTransaction(any(Transaction.class)))
                 .thenReturn(Mono.just(transaction));
-        consumer.processTransferEvent(transactionEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
+        consumer.processTransferEvent(transactionEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
         verify(transactionService).createTransaction(transactionCaptor.capture());
-        verify(kafkaTemplate).send(eq("bootcoin.transaction.processed"), responseCaptor.capture());
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.transaction.processed"), eq("purchase-123"),
+                responseCaptor.capture());
         Transaction capturedTransaction = transactionCaptor.getValue();
         assertEquals(customer.getId(), capturedTransaction.getCustomerId());
         assertEquals(transactionEvent.getBuyerAccountNumber(), capturedTransaction.getProductId());
@@ -95,11 +112,12 @@ public class BootCoinTransactionTransferConsumerTest {
     }
     @Test
     void processTransferEvent_CustomerNotFound() {
-        when(customerClientService.getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber()))
-                .thenReturn(Mono.error(new RuntimeException("Customer not found")));
-        consumer.processTransferEvent(transactionEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
-        verify(kafkaTemplate).send(eq("bootcoin.transaction.processed"), responseCaptor.capture());
+        when(customerCacheService.getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber()))
+                .thenReturn(Mono.error(new IllegalArgumentException("Customer not found")));
+        consumer.processTransferEvent(transactionEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.transaction.processed"), eq("purchase-123"),
+                responseCaptor.capture());
         TransactionResponse response = responseCaptor.getValue();
         assertEquals(transactionEvent.getPurchaseId(), response.getTransactionId());
         assertFalse(response.isSuccess());
@@ -107,30 +125,54 @@ public class BootCoinTransactionTransferConsumerTest {
     }
     @Test
     void processTransferEvent_TransactionCreationFails() {
-        when(customerClientService.getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber()))
+        when(customerCacheService.getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber()))
                 .thenReturn(Mono.just(customer));
         when(transactionService.createTransaction(any(Transaction.class)))
-                .thenReturn(Mono.error(new RuntimeException("Failed to create transaction")));
-        consumer.processTransferEvent(transactionEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
+                .thenReturn(Mono.error(new IllegalArgumentException("Failed to create transaction")));
+        consumer.processTransferEvent(transactionEvent).block();
+        verify(customerCacheService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
         verify(transactionService).createTransaction(any(Transaction.class));
-        verify(kafkaTemplate).send(eq("bootcoin.transaction.processed"), responseCaptor.capture());
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.transaction.processed"), eq("purchase-123"),
+                responseCaptor.capture());
         TransactionResponse response = responseCaptor.getValue();
         assertEquals(transactionEvent.getPurchaseId(), response.getTransactionId());
         assertFalse(response.isSuccess());
         assertEquals("Failed to create transaction", response.getMessage());
     }
     @Test
-    void processTransferEvent_CustomerServiceThrowsException() {
+    void processTransferEvent_RetryableFailurePublishesOnlyWhenExhausted() {
         String errorMessage = "Service unavailable";
-        when(customerClientService.getCustomerByDocumentNumber(anyString()))
+        when(customerCacheService.getCustomerByDocumentNumber(anyString()))
                 .thenReturn(Mono.error(new RuntimeException(errorMessage)));
-        consumer.processTransferEvent(transactionEvent);
-        verify(customerClientService).getCustomerByDocumentNumber(transactionEvent.getBuyerDocumentNumber());
-        verify(kafkaTemplate).send(eq("bootcoin.transaction.processed"), responseCaptor.capture());
+        StepVerifier.create(consumer.processTransferEvent(transactionEvent))
+                .expectErrorMessage(errorMessage)
+                .verify();
+        verify(reactiveKafkaPublisher, never()).send(anyString(), any(), any());
+        consumer.publishFailure(transactionEvent, new RuntimeException(errorMessage)).block();
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.transaction.processed"), eq("purchase-123"),
+                responseCaptor.capture());
         TransactionResponse response = responseCaptor.getValue();
         assertEquals(transactionEvent.getPurchaseId(), response.getTransactionId());
         assertFalse(response.isSuccess());
         assertEquals(errorMessage, response.getMessage());
     }
-}
\ No newline at end of file
+    @Test
+    void processTransferEvent_RedeliveredPurchaseOnlyRepublishes() {
+        when(valueOperations.get(PROCESSED_KEY)).thenReturn(Mono.just(
+                "{\"transactionId\":\"purchase-123\",\"success\":true,\"message\":\"Transaction successful\"}"));
+        consumer.processTransferEvent(transactionEvent).block();
+        verify(transactionService, never()).createTransaction(any(Transaction.class));
+        verify(reactiveKafkaPublisher).send(eq("bootcoin.transaction.processed"), eq("purchase-123"),
+                responseCaptor.capture());
+        assertTrue(responseCaptor.getValue().isSuccess());
+    }
+    @Test
+    void processTransferEvent_PartlyAppliedPurchaseIsNotAppliedAgain() {
+        when(valueOperations.get(PROCESSED_KEY)).thenReturn(Mono.just("PENDING"));
+        StepVerifier.create(consumer.processTransferEvent(transactionEvent))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verify();
+        verify(transactionService, never()).createTransaction(any(Transaction.class));
+        verify(reactiveKafkaPublisher, never()).send(anyString(), any(), any());
+    }
+}
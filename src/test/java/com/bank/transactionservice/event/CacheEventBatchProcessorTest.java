@@ -0,0 +1,118 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+class CacheEventBatchProcessorTest {
+    private static final Function<String, String> ID = value -> value.split(":")[0];
+    private static final Function<String, LocalDateTime> MODIFIED_AT = value -> LocalDateTime.of(2024, 3, 1, 10, 0)
+            .plusMinutes(Long.parseLong(value.split(":")[1]));
+    private SimpleMeterRegistry meterRegistry;
+    private CacheEventBatchProcessor cacheEventBatchProcessor;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheEventBatchProcessor = new CacheEventBatchProcessor(meterRegistry, 0L);
+    }
+    @Test
+    void process_KeepsLastValuePerId() {
+        List<Map<String, String>> written = new ArrayList<>();
+        Function<String, String> idExtractor = value -> value.split(":")[0];
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.fromRunnable(() -> written.add(batch));
+        cacheEventBatchProcessor.process("Entity", Arrays.asList("a:1", "b:1", "a:2", null),
+                Arrays.asList("entity-created", "entity-created", "entity-updated", "entity-updated"),
+                idExtractor, value -> null, writer).block();
+        assertEquals(1, written.size());
+        assertEquals(Map.of("a", "a:2", "b", "b:1"), written.get(0));
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.received")
+                .tag("topic", "entity-updated").counter().count());
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.collapsed")
+                .tag("entity", "Entity").counter().count());
+        assertEquals(2.0, meterRegistry.get("transaction.cache.batch.size").summary().totalAmount());
+    }
+    @Test
+    void process_EmptyBatchSkipsWrite() {
+        List<Map<String, String>> written = new ArrayList<>();
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.fromRunnable(() -> written.add(batch));
+        cacheEventBatchProcessor.process("Entity", Collections.<String>emptyList(), Collections.emptyList(),
+                Function.identity(), value -> null, writer).block();
+        assertTrue(written.isEmpty());
+        assertTrue(meterRegistry.find("transaction.cache.batch.write").timers().isEmpty());
+    }
+    @Test
+    void process_KeepsNewestModifiedAtRegardlessOfArrivalOrder() {
+        List<Map<String, String>> written = new ArrayList<>();
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.fromRunnable(() -> written.add(batch));
+        cacheEventBatchProcessor.process("Entity", Arrays.asList("a:5", "a:3", "a:4"),
+                Collections.nCopies(3, "entity-updated"), ID, MODIFIED_AT, writer).block();
+        assertEquals(List.of(Map.of("a", "a:5")), written);
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.stale").counter().count());
+    }
+    @Test
+    void process_CoalescesBatchesWithinWindow() {
+        CacheEventBatchProcessor windowed = new CacheEventBatchProcessor(meterRegistry, 50L);
+        List<Map<String, String>> written = new ArrayList<>();
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.fromRunnable(() -> written.add(batch));
+        Mono<Void> first = windowed.process("Entity", List.of("a:1", "b:1"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer);
+        Mono<Void> second = windowed.process("Entity", List.of("a:2"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer);
+        Mono<Void> stale = windowed.process("Entity", List.of("b:0"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer);
+        Mono.when(first, second, stale).block(Duration.ofSeconds(5));
+        assertEquals(List.of(Map.of("a", "a:2", "b", "b:1")), written);
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.collapsed")
+                .tag("entity", "Entity").counter().count());
+        assertEquals(1L, meterRegistry.get("transaction.cache.batch.write").timer().count());
+    }
+    @Test
+    void process_WindowPropagatesWriteFailureToEveryBatch() {
+        CacheEventBatchProcessor windowed = new CacheEventBatchProcessor(meterRegistry, 10L);
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.error(new RuntimeException("Redis down"));
+        Mono<Void> first = windowed.process("Entity", List.of("a:1"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer);
+        Mono<Void> second = windowed.process("Entity", List.of("b:1"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer);
+        StepVerifier.create(first).expectErrorMessage("Redis down").verify(Duration.ofSeconds(5));
+        StepVerifier.create(second).expectErrorMessage("Redis down").verify(Duration.ofSeconds(5));
+    }
+    @Test
+    void process_OpensNoWindowUntilSubscribed() {
+        CacheEventBatchProcessor windowed = new CacheEventBatchProcessor(meterRegistry, 10L);
+        List<Map<String, String>> written = new ArrayList<>();
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.fromRunnable(() -> written.add(batch));
+        Mono<Void> unsubscribed = windowed.process("Entity", List.of("a:1"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer);
+        windowed.process("Entity", List.of("b:1"), List.of("entity-updated"), ID, MODIFIED_AT, writer)
+                .block(Duration.ofSeconds(5));
+        assertEquals(List.of(Map.of("b", "b:1")), written);
+        assertEquals(1.0, meterRegistry.get("transaction.cache.events.received").counter().count());
+        unsubscribed.block(Duration.ofSeconds(5));
+        assertEquals(List.of(Map.of("b", "b:1"), Map.of("a", "a:1")), written);
+    }
+    @Test
+    void destroy_WritesOpenWindowsWithoutWaitingForTimer() {
+        CacheEventBatchProcessor windowed = new CacheEventBatchProcessor(meterRegistry, 60000L);
+        List<Map<String, String>> written = new ArrayList<>();
+        Function<Map<String, String>, Mono<Void>> writer = batch -> Mono.fromRunnable(() -> written.add(batch));
+        Mono<Void> pending = windowed.process("Entity", List.of("a:1"), List.of("entity-updated"),
+                ID, MODIFIED_AT, writer).cache();
+        pending.subscribe();
+        assertTrue(written.isEmpty());
+        windowed.destroy();
+        assertEquals(List.of(Map.of("a", "a:1")), written);
+        StepVerifier.create(pending).verifyComplete();
+    }
+}
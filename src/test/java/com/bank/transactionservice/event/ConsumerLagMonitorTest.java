@@ -0,0 +1,107 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class ConsumerLagMonitorTest {
+    private static final TopicPartition ACCOUNT_0 = new TopicPartition("account-updated", 0);
+    private static final TopicPartition ACCOUNT_1 = new TopicPartition("account-updated", 1);
+    private static final TopicPartition YANKI_0 = new TopicPartition("yanki.transaction.requested", 0);
+    @Mock
+    private Admin admin;
+    @Mock
+    private ListConsumerGroupOffsetsResult groupOffsets;
+    @Mock
+    private ListConsumerGroupOffsetsResult cacheGroupOffsets;
+    @Mock
+    private ListOffsetsResult endOffsets;
+    private SimpleMeterRegistry meterRegistry;
+    private ConsumerLagMonitor consumerLagMonitor;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        consumerLagMonitor = new ConsumerLagMonitor(new KafkaProperties(), meterRegistry) {
+            @Override
+            Admin createAdmin() {
+                return admin;
+            }
+        };
+    }
+    @Test
+    void refresh_ComputesLagPerPartition() {
+        stubOffsets(Map.of(ACCOUNT_0, 10L, ACCOUNT_1, 40L, YANKI_0, 5L),
+                Map.of(ACCOUNT_0, 15L, ACCOUNT_1, 40L, YANKI_0, 25L));
+        StepVerifier.create(consumerLagMonitor.refresh())
+                .expectNext(Map.of(ACCOUNT_0, 5L, ACCOUNT_1, 0L, YANKI_0, 20L))
+                .verifyComplete();
+        assertEquals(5L, consumerLagMonitor.lag(List.of("account-updated")));
+        assertEquals(2, consumerLagMonitor.partitions(List.of("account-updated")));
+        assertEquals(20.0, meterRegistry.get("transaction.kafka.consumer.lag")
+                .tags("topic", "yanki.transaction.requested", "partition", "0").gauge().value());
+        ConsumerLagEndpoint endpoint = new ConsumerLagEndpoint(consumerLagMonitor);
+        assertEquals(Map.of(0, 5L, 1, 0L), endpoint.topicLag("account-updated"));
+        assertEquals(Map.of(), endpoint.topicLag("unknown"));
+        assertEquals(2, endpoint.lag().size());
+        verify(groupOffsets).partitionsToOffsetAndMetadata();
+        verify(cacheGroupOffsets).partitionsToOffsetAndMetadata();
+    }
+    @Test
+    void refresh_KeepsLastLagWhenAdminFails() {
+        stubOffsets(Map.of(ACCOUNT_0, 10L), Map.of(ACCOUNT_0, 12L));
+        StepVerifier.create(consumerLagMonitor.refresh()).expectNextCount(1).verifyComplete();
+        KafkaFuture<Map<TopicPartition, OffsetAndMetadata>> failed = KafkaFuture.completedFuture(null)
+                .thenApply(unused -> {
+                    throw new IllegalStateException("Coordinator unavailable");
+                });
+        when(cacheGroupOffsets.partitionsToOffsetAndMetadata()).thenReturn(failed);
+        StepVerifier.create(consumerLagMonitor.refresh())
+                .expectErrorMessage("Coordinator unavailable")
+                .verify();
+        assertEquals(2L, consumerLagMonitor.lag(List.of("account-updated")));
+    }
+    @Test
+    void destroy_ClosesAdmin() {
+        stubOffsets(Map.of(), Map.of());
+        StepVerifier.create(consumerLagMonitor.refresh()).expectNext(Map.of()).verifyComplete();
+        consumerLagMonitor.destroy();
+        verify(admin).close();
+    }
+    // Money topics are committed by the pipeline's group, entity topics by the cache listeners' group
+    private void stubOffsets(Map<TopicPartition, Long> committed, Map<TopicPartition, Long> latest) {
+        Map<TopicPartition, OffsetAndMetadata> committedOffsets = new HashMap<>();
+        Map<TopicPartition, OffsetAndMetadata> cacheCommittedOffsets = new HashMap<>();
+        committed.forEach((partition, offset) -> (partition.topic().startsWith("account")
+                ? cacheCommittedOffsets : committedOffsets).put(partition, new OffsetAndMetadata(offset)));
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latestOffsets = new HashMap<>();
+        latest.forEach((partition, offset) -> latestOffsets.put(partition,
+                new ListOffsetsResult.ListOffsetsResultInfo(offset, -1L, Optional.empty())));
+        when(admin.listConsumerGroupOffsets(ReactiveTransactionPipeline.GROUP_ID)).thenReturn(groupOffsets);
+        when(groupOffsets.partitionsToOffsetAndMetadata()).thenReturn(KafkaFuture.completedFuture(committedOffsets));
+        when(admin.listConsumerGroupOffsets(CacheEventBatchProcessor.GROUP_ID)).thenReturn(cacheGroupOffsets);
+        when(cacheGroupOffsets.partitionsToOffsetAndMetadata())
+                .thenReturn(KafkaFuture.completedFuture(cacheCommittedOffsets));
+        lenient().when(admin.listOffsets(anyMap())).thenReturn(endOffsets);
+        lenient().when(endOffsets.all()).thenReturn(KafkaFuture.completedFuture(latestOffsets));
+    }
+}
@@ -3,77 +3,105 @@ package com.bank.transactionservice.event;
 import com.bank.transactionservice.model.creditcard.CreditCard;
 import com.bank.transactionservice.model.creditcard.CreditCardType;
 import com.bank.transactionservice.service.TransactionCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.mock.env.MockEnvironment;
 import reactor.core.publisher.Mono;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class CreditCardEventConsumerTest {
     @Mock
     private TransactionCacheService cacheService;
+    private SimpleMeterRegistry meterRegistry;
+    private Acknowledgment acknowledgment;
+    private final Consumer<?, ?> consumer = mock(Consumer.class);
     private CreditCardEventConsumer creditCardEventConsumer;
     @BeforeEach
     void setUp() {
-        creditCardEventConsumer = new CreditCardEventConsumer(cacheService);
+        meterRegistry = new SimpleMeterRegistry();
+        acknowledgment = mock(Acknowledgment.class);
+        ListenerFlowControl listenerFlowControl = new ListenerFlowControl(mock(KafkaListenerEndpointRegistry.class),
+                meterRegistry, new MockEnvironment(), 4, 100L);
+        CacheEventBatchProcessor cacheEventBatchProcessor = new CacheEventBatchProcessor(meterRegistry, 0L);
+        creditCardEventConsumer = new CreditCardEventConsumer(cacheService, cacheEventBatchProcessor,
+                listenerFlowControl);
     }
     @Test
-    void consumeCreditCardCreated_Success() {
+    @SuppressWarnings("unchecked")
+    void consumeCreditCardEvents_CollapsesToLatestPerId() {
         // Arrange
-        CreditCard creditCard = createCreditCard("123");
-        when(cacheService.saveCreditCard(creditCard.getId(), creditCard))
-                .thenReturn(Mono.empty());
+        CreditCard created = createCreditCard("123");
+        CreditCard updated = createCreditCard("123");
+        CreditCard other = createCreditCard("456");
+        when(cacheService.saveCreditCards(anyMap())).thenReturn(Mono.empty());
         // Act
-        creditCardEventConsumer.consumeCreditCardCreated(creditCard);
+        creditCardEventConsumer.consumeCreditCardEvents(Arrays.asList(created, other, updated),
+                Arrays.asList("creditcard-created", "creditcard-created", "creditcard-updated"), acknowledgment,
+                consumer);
         // Assert
-        verify(cacheService).saveCreditCard(creditCard.getId(), creditCard);
+        verify(acknowledgment).acknowledge();
+        ArgumentCaptor<Map<String, CreditCard>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).saveCreditCards(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertSame(updated, captor.getValue().get("123"));
+        assertSame(other, captor.getValue().get("456"));
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.received")
+                .tag("topic", "creditcard-created").counter().count());
+        assertEquals(1.0, meterRegistry.get("transaction.cache.events.collapsed").counter().count());
+        assertEquals(1L, meterRegistry.get("transaction.cache.batch.write").timer().count());
     }
     @Test
-    void consumeCreditCardCreated_ErrorSavingCreditCard() {
+    void consumeCreditCardEvents_ErrorSavingCreditCard() {
         // Arrange
         CreditCard creditCard = createCreditCard("123");
-        RuntimeException expectedError = new RuntimeException("Error saving credit card");
-        when(cacheService.saveCreditCard(creditCard.getId(), creditCard))
-                .thenReturn(Mono.error(expectedError));
+        when(cacheService.saveCreditCards(anyMap()))
+                .thenReturn(Mono.error(new RuntimeException("Error saving batch")));
         // Act
-        creditCardEventConsumer.consumeCreditCardCreated(creditCard);
+        creditCardEventConsumer.consumeCreditCardEvents(Collections.singletonList(creditCard),
+                Collections.singletonList("creditcard-updated"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCreditCard(creditCard.getId(), creditCard);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService).saveCreditCards(Map.of("123", creditCard));
     }
     @Test
-    void consumeCreditCardCreated_NullCreditCard() {
-        // Act
-        creditCardEventConsumer.consumeCreditCardCreated(null);
-        // Assert
-        verify(cacheService, never()).saveCreditCard(any(), any());
-    }
-    @Test
-    void consumeCreditCardUpdated_Success() {
-        // Arrange
-        CreditCard creditCard = createCreditCard("123");
-        when(cacheService.saveCreditCard(creditCard.getId(), creditCard))
-                .thenReturn(Mono.empty());
+    void consumeCreditCardEvents_NullCreditCard() {
         // Act
-        creditCardEventConsumer.consumeCreditCardUpdated(creditCard);
+        creditCardEventConsumer.consumeCreditCardEvents(Collections.singletonList(null),
+                Collections.singletonList("creditcard-created"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCreditCard(creditCard.getId(), creditCard);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService, never()).saveCreditCards(any());
     }
     @Test
-    void consumeCreditCardUpdated_UnexpectedError() {
+    void consumeCreditCardEvents_UnexpectedError() {
         // Arrange
         CreditCard creditCard = createCreditCard("123");
-        RuntimeException unexpectedError = new RuntimeException("Unexpected error");
-        when(cacheService.saveCreditCard(any(), any()))
-                .thenThrow(unexpectedError);
+        when(cacheService.saveCreditCards(anyMap()))
+                .thenThrow(new RuntimeException("Unexpected error"));
         // Act
-        creditCardEventConsumer.consumeCreditCardUpdated(creditCard);
+        creditCardEventConsumer.consumeCreditCardEvents(List.of(creditCard), List.of("creditcard-updated"),
+                acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCreditCard(creditCard.getId(), creditCard);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService).saveCreditCards(Map.of("123", creditCard));
     }
     private CreditCard createCreditCard(String id) {
         CreditCard creditCard = new CreditCard();
@@ -3,77 +3,102 @@ package com.bank.transactionservice.event;
 import com.bank.transactionservice.model.credit.Credit;
 import com.bank.transactionservice.model.credit.CreditType;
 import com.bank.transactionservice.service.TransactionCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.mock.env.MockEnvironment;
 import reactor.core.publisher.Mono;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class CreditEventConsumerTest {
     @Mock
     private TransactionCacheService cacheService;
+    private SimpleMeterRegistry meterRegistry;
+    private Acknowledgment acknowledgment;
+    private final Consumer<?, ?> consumer = mock(Consumer.class);
     private CreditEventConsumer creditEventConsumer;
     @BeforeEach
     void setUp() {
-        creditEventConsumer = new CreditEventConsumer(cacheService);
+        meterRegistry = new SimpleMeterRegistry();
+        acknowledgment = mock(Acknowledgment.class);
+        ListenerFlowControl listenerFlowControl = new ListenerFlowControl(mock(KafkaListenerEndpointRegistry.class),
+                meterRegistry, new MockEnvironment(), 4, 100L);
+        CacheEventBatchProcessor cacheEventBatchProcessor = new CacheEventBatchProcessor(meterRegistry, 0L);
+        creditEventConsumer = new CreditEventConsumer(cacheService, cacheEventBatchProcessor, listenerFlowControl);
     }
     @Test
-    void consumeCreditCreated_Success() {
+    @SuppressWarnings("unchecked")
+    void consumeCreditEvents_CollapsesToLatestPerId() {
         // Arrange
-        Credit credit = createCredit("123");
-        when(cacheService.saveCredit(credit.getId(), credit))
-                .thenReturn(Mono.empty());
+        Credit created = createCredit("123");
+        Credit updated = createCredit("123");
+        Credit other = createCredit("456");
+        when(cacheService.saveCredits(anyMap())).thenReturn(Mono.empty());
         // Act
-        creditEventConsumer.consumeCreditCreated(credit);
+        creditEventConsumer.consumeCreditEvents(Arrays.asList(created, other, updated),
+                Arrays.asList("credit-created", "credit-created", "credit-updated"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCredit(credit.getId(), credit);
+        verify(acknowledgment).acknowledge();
+        ArgumentCaptor<Map<String, Credit>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).saveCredits(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertSame(updated, captor.getValue().get("123"));
+        assertSame(other, captor.getValue().get("456"));
+        assertEquals(2.0, meterRegistry.get("transaction.cache.events.received")
+                .tag("topic", "credit-created").counter().count());
+        assertEquals(1.0, meterRegistry.get("transaction.cache.events.collapsed").counter().count());
+        assertEquals(1L, meterRegistry.get("transaction.cache.batch.write").timer().count());
     }
     @Test
-    void consumeCreditCreated_ErrorSavingCredit() {
+    void consumeCreditEvents_ErrorSavingCredit() {
         // Arrange
         Credit credit = createCredit("123");
-        RuntimeException expectedError = new RuntimeException("Error saving credit");
-        when(cacheService.saveCredit(credit.getId(), credit))
-                .thenReturn(Mono.error(expectedError));
+        when(cacheService.saveCredits(anyMap()))
+                .thenReturn(Mono.error(new RuntimeException("Error saving batch")));
         // Act
-        creditEventConsumer.consumeCreditCreated(credit);
+        creditEventConsumer.consumeCreditEvents(Collections.singletonList(credit),
+                Collections.singletonList("credit-updated"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCredit(credit.getId(), credit);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService).saveCredits(Map.of("123", credit));
     }
     @Test
-    void consumeCreditCreated_NullCredit() {
-        // Act
-        creditEventConsumer.consumeCreditCreated(null);
-        // Assert
-        verify(cacheService, never()).saveCredit(any(), any());
-    }
-    @Test
-    void consumeCreditUpdated_Success() {
-        // Arrange
-        Credit credit = createCredit("123");
-        when(cacheService.saveCredit(credit.getId(), credit))
-                .thenReturn(Mono.empty());
+    void consumeCreditEvents_NullCredit() {
         // Act
-        creditEventConsumer.consumeCreditUpdated(credit);
+        creditEventConsumer.consumeCreditEvents(Collections.singletonList(null),
+                Collections.singletonList("credit-created"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCredit(credit.getId(), credit);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService, never()).saveCredits(any());
     }
     @Test
-    void consumeCreditUpdated_UnexpectedError() {
+    void consumeCreditEvents_UnexpectedError() {
         // Arrange
         Credit credit = createCredit("123");
-        RuntimeException unexpectedError = new RuntimeException("Unexpected error");
-        when(cacheService.saveCredit(any(), any()))
-                .thenThrow(unexpectedError);
+        when(cacheService.saveCredits(anyMap()))
+                .thenThrow(new RuntimeException("Unexpected error"));
         // Act
-        creditEventConsumer.consumeCreditUpdated(credit);
+        creditEventConsumer.consumeCreditEvents(List.of(credit), List.of("credit-updated"), acknowledgment, consumer);
         // Assert
-        verify(cacheService).saveCredit(credit.getId(), credit);
+        verify(acknowledgment).acknowledge();
+        verify(cacheService).saveCredits(Map.of("123", credit));
     }
     private Credit createCredit(String id) {
         Credit credit = new Credit();
@@ -0,0 +1,56 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+class KeyOrderedDispatcherTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(meterRegistry);
+    private final List<String> started = new ArrayList<>();
+    @Test
+    void dispatch_SerializesWorkSharingAKey() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        dispatcher.dispatch(List.of("card:1"), work("first", first.asMono())).subscribe();
+        dispatcher.dispatch(List.of("card:1", "card:2"), work("second", Mono.empty())).subscribe();
+        assertEquals(List.of("first"), started);
+        first.tryEmitEmpty();
+        assertEquals(List.of("first", "second"), started);
+    }
+    @Test
+    void dispatch_RunsUnrelatedKeysConcurrently() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        dispatcher.dispatch(List.of("card:1"), work("first", first.asMono())).subscribe();
+        dispatcher.dispatch(List.of("card:2"), work("second", Sinks.<Void>empty().asMono())).subscribe();
+        assertEquals(List.of("first", "second"), started);
+        assertEquals(2.0, meterRegistry.get("transaction.kafka.ordering.active-keys").gauge().value());
+    }
+    @Test
+    void dispatch_ReleasesKeyAfterFailure() {
+        dispatcher.dispatch(List.of("card:1"), work("failing", Mono.error(new RuntimeException("Failed"))))
+                .onErrorResume(error -> Mono.empty())
+                .subscribe();
+        dispatcher.dispatch(List.of("card:1"), work("next", Mono.empty())).subscribe();
+        assertEquals(List.of("failing", "next"), started);
+        assertEquals(0, dispatcher.activeKeys());
+    }
+    @Test
+    void dispatch_HoldsNoKeyUntilSubscribed() {
+        Mono<Void> unsubscribed = dispatcher.dispatch(List.of("card:1"), work("never", Mono.empty()));
+        assertEquals(0, dispatcher.activeKeys());
+        dispatcher.dispatch(List.of("card:1"), work("next", Mono.empty())).subscribe();
+        assertEquals(List.of("next"), started);
+        unsubscribed.subscribe();
+        assertEquals(List.of("next", "never"), started);
+    }
+    private Supplier<Mono<Void>> work(String name, Mono<Void> result) {
+        return () -> {
+            started.add(name);
+            return result;
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class ListenerConcurrencyAutoscalerTest {
+    private static final String LISTENER_ID = "accountCacheListener";
+    private static final List<String> TOPICS = List.of("account-created", "account-updated");
+    private static final List<String> PRIORITY = List.of("yanki.transaction.requested");
+    @Mock
+    private KafkaListenerEndpointRegistry listenerEndpointRegistry;
+    @Mock
+    private ConsumerLagMonitor consumerLagMonitor;
+    @Mock
+    private ListenerFlowControl listenerFlowControl;
+    @Mock
+    private ConcurrentMessageListenerContainer<Object, Object> container;
+    private SimpleMeterRegistry meterRegistry;
+    private ListenerConcurrencyAutoscaler autoscaler;
+    private Map<String, Integer> restarts;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        restarts = new HashMap<>();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transaction.kafka.listeners." + LISTENER_ID + ".max-concurrency", "3");
+        autoscaler = new ListenerConcurrencyAutoscaler(listenerEndpointRegistry, consumerLagMonitor,
+                listenerFlowControl, meterRegistry, environment, 1000L, 1000L, 100L,
+                PRIORITY.toArray(new String[0])) {
+            @Override
+            void restart(ConcurrentMessageListenerContainer<?, ?> restarted, int concurrency) {
+                restarts.put(restarted.getListenerId(), concurrency);
+            }
+        };
+        lenient().when(consumerLagMonitor.refresh()).thenReturn(Mono.just(Map.of()));
+        lenient().when(listenerEndpointRegistry.getListenerContainers()).thenReturn(List.of(container));
+        lenient().when(container.getListenerId()).thenReturn(LISTENER_ID);
+        ContainerProperties containerProperties = new ContainerProperties(TOPICS.toArray(new String[0]));
+        lenient().when(container.getContainerProperties()).thenReturn(containerProperties);
+        lenient().when(container.isRunning()).thenReturn(true);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(container).stop(any(Runnable.class));
+    }
+    @Test
+    void rescale_ScalesUpWhenBacklogExceedsTargetDrainTime() {
+        when(consumerLagMonitor.lag(PRIORITY)).thenReturn(0L);
+        when(container.getConcurrency()).thenReturn(1);
+        when(consumerLagMonitor.lag(TOPICS)).thenReturn(500L);
+        when(consumerLagMonitor.partitions(TOPICS)).thenReturn(6);
+        when(listenerFlowControl.recordProcessingMs(LISTENER_ID)).thenReturn(10.0);
+        StepVerifier.create(autoscaler.rescale()).verifyComplete();
+        assertEquals(Map.of(LISTENER_ID, 2), restarts);
+        assertEquals(1.0, meterRegistry.get("transaction.kafka.listener.rescaled")
+                .tags("listener", LISTENER_ID, "direction", "up").counter().count());
+        assertEquals(2.0, meterRegistry.get("transaction.kafka.listener.concurrency").gauge().value());
+    }
+    @Test
+    void rescale_NeverExceedsMaxConcurrency() {
+        when(consumerLagMonitor.lag(PRIORITY)).thenReturn(0L);
+        when(container.getConcurrency()).thenReturn(3);
+        when(consumerLagMonitor.lag(TOPICS)).thenReturn(5000L);
+        when(consumerLagMonitor.partitions(TOPICS)).thenReturn(6);
+        when(listenerFlowControl.recordProcessingMs(LISTENER_ID)).thenReturn(10.0);
+        StepVerifier.create(autoscaler.rescale()).verifyComplete();
+        verify(container, never()).stop(any(Runnable.class));
+    }
+    @Test
+    void rescale_ScalesDownWhenCaughtUp() {
+        when(consumerLagMonitor.lag(PRIORITY)).thenReturn(0L);
+        when(container.getConcurrency()).thenReturn(3);
+        when(consumerLagMonitor.lag(TOPICS)).thenReturn(0L);
+        when(consumerLagMonitor.partitions(TOPICS)).thenReturn(6);
+        StepVerifier.create(autoscaler.rescale()).verifyComplete();
+        assertEquals(Map.of(LISTENER_ID, 2), restarts);
+    }
+    @Test
+    void rescale_YieldsToLaggingPriorityTopics() {
+        when(container.getConcurrency()).thenReturn(3);
+        when(consumerLagMonitor.lag(PRIORITY)).thenReturn(1000L);
+        StepVerifier.create(autoscaler.rescale()).verifyComplete();
+        assertEquals(Map.of(LISTENER_ID, 1), restarts);
+        verify(consumerLagMonitor, never()).lag(TOPICS);
+    }
+    @Test
+    void lifecycle_SchedulesEvaluation() {
+        autoscaler.start();
+        assertTrue(autoscaler.isRunning());
+        autoscaler.stop();
+        assertFalse(autoscaler.isRunning());
+    }
+}
@@ -0,0 +1,145 @@
+package com.bank.transactionservice.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class ListenerFlowControlTest {
+    private static final String LISTENER_ID = "testListener";
+    private static final TopicPartition PARTITION = new TopicPartition("test-topic", 0);
+    @Mock
+    private KafkaListenerEndpointRegistry listenerEndpointRegistry;
+    @Mock
+    private MessageListenerContainer container;
+    private SimpleMeterRegistry meterRegistry;
+    private ListenerFlowControl listenerFlowControl;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transaction.kafka.listeners." + LISTENER_ID + ".max-in-flight", "2");
+        listenerFlowControl = new ListenerFlowControl(listenerEndpointRegistry, meterRegistry, environment, 64, 10L);
+    }
+    @Test
+    void submit_AcknowledgesAfterCompletion() {
+        Sinks.Empty<Void> work = Sinks.empty();
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 10L, acknowledgment, work::asMono);
+        assertEquals(1, listenerFlowControl.inFlight(LISTENER_ID));
+        verify(acknowledgment, never()).acknowledge();
+        work.tryEmitEmpty();
+        verify(acknowledgment).acknowledge();
+        assertEquals(0, listenerFlowControl.inFlight(LISTENER_ID));
+        assertEquals(0.0, meterRegistry.get("transaction.kafka.listener.in-flight").gauge().value());
+    }
+    @Test
+    void submit_CommitsOnlyContiguousOffsets() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        Sinks.Empty<Void> second = Sinks.empty();
+        Acknowledgment firstAck = mock(Acknowledgment.class);
+        Acknowledgment secondAck = mock(Acknowledgment.class);
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 10L, firstAck, first::asMono);
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 11L, secondAck, second::asMono);
+        second.tryEmitEmpty();
+        verifyNoInteractions(firstAck, secondAck);
+        first.tryEmitEmpty();
+        verify(secondAck).acknowledge();
+        verify(firstAck, never()).acknowledge();
+    }
+    @Test
+    void submit_FailedWorkIsStillAcknowledged() {
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        Mono<Void> failing = Mono.error(new RuntimeException("Unhandled"));
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 10L, acknowledgment, () -> failing);
+        verify(acknowledgment).acknowledge();
+    }
+    @Test
+    void submit_RedeliversOverLimitAndResumesWhenDrained() {
+        when(listenerEndpointRegistry.getListenerContainer(LISTENER_ID)).thenReturn(container);
+        Sinks.Empty<Void> first = Sinks.empty();
+        Sinks.Empty<Void> second = Sinks.empty();
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 10L, mock(Acknowledgment.class), first::asMono);
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 11L, mock(Acknowledgment.class), second::asMono);
+        verify(container, never()).pause();
+        // Third record is handed back to the container instead of being admitted over the limit
+        Acknowledgment thirdAck = mock(Acknowledgment.class);
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 12L, thirdAck, Mono::never);
+        verify(container).pause();
+        verify(thirdAck).nack(10L);
+        assertEquals(2, listenerFlowControl.inFlight(LISTENER_ID));
+        first.tryEmitEmpty();
+        verify(container).resume();
+        second.tryEmitEmpty();
+        assertEquals(0, listenerFlowControl.inFlight(LISTENER_ID));
+    }
+    @Test
+    void submit_ResumesAtOnceWhenWorkDrainedBeforePause() {
+        when(listenerEndpointRegistry.getListenerContainer(LISTENER_ID)).thenReturn(container);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transaction.kafka.listeners." + LISTENER_ID + ".max-in-flight", "0");
+        listenerFlowControl = new ListenerFlowControl(listenerEndpointRegistry, meterRegistry, environment, 64, 10L);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        listenerFlowControl.submit(LISTENER_ID, PARTITION, 10L, acknowledgment, Mono::empty);
+        verify(acknowledgment).nack(10L);
+        verify(container).pause();
+        verify(container).resume();
+    }
+    @Test
+    void submitBatch_AcknowledgesBatchesInOrderPerConsumer() {
+        Object consumer = new Object();
+        Object otherConsumer = new Object();
+        Sinks.Empty<Void> first = Sinks.empty();
+        Acknowledgment firstAck = mock(Acknowledgment.class);
+        Acknowledgment secondAck = mock(Acknowledgment.class);
+        Acknowledgment otherAck = mock(Acknowledgment.class);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, 2, firstAck, first::asMono);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, 1, secondAck, Mono::empty);
+        verifyNoInteractions(secondAck);
+        // A slow batch of one consumer does not hold back another consumer's batches
+        listenerFlowControl.submitBatch(LISTENER_ID, otherConsumer, 1, otherAck, Mono::empty);
+        verify(otherAck).acknowledge();
+        first.tryEmitEmpty();
+        verify(secondAck).acknowledge();
+    }
+    @Test
+    void submitBatch_RedeliversWholeBatchOverLimit() {
+        Object consumer = new Object();
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, 1, mock(Acknowledgment.class), Mono::never);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, 1, mock(Acknowledgment.class), Mono::never);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        listenerFlowControl.submitBatch(LISTENER_ID, consumer, 3, acknowledgment, Mono::empty);
+        verify(acknowledgment).nack(0, 10L);
+        verify(acknowledgment, never()).acknowledge();
+        assertEquals(2, listenerFlowControl.inFlight(LISTENER_ID));
+    }
+    @Test
+    void submitBatch_TracksProcessingTimePerRecord() {
+        Runnable slowWork = () -> {
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        assertEquals(0.0, listenerFlowControl.recordProcessingMs(LISTENER_ID));
+        Supplier<Mono<?>> work = () -> Mono.fromRunnable(slowWork);
+        listenerFlowControl.submitBatch(LISTENER_ID, new Object(), 4, mock(Acknowledgment.class), work);
+        double perRecordMs = listenerFlowControl.recordProcessingMs(LISTENER_ID);
+        assertTrue(perRecordMs >= 10.0 && perRecordMs < 40.0, "per record: " + perRecordMs);
+        assertEquals(1L, meterRegistry.get("transaction.kafka.listener.processing").timer().count());
+    }
+}
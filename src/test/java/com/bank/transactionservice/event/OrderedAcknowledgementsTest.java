@@ -0,0 +1,41 @@
+package com.bank.transactionservice.event;
+
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.*;
+class OrderedAcknowledgementsTest {
+    private final OrderedAcknowledgements acknowledgements = new OrderedAcknowledgements();
+    @Test
+    void complete_RunsOnlyHighestContiguousAcknowledgment() {
+        Runnable first = mock(Runnable.class);
+        Runnable second = mock(Runnable.class);
+        Runnable third = mock(Runnable.class);
+        acknowledgements.track("partition-0", 1L, first);
+        acknowledgements.track("partition-0", 2L, second);
+        acknowledgements.track("partition-0", 3L, third);
+        acknowledgements.complete("partition-0", 2L);
+        verifyNoInteractions(first, second, third);
+        acknowledgements.complete("partition-0", 1L);
+        verify(second).run();
+        verifyNoInteractions(first, third);
+        acknowledgements.complete("partition-0", 3L);
+        verify(third).run();
+    }
+    @Test
+    void complete_TracksSourcesIndependently() {
+        Runnable blocked = mock(Runnable.class);
+        Runnable other = mock(Runnable.class);
+        acknowledgements.track("partition-0", 1L, blocked);
+        acknowledgements.track("partition-1", 1L, other);
+        acknowledgements.complete("partition-1", 1L);
+        verify(other).run();
+        verifyNoInteractions(blocked);
+    }
+    @Test
+    void forget_DropsPendingAcknowledgments() {
+        Runnable acknowledgment = mock(Runnable.class);
+        acknowledgements.track("partition-0", 1L, acknowledgment);
+        acknowledgements.forget("partition-0");
+        acknowledgements.complete("partition-0", 1L);
+        verifyNoInteractions(acknowledgment);
+    }
+}
@@ -0,0 +1,191 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.client.DownstreamWrites;
+import com.bank.transactionservice.dto.bootcoinpurchase.TransactionResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class ProcessedEventsTest {
+    private static final String TOPIC = "bootcoin.transaction.transfer.requested";
+    private static final String KEY = "ProcessedEvent:" + TOPIC + ":purchase-1";
+    private static final Duration RETENTION = Duration.ofMillis(60000L);
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private ProcessedEvents processedEvents;
+    private final AtomicInteger writes = new AtomicInteger();
+    @BeforeEach
+    void setUp() {
+        lenient().doReturn(valueOperations).when(redisTemplate).opsForValue();
+        processedEvents = new ProcessedEvents(redisTemplate, RETENTION.toMillis());
+    }
+    @Test
+    void process_AppliesAndRecordsNewEvent() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.empty());
+        when(valueOperations.setIfAbsent(KEY, "PENDING", RETENTION)).thenReturn(Mono.just(true));
+        when(valueOperations.set(eq(KEY), anyString(), eq(RETENTION))).thenReturn(Mono.just(true));
+        StepVerifier.create(process(() -> write(response(true))))
+                .expectNextMatches(TransactionResponse::isSuccess)
+                .verifyComplete();
+        InOrder order = inOrder(valueOperations);
+        order.verify(valueOperations).setIfAbsent(KEY, "PENDING", RETENTION);
+        order.verify(valueOperations).set(eq(KEY), contains("\"success\":true"), eq(RETENTION));
+        assertEquals(1, writes.get());
+    }
+    @Test
+    void process_RepublishesRecordedResultWithoutApplyingAgain() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.just(
+                "{\"transactionId\":\"purchase-1\",\"success\":true,\"message\":\"ok\"}"));
+        StepVerifier.create(process(() -> write(response(true))))
+                .expectNextMatches(response -> response.isSuccess() && "ok".equals(response.getMessage()))
+                .verifyComplete();
+        assertEquals(0, writes.get());
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+    @Test
+    void process_EventLeftPendingIsUnknown() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.just("PENDING"));
+        StepVerifier.create(process(() -> write(response(true))))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verify();
+        assertEquals(0, writes.get());
+    }
+    @Test
+    void process_FailureAfterFirstWriteIsUnknown() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.empty());
+        when(valueOperations.setIfAbsent(KEY, "PENDING", RETENTION)).thenReturn(Mono.just(true));
+        StepVerifier.create(process(() -> write(response(true)).then(Mono.error(new RuntimeException("Timeout")))))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verify();
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+    @Test
+    void process_TerminalFailureBeforeFirstWriteIsRecorded() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.empty());
+        when(valueOperations.set(eq(KEY), anyString(), eq(RETENTION))).thenReturn(Mono.just(true));
+        StepVerifier.create(process(() -> Mono.error(new IllegalArgumentException("Insufficient balance"))))
+                .expectNextMatches(response -> !response.isSuccess()
+                        && "Insufficient balance".equals(response.getMessage()))
+                .verifyComplete();
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+    @Test
+    void process_RetryableFailureBeforeFirstWritePropagates() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.empty());
+        StepVerifier.create(process(() -> Mono.error(new RuntimeException("Account service is unavailable"))))
+                .expectErrorMessage("Account service is unavailable")
+                .verify();
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+    @Test
+    void process_EventBeingAppliedElsewhereIsNotWritten() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.empty());
+        when(valueOperations.setIfAbsent(KEY, "PENDING", RETENTION)).thenReturn(Mono.just(false));
+        StepVerifier.create(process(() -> write(response(true))))
+                .expectError(ProcessedEvents.OutcomeUnknownException.class)
+                .verify();
+        assertEquals(0, writes.get());
+    }
+    @Test
+    void process_UnrecordedResultIsStillReturned() {
+        when(valueOperations.get(KEY)).thenReturn(Mono.empty());
+        when(valueOperations.setIfAbsent(KEY, "PENDING", RETENTION)).thenReturn(Mono.just(true));
+        when(valueOperations.set(eq(KEY), anyString(), eq(RETENTION)))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")));
+        StepVerifier.create(process(() -> write(response(true))))
+                .expectNextMatches(TransactionResponse::isSuccess)
+                .verifyComplete();
+    }
+    @Test
+    void process_EventWithoutIdSkipsRecords() {
+        Supplier<Mono<TransactionResponse>> closed = () -> Mono.error(new IllegalStateException("Closed"));
+        StepVerifier.create(processedEvents.process(TOPIC, null, TransactionResponse.class, closed, this::failed))
+                .expectNextMatches(response -> !response.isSuccess())
+                .verifyComplete();
+        verifyNoInteractions(redisTemplate);
+    }
+    @Test
+    void claim_EventClaimedElsewhereIsRefused() {
+        when(valueOperations.setIfAbsent(KEY, "PENDING", RETENTION)).thenReturn(Mono.just(false));
+        StepVerifier.create(processedEvents.claim(TOPIC, "purchase-1"))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(processedEvents.claim(TOPIC, null))
+                .expectNext(true)
+                .verifyComplete();
+    }
+    @Test
+    void applyClaimed_RecordsResultsByPosition() {
+        when(valueOperations.set(anyString(), anyString(), eq(RETENTION))).thenReturn(Mono.just(true));
+        Supplier<Mono<List<TransactionResponse>>> transaction = () -> write(response(true))
+                .then(write(response(false)))
+                .map(response -> List.of(response(true), response, response(true)));
+        StepVerifier.create(processedEvents.applyClaimed(TOPIC, Arrays.asList("a", null, "b"), transaction,
+                        this::noResults))
+                .expectNextMatches(results -> results.size() == 3)
+                .verifyComplete();
+        verify(valueOperations).set(eq("ProcessedEvent:" + TOPIC + ":a"), contains("\"success\":true"),
+                eq(RETENTION));
+        verify(valueOperations).set(eq("ProcessedEvent:" + TOPIC + ":b"), contains("\"success\":true"),
+                eq(RETENTION));
+        verify(valueOperations, times(2)).set(anyString(), anyString(), eq(RETENTION));
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+        assertEquals(2, writes.get());
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void applyClaimed_RetryableFailureBeforeFirstWriteReleasesClaims() {
+        ArgumentCaptor<Publisher<String>> keys = ArgumentCaptor.forClass(Publisher.class);
+        when(redisTemplate.delete(keys.capture())).thenReturn(Mono.just(1L));
+        RuntimeException error = new RuntimeException("Account service is unavailable");
+        Supplier<Mono<List<TransactionResponse>>> unavailable = () -> Mono.error(error);
+        StepVerifier.create(processedEvents.applyClaimed(TOPIC, Arrays.asList("a", null), unavailable,
+                        this::noResults))
+                .expectErrorMessage("Account service is unavailable")
+                .verify();
+        assertEquals(List.of("ProcessedEvent:" + TOPIC + ":a"), Flux.from(keys.getValue()).collectList().block());
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    private Mono<TransactionResponse> process(Supplier<Mono<TransactionResponse>> transaction) {
+        return processedEvents.process(TOPIC, "purchase-1", TransactionResponse.class, transaction, this::failed);
+    }
+    private Mono<TransactionResponse> write(TransactionResponse response) {
+        return DownstreamWrites.write(Mono.fromSupplier(() -> {
+            writes.incrementAndGet();
+            return response;
+        }));
+    }
+    private List<TransactionResponse> noResults(Throwable error) {
+        return List.of();
+    }
+    private TransactionResponse failed(Throwable error) {
+        return TransactionResponse.builder().transactionId("purchase-1").message(error.getMessage()).build();
+    }
+    private static TransactionResponse response(boolean success) {
+        return TransactionResponse.builder().transactionId("purchase-1").success(success).message("ok").build();
+    }
+}
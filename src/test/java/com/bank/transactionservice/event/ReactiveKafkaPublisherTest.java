@@ -0,0 +1,142 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.event.serde.SchemaAwareSerializer;
+import com.bank.transactionservice.event.serde.SchemaRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class ReactiveKafkaPublisherTest {
+    @Mock
+    private KafkaSender<String, Object> kafkaSender;
+    private MeterRegistry meterRegistry;
+    private MockEnvironment environment;
+    private Map<String, SenderOptions<String, Object>> createdSenders;
+    private ReactiveKafkaPublisher publisher;
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        environment = new MockEnvironment();
+        createdSenders = new HashMap<>();
+        publisher = new ReactiveKafkaPublisher(new KafkaProperties(), environment, meterRegistry,
+                new SchemaRegistry("classpath*:schemas/")) {
+            @Override
+            KafkaSender<String, Object> createSender(String name, SenderOptions<String, Object> options) {
+                createdSenders.put(name, options);
+                return kafkaSender;
+            }
+        };
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void send_PublishesKeyedRecordWithHeaders() {
+        SenderResult<String> result = mock(SenderResult.class);
+        when(result.correlationMetadata()).thenReturn("key-1");
+        when(kafkaSender.<String>send(any())).thenReturn(Flux.just(result));
+        StepVerifier.create(publisher.send("topic", "key-1", "value", Map.of("origin", "test")))
+                .verifyComplete();
+        ArgumentCaptor<Publisher<SenderRecord<String, Object, String>>> records =
+                ArgumentCaptor.forClass(Publisher.class);
+        verify(kafkaSender).send(records.capture());
+        SenderRecord<String, Object, String> record = Mono.from(records.getValue()).block();
+        assertEquals("topic", record.topic());
+        assertEquals("key-1", record.key());
+        assertEquals("value", record.value());
+        assertEquals("test", new String(record.headers().lastHeader("origin").value(), StandardCharsets.UTF_8));
+        assertEquals(1L, meterRegistry.get("transaction.kafka.publish.latency")
+                .tags("topic", "topic", "outcome", "success").timer().count());
+    }
+    @Test
+    void send_PropagatesFailure() {
+        when(kafkaSender.<String>send(any())).thenReturn(Flux.error(new RuntimeException("Broker down")));
+        StepVerifier.create(publisher.send("topic", "key-1", "value"))
+                .expectErrorMessage("Broker down")
+                .verify();
+        assertEquals(1L, meterRegistry.get("transaction.kafka.publish.latency")
+                .tags("topic", "topic", "outcome", "failure").timer().count());
+    }
+    @Test
+    void send_SharesDefaultProducerAcrossTopicsWithoutOverrides() {
+        when(kafkaSender.<String>send(any())).thenReturn(Flux.empty());
+        StepVerifier.create(publisher.send("first", "key-1", "value")).verifyComplete();
+        StepVerifier.create(publisher.send("second", "key-2", "value")).verifyComplete();
+        assertEquals(1, createdSenders.size());
+        Map<String, Object> properties = createdSenders.get(ReactiveKafkaPublisher.DEFAULT_PRODUCER)
+                .producerProperties();
+        assertEquals("all", properties.get(ProducerConfig.ACKS_CONFIG));
+        assertEquals("true", properties.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG));
+        assertEquals("lz4", properties.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals("transaction-service-producer", properties.get(ProducerConfig.CLIENT_ID_CONFIG));
+        assertTrue(createdSenders.get(ReactiveKafkaPublisher.DEFAULT_PRODUCER).valueSerializer()
+                instanceof SchemaAwareSerializer);
+    }
+    @Test
+    void send_UsesDedicatedProducerForTopicOverrides() {
+        environment.setProperty("transaction.kafka.producer.linger-ms", "10");
+        environment.setProperty("transaction.kafka.topics.bank.account.balance.updated.producer.linger-ms", "20");
+        environment.setProperty("transaction.kafka.topics.bank.account.balance.updated.producer.compression-type",
+                "zstd");
+        when(kafkaSender.<String>send(any())).thenReturn(Flux.empty());
+        StepVerifier.create(publisher.send("bank.account.balance.updated", "account-1", "value")).verifyComplete();
+        StepVerifier.create(publisher.send("other", "key-1", "value")).verifyComplete();
+        Map<String, Object> topicProperties = createdSenders.get("bank.account.balance.updated")
+                .producerProperties();
+        assertEquals("20", topicProperties.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("zstd", topicProperties.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals("transaction-service-producer-bank.account.balance.updated",
+                topicProperties.get(ProducerConfig.CLIENT_ID_CONFIG));
+        assertEquals("10", createdSenders.get(ReactiveKafkaPublisher.DEFAULT_PRODUCER)
+                .producerProperties().get(ProducerConfig.LINGER_MS_CONFIG));
+    }
+    @Test
+    void destroy_ClosesSenders() {
+        when(kafkaSender.<String>send(any())).thenReturn(Flux.empty());
+        StepVerifier.create(publisher.send("topic", "key-1", "value")).verifyComplete();
+        publisher.destroy();
+        verify(kafkaSender).close();
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendAll_PublishesGroupInOneSendCall() {
+        when(kafkaSender.<String>send(any())).thenReturn(Flux.empty());
+        List<String> values = List.of("key-1:first", "key-2:second");
+        Function<String, String> keyOf = value -> value.substring(0, value.indexOf(':'));
+        StepVerifier.create(publisher.sendAll("topic", values, keyOf)).verifyComplete();
+        StepVerifier.create(publisher.sendAll("topic", List.of(), keyOf)).verifyComplete();
+        ArgumentCaptor<Publisher<SenderRecord<String, Object, String>>> records =
+                ArgumentCaptor.forClass(Publisher.class);
+        verify(kafkaSender).send(records.capture());
+        List<SenderRecord<String, Object, String>> sent = Flux.from(records.getValue()).collectList().block();
+        assertEquals(List.of("key-1", "key-2"), sent.stream().map(SenderRecord::key).collect(Collectors.toList()));
+        assertEquals("key-2:second", sent.get(1).value());
+    }
+}
@@ -0,0 +1,184 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.dto.YankiTransactionEvent;
+import com.bank.transactionservice.event.serde.SchemaRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.test.StepVerifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class ReactiveTransactionPipelineTest {
+    private static final String TOPIC = "yanki.transaction.requested";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+    @Mock
+    private YankiTransactionEventConsumer yankiTransactionEventConsumer;
+    @Mock
+    private BootCoinTransactionTransferConsumer bootCoinTransactionTransferConsumer;
+    @Mock
+    private BootCoinBankPurchase bootCoinBankPurchase;
+    @Mock
+    private ReactiveKafkaPublisher reactiveKafkaPublisher;
+    @Mock
+    private SchemaRegistry schemaRegistry;
+    private final KeyOrderedDispatcher keyOrderedDispatcher = new KeyOrderedDispatcher(new SimpleMeterRegistry());
+    private RetryTopics retryTopics;
+    @BeforeEach
+    void setUp() {
+        retryTopics = new RetryTopics(reactiveKafkaPublisher, new SimpleMeterRegistry(), new long[] {1000L, 5000L});
+    }
+    @Test
+    void pipeline_CommitsOnlyContiguousOffsets() {
+        ReceiverOffset first = offset(10L);
+        ReceiverOffset second = offset(11L);
+        Sinks.Empty<Void> slow = Sinks.empty();
+        Map<String, Mono<Void>> work = Map.of("slow", slow.asMono(), "fast", Mono.empty());
+        BiFunction<String, Throwable, Mono<Void>> onExhausted = (value, error) -> Mono.empty();
+        pipelineOf(record("slow", first), record("fast", second))
+                .pipeline(TOPIC, 0, String.class, work::get, onExhausted);
+        verify(first, never()).acknowledge();
+        verify(second, never()).acknowledge();
+        slow.tryEmitEmpty();
+        verify(second).acknowledge();
+        verify(first, never()).acknowledge();
+    }
+    @Test
+    void pipeline_ForwardsRetryableFailureToNextTierAndAcknowledges() {
+        ReceiverOffset failed = offset(10L);
+        ReceiverOffset undecodable = offset(11L);
+        Mono<Void> failing = Mono.error(new RuntimeException("Account service is unavailable"));
+        when(reactiveKafkaPublisher.send(eq(TOPIC + "-retry-1000"), eq("key"), eq("failing"), anyMap()))
+                .thenReturn(Mono.empty());
+        BiFunction<String, Throwable, Mono<Void>> onExhausted = (value, error) -> Mono.error(error);
+        pipelineOf(record("failing", failed), record(null, undecodable))
+                .pipeline(TOPIC, 0, String.class, value -> failing, onExhausted);
+        verify(reactiveKafkaPublisher).send(eq(TOPIC + "-retry-1000"), eq("key"), eq("failing"), anyMap());
+        verify(failed).acknowledge();
+        verify(undecodable).acknowledge();
+    }
+    @Test
+    void pipeline_DeadLettersAndReportsFailureOnLastTier() {
+        ReceiverOffset failed = offset(10L);
+        Mono<Void> failing = Mono.error(new RuntimeException("Account service is unavailable"));
+        List<String> exhausted = new ArrayList<>();
+        when(reactiveKafkaPublisher.send(eq(TOPIC + "-dlt"), eq("key"), eq("failing"), anyMap()))
+                .thenReturn(Mono.empty());
+        BiFunction<String, Throwable, Mono<Void>> onExhausted = (value, error) -> Mono.fromRunnable(() ->
+                exhausted.add(value + ":" + error.getMessage()));
+        pipelineOf(record("failing", failed)).pipeline(TOPIC, 2, String.class, value -> failing, onExhausted);
+        assertEquals(List.of("failing:Account service is unavailable"), exhausted);
+        verify(failed).acknowledge();
+    }
+    @Test
+    void pipeline_DoesNotRetryTerminalFailure() {
+        ReceiverOffset failed = offset(10L);
+        Mono<Void> failing = Mono.error(new IllegalArgumentException("Insufficient balance"));
+        BiFunction<String, Throwable, Mono<Void>> onExhausted = (value, error) -> Mono.error(error);
+        pipelineOf(record("failing", failed)).pipeline(TOPIC, 0, String.class, value -> failing, onExhausted);
+        verifyNoInteractions(reactiveKafkaPublisher);
+        verify(failed).acknowledge();
+    }
+    @Test
+    void dispatchYankiTransaction_OrdersEventsSharingACard() {
+        YankiTransactionEvent first = YankiTransactionEvent.builder().transactionId("tx-1").build();
+        YankiTransactionEvent second = YankiTransactionEvent.builder().transactionId("tx-2").build();
+        Sinks.Empty<Void> firstWork = Sinks.empty();
+        when(yankiTransactionEventConsumer.orderingKeys(any())).thenReturn(List.of("card:card-1"));
+        when(yankiTransactionEventConsumer.processYankiTransaction(first)).thenReturn(firstWork.asMono());
+        when(yankiTransactionEventConsumer.processYankiTransaction(second)).thenReturn(Mono.empty());
+        ReactiveTransactionPipeline pipeline = pipelineOf();
+        pipeline.dispatchYankiTransaction(first).subscribe();
+        pipeline.dispatchYankiTransaction(second).subscribe();
+        verify(yankiTransactionEventConsumer, never()).processYankiTransaction(second);
+        firstWork.tryEmitEmpty();
+        verify(yankiTransactionEventConsumer).processYankiTransaction(second);
+    }
+    @Test
+    void dispatchYankiTransaction_FailureReleasesTheCard() {
+        YankiTransactionEvent first = YankiTransactionEvent.builder().transactionId("tx-1").build();
+        YankiTransactionEvent second = YankiTransactionEvent.builder().transactionId("tx-2").build();
+        when(yankiTransactionEventConsumer.orderingKeys(any())).thenReturn(List.of("card:card-1"));
+        when(yankiTransactionEventConsumer.processYankiTransaction(first))
+                .thenReturn(Mono.error(new RuntimeException("Timeout")));
+        when(yankiTransactionEventConsumer.processYankiTransaction(second)).thenReturn(Mono.empty());
+        ReactiveTransactionPipeline pipeline = pipelineOf();
+        StepVerifier.create(pipeline.dispatchYankiTransaction(first))
+                .expectErrorMessage("Timeout")
+                .verify();
+        StepVerifier.create(pipeline.dispatchYankiTransaction(second)).verifyComplete();
+        assertEquals(0, keyOrderedDispatcher.activeKeys());
+    }
+    @Test
+    void startAndStop_ManageSubscriptions() {
+        ReactiveTransactionPipeline pipeline = pipelineOf();
+        assertFalse(pipeline.isRunning());
+        pipeline.start();
+        assertTrue(pipeline.isRunning());
+        pipeline.stop();
+        assertFalse(pipeline.isRunning());
+    }
+    @Test
+    void pipeline_UsesManualCommitsInServiceGroup() {
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        ReactiveTransactionPipeline pipeline = new ReactiveTransactionPipeline(kafkaProperties,
+                yankiTransactionEventConsumer, bootCoinTransactionTransferConsumer, bootCoinBankPurchase,
+                keyOrderedDispatcher, retryTopics, schemaRegistry, 4, 100L) {
+            @Override
+            <T> Flux<ReceiverRecord<String, T>> receive(ReceiverOptions<String, T> options) {
+                assertEquals(ReactiveTransactionPipeline.GROUP_ID, options.groupId());
+                assertEquals("false", String.valueOf(options.consumerProperty("enable.auto.commit")));
+                assertEquals(Set.of(TOPIC + "-retry-5000"), options.subscriptionTopics());
+                assertTrue(options.valueDeserializer() instanceof ErrorHandlingDeserializer);
+                return Flux.empty();
+            }
+        };
+        pipeline.pipeline(TOPIC, 2, String.class, value -> Mono.empty(), (value, error) -> Mono.empty());
+    }
+
+    @SafeVarargs
+    private ReactiveTransactionPipeline pipelineOf(ReceiverRecord<String, String>... records) {
+        return new ReactiveTransactionPipeline(new KafkaProperties(), yankiTransactionEventConsumer,
+                bootCoinTransactionTransferConsumer, bootCoinBankPurchase, keyOrderedDispatcher, retryTopics,
+                schemaRegistry, 4, 100L) {
+            @Override
+            @SuppressWarnings("unchecked")
+            <T> Flux<ReceiverRecord<String, T>> receive(ReceiverOptions<String, T> options) {
+                Flux<ReceiverRecord<String, String>> received = Flux.fromArray(records).concatWith(Flux.never());
+                return (Flux<ReceiverRecord<String, T>>) (Flux<?>) received;
+            }
+        };
+    }
+    private ReceiverOffset offset(long position) {
+        ReceiverOffset offset = mock(ReceiverOffset.class);
+        when(offset.topicPartition()).thenReturn(PARTITION);
+        when(offset.offset()).thenReturn(position);
+        return offset;
+    }
+    private ReceiverRecord<String, String> record(String value, ReceiverOffset offset) {
+        return new ReceiverRecord<>(new ConsumerRecord<>(TOPIC, 0, offset.offset(), "key", value), offset);
+    }
+}
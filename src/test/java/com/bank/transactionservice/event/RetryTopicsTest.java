@@ -0,0 +1,120 @@
+package com.bank.transactionservice.event;
+
+import com.bank.transactionservice.client.DownstreamCallTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class RetryTopicsTest {
+    private static final String TOPIC = "yanki.transaction.requested";
+    @Mock
+    private ReactiveKafkaPublisher reactiveKafkaPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private RetryTopics retryTopics;
+    private final AtomicBoolean exhausted = new AtomicBoolean();
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retryTopics = new RetryTopics(reactiveKafkaPublisher, meterRegistry, new long[] {5000L, 30000L});
+    }
+    @Test
+    void retryTopics_AreNamedAfterTheirDelay() {
+        assertEquals(2, retryTopics.tiers());
+        assertEquals(List.of(TOPIC + "-retry-5000", TOPIC + "-retry-30000"), retryTopics.retryTopics(TOPIC));
+        assertEquals(TOPIC + "-dlt", retryTopics.deadLetterTopic(TOPIC));
+    }
+    @Test
+    void isRetryable_ExcludesBusinessRuleViolations() {
+        assertTrue(RetryTopics.isRetryable(new RuntimeException("Account service is unavailable")));
+        assertFalse(RetryTopics.isRetryable(new IllegalArgumentException("Insufficient balance")));
+        assertTrue(RetryTopics.isTerminal(new IllegalStateException("Closed")));
+    }
+    @Test
+    void remainingDelay_CountsFromRecordTimestamp() {
+        assertEquals(Duration.ZERO, retryTopics.remainingDelay(0, System.currentTimeMillis()));
+        assertEquals(Duration.ZERO, retryTopics.remainingDelay(1, -1L));
+        assertEquals(Duration.ZERO, retryTopics.remainingDelay(1, System.currentTimeMillis() - 10000L));
+        Duration remaining = retryTopics.remainingDelay(2, System.currentTimeMillis());
+        assertTrue(remaining.toMillis() > 25000L && remaining.toMillis() <= 30000L);
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void forward_SendsToNextTierWithErrorHeaders() {
+        when(reactiveKafkaPublisher.send(anyString(), any(), any(), anyMap())).thenReturn(Mono.empty());
+        StepVerifier.create(retryTopics.forward(TOPIC, 1, "key", "value",
+                        new RuntimeException("Timeout"), this::markExhausted))
+                .verifyComplete();
+        verify(reactiveKafkaPublisher).send(eq(TOPIC + "-retry-30000"), eq("key"), eq("value"),
+                (Map<String, String>) argThat(headers -> "Timeout".equals(((Map<String, String>) headers)
+                        .get(RetryTopics.ERROR_HEADER))));
+        assertFalse(exhausted.get());
+        assertEquals(1.0, meterRegistry.get("transaction.kafka.retry.forwarded").tag("tier", "2").counter().count());
+    }
+    @Test
+    void forward_DeadLettersWhenTiersAreExhausted() {
+        when(reactiveKafkaPublisher.send(anyString(), any(), any(), anyMap())).thenReturn(Mono.empty());
+        StepVerifier.create(retryTopics.forward(TOPIC, 2, "key", "value",
+                        new RuntimeException("Timeout"), this::markExhausted))
+                .verifyComplete();
+        verify(reactiveKafkaPublisher).send(eq(TOPIC + "-dlt"), eq("key"), eq("value"), anyMap());
+        assertTrue(exhausted.get());
+        assertEquals(1.0, meterRegistry.get("transaction.kafka.dead-lettered").counter().count());
+    }
+    @Test
+    void forward_ReportsFailureWhenRetryTopicIsUnavailable() {
+        when(reactiveKafkaPublisher.send(anyString(), any(), any(), anyMap()))
+                .thenReturn(Mono.error(new RuntimeException("Broker down")));
+        StepVerifier.create(retryTopics.forward(TOPIC, 0, "key", "value",
+                        new RuntimeException("Timeout"), this::markExhausted))
+                .verifyComplete();
+        assertTrue(exhausted.get());
+    }
+    @Test
+    void forward_PropagatesTerminalFailure() {
+        StepVerifier.create(retryTopics.forward(TOPIC, 0, "key", "value",
+                        new IllegalArgumentException("Insufficient balance"), this::markExhausted))
+                .expectErrorMessage("Insufficient balance")
+                .verify();
+        verifyNoInteractions(reactiveKafkaPublisher);
+    }
+    @Test
+    void forward_DeadLettersUnknownOutcomeWithoutReportingFailure() {
+        when(reactiveKafkaPublisher.send(anyString(), any(), any(), anyMap())).thenReturn(Mono.empty());
+        StepVerifier.create(retryTopics.forward(TOPIC, 0, "key", "value",
+                        new ProcessedEvents.OutcomeUnknownException(TOPIC, "tx-1"), this::markExhausted))
+                .verifyComplete();
+        verify(reactiveKafkaPublisher).send(eq(TOPIC + "-dlt"), eq("key"), eq("value"), anyMap());
+        assertFalse(exhausted.get());
+        assertFalse(RetryTopics.isRetryable(new ProcessedEvents.OutcomeUnknownException(TOPIC, "tx-1")));
+    }
+    @Test
+    void isTerminal_DownstreamClientErrorsAreNotRetried() {
+        assertTrue(RetryTopics.isTerminal(
+                new DownstreamCallTemplate.DownstreamRejectedException(HttpStatus.NOT_FOUND)));
+        assertTrue(RetryTopics.isTerminal(new RuntimeException("Account service is unavailable",
+                WebClientResponseException.create(404, "Not Found", null, null, null))));
+        assertTrue(RetryTopics.isRetryable(new RuntimeException("Account service is unavailable",
+                WebClientResponseException.create(503, "Service Unavailable", null, null, null))));
+    }
+    private Mono<Void> markExhausted() {
+        return Mono.fromRunnable(() -> exhausted.set(true));
+    }
+}
@@ -9,17 +9,21 @@ import com.bank.transactionservice.model.debitcard.DebitCard;
 import com.bank.transactionservice.model.transaction.Transaction;
 import com.bank.transactionservice.model.transaction.TransactionType;
 import com.bank.transactionservice.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -30,7 +34,7 @@ class YankiTransactionEventConsumerTest {
     private TransactionService transactionService;
 
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private ReactiveKafkaPublisher reactiveKafkaPublisher;
 
     @Mock
     private DebitCardClientService debitCardClientService;
@@ -38,18 +42,29 @@ class YankiTransactionEventConsumerTest {
     @Mock
     private AccountClientService accountClientService;
 
-    @InjectMocks
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
     private YankiTransactionEventConsumer consumer;
 
+    @BeforeEach
+    void setUp() {
+        consumer = new YankiTransactionEventConsumer(new ProcessedEvents(redisTemplate, 60000L),
+                transactionService, reactiveKafkaPublisher, debitCardClientService, accountClientService);
+    }
+
     @Test
     void shouldProcessInternalTransactionWhenBothUsersAreYankiOnly() {
         YankiTransactionEvent event = new YankiTransactionEvent();
         event.setSenderCard(null);
         event.setReceiverCard(null);
 
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
-        verify(kafkaTemplate, times(1)).send(eq("yanki.transaction.processed"), any());
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
+        verify(reactiveKafkaPublisher, times(1)).send(eq("yanki.transaction.processed"), any(), any());
     }
 
     @Test
@@ -75,10 +90,10 @@ class YankiTransactionEventConsumerTest {
                 .thenReturn(Mono.just(account));
         when(transactionService.createTransaction(any()))
                 .thenReturn(Mono.just(transaction));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
         verify(transactionService, times(1)).createTransaction(any(Transaction.class));
-        verify(kafkaTemplate, times(1)).send(eq("yanki.transaction.processed"), any());
+        verify(reactiveKafkaPublisher, times(1)).send(eq("yanki.transaction.processed"), any(), any());
     }
 
     @Test
@@ -93,11 +108,11 @@ class YankiTransactionEventConsumerTest {
         when(debitCardClientService.getDebitCardByCardNumber("123456789"))
                 .thenReturn(Mono.just(debitCard));
         when(accountClientService.getAccountById("account123"))
-                .thenReturn(Mono.error(new RuntimeException("Account not found")));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
+                .thenReturn(Mono.error(new IllegalArgumentException("Account not found")));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
 
-        consumer.processYankiTransaction(event);
-        verify(kafkaTemplate, times(1)).send(anyString(), argThat(argument ->
+        consumer.processYankiTransaction(event).block();
+        verify(reactiveKafkaPublisher, times(1)).send(anyString(), any(), argThat(argument ->
                 argument instanceof YankiTransactionProcessedEvent &&
                         ((YankiTransactionProcessedEvent) argument).getStatus().equals("FAILED")
         ));
@@ -122,14 +137,14 @@ class YankiTransactionEventConsumerTest {
                 .thenReturn(Mono.just(receiverAccount));
         when(transactionService.createTransaction(any()))
                 .thenReturn(Mono.just(transaction));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
         verify(transactionService, times(1)).createTransaction(argThat(tx ->
                 tx.getTransactionType() == TransactionType.DEPOSIT &&
                         tx.getProductId().equals("receiverAccount123") &&
                         tx.getAmount().equals(BigDecimal.valueOf(100))
         ));
-        verify(kafkaTemplate, times(1)).send(eq("yanki.transaction.processed"), argThat(arg ->
+        verify(reactiveKafkaPublisher, times(1)).send(eq("yanki.transaction.processed"), any(), argThat(arg ->
                 arg instanceof YankiTransactionProcessedEvent &&
                         ((YankiTransactionProcessedEvent) arg).getStatus().equals("SUCCESS")
         ));
@@ -145,10 +160,10 @@ class YankiTransactionEventConsumerTest {
         when(debitCardClientService.getDebitCardByCardNumber("987654321"))
                 .thenReturn(Mono.just(receiverDebitCard));
         when(accountClientService.getAccountById("receiverAccount123"))
-                .thenReturn(Mono.error(new RuntimeException("Receiver account not found")));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
-        verify(kafkaTemplate, times(1)).send(anyString(), argThat(argument ->
+                .thenReturn(Mono.error(new IllegalArgumentException("Receiver account not found")));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
+        verify(reactiveKafkaPublisher, times(1)).send(anyString(), any(), argThat(argument ->
                 argument instanceof YankiTransactionProcessedEvent &&
                         ((YankiTransactionProcessedEvent) argument).getStatus().equals("FAILED") &&
                         ((YankiTransactionProcessedEvent) argument)
@@ -192,8 +207,11 @@ class YankiTransactionEventConsumerTest {
                 .thenReturn(Mono.just(receiverAccount));
         when(transactionService.createTransaction(any()))
                 .thenReturn(Mono.just(transaction));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
+        doReturn(valueOperations).when(redisTemplate).opsForValue();
+        when(valueOperations.get("ProcessedEvent:yanki.transaction.requested:txnId123")).thenReturn(Mono.empty());
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
         verify(transactionService, times(1)).createTransaction(argThat(tx ->
                 tx.getTransactionType() == TransactionType.TRANSFER &&
                         tx.getProductId().equals("senderAccount123") &&
@@ -201,7 +219,7 @@ class YankiTransactionEventConsumerTest {
                         tx.getDestinationAccountId().equals("receiverAccount123") &&
                         tx.getAmount().equals(BigDecimal.valueOf(100))
         ));
-        verify(kafkaTemplate, times(1)).send(eq("yanki.transaction.processed"), argThat(arg ->
+        verify(reactiveKafkaPublisher, times(1)).send(eq("yanki.transaction.processed"), any(), argThat(arg ->
                 arg instanceof YankiTransactionProcessedEvent &&
                         ((YankiTransactionProcessedEvent) arg).getStatus().equals("SUCCESS") &&
                         ((YankiTransactionProcessedEvent) arg).getTransactionId().equals("txnId123") &&
@@ -228,10 +246,12 @@ class YankiTransactionEventConsumerTest {
         when(debitCardClientService.getDebitCardByCardNumber("987654321"))
                 .thenReturn(Mono.just(receiverDebitCard));
         when(accountClientService.getAccountById("senderAccount123"))
-                .thenReturn(Mono.error(new RuntimeException("Sender account not found")));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
-        verify(kafkaTemplate, times(1)).send(anyString(), argThat(argument ->
+                .thenReturn(Mono.error(new IllegalArgumentException("Sender account not found")));
+        when(accountClientService.getAccountById("receiverAccount123"))
+                .thenReturn(Mono.just(new Account()));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
+        verify(reactiveKafkaPublisher, times(1)).send(anyString(), any(), argThat(argument ->
                 argument instanceof YankiTransactionProcessedEvent &&
                         ((YankiTransactionProcessedEvent) argument).getStatus().equals("FAILED") &&
                         ((YankiTransactionProcessedEvent) argument)
@@ -239,19 +259,80 @@ class YankiTransactionEventConsumerTest {
         ));
     }
     @Test
-    void shouldHandleExceptionDuringProcessing() {
+    void shouldLeaveUnexpectedExceptionsToRetries() {
         YankiTransactionEvent event = new YankiTransactionEvent();
         event.setSenderCard("123456789");
         event.setReceiverCard("987654321");
 
         when(debitCardClientService.getDebitCardByCardNumber(anyString()))
                 .thenReturn(null);
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(mock(ListenableFuture.class));
-        consumer.processYankiTransaction(event);
-        verify(kafkaTemplate, times(1)).send(anyString(), argThat(argument ->
+        StepVerifier.create(consumer.processYankiTransaction(event))
+                .expectError(NullPointerException.class)
+                .verify();
+        verify(reactiveKafkaPublisher, never()).send(anyString(), any(), any());
+    }
+
+    @Test
+    void shouldOnlyRepublishRecordedResultOfRedeliveredEvent() {
+        YankiTransactionEvent event = new YankiTransactionEvent();
+        event.setTransactionId("tx-1");
+        event.setSenderCard("1111");
+        doReturn(valueOperations).when(redisTemplate).opsForValue();
+        when(valueOperations.get("ProcessedEvent:yanki.transaction.requested:tx-1"))
+                .thenReturn(Mono.just("{\"transactionId\":\"tx-1\",\"status\":\"SUCCESS\"}"));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.processYankiTransaction(event).block();
+        verify(reactiveKafkaPublisher).send(eq("yanki.transaction.processed"), eq("tx-1"), argThat(argument ->
+                ((YankiTransactionProcessedEvent) argument).getStatus().equals("SUCCESS")));
+        verifyNoInteractions(debitCardClientService, transactionService);
+    }
+
+    @Test
+    void shouldRetryOnlyThePublishWhenItFails() {
+        YankiTransactionEvent event = new YankiTransactionEvent();
+        event.setTransactionId("tx-1");
+        doReturn(valueOperations).when(redisTemplate).opsForValue();
+        when(valueOperations.get(anyString())).thenReturn(Mono.empty());
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        when(reactiveKafkaPublisher.send(anyString(), any(), any()))
+                .thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+        StepVerifier.create(consumer.processYankiTransaction(event))
+                .expectErrorMessage("Broker unavailable")
+                .verify();
+        verify(valueOperations).set(eq("ProcessedEvent:yanki.transaction.requested:tx-1"),
+                contains("SUCCESS"), any(Duration.class));
+    }
+
+    @Test
+    void shouldBuildOrderingKeysFromCardsAndPhones() {
+        YankiTransactionEvent event = new YankiTransactionEvent();
+        event.setSenderCard("1111");
+        event.setSenderPhoneNumber("999111222");
+        event.setReceiverPhoneNumber("999333444");
+        assertEquals(List.of("card:1111", "phone:999111222", "phone:999333444"), consumer.orderingKeys(event));
+    }
+
+    @Test
+    void shouldLeaveRetryableFailuresToRetryTopics() {
+        YankiTransactionEvent event = new YankiTransactionEvent();
+        event.setSenderCard("1111");
+        when(debitCardClientService.getDebitCardByCardNumber("1111"))
+                .thenReturn(Mono.error(new RuntimeException("Debit card service is unavailable")));
+        StepVerifier.create(consumer.processYankiTransaction(event))
+                .expectErrorMessage("Debit card service is unavailable")
+                .verify();
+        verify(reactiveKafkaPublisher, never()).send(anyString(), any(), any());
+    }
+
+    @Test
+    void shouldPublishFailedEventWhenRetriesAreExhausted() {
+        YankiTransactionEvent event = new YankiTransactionEvent();
+        event.setTransactionId("tx-1");
+        when(reactiveKafkaPublisher.send(anyString(), any(), any())).thenReturn(Mono.empty());
+        consumer.publishFailure(event, new RuntimeException("Debit card service is unavailable")).block();
+        verify(reactiveKafkaPublisher).send(eq("yanki.transaction.processed"), eq("tx-1"), argThat(argument ->
                 argument instanceof YankiTransactionProcessedEvent &&
                         ((YankiTransactionProcessedEvent) argument).getStatus().equals("FAILED")
         ));
     }
 }
-
@@ -0,0 +1,30 @@
+package com.bank.transactionservice.event.serde;
+
+import com.bank.transactionservice.model.credit.Credit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+class DecodedPayloadMessageConverterTest {
+    private final DecodedPayloadMessageConverter converter = new DecodedPayloadMessageConverter(new ObjectMapper());
+    @Test
+    void toMessage_KeepsDecodedPayload() {
+        Credit credit = new Credit();
+        credit.setId("credit-1");
+        Message<?> message = converter.toMessage(new ConsumerRecord<>("credit-updated", 0, 0L, "credit-1", credit),
+                null, null, Credit.class);
+        assertSame(credit, message.getPayload());
+    }
+    @Test
+    void toMessage_BindsJsonPayload() {
+        byte[] json = "{\"id\":\"credit-2\"}".getBytes(StandardCharsets.UTF_8);
+        Message<?> message = converter.toMessage(new ConsumerRecord<>("credit-updated", 0, 0L, "credit-2", json),
+                null, null, Credit.class);
+        assertEquals("credit-2", ((Credit) message.getPayload()).getId());
+    }
+}
@@ -0,0 +1,69 @@
+package com.bank.transactionservice.event.serde;
+
+import com.bank.transactionservice.dto.BalanceUpdatedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+class SchemaAwareSerializerTest {
+    private static final String BINARY_TOPIC = "bank.account.balance.updated";
+    private final BalanceUpdatedEvent event = new BalanceUpdatedEvent("account-1", new BigDecimal("42.00"), "4111");
+    private SchemaRegistry schemaRegistry;
+    private SchemaAwareSerializer serializer;
+    private SchemaAwareDeserializer<BalanceUpdatedEvent> deserializer;
+    @BeforeEach
+    void setUp() throws IOException {
+        schemaRegistry = new SchemaRegistry("classpath*:schemas/");
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("transaction.kafka.topics." + BINARY_TOPIC + ".format", "binary");
+        serializer = new SchemaAwareSerializer(schemaRegistry, environment);
+        serializer.configure(Map.of(), false);
+        deserializer = new SchemaAwareDeserializer<>(schemaRegistry, BalanceUpdatedEvent.class);
+        deserializer.configure(Map.of(), false);
+    }
+    @Test
+    void serialize_UsesBinaryOnlyForOptedInTopics() {
+        byte[] binary = serializer.serialize(BINARY_TOPIC, new RecordHeaders(), event);
+        byte[] json = serializer.serialize("other", new RecordHeaders(), event);
+        assertTrue(SchemaRegistry.isEncoded(binary));
+        assertEquals('{', new String(json, StandardCharsets.UTF_8).charAt(0));
+        assertTrue(binary.length < json.length);
+        assertNull(serializer.serialize(BINARY_TOPIC, null));
+    }
+    @Test
+    void serialize_FallsBackToJsonWithoutSchema() {
+        byte[] payload = serializer.serialize(BINARY_TOPIC, Map.of("accountId", "account-1"));
+        assertFalse(SchemaRegistry.isEncoded(payload));
+    }
+    @Test
+    void deserialize_ReadsBothFormats() {
+        BalanceUpdatedEvent fromBinary = deserializer.deserialize(BINARY_TOPIC, new RecordHeaders(),
+                serializer.serialize(BINARY_TOPIC, event));
+        BalanceUpdatedEvent fromJson = deserializer.deserialize("other", serializer.serialize("other", event));
+        assertEquals("4111", fromBinary.getCardNumber());
+        assertEquals("4111", fromJson.getCardNumber());
+        assertEquals(0, new BigDecimal("42.00").compareTo(fromJson.getNewBalance()));
+        assertNull(deserializer.deserialize(BINARY_TOPIC, null));
+    }
+    @Test
+    void deserialize_PassesJsonBytesThroughWithoutTargetType() {
+        SchemaAwareDeserializer<Object> untyped = new SchemaAwareDeserializer<>(schemaRegistry, null);
+        byte[] json = serializer.serialize("other", event);
+        assertEquals(json, untyped.deserialize("other", json));
+        assertTrue(untyped.deserialize(BINARY_TOPIC, serializer.serialize(BINARY_TOPIC, event))
+                instanceof BalanceUpdatedEvent);
+        untyped.close();
+        deserializer.close();
+        serializer.close();
+    }
+}
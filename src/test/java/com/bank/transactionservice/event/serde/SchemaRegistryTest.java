@@ -0,0 +1,96 @@
+package com.bank.transactionservice.event.serde;
+
+import com.bank.transactionservice.dto.BalanceUpdatedEvent;
+import com.bank.transactionservice.dto.YankiTransactionProcessedEvent;
+import com.bank.transactionservice.model.account.Account;
+import com.bank.transactionservice.model.account.AccountType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+class SchemaRegistryTest {
+    private SchemaRegistry schemaRegistry;
+    @BeforeEach
+    void setUp() throws IOException {
+        schemaRegistry = new SchemaRegistry("classpath*:schemas/");
+    }
+    @Test
+    void encode_RoundTripsEntitySnapshot() throws IOException {
+        Account account = Account.builder()
+                .id("account-1")
+                .customerId("customer-1")
+                .accountType(AccountType.SAVINGS)
+                .balance(1250.75)
+                .isVipAccount(true)
+                .minBalanceRequirement(new BigDecimal("500.00"))
+                .maintenanFee(BigDecimal.ZERO)
+                .holders(List.of("customer-1", "customer-2"))
+                .createdAt(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6_000_000))
+                .modifiedAt(LocalDateTime.of(2024, 2, 3, 4, 5, 6))
+                .maxFreeTransaction(-3)
+                .transactionCost(new BigDecimal("-1.5"))
+                .build();
+        byte[] encoded = schemaRegistry.encode(account);
+        assertTrue(SchemaRegistry.isEncoded(encoded));
+        Account decoded = schemaRegistry.decode(encoded, Account.class);
+        assertEquals(account, decoded);
+        assertNull(decoded.getSigners());
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        assertTrue(encoded.length < objectMapper.writeValueAsBytes(account).length / 2);
+    }
+    @Test
+    void decode_UsesSchemaTypeWithoutReaderType() {
+        Instant processedAt = Instant.parse("2024-03-04T05:06:07.123456789Z");
+        YankiTransactionProcessedEvent event = new YankiTransactionProcessedEvent("transaction-1", "999",
+                "888", new BigDecimal("10.25"), "SUCCESS", null, processedAt);
+        Object decoded = schemaRegistry.decode(schemaRegistry.encode(event), null);
+        assertEquals(event, decoded);
+    }
+    @Test
+    void decode_ResolvesOlderWriterSchemaAgainstReaderClass() {
+        // v2 adds a field the class does not have and drops cardNumber, as a newer producer might
+        schemaRegistry.register(new EventSchema(900, "BalanceUpdatedEvent", 2, BalanceUpdatedEvent.class.getName(),
+                List.of(new EventSchema.Field("accountId", "string"),
+                        new EventSchema.Field("newBalance", "decimal"),
+                        new EventSchema.Field("currency", "string"))));
+        BalanceUpdatedEvent event = new BalanceUpdatedEvent("account-1", new BigDecimal("42.00"), "4111");
+        byte[] encoded = schemaRegistry.encode(event);
+        BalanceUpdatedEvent decoded = schemaRegistry.decode(encoded, BalanceUpdatedEvent.class);
+        assertEquals("account-1", decoded.getAccountId());
+        assertEquals(new BigDecimal("42.00"), decoded.getNewBalance());
+        assertNull(decoded.getCardNumber());
+    }
+    @Test
+    void register_RejectsFieldTypeMismatch() {
+        EventSchema schema = new EventSchema(901, "BalanceUpdatedEvent", 3, BalanceUpdatedEvent.class.getName(),
+                List.of(new EventSchema.Field("newBalance", "string")));
+        assertThrows(IllegalStateException.class, () -> schemaRegistry.register(schema));
+    }
+    @Test
+    void register_RejectsReusedId() {
+        EventSchema schema = new EventSchema(1, "Other", 1, BalanceUpdatedEvent.class.getName(), List.of());
+        assertThrows(IllegalStateException.class, () -> schemaRegistry.register(schema));
+    }
+    @Test
+    void decode_RejectsUnknownOrTruncatedPayloads() {
+        assertFalse(SchemaRegistry.isEncoded("{\"id\":1}".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> schemaRegistry.decode(new byte[] {0, 0, 0, 3, 99}, null));
+        byte[] encoded = schemaRegistry.encode(new BalanceUpdatedEvent("account-1", BigDecimal.ONE, "4111"));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 2);
+        assertThrows(IllegalArgumentException.class, () -> schemaRegistry.decode(truncated, null));
+        assertThrows(IllegalArgumentException.class, () -> schemaRegistry.encode("not registered"));
+    }
+}
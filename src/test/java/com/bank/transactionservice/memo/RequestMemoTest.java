@@ -0,0 +1,73 @@
+package com.bank.transactionservice.memo;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestMemoTest {
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Supplier<Mono<String>> loader(String value) {
+        return () -> Mono.fromSupplier(() -> value + "#" + loads.incrementAndGet());
+    }
+    @Test
+    void memoize_LoadsEachEntityOncePerMemo() {
+        Mono<String> lookup = RequestMemo.memoize(String.class, "A", loader("A"));
+        StepVerifier.create(Mono.zip(lookup, lookup, RequestMemo.memoize(String.class, "B", loader("B")))
+                        .contextWrite(RequestMemo::open))
+                .expectNextMatches(values -> "A#1".equals(values.getT1()) && "A#1".equals(values.getT2())
+                        && "B#2".equals(values.getT3()))
+                .verifyComplete();
+        // A new memo starts empty
+        StepVerifier.create(lookup.contextWrite(RequestMemo::open))
+                .expectNext("A#3")
+                .verifyComplete();
+    }
+    @Test
+    void memoize_GoesToLoaderWithoutMemo() {
+        Mono<String> lookup = RequestMemo.memoize(String.class, "A", loader("A"));
+        StepVerifier.create(lookup.then(lookup))
+                .expectNext("A#2")
+                .verifyComplete();
+    }
+    @Test
+    void memoize_DoesNotKeepFailedReads() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> lookup = RequestMemo.memoize(String.class, "A", () -> Mono.defer(() -> attempts
+                .incrementAndGet() == 1 ? Mono.error(new RuntimeException("unavailable")) : Mono.just("A")));
+        StepVerifier.create(lookup.onErrorResume(error -> Mono.empty()).then(lookup)
+                        .contextWrite(RequestMemo::open))
+                .expectNext("A")
+                .verifyComplete();
+        assertEquals(2, attempts.get());
+    }
+    @Test
+    void peek_OnlySeesWhatWasAlreadyRead() {
+        Mono<String> peek = RequestMemo.peek(String.class, "A");
+        StepVerifier.create(peek.defaultIfEmpty("none")
+                        .concatWith(RequestMemo.memoize(String.class, "A", loader("A")))
+                        .concatWith(peek)
+                        .contextWrite(RequestMemo::open))
+                .expectNext("none", "A#1", "A#1")
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+    @Test
+    void store_ReplacesEntryWithWrittenValueAndDropsItWhenWriteFails() {
+        Mono<String> lookup = RequestMemo.memoize(String.class, "A", loader("A"));
+        Mono<String> peek = RequestMemo.peek(String.class, "A");
+        StepVerifier.create(lookup
+                        .then(RequestMemo.store(String.class, "A", Mono.just("A-updated")))
+                        .then(peek)
+                        .concatWith(RequestMemo.store(String.class, "A", Mono.<String>error(new RuntimeException())))
+                        .onErrorResume(error -> peek.defaultIfEmpty("none"))
+                        .contextWrite(RequestMemo::open))
+                .expectNext("A-updated", "none")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,110 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.statement.AccountStatement;
+import com.bank.transactionservice.model.statement.StatementEntry;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+@ExtendWith(MockitoExtension.class)
+class AccountStatementRepositoryCustomImplTest {
+    private static final LocalDateTime AT = LocalDateTime.of(2024, 3, 15, 12, 0);
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @InjectMocks
+    private AccountStatementRepositoryCustomImpl repository;
+    @Test
+    void appendEntry_UpsertsMonthlyStatementOncePerTransaction() {
+        when(reactiveMongoTemplate.upsert(any(Query.class), any(Update.class), eq(AccountStatement.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AccountStatement.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        StatementEntry entry = entry();
+        StepVerifier.create(repository.appendEntry("product1", "customer1", "2024-03",
+                        new BigDecimal("1000.00"), entry))
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(reactiveMongoTemplate).upsert(query.capture(), update.capture(), eq(AccountStatement.class));
+        Document queryObject = query.getValue().getQueryObject();
+        assertEquals("product1:2024-03", queryObject.get("_id"));
+        assertEquals(new Document("$ne", "1"), queryObject.get("entries.transactionId"));
+        Document updateObject = update.getValue().getUpdateObject();
+        assertNull(((Document) updateObject.get("$setOnInsert")).get("openingBalance"));
+        assertNull(updateObject.get("$set"));
+        Document inc = (Document) updateObject.get("$inc");
+        assertEquals(new Decimal128(new BigDecimal("100.00")), inc.get("totalDebits"));
+        assertEquals(new Decimal128(BigDecimal.ZERO), inc.get("totalCommissions"));
+        assertEquals(entry, ((Document) updateObject.get("$push")).get("entries"));
+    }
+    @Test
+    void appendEntry_MovesBalancesOnlyPastEntriesOnTheWrongSide() {
+        when(reactiveMongoTemplate.upsert(any(Query.class), any(Update.class), eq(AccountStatement.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AccountStatement.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        StepVerifier.create(repository.appendEntry("product1", "customer1", "2024-03",
+                        new BigDecimal("1000.00"), entry()))
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(reactiveMongoTemplate, times(2)).updateFirst(query.capture(), update.capture(),
+                eq(AccountStatement.class));
+        Document closing = (Document) update.getAllValues().get(0).getUpdateObject().get("$set");
+        assertEquals(new Decimal128(new BigDecimal("900.00")), closing.get("closingBalance"));
+        assertEquals(AT, closing.get("closingBalanceAt"));
+        assertEquals(new Document("$lte", AT), condition(query.getAllValues().get(0), 1).get("closingBalanceAt"));
+        Document opening = (Document) update.getAllValues().get(1).getUpdateObject().get("$set");
+        assertEquals(new Decimal128(new BigDecimal("1000.00")), opening.get("openingBalance"));
+        assertEquals(new Document("$gt", AT), condition(query.getAllValues().get(1), 1).get("openingBalanceAt"));
+    }
+    @Test
+    void appendEntry_EntryAlreadyInStatementIsNotCountedAgain() {
+        when(reactiveMongoTemplate.upsert(any(Query.class), any(Update.class), eq(AccountStatement.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AccountStatement.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        StepVerifier.create(repository.appendEntry("product1", "customer1", "2024-03",
+                        new BigDecimal("1000.00"), entry()))
+                .verifyComplete();
+        verify(reactiveMongoTemplate, times(2)).updateFirst(any(Query.class), any(Update.class),
+                eq(AccountStatement.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Document condition(Query query, int index) {
+        List<Document> and = (List<Document>) query.getQueryObject().get("$and");
+        List<Document> or = (List<Document>) and.get(0).get("$or");
+        return or.get(index);
+    }
+    private static StatementEntry entry() {
+        return StatementEntry.builder()
+                .transactionId("1")
+                .transactionDate(AT)
+                .amount(new BigDecimal("-100.00"))
+                .balanceAfter(new BigDecimal("900.00"))
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.transaction.ProductCategory;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionType;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.math.BigDecimal;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+@ExtendWith(MockitoExtension.class)
+class DailyRollupRepositoryCustomImplTest {
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @InjectMocks
+    private DailyRollupRepositoryCustomImpl repository;
+    @Test
+    void increment_ProductRollupTracksBalance() {
+        Document update = increment(RollupScope.PRODUCT, "product1");
+        Decimal128 amount = new Decimal128(new BigDecimal("100.00"));
+        Document inc = (Document) update.get("$inc");
+        assertEquals(1L, inc.get("count"));
+        assertEquals(amount, inc.get("totalAmount"));
+        assertEquals(amount, inc.get("amountByType.DEPOSIT"));
+        assertEquals(1L, inc.get("countByType.DEPOSIT"));
+        assertEquals(amount, inc.get("amountByCategory.ACCOUNT"));
+        assertEquals(new Decimal128(new BigDecimal("1100.00")), inc.get("balanceSum"));
+        assertEquals(amount, ((Document) update.get("$min")).get("minAmount"));
+        assertEquals(amount, ((Document) update.get("$max")).get("maxAmount"));
+        assertEquals(new Decimal128(new BigDecimal("1100.00")), ((Document) update.get("$set")).get("closingBalance"));
+    }
+    @Test
+    void increment_CustomerRollupSkipsBalance() {
+        Document update = increment(RollupScope.CUSTOMER, "customer1");
+        assertFalse(((Document) update.get("$inc")).containsKey("balanceSum"));
+        assertFalse(update.containsKey("$set"));
+    }
+    private Document increment(RollupScope scope, String key) {
+        Transaction transaction = Transaction.builder()
+                .id("1")
+                .productCategory(ProductCategory.ACCOUNT)
+                .transactionType(TransactionType.DEPOSIT)
+                .amount(new BigDecimal("100.00"))
+                .balanceAfter(new BigDecimal("1100.00"))
+                .build();
+        when(reactiveMongoTemplate.upsert(any(Query.class), any(Update.class), eq(DailyRollup.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        StepVerifier.create(repository.increment(scope, key, "2024-03-15", transaction)).verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(reactiveMongoTemplate).upsert(query.capture(), update.capture(), eq(DailyRollup.class));
+        assertEquals(scope + ":" + key + ":2024-03-15", query.getValue().getQueryObject().get("_id"));
+        return update.getValue().getUpdateObject();
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+@ExtendWith(MockitoExtension.class)
+class TransactionBucketBackfillTest {
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Mock
+    private TransactionBucketWriter transactionBucketWriter;
+    @Test
+    void backfill_AppendsEveryTransactionOldestFirst() {
+        Transaction first = Transaction.builder().id("1").productId("product1").build();
+        Transaction second = Transaction.builder().id("2").productId("product1").build();
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(Flux.just(first, second));
+        when(transactionBucketWriter.append(any(Transaction.class))).thenReturn(Mono.empty());
+        TransactionBucketBackfill backfill = new TransactionBucketBackfill(reactiveMongoTemplate,
+                transactionBucketWriter, true, true);
+        StepVerifier.create(backfill.backfill())
+                .expectNext(2L)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate).find(query.capture(), eq(Transaction.class));
+        assertEquals(1, query.getValue().getSortObject().get("transactionDate"));
+        InOrder order = inOrder(transactionBucketWriter);
+        order.verify(transactionBucketWriter).append(first);
+        order.verify(transactionBucketWriter).append(second);
+    }
+    @Test
+    void run_SkippedUnlessBucketWritesAreEnabled() {
+        new TransactionBucketBackfill(reactiveMongoTemplate, transactionBucketWriter, false, true)
+                .run(new DefaultApplicationArguments());
+        new TransactionBucketBackfill(reactiveMongoTemplate, transactionBucketWriter, true, false)
+                .run(new DefaultApplicationArguments());
+        verifyNoInteractions(reactiveMongoTemplate, transactionBucketWriter);
+    }
+    @Test
+    void run_WritesInBackground() {
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(Flux.empty());
+        TransactionBucketBackfill backfill = new TransactionBucketBackfill(reactiveMongoTemplate,
+                transactionBucketWriter, true, true);
+        backfill.run(new DefaultApplicationArguments());
+        backfill.destroy();
+        verify(reactiveMongoTemplate).find(any(Query.class), eq(Transaction.class));
+    }
+}
@@ -0,0 +1,101 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionBucket;
+import com.bank.transactionservice.model.transaction.TransactionBucketEntry;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+@ExtendWith(MockitoExtension.class)
+class TransactionBucketWriterTest {
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Test
+    void onAfterSave_Disabled() {
+        TransactionBucketWriter writer = new TransactionBucketWriter(reactiveMongoTemplate, false, 500);
+        Transaction transaction = createTransaction();
+        StepVerifier.create(writer.onAfterSave(transaction, new Document(), "transaction"))
+                .expectNext(transaction)
+                .verifyComplete();
+        verifyNoInteractions(reactiveMongoTemplate);
+    }
+    @Test
+    void onAfterSave_AppendsToMonthBucket() {
+        TransactionBucketWriter writer = new TransactionBucketWriter(reactiveMongoTemplate, true, 500);
+        Transaction transaction = createTransaction();
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(TransactionBucket.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0L, 0L, null)));
+        when(reactiveMongoTemplate.upsert(any(Query.class), any(Update.class), eq(TransactionBucket.class)))
+                .thenReturn(Mono.just(mock(UpdateResult.class)));
+        StepVerifier.create(writer.onAfterSave(transaction, new Document(), "transaction"))
+                .expectNext(transaction)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(reactiveMongoTemplate).upsert(query.capture(), update.capture(), eq(TransactionBucket.class));
+        assertEquals("product1", query.getValue().getQueryObject().get("productId"));
+        assertEquals("2024-03", query.getValue().getQueryObject().get("month"));
+        assertEquals(new Document("$lt", 500), query.getValue().getQueryObject().get("count"));
+        Document push = (Document) update.getValue().getUpdateObject().get("$push");
+        assertTrue(push.get("entries") instanceof TransactionBucketEntry);
+        assertEquals("1", ((TransactionBucketEntry) push.get("entries")).getId());
+    }
+    @Test
+    void onAfterSave_SavedAgainReplacesItsEntry() {
+        TransactionBucketWriter writer = new TransactionBucketWriter(reactiveMongoTemplate, true, 500);
+        Transaction transaction = createTransaction();
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(TransactionBucket.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null)));
+        StepVerifier.create(writer.onAfterSave(transaction, new Document(), "transaction"))
+                .expectNext(transaction)
+                .verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(reactiveMongoTemplate).updateFirst(query.capture(), update.capture(), eq(TransactionBucket.class));
+        assertEquals("1", query.getValue().getQueryObject().get("entries.i"));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals("1", ((TransactionBucketEntry) set.get("entries.$")).getId());
+        verify(reactiveMongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(TransactionBucket.class));
+    }
+    @Test
+    void onAfterSave_BucketErrorFailsSave() {
+        TransactionBucketWriter writer = new TransactionBucketWriter(reactiveMongoTemplate, true, 500);
+        Transaction transaction = createTransaction();
+        transaction.setId(null);
+        transaction.setTransactionDate(null);
+        when(reactiveMongoTemplate.upsert(any(Query.class), any(Update.class), eq(TransactionBucket.class)))
+                .thenReturn(Mono.error(new RuntimeException("Mongo error")));
+        StepVerifier.create(writer.onAfterSave(transaction, new Document(), "transaction"))
+                .expectErrorMessage("Mongo error")
+                .verify();
+    }
+    private Transaction createTransaction() {
+        return Transaction.builder()
+                .id("1")
+                .customerId("customer1")
+                .productId("product1")
+                .amount(new BigDecimal("100.00"))
+                .transactionDate(LocalDateTime.of(2024, 3, 15, 12, 0))
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.bank.transactionservice.repository;
+
+import com.bank.transactionservice.model.transaction.ProductCategory;
+import com.bank.transactionservice.model.transaction.ProductSubType;
+import com.bank.transactionservice.model.transaction.ProjectedTransaction;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionBucket;
+import com.bank.transactionservice.model.transaction.TransactionBucketEntry;
+import com.bank.transactionservice.model.transaction.TransactionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+@ExtendWith(MockitoExtension.class)
+class TransactionRepositoryCustomImplTest {
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Test
+    void findByProductIdIncludingFields_OnlyRequestedFields() throws Exception {
+        TransactionRepositoryCustomImpl repository = new TransactionRepositoryCustomImpl(reactiveMongoTemplate, false);
+        ProjectedTransaction transaction = new ProjectedTransaction();
+        transaction.setId("1");
+        when(reactiveMongoTemplate.getCollectionName(Transaction.class)).thenReturn("transaction");
+        when(reactiveMongoTemplate.find(any(Query.class), eq(ProjectedTransaction.class), eq("transaction")))
+                .thenReturn(Flux.just(transaction));
+        StepVerifier.create(repository.findByProductIdIncludingFields("product1",
+                        Arrays.asList("amount", "merchantName")))
+                .expectNext(transaction)
+                .verifyComplete();
+        // Only projected transactions leave out the fields that were not read
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals("{\"id\":\"1\"}", objectMapper.writeValueAsString(transaction));
+        assertTrue(objectMapper.writeValueAsString(Transaction.builder().id("1").build()).contains("\"amount\":null"));
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate).find(captor.capture(), eq(ProjectedTransaction.class), eq("transaction"));
+        assertEquals("product1", captor.getValue().getQueryObject().get("productId"));
+        assertEquals(1, captor.getValue().getFieldsObject().get("amount"));
+        assertEquals(1, captor.getValue().getFieldsObject().get("merchantName"));
+        assertEquals(2, captor.getValue().getFieldsObject().size());
+    }
+    @Test
+    void findByCustomerIdIncludingFields_FiltersByCustomer() {
+        TransactionRepositoryCustomImpl repository = new TransactionRepositoryCustomImpl(reactiveMongoTemplate, false);
+        when(reactiveMongoTemplate.getCollectionName(Transaction.class)).thenReturn("transaction");
+        when(reactiveMongoTemplate.find(any(Query.class), eq(ProjectedTransaction.class), eq("transaction")))
+                .thenReturn(Flux.empty());
+        StepVerifier.create(repository.findByCustomerIdIncludingFields("customer1", Arrays.asList("amount")))
+                .verifyComplete();
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate).find(captor.capture(), eq(ProjectedTransaction.class), eq("transaction"));
+        assertEquals("customer1", captor.getValue().getQueryObject().get("customerId"));
+    }
+    @Test
+    void flatLayout_QueriesTransactionCollection() {
+        TransactionRepositoryCustomImpl repository = new TransactionRepositoryCustomImpl(reactiveMongoTemplate, false);
+        Transaction transaction = Transaction.builder().id("1").customerId("customer1").productId("product1").build();
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(Flux.just(transaction));
+        StepVerifier.create(repository.findByProductId("product1")).expectNext(transaction).verifyComplete();
+        StepVerifier.create(repository.findByCustomerIdAndProductId("customer1", "product1"))
+                .expectNext(transaction)
+                .verifyComplete();
+        StepVerifier.create(repository.findByTransactionDateBetween(LocalDate.now().minusDays(1), LocalDate.now()))
+                .expectNext(transaction)
+                .verifyComplete();
+        verify(reactiveMongoTemplate, never()).find(any(Query.class), eq(TransactionBucket.class));
+    }
+    @Test
+    void bucketLayout_FlattensBucketEntries() {
+        TransactionRepositoryCustomImpl repository = new TransactionRepositoryCustomImpl(reactiveMongoTemplate, true);
+        when(reactiveMongoTemplate.find(any(Query.class), eq(TransactionBucket.class)))
+                .thenReturn(Flux.just(createBucket()));
+        StepVerifier.create(repository.findByProductId("product1"))
+                .expectNextMatches(t -> t.getId().equals("1") && t.getProductId().equals("product1"))
+                .expectNextMatches(t -> t.getId().equals("2") && t.getCustomerId().equals("customer2"))
+                .expectNextMatches(t -> t.getId().equals("3"))
+                .verifyComplete();
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate).find(captor.capture(), eq(TransactionBucket.class));
+        assertEquals("product1", captor.getValue().getQueryObject().get("productId"));
+        verify(reactiveMongoTemplate, never()).find(any(Query.class), eq(Transaction.class));
+    }
+    @Test
+    void bucketLayout_FiltersByCustomer() {
+        TransactionRepositoryCustomImpl repository = new TransactionRepositoryCustomImpl(reactiveMongoTemplate, true);
+        when(reactiveMongoTemplate.find(any(Query.class), eq(TransactionBucket.class)))
+                .thenReturn(Flux.just(createBucket()));
+        StepVerifier.create(repository.findByCustomerIdAndProductId("customer2", "product1"))
+                .expectNextMatches(t -> t.getId().equals("2"))
+                .verifyComplete();
+    }
+    @Test
+    void bucketLayout_KeepsDateRangeOnFlatCollection() {
+        TransactionRepositoryCustomImpl repository = new TransactionRepositoryCustomImpl(reactiveMongoTemplate, true);
+        Transaction transaction = Transaction.builder().id("2").build();
+        when(reactiveMongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(Flux.just(transaction));
+        StepVerifier.create(repository.findByTransactionDateBetween(LocalDate.of(2024, 3, 2),
+                        LocalDate.of(2024, 3, 20)))
+                .expectNext(transaction)
+                .verifyComplete();
+        verify(reactiveMongoTemplate, never()).find(any(Query.class), eq(TransactionBucket.class));
+    }
+    @Test
+    void bucketEntry_KeepsEveryTransactionField() {
+        Transaction transaction = new Transaction("1", "customer1", "product1", ProductCategory.ACCOUNT,
+                ProductSubType.SAVINGS, TransactionType.TRANSFER, new BigDecimal("10.00"),
+                LocalDateTime.of(2024, 3, 1, 10, 0), "account2", new BigDecimal("1.00"), "account3", "merchant",
+                new BigDecimal("100.00"), new BigDecimal("90.00"), new BigDecimal("110.00"));
+        assertEquals(transaction, TransactionBucketEntry.from(transaction).toTransaction("product1"));
+    }
+    private TransactionBucket createBucket() {
+        return TransactionBucket.builder()
+                .productId("product1")
+                .month("2024-03")
+                .count(3)
+                .entries(Arrays.asList(
+                        createEntry("1", "customer1", LocalDateTime.of(2024, 3, 1, 10, 0)),
+                        createEntry("2", "customer2", LocalDateTime.of(2024, 3, 10, 10, 0)),
+                        createEntry("3", "customer1", LocalDateTime.of(2024, 3, 25, 10, 0))))
+                .build();
+    }
+    private TransactionBucketEntry createEntry(String id, String customerId, LocalDateTime date) {
+        return TransactionBucketEntry.builder()
+                .id(id)
+                .customerId(customerId)
+                .transactionType(TransactionType.DEPOSIT)
+                .amount(new BigDecimal("10.00"))
+                .transactionDate(date)
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.model.statement.AccountStatement;
+import com.bank.transactionservice.model.statement.StatementEntry;
+import com.bank.transactionservice.model.transaction.ProductCategory;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.repository.AccountStatementRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class AccountStatementServiceTest {
+    @Mock
+    private AccountStatementRepository accountStatementRepository;
+    @InjectMocks
+    private AccountStatementService accountStatementService;
+    @Test
+    void recordTransaction_Withdrawal() {
+        Transaction transaction = createTransaction(ProductCategory.ACCOUNT, TransactionType.WITHDRAWAL);
+        transaction.setCommissions(new BigDecimal("1.00"));
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        ArgumentCaptor<StatementEntry> entry = ArgumentCaptor.forClass(StatementEntry.class);
+        verify(accountStatementRepository).appendEntry(eq("product1"), eq("customer1"), eq("2024-03"),
+                eq(new BigDecimal("1000.00")), entry.capture());
+        assertEquals(new BigDecimal("-100.00"), entry.getValue().getAmount());
+        assertEquals(new BigDecimal("900.00"), entry.getValue().getBalanceAfter());
+        assertEquals(new BigDecimal("1.00"), entry.getValue().getCommissions());
+    }
+    @Test
+    void recordTransaction_OpensFromBalanceBeforeCommission() {
+        Transaction transaction = createTransaction(ProductCategory.ACCOUNT, TransactionType.WITHDRAWAL);
+        transaction.setAmount(new BigDecimal("101.00"));
+        transaction.setCommissions(new BigDecimal("1.00"));
+        transaction.setBalanceBefore(new BigDecimal("1001.00"));
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        verify(accountStatementRepository).appendEntry(eq("product1"), eq("customer1"), eq("2024-03"),
+                eq(new BigDecimal("1001.00")), any(StatementEntry.class));
+    }
+    @Test
+    void recordTransaction_TransferUpdatesBothStatements() {
+        Transaction transaction = createTransaction(ProductCategory.ACCOUNT, TransactionType.TRANSFER);
+        transaction.setDestinationAccountId("product2");
+        transaction.setDestinationBalanceAfter(new BigDecimal("150.00"));
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        ArgumentCaptor<StatementEntry> entry = ArgumentCaptor.forClass(StatementEntry.class);
+        verify(accountStatementRepository).appendEntry(eq("product2"), isNull(), eq("2024-03"),
+                eq(new BigDecimal("50.00")), entry.capture());
+        assertEquals(new BigDecimal("100.00"), entry.getValue().getAmount());
+        assertEquals("product1", entry.getValue().getCounterpartyAccountId());
+        verify(accountStatementRepository).appendEntry(eq("product1"), eq("customer1"), eq("2024-03"),
+                eq(new BigDecimal("1000.00")), any(StatementEntry.class));
+    }
+    @Test
+    void recordTransaction_DebitCardUsesSourceAccount() {
+        Transaction transaction = createTransaction(ProductCategory.DEBIT_CARD, TransactionType.DEBIT_CARD_PAYMENT);
+        transaction.setSourceAccountId("account9");
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        verify(accountStatementRepository).appendEntry(eq("account9"), eq("customer1"), eq("2024-03"),
+                eq(new BigDecimal("1000.00")), any(StatementEntry.class));
+    }
+    @Test
+    void recordTransaction_CreditCardPaymentIncreasesAvailableBalance() {
+        Transaction transaction = createTransaction(ProductCategory.CREDIT_CARD, TransactionType.CREDIT_PAYMENT);
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        verify(accountStatementRepository).appendEntry(eq("product1"), eq("customer1"), eq("2024-03"),
+                eq(new BigDecimal("800.00")), any(StatementEntry.class));
+    }
+    @Test
+    void recordTransaction_CreditPaymentReducesRemainingBalance() {
+        Transaction transaction = createTransaction(ProductCategory.CREDIT, TransactionType.CREDIT_PAYMENT);
+        transaction.setTransactionDate(null);
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        verify(accountStatementRepository).appendEntry(eq("product1"), eq("customer1"),
+                eq(YearMonth.now().toString()), eq(new BigDecimal("1000.00")), any(StatementEntry.class));
+    }
+    @Test
+    void recordTransaction_DepositErrorIsSwallowed() {
+        Transaction transaction = createTransaction(ProductCategory.ACCOUNT, TransactionType.DEPOSIT);
+        when(accountStatementRepository.appendEntry(anyString(), any(), anyString(), any(), any()))
+                .thenReturn(Mono.error(new RuntimeException("Mongo error")));
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+    }
+    @Test
+    void recordTransaction_WithoutBalanceIsSkipped() {
+        Transaction transaction = createTransaction(ProductCategory.ACCOUNT, TransactionType.DEPOSIT);
+        transaction.setBalanceAfter(null);
+        StepVerifier.create(accountStatementService.recordTransaction(transaction)).verifyComplete();
+        verifyNoInteractions(accountStatementRepository);
+    }
+    @Test
+    void getStatement_PointRead() {
+        AccountStatement statement = AccountStatement.builder().id("product1:2024-03").build();
+        when(accountStatementRepository.findById("product1:2024-03")).thenReturn(Mono.just(statement));
+        StepVerifier.create(accountStatementService.getStatement("product1", YearMonth.of(2024, 3)))
+                .expectNext(statement)
+                .verifyComplete();
+    }
+    @Test
+    void getStatement_Error() {
+        when(accountStatementRepository.findById("product1:2024-03"))
+                .thenReturn(Mono.error(new RuntimeException("Mongo error")));
+        StepVerifier.create(accountStatementService.getStatement("product1", YearMonth.of(2024, 3)))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+    private Transaction createTransaction(ProductCategory category, TransactionType type) {
+        return Transaction.builder()
+                .id("1")
+                .customerId("customer1")
+                .productId("product1")
+                .productCategory(category)
+                .transactionType(type)
+                .amount(new BigDecimal("100.00"))
+                .balanceAfter(new BigDecimal("900.00"))
+                .transactionDate(LocalDateTime.of(2024, 3, 15, 12, 0))
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.client.CustomerClientService;
+import com.bank.transactionservice.model.customer.Customer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Publisher;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCacheServiceTest {
+    @Mock
+    private CustomerClientService customerClientService;
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    @Captor
+    private ArgumentCaptor<Publisher<String>> keysCaptor;
+    private CustomerCacheService customerCacheService;
+    private Customer customer;
+    @BeforeEach
+    void setUp() {
+        customerCacheService = new CustomerCacheService(customerClientService, redisTemplate, 30000, 600000, 100);
+        customer = Customer.builder().id("CUST-1").documentNumber("12345678").fullName("Ana").build();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.set(anyString(), anyString(), any(Duration.class)))
+                .thenReturn(Mono.just(Boolean.TRUE));
+    }
+    @Test
+    void getCustomerByDocumentNumber_MissLoadsFromCustomerServiceAndCachesBothKeys() {
+        when(valueOperations.get("Customer:document:12345678")).thenReturn(Mono.empty());
+        when(customerClientService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        StepVerifier.create(customerCacheService.getCustomerByDocumentNumber("12345678"))
+                .expectNext(customer)
+                .verifyComplete();
+        verify(valueOperations).set(eq("Customer:document:12345678"), anyString(), eq(Duration.ofMinutes(10)));
+        verify(valueOperations).set(eq("Customer:id:CUST-1"), anyString(), eq(Duration.ofMinutes(10)));
+        // Served locally from now on, by document and by ID
+        StepVerifier.create(customerCacheService.getCustomerByDocumentNumber("12345678"))
+                .expectNext(customer)
+                .verifyComplete();
+        StepVerifier.create(customerCacheService.getCustomerById("CUST-1"))
+                .expectNext(customer)
+                .verifyComplete();
+        verify(customerClientService, times(1)).getCustomerByDocumentNumber("12345678");
+        verify(valueOperations, times(1)).get(anyString());
+    }
+    @Test
+    void getCustomerByDocumentNumber_UsesRedisEntry() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        when(valueOperations.get("Customer:document:12345678"))
+                .thenReturn(Mono.just(objectMapper.writeValueAsString(customer)));
+        StepVerifier.create(customerCacheService.getCustomerByDocumentNumber("12345678"))
+                .expectNextMatches(found -> "CUST-1".equals(found.getId()))
+                .verifyComplete();
+        verify(customerClientService, never()).getCustomerByDocumentNumber(anyString());
+    }
+    @Test
+    void getCustomerByDocumentNumber_FallsBackWhenRedisFails() {
+        when(valueOperations.get("Customer:document:12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")));
+        when(valueOperations.set(anyString(), anyString(), any(Duration.class)))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")));
+        when(customerClientService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        StepVerifier.create(customerCacheService.getCustomerByDocumentNumber("12345678"))
+                .expectNext(customer)
+                .verifyComplete();
+    }
+    @Test
+    void getCustomerByDocumentNumber_PropagatesCustomerServiceError() {
+        when(valueOperations.get("Customer:document:12345678")).thenReturn(Mono.empty());
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")));
+        StepVerifier.create(customerCacheService.getCustomerByDocumentNumber("12345678"))
+                .expectErrorMessage("Customer service is unavailable")
+                .verify();
+    }
+    @Test
+    void evictByDocumentNumber_ClearsBothKeys() {
+        when(valueOperations.get("Customer:document:12345678")).thenReturn(Mono.empty());
+        when(customerClientService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(redisTemplate.delete(keysCaptor.capture())).thenReturn(Mono.just(2L));
+        StepVerifier.create(customerCacheService.getCustomerByDocumentNumber("12345678")
+                        .then(customerCacheService.evictByDocumentNumber("12345678")))
+                .verifyComplete();
+        when(valueOperations.get("Customer:id:CUST-1")).thenReturn(Mono.empty());
+        StepVerifier.create(customerCacheService.getCustomerById("CUST-1"))
+                .verifyComplete();
+        StepVerifier.create(keysCaptor.getValue())
+                .expectNext("Customer:document:12345678", "Customer:id:CUST-1")
+                .verifyComplete();
+    }
+    @Test
+    void evictByDocumentNumber_UnknownCustomerClearsDocumentKey() {
+        when(valueOperations.get("Customer:document:999")).thenReturn(Mono.empty());
+        when(redisTemplate.delete(keysCaptor.capture())).thenReturn(Mono.just(0L));
+        StepVerifier.create(customerCacheService.evictByDocumentNumber("999"))
+                .verifyComplete();
+        StepVerifier.create(keysCaptor.getValue())
+                .expectNext("Customer:document:999")
+                .verifyComplete();
+    }
+    @Test
+    void localCache_ExpiresAfterTtl() throws Exception {
+        CustomerCacheService shortLived = new CustomerCacheService(customerClientService, redisTemplate, 1, 600000,
+                100);
+        when(valueOperations.get("Customer:document:12345678")).thenReturn(Mono.empty());
+        when(customerClientService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        StepVerifier.create(shortLived.getCustomerByDocumentNumber("12345678")).expectNext(customer).verifyComplete();
+        Thread.sleep(5);
+        StepVerifier.create(shortLived.getCustomerByDocumentNumber("12345678")).expectNext(customer).verifyComplete();
+        verify(customerClientService, times(2)).getCustomerByDocumentNumber("12345678");
+    }
+}
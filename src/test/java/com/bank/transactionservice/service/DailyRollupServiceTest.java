@@ -0,0 +1,104 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.model.rollup.DailyRollup;
+import com.bank.transactionservice.model.rollup.RollupScope;
+import com.bank.transactionservice.model.transaction.ProductCategory;
+import com.bank.transactionservice.model.transaction.Transaction;
+import com.bank.transactionservice.model.transaction.TransactionType;
+import com.bank.transactionservice.repository.DailyRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class DailyRollupServiceTest {
+    @Mock
+    private DailyRollupRepository dailyRollupRepository;
+    @InjectMocks
+    private DailyRollupService dailyRollupService;
+    @Test
+    void recordTransaction_IncrementsCustomerAndProduct() {
+        Transaction transaction = createTransaction();
+        when(dailyRollupRepository.increment(any(RollupScope.class), anyString(), anyString(), any(Transaction.class)))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(dailyRollupService.recordTransaction(transaction)).verifyComplete();
+        verify(dailyRollupRepository).increment(RollupScope.CUSTOMER, "customer1", "2024-03-15", transaction);
+        verify(dailyRollupRepository).increment(RollupScope.PRODUCT, "product1", "2024-03-15", transaction);
+    }
+    @Test
+    void recordTransaction_DebitCardUsesSourceAccount() {
+        Transaction transaction = createTransaction();
+        transaction.setProductCategory(ProductCategory.DEBIT_CARD);
+        transaction.setSourceAccountId("account9");
+        transaction.setCustomerId(null);
+        when(dailyRollupRepository.increment(any(RollupScope.class), anyString(), anyString(), any(Transaction.class)))
+                .thenReturn(Mono.empty());
+        StepVerifier.create(dailyRollupService.recordTransaction(transaction)).verifyComplete();
+        verify(dailyRollupRepository).increment(RollupScope.PRODUCT, "account9", "2024-03-15", transaction);
+        verify(dailyRollupRepository, never()).increment(eq(RollupScope.CUSTOMER), any(), any(), any());
+    }
+    @Test
+    void recordTransaction_ErrorIsSwallowed() {
+        Transaction transaction = createTransaction();
+        transaction.setTransactionDate(null);
+        when(dailyRollupRepository.increment(any(RollupScope.class), anyString(), anyString(), any(Transaction.class)))
+                .thenReturn(Mono.error(new RuntimeException("Mongo error")));
+        StepVerifier.create(dailyRollupService.recordTransaction(transaction)).verifyComplete();
+    }
+    @Test
+    void recordTransaction_WithoutAmountIsSkipped() {
+        Transaction transaction = createTransaction();
+        transaction.setAmount(null);
+        StepVerifier.create(dailyRollupService.recordTransaction(transaction)).verifyComplete();
+        verifyNoInteractions(dailyRollupRepository);
+    }
+    @Test
+    void getRollups_Range() {
+        DailyRollup rollup = DailyRollup.builder().id("PRODUCT:product1:2024-03-15").build();
+        when(dailyRollupRepository.findByScopeAndKeyAndDateRange(RollupScope.PRODUCT, "product1",
+                "2024-03-01", "2024-03-31")).thenReturn(Flux.just(rollup));
+        StepVerifier.create(dailyRollupService.getRollups(RollupScope.PRODUCT, "product1",
+                        LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)))
+                .expectNext(rollup)
+                .verifyComplete();
+    }
+    @Test
+    void getRollups_Error() {
+        when(dailyRollupRepository.findByScopeAndKeyAndDateRange(RollupScope.CUSTOMER, "customer1",
+                "2024-03-01", "2024-03-31")).thenReturn(Flux.error(new RuntimeException("Mongo error")));
+        StepVerifier.create(dailyRollupService.getRollups(RollupScope.CUSTOMER, "customer1",
+                        LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+    @Test
+    void getRollups_InvalidRange() {
+        StepVerifier.create(dailyRollupService.getRollups(RollupScope.CUSTOMER, "customer1",
+                        LocalDate.of(2024, 3, 31), LocalDate.of(2024, 3, 1)))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verifyNoInteractions(dailyRollupRepository);
+    }
+    private Transaction createTransaction() {
+        return Transaction.builder()
+                .id("1")
+                .customerId("customer1")
+                .productId("product1")
+                .productCategory(ProductCategory.ACCOUNT)
+                .transactionType(TransactionType.DEPOSIT)
+                .amount(new BigDecimal("100.00"))
+                .balanceAfter(new BigDecimal("1100.00"))
+                .transactionDate(LocalDateTime.of(2024, 3, 15, 12, 0))
+                .build();
+    }
+}
@@ -14,12 +14,22 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -37,7 +47,7 @@ class TransactionCacheServiceTest {
     private CreditCard testCreditCard;
     @BeforeEach
     void setUp() {
-        transactionCacheService = new TransactionCacheService(redisTemplate);
+        transactionCacheService = new TransactionCacheService(redisTemplate, 60000L);
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
 
@@ -62,20 +72,49 @@ class TransactionCacheServiceTest {
         testCreditCard.setAvailableBalance(new BigDecimal("10000.00"));
     }
     @Test
-    void saveAccount_Success() throws Exception {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        String expectedJson = objectMapper.writeValueAsString(testAccount);
-        String expectedKey = "Account:1";
-        when(valueOperations.set(anyString(), anyString()))
-                .thenReturn(Mono.just(Boolean.TRUE));
+    @SuppressWarnings("unchecked")
+    void saveAccount_GoesThroughGuardedScript() throws Exception {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
         StepVerifier.create(transactionCacheService.saveAccount(testAccount.getId(), testAccount))
                 .verifyComplete();
-        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(valueOperations).set(keyCaptor.capture(), valueCaptor.capture());
-        assert keyCaptor.getValue().equals(expectedKey);
-        assert objectMapper.readTree(valueCaptor.getValue())
-                .equals(objectMapper.readTree(expectedJson));
+        ArgumentCaptor<List<String>> args = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("Account:1", "CacheVersion:Account:1")),
+                args.capture());
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(testAccount)),
+                objectMapper.readTree(args.getValue().get(2)));
+        verifyNoInteractions(valueOperations);
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAccounts_UsesSingleGuardedScript() throws Exception {
+        testAccount.setModifiedAt(LocalDateTime.of(2024, 3, 1, 10, 0));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
+        StepVerifier.create(transactionCacheService.saveAccounts(Map.of("1", testAccount)))
+                .verifyComplete();
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<String>> args = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(any(RedisScript.class), keys.capture(), args.capture());
+        assertEquals(List.of("Account:1", "CacheVersion:Account:1"), keys.getValue());
+        assertEquals("60000", args.getValue().get(0));
+        assertEquals(String.valueOf(LocalDateTime.of(2024, 3, 1, 10, 0).toInstant(ZoneOffset.UTC).toEpochMilli()),
+                args.getValue().get(1));
+        assertEquals(testAccount, objectMapper.readValue(args.getValue().get(2), Account.class));
+    }
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveCreditsAndCreditCards_PrefixKeys() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
+        StepVerifier.create(transactionCacheService.saveCredits(Map.of("1", testCredit))).verifyComplete();
+        StepVerifier.create(transactionCacheService.saveCreditCards(Map.of("1", testCreditCard))).verifyComplete();
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("Credit:1", "CacheVersion:Credit:1")),
+                argThat(args -> "-1".equals(((List<?>) args).get(1))));
+        verify(redisTemplate).execute(any(RedisScript.class),
+                eq(List.of("CreditCard:1", "CacheVersion:CreditCard:1")), anyList());
+    }
+    @Test
+    void saveAccounts_EmptyBatchSkipsRedis() {
+        StepVerifier.create(transactionCacheService.saveAccounts(Collections.emptyMap())).verifyComplete();
+        verifyNoInteractions(redisTemplate);
     }
     @Test
     void saveAccount_NullId_ReturnsError() {
@@ -98,36 +137,30 @@ class TransactionCacheServiceTest {
                 .verifyComplete();
     }
     @Test
-    void saveCredit_Success() throws Exception {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        String expectedJson = objectMapper.writeValueAsString(testCredit);
-        String expectedKey = "Credit:1";
-        when(valueOperations.set(anyString(), anyString()))
-                .thenReturn(Mono.just(Boolean.TRUE));
+    @SuppressWarnings("unchecked")
+    void saveCredit_GoesThroughGuardedScript() throws Exception {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
         StepVerifier.create(transactionCacheService.saveCredit(testCredit.getId(), testCredit))
                 .verifyComplete();
-        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(valueOperations).set(keyCaptor.capture(), valueCaptor.capture());
-        assert keyCaptor.getValue().equals(expectedKey);
-        assert objectMapper.readTree(valueCaptor.getValue())
-                .equals(objectMapper.readTree(expectedJson));
+        ArgumentCaptor<List<String>> args = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("Credit:1", "CacheVersion:Credit:1")),
+                args.capture());
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(testCredit)),
+                objectMapper.readTree(args.getValue().get(2)));
+        verifyNoInteractions(valueOperations);
     }
     @Test
-    void saveCreditCard_Success() throws Exception {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        String expectedJson = objectMapper.writeValueAsString(testCreditCard);
-        String expectedKey = "CreditCard:1";
-        when(valueOperations.set(anyString(), anyString()))
-                .thenReturn(Mono.just(Boolean.TRUE));
+    @SuppressWarnings("unchecked")
+    void saveCreditCard_GoesThroughGuardedScript() throws Exception {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
         StepVerifier.create(transactionCacheService.saveCreditCard(testCreditCard.getId(), testCreditCard))
                 .verifyComplete();
-        ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(valueOperations).set(keyCaptor.capture(), valueCaptor.capture());
-        assert keyCaptor.getValue().equals(expectedKey);
-        assert objectMapper.readTree(valueCaptor.getValue())
-                .equals(objectMapper.readTree(expectedJson));
+        ArgumentCaptor<List<String>> args = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("CreditCard:1", "CacheVersion:CreditCard:1")),
+                args.capture());
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(testCreditCard)),
+                objectMapper.readTree(args.getValue().get(2)));
+        verifyNoInteractions(valueOperations);
     }
     @Test
     void getCredit_NotFound_ReturnsEmpty() {
@@ -163,9 +196,8 @@ class TransactionCacheServiceTest {
     }
     @Test
     void saveCreditCard_RedisError_PropagatesError() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.set(anyString(), anyString()))
-                .thenReturn(Mono.error(new RuntimeException("Redis error")));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+                .thenReturn(Flux.error(new RuntimeException("Redis error")));
         StepVerifier.create(transactionCacheService.saveCreditCard("1", testCreditCard))
                 .expectError(RuntimeException.class)
                 .verify();
@@ -3,6 +3,9 @@ package com.bank.transactionservice.service;
 import com.bank.transactionservice.client.AccountClientService;
 import com.bank.transactionservice.client.CreditClientService;
 import com.bank.transactionservice.client.DebitCardClientService;
+import com.bank.transactionservice.client.ReadResult;
+import com.bank.transactionservice.dto.BalanceUpdatedEvent;
+import com.bank.transactionservice.event.ReactiveKafkaPublisher;
 import com.bank.transactionservice.model.account.Account;
 import com.bank.transactionservice.model.account.AccountType;
 import com.bank.transactionservice.model.credit.Credit;
@@ -30,6 +33,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -45,6 +49,14 @@ class TransactionServiceTest {
     private CreditClientService creditClientService;
     @Mock
     private DebitCardClientService debitCardClientService;
+    @Mock
+    private AccountStatementService accountStatementService;
+    @Mock
+    private DailyRollupService dailyRollupService;
+    @Mock
+    private TransactionVersionService transactionVersionService;
+    @Mock
+    private ReactiveKafkaPublisher reactiveKafkaPublisher;
     @InjectMocks
     private TransactionService transactionService;
     private Transaction testTransaction;
@@ -53,6 +65,9 @@ class TransactionServiceTest {
     private CreditCard testCreditCard;
     @BeforeEach
     void setUp() {
+        lenient().when(accountStatementService.recordTransaction(any(Transaction.class))).thenReturn(Mono.empty());
+        lenient().when(dailyRollupService.recordTransaction(any(Transaction.class))).thenReturn(Mono.empty());
+        lenient().when(transactionVersionService.recordTransaction(any(Transaction.class))).thenReturn(Mono.empty());
 
         testAccount = new Account();
         testAccount.setId("1");
@@ -97,8 +112,12 @@ class TransactionServiceTest {
                 .expectNextMatches(transaction ->
                         transaction.getId().equals("1") &&
                                 transaction.getProductCategory() == ProductCategory.CREDIT_CARD &&
-                                transaction.getTransactionType() == TransactionType.CREDIT_CARD_PURCHASE)
+                                transaction.getTransactionType() == TransactionType.CREDIT_CARD_PURCHASE &&
+                                transaction.getBalanceAfter().compareTo(new BigDecimal("9900.00")) == 0)
                 .verifyComplete();
+        verify(accountStatementService).recordTransaction(testTransaction);
+        verify(dailyRollupService).recordTransaction(testTransaction);
+        verify(transactionVersionService).recordTransaction(testTransaction);
     }
     @Test
     void getTransactionsByCustomerId_Success() {
@@ -121,6 +140,57 @@ class TransactionServiceTest {
                 .verifyComplete();
     }
     @Test
+    void getTransactionsByProductId_SummaryView() {
+        String productId = "1";
+        when(transactionRepository.findByProductIdIncludingFields(productId,
+                Arrays.asList("transactionDate", "transactionType", "amount", "merchantName")))
+                .thenReturn(Flux.just(testTransaction));
+        StepVerifier.create(transactionService.getTransactionsByProductId(productId, null, "SUMMARY"))
+                .expectNext(testTransaction)
+                .verifyComplete();
+    }
+    @Test
+    void getTransactionsByProductId_FullViewUsesDefaultQuery() {
+        String productId = "1";
+        when(transactionRepository.findByProductId(productId)).thenReturn(Flux.just(testTransaction));
+        StepVerifier.create(transactionService.getTransactionsByProductId(productId, " ", "full"))
+                .expectNext(testTransaction)
+                .verifyComplete();
+        verify(transactionRepository, never()).findByProductIdIncludingFields(anyString(), anyCollection());
+    }
+    @Test
+    void getTransactionsByCustomerId_RequestedFields() {
+        String customerId = "customer1";
+        when(transactionRepository.findByCustomerIdIncludingFields(customerId, Arrays.asList("amount", "productId")))
+                .thenReturn(Flux.just(testTransaction));
+        StepVerifier.create(transactionService.getTransactionsByCustomerId(customerId,
+                        "amount, productId,amount", null))
+                .expectNext(testTransaction)
+                .verifyComplete();
+    }
+    @Test
+    void getTransactionsByCustomerId_NoProjection() {
+        String customerId = "customer1";
+        when(transactionRepository.findByCustomerId(customerId)).thenReturn(Flux.just(testTransaction));
+        StepVerifier.create(transactionService.getTransactionsByCustomerId(customerId, null, null))
+                .expectNext(testTransaction)
+                .verifyComplete();
+    }
+    @Test
+    void getTransactionsByCustomerId_UnknownField() {
+        StepVerifier.create(transactionService.getTransactionsByCustomerId("customer1", "amount,balance", null))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException &&
+                        e.getMessage().equals("Unknown transaction field: balance"))
+                .verify();
+    }
+    @Test
+    void getTransactionsByProductId_UnknownView() {
+        StepVerifier.create(transactionService.getTransactionsByProductId("1", null, "compact"))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException &&
+                        e.getMessage().equals("Unknown transaction view: compact"))
+                .verify();
+    }
+    @Test
     void getTransactionById_Success() {
         String transactionId = "1";
         when(transactionRepository.findById(transactionId))
@@ -154,11 +224,12 @@ class TransactionServiceTest {
         String customerId = "customer1";
         String accountId = "1";
         when(transactionCacheService.getAccount(accountId)).thenReturn(Mono.just(testAccount));
-        when(accountClientService.getAccountById(accountId)).thenReturn(Mono.just(testAccount));
+        when(accountClientService.getAccountAllowingStale(accountId))
+                .thenReturn(Mono.just(ReadResult.fresh(testAccount)));
         when(transactionCacheService.getCredit(accountId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditById(accountId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditAllowingStale(accountId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCreditCard(accountId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditCardById(accountId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditCardAllowingStale(accountId)).thenReturn(Mono.empty());
         StepVerifier.create(transactionService.validateOwnership(customerId, accountId))
                 .expectNext(true)
                 .verifyComplete();
@@ -168,11 +239,11 @@ class TransactionServiceTest {
         String customerId = "customer1";
         String creditId = "1";
         when(transactionCacheService.getAccount(creditId)).thenReturn(Mono.empty());
-        when(accountClientService.getAccountById(creditId)).thenReturn(Mono.empty());
+        when(accountClientService.getAccountAllowingStale(creditId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCredit(creditId)).thenReturn(Mono.just(testCredit));
-        when(creditClientService.getCreditById(creditId)).thenReturn(Mono.just(testCredit));
+        when(creditClientService.getCreditAllowingStale(creditId)).thenReturn(Mono.just(ReadResult.fresh(testCredit)));
         when(transactionCacheService.getCreditCard(creditId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditCardById(creditId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditCardAllowingStale(creditId)).thenReturn(Mono.empty());
         StepVerifier.create(transactionService.validateOwnership(customerId, creditId))
                 .expectNext(true)
                 .verifyComplete();
@@ -182,11 +253,12 @@ class TransactionServiceTest {
         String customerId = "customer1";
         String creditCardId = "1";
         when(transactionCacheService.getAccount(creditCardId)).thenReturn(Mono.empty());
-        when(accountClientService.getAccountById(creditCardId)).thenReturn(Mono.empty());
+        when(accountClientService.getAccountAllowingStale(creditCardId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCredit(creditCardId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditById(creditCardId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditAllowingStale(creditCardId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCreditCard(creditCardId)).thenReturn(Mono.just(testCreditCard));
-        when(creditClientService.getCreditCardById(creditCardId)).thenReturn(Mono.just(testCreditCard));
+        when(creditClientService.getCreditCardAllowingStale(creditCardId))
+                .thenReturn(Mono.just(ReadResult.fresh(testCreditCard)));
         StepVerifier.create(transactionService.validateOwnership(customerId, creditCardId))
                 .expectNext(true)
                 .verifyComplete();
@@ -196,11 +268,11 @@ class TransactionServiceTest {
         String customerId = "customer1";
         String productId = "nonexistent";
         when(transactionCacheService.getAccount(productId)).thenReturn(Mono.empty());
-        when(accountClientService.getAccountById(productId)).thenReturn(Mono.empty());
+        when(accountClientService.getAccountAllowingStale(productId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCredit(productId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditById(productId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditAllowingStale(productId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCreditCard(productId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditCardById(productId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditCardAllowingStale(productId)).thenReturn(Mono.empty());
         StepVerifier.create(transactionService.validateOwnership(customerId, productId))
                 .expectNext(false)
                 .verifyComplete();
@@ -214,7 +286,8 @@ class TransactionServiceTest {
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.empty());
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(testAccount));
         when(transactionCacheService.saveAccount(anyString(), any(Account.class))).thenReturn(Mono.empty());
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         StepVerifier.create(transactionService.createTransaction(testTransaction))
                 .expectErrorMatches(error ->
                         error instanceof IllegalArgumentException &&
@@ -229,7 +302,8 @@ class TransactionServiceTest {
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.empty());
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(testAccount));
         when(transactionCacheService.saveAccount(anyString(), any(Account.class))).thenReturn(Mono.empty());
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         StepVerifier.create(transactionService.createTransaction(testTransaction))
                 .expectErrorMatches(error ->
                         error instanceof IllegalArgumentException &&
@@ -244,7 +318,8 @@ class TransactionServiceTest {
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.empty());
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(testAccount));
         when(transactionCacheService.saveAccount(anyString(), any(Account.class))).thenReturn(Mono.empty());
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         StepVerifier.create(transactionService.createTransaction(testTransaction))
                 .expectErrorMatches(error ->
                         error instanceof IllegalArgumentException &&
@@ -260,7 +335,8 @@ class TransactionServiceTest {
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.empty());
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(testAccount));
         when(transactionCacheService.saveAccount(anyString(), any(Account.class))).thenReturn(Mono.empty());
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         StepVerifier.create(transactionService.createTransaction(testTransaction))
                 .expectErrorMatches(error ->
                         error instanceof IllegalArgumentException &&
@@ -274,7 +350,8 @@ class TransactionServiceTest {
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.empty());
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(testAccount));
         when(transactionCacheService.saveAccount(anyString(), any(Account.class))).thenReturn(Mono.empty());
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         StepVerifier.create(transactionService.createTransaction(testTransaction))
                 .expectErrorMatches(error ->
                         error instanceof IllegalArgumentException &&
@@ -302,9 +379,10 @@ class TransactionServiceTest {
         when(transactionCacheService.getAccount(creditCardId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCredit(creditCardId)).thenReturn(Mono.empty());
         when(transactionCacheService.getCreditCard(creditCardId)).thenReturn(Mono.empty());
-        when(accountClientService.getAccountById(creditCardId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditById(creditCardId)).thenReturn(Mono.empty());
-        when(creditClientService.getCreditCardById(creditCardId)).thenReturn(Mono.just(testCreditCard));
+        when(accountClientService.getAccountAllowingStale(creditCardId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditAllowingStale(creditCardId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditCardAllowingStale(creditCardId))
+                .thenReturn(Mono.just(ReadResult.fresh(testCreditCard)));
         when(transactionCacheService.saveCreditCard(anyString(), any(CreditCard.class))).thenReturn(Mono.empty());
         StepVerifier.create(transactionService.validateOwnership(customerId, creditCardId))
                 .expectNext(true)
@@ -312,6 +390,22 @@ class TransactionServiceTest {
         verify(transactionCacheService).saveCreditCard(eq(creditCardId), any(CreditCard.class));
     }
     @Test
+    void validateAccountOwnership_StaleRead_AnswersWithoutCaching() {
+        String customerId = "customer1";
+        String accountId = "1";
+        when(transactionCacheService.getAccount(accountId)).thenReturn(Mono.empty());
+        when(transactionCacheService.getCredit(accountId)).thenReturn(Mono.empty());
+        when(transactionCacheService.getCreditCard(accountId)).thenReturn(Mono.empty());
+        when(accountClientService.getAccountAllowingStale(accountId))
+                .thenReturn(Mono.just(ReadResult.stale(testAccount)));
+        when(creditClientService.getCreditAllowingStale(accountId)).thenReturn(Mono.empty());
+        when(creditClientService.getCreditCardAllowingStale(accountId)).thenReturn(Mono.empty());
+        StepVerifier.create(transactionService.validateOwnership(customerId, accountId))
+                .expectNext(true)
+                .verifyComplete();
+        verify(transactionCacheService, never()).saveAccount(anyString(), any(Account.class));
+    }
+    @Test
     void processDebitCardTransaction_InactiveCard_Error() {
         DebitCard debitCard = new DebitCard();
         debitCard.setId("1");
@@ -406,6 +500,35 @@ class TransactionServiceTest {
                 .verifyComplete();
     }
     @Test
+    void processWithAvailableAccount_FailureAfterDebit_DoesNotDebitNextAccount() {
+        DebitCard debitCard = new DebitCard();
+        debitCard.setId("1");
+        debitCard.setCustomerId("customer1");
+        debitCard.setStatus("ACTIVE");
+        debitCard.setPrimaryAccountId("account1");
+        debitCard.setAssociatedAccountIds(Arrays.asList("account1", "account2"));
+        Account primaryAccount = new Account();
+        primaryAccount.setId("account1");
+        primaryAccount.setBalance(500.0);
+        testTransaction.setProductCategory(ProductCategory.DEBIT_CARD);
+        testTransaction.setProductId("1");
+        testTransaction.setTransactionType(TransactionType.DEBIT_CARD_PAYMENT);
+        testTransaction.setAmount(new BigDecimal("100.00"));
+        when(debitCardClientService.getDebitCardById("1")).thenReturn(Mono.just(debitCard));
+        when(accountClientService.getAccountById("account1")).thenReturn(Mono.just(primaryAccount));
+        when(accountClientService.updateAccountBalance(eq("account1"), any(BigDecimal.class)))
+                .thenReturn(Mono.just(primaryAccount));
+        when(debitCardClientService.getDebitCardByPrimaryAccountId("account1"))
+                .thenReturn(Mono.error(new RuntimeException("Debit card service is unavailable")));
+        when(transactionRepository.save(any(Transaction.class)))
+                .thenReturn(Mono.error(new RuntimeException("Mongo is unavailable")));
+        StepVerifier.create(transactionService.createTransaction(testTransaction))
+                .expectErrorMessage("Mongo is unavailable")
+                .verify();
+        verify(accountClientService, never()).getAccountById("account2");
+        verify(accountClientService).updateAccountBalance(eq("account1"), any(BigDecimal.class));
+    }
+    @Test
     void createTransaction_AccountTransfer_Success() {
         testTransaction.setProductCategory(ProductCategory.ACCOUNT);
         testTransaction.setProductId("1");
@@ -415,7 +538,8 @@ class TransactionServiceTest {
         destinationAccount.setId("2");
         destinationAccount.setBalance(500.0);
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.just(testAccount));
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(destinationAccount));
         when(accountClientService.updateAccountBalance(anyString(), any(BigDecimal.class)))
                 .thenReturn(Mono.just(testAccount));
@@ -432,13 +556,48 @@ class TransactionServiceTest {
         verify(debitCardClientService).getDebitCardByPrimaryAccountId(testTransaction.getDestinationAccountId());
     }
     @Test
+    void createTransaction_AccountTransfer_PublishesBalanceEventsKeyedByAccount() {
+        testTransaction.setProductCategory(ProductCategory.ACCOUNT);
+        testTransaction.setProductId("1");
+        testTransaction.setTransactionType(TransactionType.TRANSFER);
+        testTransaction.setDestinationAccountId("2");
+        Account destinationAccount = new Account();
+        destinationAccount.setId("2");
+        destinationAccount.setBalance(500.0);
+        DebitCard sourceCard = new DebitCard();
+        sourceCard.setCardNumber("4111");
+        DebitCard destinationCard = new DebitCard();
+        destinationCard.setCardNumber("4222");
+        when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.just(testAccount));
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
+        when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(destinationAccount));
+        when(accountClientService.updateAccountBalance(anyString(), any(BigDecimal.class)))
+                .thenReturn(Mono.just(testAccount));
+        when(debitCardClientService.getDebitCardByPrimaryAccountId("1"))
+                .thenReturn(Mono.just(List.of(sourceCard)));
+        when(debitCardClientService.getDebitCardByPrimaryAccountId("2"))
+                .thenReturn(Mono.just(List.of(destinationCard)));
+        when(reactiveKafkaPublisher.send(eq("bank.account.balance.updated"), anyString(), any()))
+                .thenReturn(Mono.empty());
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(Mono.just(testTransaction));
+        StepVerifier.create(transactionService.createTransaction(testTransaction))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(reactiveKafkaPublisher).send(eq("bank.account.balance.updated"), eq("1"),
+                argThat(event -> "4111".equals(((BalanceUpdatedEvent) event).getCardNumber())));
+        verify(reactiveKafkaPublisher).send(eq("bank.account.balance.updated"), eq("2"),
+                argThat(event -> "4222".equals(((BalanceUpdatedEvent) event).getCardNumber())));
+    }
+    @Test
     void createTransaction_AccountDeposit_Success() {
         testTransaction.setProductCategory(ProductCategory.ACCOUNT);
         testTransaction.setProductId("1");
         testTransaction.setTransactionType(TransactionType.DEPOSIT);
         when(transactionCacheService.getAccount(anyString())).thenReturn(Mono.just(testAccount));
         when(accountClientService.getAccountById(anyString())).thenReturn(Mono.just(testAccount));
-        when(transactionRepository.findByProductId(anyString())).thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         when(accountClientService.updateAccountBalance(anyString(), any(BigDecimal.class)))
                 .thenReturn(Mono.just(testAccount));
         when(debitCardClientService.getDebitCardByPrimaryAccountId(anyString()))
@@ -461,8 +620,8 @@ class TransactionServiceTest {
         when(accountClientService.getAccountById(testTransaction.getProductId())).thenReturn(Mono.just(testAccount));
         when(accountClientService.updateAccountBalance(anyString(), any(BigDecimal.class)))
                 .thenReturn(Mono.just(testAccount));
-        when(transactionRepository.findByProductId(anyString()))
-                .thenReturn(Flux.empty());
+        when(transactionRepository.countByProductIdAndTransactionTypeIn(anyString(), anyCollection()))
+                .thenReturn(Mono.just(0L));
         when(debitCardClientService.getDebitCardByPrimaryAccountId(anyString()))
                 .thenReturn(Mono.just(Collections.emptyList()));
         when(transactionRepository.save(any(Transaction.class)))
@@ -476,6 +635,25 @@ class TransactionServiceTest {
         verify(debitCardClientService).getDebitCardByPrimaryAccountId(testTransaction.getProductId());
     }
     @Test
+    void createTransaction_AccountWithdrawal_CountsFreeTransactionsOnFlatCollection() {
+        testTransaction.setProductCategory(ProductCategory.ACCOUNT);
+        testTransaction.setTransactionType(TransactionType.WITHDRAWAL);
+        when(transactionCacheService.getAccount("1")).thenReturn(Mono.just(testAccount));
+        when(accountClientService.getAccountById("1")).thenReturn(Mono.just(testAccount));
+        when(transactionRepository.countByProductIdAndTransactionTypeIn("1",
+                List.of(TransactionType.WITHDRAWAL, TransactionType.DEPOSIT))).thenReturn(Mono.just(3L));
+        when(accountClientService.updateAccountBalance(anyString(), any(BigDecimal.class)))
+                .thenReturn(Mono.just(testAccount));
+        when(debitCardClientService.getDebitCardByPrimaryAccountId(anyString()))
+                .thenReturn(Mono.just(Collections.emptyList()));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation ->
+                Mono.just(invocation.getArgument(0)));
+        StepVerifier.create(transactionService.createTransaction(testTransaction))
+                .expectNextMatches(transaction -> new BigDecimal("1.00").equals(transaction.getCommissions()))
+                .verifyComplete();
+        verify(transactionRepository, never()).findByProductId(anyString());
+    }
+    @Test
     void createTransaction_DebitCardPayment_FallbackToSecondaryAccount() {
         DebitCard debitCard = new DebitCard();
         debitCard.setId("1");
@@ -544,4 +722,41 @@ class TransactionServiceTest {
         verify(accountClientService, never()).updateAccountBalance(anyString(), any(BigDecimal.class));
         verify(transactionRepository, never()).save(any(Transaction.class));
     }
-}
\ No newline at end of file
+    @Test
+    void createAccountWithdrawals_AppliesInOrderWithOneBalanceUpdate() {
+        Transaction first = new Transaction();
+        first.setProductId("1");
+        first.setAmount(new BigDecimal("600.00"));
+        Transaction uncovered = new Transaction();
+        uncovered.setProductId("1");
+        uncovered.setAmount(new BigDecimal("500.00"));
+        Transaction last = new Transaction();
+        last.setProductId("1");
+        last.setAmount(new BigDecimal("400.00"));
+        when(accountClientService.updateAccountBalance(eq("1"), argThat(balance -> balance.signum() == 0)))
+                .thenReturn(Mono.just(testAccount));
+        when(debitCardClientService.getDebitCardByPrimaryAccountId("1")).thenReturn(Mono.just(List.of()));
+        when(transactionRepository.save(any(Transaction.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        StepVerifier.create(transactionService.createAccountWithdrawals(testAccount,
+                        List.of(first, uncovered, last)))
+                .expectNextMatches(applied -> applied.size() == 2 && applied.get(0) == first && applied.get(1) == last)
+                .verifyComplete();
+        verify(accountClientService, times(1)).updateAccountBalance(anyString(), any(BigDecimal.class));
+        verify(transactionRepository, times(2)).save(any(Transaction.class));
+        assertEquals(0, new BigDecimal("400.00").compareTo(first.getBalanceAfter()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(last.getBalanceAfter()));
+        assertEquals(0, new BigDecimal("400.00").compareTo(last.getBalanceBefore()));
+    }
+    @Test
+    void createAccountWithdrawals_NothingCoveredSkipsBalanceUpdate() {
+        Transaction withdrawal = new Transaction();
+        withdrawal.setProductId("1");
+        withdrawal.setAmount(new BigDecimal("5000.00"));
+        StepVerifier.create(transactionService.createAccountWithdrawals(testAccount, List.of(withdrawal)))
+                .expectNextMatches(List::isEmpty)
+                .verifyComplete();
+        verify(accountClientService, never()).updateAccountBalance(anyString(), any(BigDecimal.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+}
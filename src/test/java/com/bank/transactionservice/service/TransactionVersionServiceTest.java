@@ -0,0 +1,115 @@
+package com.bank.transactionservice.service;
+
+import com.bank.transactionservice.model.transaction.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class TransactionVersionServiceTest {
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveHashOperations<String, String, String> hashOperations;
+    private TransactionVersionService transactionVersionService;
+    @BeforeEach
+    void setUp() {
+        doReturn(hashOperations).when(redisTemplate).opsForHash();
+        transactionVersionService = new TransactionVersionService(redisTemplate);
+    }
+    @Test
+    void recordTransaction_BumpsProductAndCustomer() {
+        Transaction transaction = Transaction.builder().id("1").productId("product1").customerId("customer1").build();
+        when(hashOperations.increment(anyString(), eq("version"), eq(1L))).thenReturn(Mono.just(2L));
+        when(hashOperations.put(anyString(), eq("modifiedAt"), anyString())).thenReturn(Mono.just(true));
+        StepVerifier.create(transactionVersionService.recordTransaction(transaction)).verifyComplete();
+        verify(hashOperations).increment("TransactionVersion:product:product1", "version", 1L);
+        verify(hashOperations).increment("TransactionVersion:customer:customer1", "version", 1L);
+    }
+    @Test
+    void recordTransaction_FailedBumpDropsVersion() {
+        Transaction transaction = Transaction.builder().id("1").productId("product1").build();
+        when(hashOperations.increment(anyString(), eq("version"), eq(1L)))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")));
+        when(hashOperations.delete("TransactionVersion:product:product1")).thenReturn(Mono.just(true));
+        StepVerifier.create(transactionVersionService.recordTransaction(transaction)).verifyComplete();
+        verify(hashOperations).delete("TransactionVersion:product:product1");
+        verify(hashOperations, never()).increment(startsWith("TransactionVersion:customer:"), anyString(), anyLong());
+    }
+    @Test
+    void recordTransaction_FailedDropServesHistoryUntagged() {
+        Transaction transaction = Transaction.builder().id("1").productId("product1").build();
+        when(hashOperations.increment(anyString(), eq("version"), eq(1L)))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")));
+        when(hashOperations.delete("TransactionVersion:product:product1"))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")))
+                .thenReturn(Mono.just(true));
+        when(hashOperations.multiGet(eq("TransactionVersion:product:product1"), anyList()))
+                .thenReturn(Mono.just(List.of("3", "1710500000000")));
+        StepVerifier.create(transactionVersionService.recordTransaction(transaction)).verifyComplete();
+        StepVerifier.create(transactionVersionService.getProductVersion("product1")).verifyComplete();
+        StepVerifier.create(transactionVersionService.getProductVersion("product1"))
+                .assertNext(version -> assertEquals(3L, version.getVersion()))
+                .verifyComplete();
+        StepVerifier.create(transactionVersionService.getProductVersion("product1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(hashOperations, times(3)).delete("TransactionVersion:product:product1");
+    }
+    @Test
+    void getProductVersion_Existing() {
+        when(hashOperations.multiGet(eq("TransactionVersion:product:product1"), anyList()))
+                .thenReturn(Mono.just(List.of("3", "1710500000000")));
+        StepVerifier.create(transactionVersionService.getProductVersion("product1"))
+                .assertNext(version -> {
+                    assertEquals(3L, version.getVersion());
+                    assertEquals(Instant.ofEpochMilli(1710500000000L), version.getModifiedAt());
+                })
+                .verifyComplete();
+        verify(hashOperations, never()).putIfAbsent(anyString(), anyString(), anyString());
+    }
+    @Test
+    void getCustomerVersion_InitializesMissingVersion() {
+        when(hashOperations.multiGet(eq("TransactionVersion:customer:customer1"), anyList()))
+                .thenReturn(Mono.just(Arrays.asList(null, null)))
+                .thenReturn(Mono.just(List.of("0", "1710500000000")));
+        when(hashOperations.putIfAbsent(eq("TransactionVersion:customer:customer1"), anyString(), anyString()))
+                .thenReturn(Mono.just(true));
+        StepVerifier.create(transactionVersionService.getCustomerVersion("customer1"))
+                .assertNext(version -> assertEquals(0L, version.getVersion()))
+                .verifyComplete();
+        verify(hashOperations).putIfAbsent("TransactionVersion:customer:customer1", "version", "0");
+    }
+    @Test
+    void getProductVersion_ErrorReturnsEmpty() {
+        when(hashOperations.multiGet(anyString(), anyList()))
+                .thenReturn(Mono.error(new RuntimeException("Redis down")));
+        StepVerifier.create(transactionVersionService.getProductVersion("product1")).verifyComplete();
+    }
+    @Test
+    void eTag_DependsOnProjection() {
+        when(hashOperations.multiGet(anyString(), anyList()))
+                .thenReturn(Mono.just(List.of("3", "1710500000000")));
+        StepVerifier.create(transactionVersionService.getProductVersion("product1"))
+                .assertNext(version -> {
+                    assertEquals(version.eTag(null, "summary"), version.eTag(null, "summary"));
+                    assertNotEquals(version.eTag(null, null), version.eTag(null, "summary"));
+                })
+                .verifyComplete();
+    }
+}